@@ -13,6 +13,7 @@ import javax.annotation.Nonnull;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.openmrs.CohortMembership;
 import org.openmrs.annotation.Authorized;
@@ -44,4 +45,28 @@ public interface FhirCohortMembershipDao extends FhirDao<CohortMembership> {
 	@Override
 	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
 	List<CohortMembership> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<String> resourceUuids);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	int[] getSearchResultIds(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	List<CohortMembership> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	Stream<CohortMembership> streamSearchResults(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	List<CohortMembership> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum);
 }
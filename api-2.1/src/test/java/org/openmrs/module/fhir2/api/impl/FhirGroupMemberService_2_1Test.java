@@ -92,12 +92,12 @@ public class FhirGroupMemberService_2_1Test {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.GROUP_MEMBERS_SEARCH_HANDLER,
 		    GROUP_MEMBER_UUID);
 		
-		when(dao.getSearchResults(any(), any())).thenReturn(memberships);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(GROUP_MEMBER_UUID));
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(memberships);
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
 		when(translator.toFhirResource(cohortMembership)).thenReturn(groupMember);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = groupMemberService.getGroupMembers(GROUP_MEMBER_UUID);
 		
@@ -15,6 +15,7 @@ import javax.annotation.Nonnull;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.QuantityAndListParam;
@@ -69,6 +70,49 @@ public class FhirConditionDaoImpl_2_2 extends BaseFhirDao<Condition> implements
 		return super.getSearchResults(theParams, resourceUuids);
 	}
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public int[] getSearchResultIds(@Nonnull SearchParameterMap theParams) {
+		return super.getSearchResultIds(theParams);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public List<Condition> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids) {
+		return super.getSearchResultsByIds(theParams, ids);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public Stream<Condition> streamSearchResults(@Nonnull SearchParameterMap theParams) {
+		return super.streamSearchResults(theParams);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public List<Condition> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults) {
+		return super.getSearchResults(theParams, firstResult, maxResults);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public int getSearchResultsCount(@Nonnull SearchParameterMap theParams) {
+		return super.getSearchResultsCount(theParams);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum) {
+		return super.getSearchResultsCount(theParams, maximum);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public List<String> getIncludedUuids(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids,
+	        @Nonnull String includeParam) {
+		return super.getIncludedUuids(theParams, ids, includeParam);
+	}
+	
 	private ConditionClinicalStatus convertStatus(String status) {
 		if ("active".equalsIgnoreCase(status)) {
 			return ConditionClinicalStatus.ACTIVE;
@@ -35,7 +35,8 @@ public class SearchQueryInclude_2_2 extends SearchQueryInclude<Condition> {
 	
 	@Override
 	@SuppressWarnings("unchecked")
-	public Set<IBaseResource> getIncludedResources(List<Condition> resourceList, SearchParameterMap theParams) {
+	public Set<IBaseResource> getIncludedResources(List<Condition> resourceList, SearchParameterMap theParams,
+	        IncludedIdsLookup includedIdsLookup) {
 		Set<IBaseResource> includedResourcesSet = new HashSet<>();
 		
 		List<PropParam<?>> includeParamList = theParams.getParameters(FhirConstants.INCLUDE_SEARCH_HANDLER);
@@ -116,6 +116,38 @@ public class FhirConstants {
 	
 	public static final String OPENMRS_FHIR_MAXIMUM_PAGE_SIZE = "fhir2.paging.maximum";
 	
+	public static final String OPENMRS_FHIR_WINDOWED_PAGING = "fhir2.paging.windowed";
+	
+	public static final String OPENMRS_FHIR_SEARCH_SNAPSHOT_TIME_TO_LIVE = "fhir2.paging.snapshotTimeToLive";
+	
+	public static final String OPENMRS_FHIR_SEARCH_SNAPSHOT_MAXIMUM = "fhir2.paging.snapshotMaximum";
+	
+	public static final String OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE = "fhir2.search.cacheMaximumSize";
+	
+	public static final String OPENMRS_FHIR_SEARCH_CACHE_TIME_TO_LIVE = "fhir2.search.cacheTimeToLive";
+	
+	public static final String OPENMRS_FHIR_CONCURRENT_SEARCHES = "fhir2.search.concurrent";
+	
+	public static final String OPENMRS_FHIR_SLOW_SEARCH_THRESHOLD = "fhir2.search.slowSearchThreshold";
+	
+	public static final String OPENMRS_FHIR_REVERSE_INCLUDE_MAXIMUM = "fhir2.search.revIncludeMaximum";
+	
+	public static final String OPENMRS_FHIR_INCLUDE_ITERATE_MAXIMUM_DEPTH = "fhir2.search.iterateMaximumDepth";
+	
+	public static final String OPENMRS_FHIR_INCLUDE_ITERATE_MAXIMUM = "fhir2.search.iterateMaximum";
+	
+	public static final String OPENMRS_FHIR_CONCEPT_CODE_INDEX = "fhir2.search.conceptCodeIndex";
+	
+	public static final String OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX = "fhir2.search.personNameTokenIndex";
+	
+	public static final String OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX = "fhir2.search.personDisplayNameIndex";
+	
+	public static final String OPENMRS_FHIR_OBSERVATION_CATEGORY_CACHE = "fhir2.search.observationCategoryCache";
+	
+	public static final String OPENMRS_FHIR_READ_REPLICAS = "fhir2.search.readReplicas";
+	
+	public static final String OPENMRS_FHIR_READ_REPLICA_PIN_WINDOW = "fhir2.search.readReplicaPinWindow";
+	
 	public static final String ALLERGY_INTOLERANCE = "AllergyIntolerance";
 	
 	public static final String CONDITION = "Condition";
@@ -312,6 +344,8 @@ public class FhirConstants {
 	
 	public static final String EVERYTHING_SEARCH_HANDLER = "everything.search.handler";
 	
+	public static final String TOTAL_MODE_SEARCH_HANDLER = "_total.search.handler";
+	
 	public static final String CONDITION_OBSERVATION_CONCEPT_UUID = "1284AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA";
 	
 	public static final String SNOMED_SYSTEM_URI = "http://snomed.info/sct";
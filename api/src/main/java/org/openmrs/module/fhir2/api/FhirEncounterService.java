@@ -19,6 +19,7 @@ import ca.uhn.fhir.rest.param.ReferenceAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import org.hl7.fhir.r4.model.Encounter;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 
 public interface FhirEncounterService extends FhirService<Encounter> {
 	
@@ -28,4 +29,13 @@ public interface FhirEncounterService extends FhirService<Encounter> {
 	        HashSet<Include> revIncludes);
 	
 	IBundleProvider getEncounterEverything(TokenParam identifier);
+	
+	/**
+	 * Searches for encounters and visits without counting either search up front, for callers which
+	 * only read the first results, e.g. reverse includes
+	 *
+	 * @param theParams the search parameters
+	 * @return the combined results of the encounter and visit searches
+	 */
+	IBundleProvider searchForEncounters(SearchParameterMap theParams);
 }
@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.api.dao;
 import javax.annotation.Nonnull;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.openmrs.Allergy;
 import org.openmrs.annotation.Authorized;
@@ -35,4 +36,28 @@ public interface FhirAllergyIntoleranceDao extends FhirDao<Allergy> {
 	@Override
 	@Authorized(PrivilegeConstants.GET_ALLERGIES)
 	List<Allergy> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<String> resourceUuids);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	int[] getSearchResultIds(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	List<Allergy> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	Stream<Allergy> streamSearchResults(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	List<Allergy> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum);
 }
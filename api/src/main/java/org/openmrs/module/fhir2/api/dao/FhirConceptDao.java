@@ -13,6 +13,7 @@ import javax.annotation.Nonnull;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import org.openmrs.Concept;
 import org.openmrs.annotation.Authorized;
@@ -39,4 +40,28 @@ public interface FhirConceptDao extends FhirDao<Concept> {
 	@Override
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	List<Concept> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<String> resourceUuids);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	int[] getSearchResultIds(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	List<Concept> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	Stream<Concept> streamSearchResults(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	List<Concept> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum);
 }
@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.api.dao;
 import javax.annotation.Nonnull;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.openmrs.Auditable;
 import org.openmrs.OpenmrsObject;
@@ -33,4 +34,22 @@ public interface FhirConditionDao<T extends OpenmrsObject & Auditable> extends F
 	
 	@Override
 	List<T> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<String> resourceUuids);
+	
+	@Override
+	int[] getSearchResultIds(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	List<T> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids);
+	
+	@Override
+	Stream<T> streamSearchResults(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	List<T> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum);
 }
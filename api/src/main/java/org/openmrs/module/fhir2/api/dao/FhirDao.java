@@ -14,6 +14,7 @@ import javax.annotation.Nonnull;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.openmrs.Auditable;
 import org.openmrs.OpenmrsObject;
@@ -35,4 +36,86 @@ public interface FhirDao<T extends OpenmrsObject & Auditable> extends Serializab
 	List<String> getSearchResultUuids(@Nonnull SearchParameterMap theParams);
 	
 	List<T> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<String> resourceUuids);
+	
+	/**
+	 * Returns the primary keys of all objects matching the search, in search order. This is a more
+	 * compact alternative to {@link #getSearchResultUuids(SearchParameterMap)}
+	 *
+	 * @param theParams the parameters for this search
+	 * @return the primary keys of the matching objects
+	 */
+	int[] getSearchResultIds(@Nonnull SearchParameterMap theParams);
+	
+	/**
+	 * Loads the objects with the given primary keys, in the order of the keys
+	 *
+	 * @param theParams the parameters for this search
+	 * @param ids the primary keys of the objects to load
+	 * @return the objects with the given primary keys
+	 */
+	List<T> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids);
+	
+	/**
+	 * Streams every object matching the search in order of primary key, reading the keys through a
+	 * forward-only cursor and loading the objects in batches. Each batch is evicted from the session
+	 * once the next one is loaded, so the objects should be processed, e.g. translated, as they are
+	 * read rather than collected. The stream must be consumed within the current transaction and
+	 * closed afterwards. Sort parameters are ignored.
+	 *
+	 * @param theParams the parameters for this search
+	 * @return a stream of the matching objects
+	 */
+	Stream<T> streamSearchResults(@Nonnull SearchParameterMap theParams);
+	
+	/**
+	 * Loads a single window of the results matching the search, in search order, without first
+	 * loading the identifiers of every matching object
+	 *
+	 * @param theParams the parameters for this search
+	 * @param firstResult the (zero-based) index of the first result to return
+	 * @param maxResults the maximum number of results to return; values less than 1 mean no limit
+	 * @return the matching objects in the requested window
+	 */
+	List<T> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	/**
+	 * @param theParams the parameters for this search
+	 * @return the total number of objects matching the search
+	 */
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams);
+	
+	/**
+	 * Counts the objects matching the search, but stops counting once the given maximum is reached so
+	 * that the cost of the count is bounded
+	 *
+	 * @param theParams the parameters for this search
+	 * @param maximum the maximum number to count up to
+	 * @return the number of matching objects, or the maximum if at least that many objects match
+	 */
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum);
+	
+	/**
+	 * Finds the uuids of the objects referenced through an include parameter by the objects with the
+	 * given primary keys, using a projection instead of loading and translating the objects themselves
+	 *
+	 * @param theParams the parameters for this search
+	 * @param ids the primary keys of the objects whose references should be found
+	 * @param includeParam the name of the include parameter, e.g. "patient"
+	 * @return the uuids of the referenced objects, or null if this include cannot be resolved this way
+	 */
+	List<String> getIncludedUuids(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids,
+	        @Nonnull String includeParam);
+	
+	/**
+	 * Finds the uuids of the objects referenced through an include parameter by the given objects. The
+	 * uuids are read from the referenced objects already loaded into the session, so a query is only
+	 * run for references which have not been loaded.
+	 *
+	 * @param theParams the parameters for this search
+	 * @param objects the loaded objects whose references should be found
+	 * @param includeParam the name of the include parameter, e.g. "patient"
+	 * @return the uuids of the referenced objects, or null if this include cannot be resolved this way
+	 */
+	List<String> getIncludedUuids(@Nonnull SearchParameterMap theParams, @Nonnull List<T> objects,
+	        @Nonnull String includeParam);
 }
@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.api.dao;
 import javax.annotation.Nonnull;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.openmrs.annotation.Authorized;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
@@ -39,4 +40,28 @@ public interface FhirDiagnosticReportDao extends FhirDao<FhirDiagnosticReport> {
 	@Override
 	@Authorized(PrivilegeConstants.GET_OBS)
 	List<FhirDiagnosticReport> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<String> resourceUuids);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	int[] getSearchResultIds(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	List<FhirDiagnosticReport> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	Stream<FhirDiagnosticReport> streamSearchResults(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	List<FhirDiagnosticReport> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum);
 }
@@ -13,6 +13,7 @@ import javax.annotation.Nonnull;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifierType;
@@ -50,4 +51,28 @@ public interface FhirPatientDao extends FhirDao<Patient> {
 	@Override
 	@Authorized(PrivilegeConstants.GET_PATIENTS)
 	List<Patient> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<String> resourceUuids);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	int[] getSearchResultIds(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	List<Patient> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	Stream<Patient> streamSearchResults(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	List<Patient> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum);
 }
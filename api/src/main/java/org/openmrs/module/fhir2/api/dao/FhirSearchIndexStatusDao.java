@@ -0,0 +1,42 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+
+import org.openmrs.BaseOpenmrsData;
+
+public interface FhirSearchIndexStatusDao {
+	
+	/**
+	 * @param indexName the name of the index
+	 * @param sourceType the type of the objects the index is built from
+	 * @return true if the index has been marked as current and no object of the given type has been
+	 *         created, changed or voided since
+	 */
+	boolean isCurrent(@Nonnull String indexName, @Nonnull Class<? extends BaseOpenmrsData> sourceType);
+	
+	/**
+	 * Records that the index holds every object saved up to the given date
+	 *
+	 * @param indexName the name of the index
+	 * @param currentUntil the date up to which the index is current
+	 */
+	void markCurrent(@Nonnull String indexName, @Nonnull Date currentUntil);
+	
+	/**
+	 * Records that the index is no longer maintained, so that it must be rebuilt before it is used
+	 *
+	 * @param indexName the name of the index
+	 */
+	void clear(@Nonnull String indexName);
+}
@@ -0,0 +1,39 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+
+import org.openmrs.module.fhir2.model.FhirSearchSnapshot;
+
+public interface FhirSearchSnapshotDao {
+	
+	FhirSearchSnapshot get(@Nonnull String uuid);
+	
+	FhirSearchSnapshot save(@Nonnull FhirSearchSnapshot snapshot);
+	
+	/**
+	 * Deletes all snapshots which expired before the given date
+	 *
+	 * @param now the current date
+	 * @return the number of snapshots deleted
+	 */
+	int deleteExpired(@Nonnull Date now);
+	
+	/**
+	 * Deletes the oldest snapshots so that no more than the given number remain
+	 *
+	 * @param maximumSnapshots the number of snapshots to keep
+	 * @return the number of snapshots deleted
+	 */
+	int deleteOldest(int maximumSnapshots);
+}
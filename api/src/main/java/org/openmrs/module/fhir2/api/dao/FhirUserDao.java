@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.api.dao;
 import javax.annotation.Nonnull;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.openmrs.User;
 import org.openmrs.annotation.Authorized;
@@ -42,4 +43,28 @@ public interface FhirUserDao extends FhirDao<User> {
 	@Authorized(PrivilegeConstants.GET_USERS)
 	@Override
 	List<User> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<String> resourceUuids);
+	
+	@Authorized(PrivilegeConstants.GET_USERS)
+	@Override
+	int[] getSearchResultIds(@Nonnull SearchParameterMap theParams);
+	
+	@Authorized(PrivilegeConstants.GET_USERS)
+	@Override
+	List<User> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids);
+	
+	@Authorized(PrivilegeConstants.GET_USERS)
+	@Override
+	Stream<User> streamSearchResults(@Nonnull SearchParameterMap theParams);
+	
+	@Authorized(PrivilegeConstants.GET_USERS)
+	@Override
+	List<User> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Authorized(PrivilegeConstants.GET_USERS)
+	@Override
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams);
+	
+	@Authorized(PrivilegeConstants.GET_USERS)
+	@Override
+	int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum);
 }
@@ -23,7 +23,12 @@ import static org.hibernate.criterion.Restrictions.lt;
 import static org.hibernate.criterion.Restrictions.ne;
 import static org.hibernate.criterion.Restrictions.not;
 import static org.hibernate.criterion.Restrictions.or;
+import static org.hibernate.criterion.Restrictions.sqlRestriction;
 import static org.hibernate.criterion.Subqueries.propertyEq;
+import static org.hibernate.criterion.Subqueries.propertyIn;
+import static org.openmrs.module.fhir2.api.search.PersonNameTokenIndex.FAMILY;
+import static org.openmrs.module.fhir2.api.search.PersonNameTokenIndex.GIVEN;
+import static org.openmrs.module.fhir2.api.search.PersonNameTokenIndex.MIDDLE;
 
 import javax.annotation.Nonnull;
 
@@ -68,9 +73,12 @@ import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import com.google.common.primitives.Ints;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.time.DateUtils;
@@ -85,7 +93,14 @@ import org.hl7.fhir.r4.model.Location;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Practitioner;
 import org.hl7.fhir.r4.model.codesystems.AdministrativeGender;
+import org.openmrs.ConceptMap;
+import org.openmrs.EncounterProvider;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PersonName;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.search.ConceptCodeIndex;
+import org.openmrs.module.fhir2.api.search.PersonDisplayNameIndex;
+import org.openmrs.module.fhir2.api.search.PersonNameTokenIndex;
 import org.openmrs.module.fhir2.api.search.param.PropParam;
 import org.openmrs.module.fhir2.api.util.LocalDateTimeFactory;
 import org.openmrs.module.fhir2.model.FhirConceptSource;
@@ -102,22 +117,30 @@ import org.springframework.beans.factory.annotation.Autowired;
  *  StringAndListParam firstNames = new StringAndListParam().addAnd(new StringParam("Liam"));
  *  StringOrListParam lastNames = new StringOrListParam.addOr(new StringParam("Hemsworth), new StringParam("Neeson"));
  *  Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Person.class);
- *  criteria.createAlias("names", "pn");
- *  Stream.of(
+ *  Criterion[] nameCriteria = toCriteriaArray(Stream.of(
  *      handleAndParam(firstNames, name -> Optional.of(eq("pn.givenName", name))),
  *      handleOrParam(lastNames, name -> Optional.of(eq("pn.familyName", name))
- *  ).filter(Optional::isPresent).map(Optional::get).forEach(criteria::add);
+ *  ));
+ *  criteria.add(semiJoin("personId", DetachedCriteria.forClass(PersonName.class, "pn"), "pn.person.id",
+ *      and(nameCriteria)));
  * }</pre>
  * </p>
  * <p>
  * This will generate a query that looks something like: <pre>{@code
  *  SELECT *
- *  FROM patient this_
- *      JOIN patient_name pn ON pn.person_id = this_.person_id
- *  WHERE pn.given_name = "Liam" AND (pn.family_name = "Hemsworth" or pn.family_name = "Neeson")
+ *  FROM person this_
+ *  WHERE this_.person_id IN (
+ *      SELECT pn.person_id
+ *      FROM person_name pn
+ *      WHERE pn.given_name = "Liam" AND (pn.family_name = "Hemsworth" or pn.family_name = "Neeson")
+ *  )
  * }</pre>
  * </p>
  * <p>
+ * To-many associations such as names are matched with {@link #semiJoin} rather than joined, so each
+ * person is returned once however many of their names match.
+ * </p>
+ * <p>
  * These methods can also be used to simplify the code to generate very complex queries. For
  * example, the following code allows grouping {@link TokenParam} representing
  * {@link org.hl7.fhir.r4.model.CodeableConcept}s into groups based on systems with correct AND / OR
@@ -130,16 +153,10 @@ import org.springframework.beans.factory.annotation.Autowired;
  *             in("c.conceptId", tokensToParams(tokens).map(NumberUtils::toInt).collect(Collectors.toList())),
  * 	               in("c.uuid", tokensToList(tokens))));
  *     } else {
- *         if (!containsAlias(criteria, "cm")) {
- *             criteria.createAlias("c.conceptMappings", "cm").createAlias("cm.conceptReferenceTerm", "crt");
- *         }
- *         DetachedCriteria conceptSourceCriteria = DetachedCriteria.forClass(FhirConceptSource.class).add(eq("url", system))
- *             .setProjection(property("conceptSource"));
- * 	       if (codes.size() > 1) {
- *            return Optional.of(and(propertyEq("crt.conceptSource", conceptSourceCriteria), in("crt.code", codes)));
- *         } else {
- *             return Optional.of(and(propertyEq("crt.conceptSource", conceptSourceCriteria), eq("crt.code", codes.get(0))));
- *         };
+ *         DetachedCriteria mappings = DetachedCriteria.forClass(ConceptMap.class, "cm")
+ *             .createAlias("cm.conceptReferenceTerm", "crt");
+ *         return Optional.of(semiJoin("c.conceptId", mappings, "cm.concept.id",
+ *             generateSystemQuery(system, tokensToList(tokens), "crt")));
  *     }
  *  }).ifPresent(criteria::add);
  * }</pre>
@@ -149,17 +166,18 @@ import org.springframework.beans.factory.annotation.Autowired;
  *   SELECT *
  *   FROM obs this_
  *       JOIN concept c ON this_.concept_id = c.concept_id
- *       JOIN concept_reference_map cm on c.concept_id = cm.concept_id
- *       JOIN concept_reference_term crt on cm.concept_reference_term_id = crt.concept_reference_term_id
- *   WHERE ((
- *         crt.concept_source_id = (select concept_source_id from fhir_concept_source where url = ?)
- *     AND crt.code in (?, ?, ?)
- *   ) OR (
- *         crt.concept_source_id = (select concept_source_id from fhir_concept_source where url = ?)
- *     AND crt.code = ?
- *   )) AND (
- *         crt.concept_source_id = (select concept_source_id from fhir_concept_source where url = ?)
- *     AND crt.code in (?, ?, ?)
+ *   WHERE c.concept_id IN (
+ *       SELECT cm.concept_id
+ *       FROM concept_reference_map cm
+ *           JOIN concept_reference_term crt on cm.concept_reference_term_id = crt.concept_reference_term_id
+ *       WHERE crt.concept_source_id = (select concept_source_id from fhir_concept_source where url = ?)
+ *         AND crt.code in (?, ?, ?)
+ *   ) OR c.concept_id IN (
+ *       SELECT cm.concept_id
+ *       FROM concept_reference_map cm
+ *           JOIN concept_reference_term crt on cm.concept_reference_term_id = crt.concept_reference_term_id
+ *       WHERE crt.concept_source_id = (select concept_source_id from fhir_concept_source where url = ?)
+ *         AND crt.code = ?
  *   );
  * }</pre>
  * </p>
@@ -168,9 +186,27 @@ public abstract class BaseDao {
 	
 	private static final BigDecimal APPROX_RANGE = new BigDecimal("0.1");
 	
+	/**
+	 * The largest list of values padded by {@link #paddedIn(String, Collection)}. Lists are never padded
+	 * past this size, which stays below the limit of 1000 values per IN list some databases have.
+	 */
+	static final int MAX_PADDED_IN_CLAUSE_SIZE = 512;
+	
 	@Autowired
 	private LocalDateTimeFactory localDateTimeFactory;
 	
+	@Autowired(required = false)
+	@Setter(AccessLevel.PUBLIC)
+	private ConceptCodeIndex conceptCodeIndex;
+	
+	@Autowired(required = false)
+	@Setter(AccessLevel.PUBLIC)
+	private PersonNameTokenIndex personNameTokenIndex;
+	
+	@Autowired(required = false)
+	@Setter(AccessLevel.PUBLIC)
+	private PersonDisplayNameIndex personDisplayNameIndex;
+	
 	/**
 	 * Converts an {@link Iterable} to a {@link Stream}
 	 *
@@ -217,6 +253,57 @@ public abstract class BaseDao {
 		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), true);
 	}
 	
+	/**
+	 * Creates an IN restriction whose number of bind parameters is rounded up to the next power of two
+	 * by repeating the last value. Searches which differ only in how many values they pass therefore
+	 * generate the same SQL, so the statement caches of the driver and the database can be reused.
+	 *
+	 * @param propertyName the property to restrict
+	 * @param values the values the property may take
+	 * @return the restriction
+	 */
+	protected static Criterion paddedIn(String propertyName, Collection<?> values) {
+		return in(propertyName, padInClause(values));
+	}
+	
+	/**
+	 * Restricts a search to the resources owning at least one element of a to-many association which
+	 * matches the given criterion, i.e. {@code this_.person_id in (select pn_.person_id from person_name
+	 * pn_ where ...)}. Unlike joining the association, this returns each resource once no matter how
+	 * many of its elements match.
+	 *
+	 * @param idProperty the property identifying the owner in the search query
+	 * @param elements a query over the elements of the association
+	 * @param ownerIdProperty the property of an element referring to its owner
+	 * @param criterion the restriction the elements must satisfy
+	 * @return the restriction
+	 */
+	protected static Criterion semiJoin(String idProperty, DetachedCriteria elements, String ownerIdProperty,
+	        Criterion criterion) {
+		return propertyIn(idProperty, elements.add(criterion).setProjection(property(ownerIdProperty)));
+	}
+	
+	/**
+	 * @return the given values, padded to the next power of two by repeating the last value, or the
+	 *         values unchanged if there are none or more than {@link #MAX_PADDED_IN_CLAUSE_SIZE}
+	 */
+	static <T> Collection<T> padInClause(Collection<T> values) {
+		int size = values.size();
+		if (size == 0 || size > MAX_PADDED_IN_CLAUSE_SIZE || Integer.bitCount(size) == 1) {
+			return values;
+		}
+		
+		List<T> padded = new ArrayList<>(Integer.highestOneBit(size) << 1);
+		padded.addAll(values);
+		
+		T last = padded.get(size - 1);
+		while (padded.size() < Integer.highestOneBit(size) << 1) {
+			padded.add(last);
+		}
+		
+		return padded;
+	}
+	
 	/**
 	 * Determines whether or not the given criteria object already has a given alias. This is useful to
 	 * determine whether a mapping has already been made or whether a given alias is already in use.
@@ -562,61 +649,53 @@ public abstract class BaseDao {
 		
 	}
 	
-	protected void handleParticipantReference(Criteria criteria, ReferenceAndListParam participantReference) {
-		if (participantReference != null) {
-			if (lacksAlias(criteria, "ep")) {
-				return;
-			}
+	protected void handleParticipantReference(Criteria criteria, ReferenceAndListParam participantReference,
+	        @Nonnull String idProperty, @Nonnull String participantOwnerProperty) {
+		if (participantReference == null) {
+			return;
+		}
+		
+		handleAndListParam(participantReference, participantToken -> {
+			DetachedCriteria participants = DetachedCriteria.forClass(EncounterProvider.class, "ep")
+			        .createAlias("ep.encounter", "en").createAlias("ep.provider", "pro");
+			Optional<Criterion> participantCriterion = Optional.empty();
 			
-			handleAndListParam(participantReference, participantToken -> {
-				if (participantToken.getChain() != null) {
-					switch (participantToken.getChain()) {
-						case Practitioner.SP_IDENTIFIER:
-							if (lacksAlias(criteria, "p")) {
-								criteria.createAlias("ep.provider", "p");
-							}
-							return Optional.of(ilike("p.identifier", participantToken.getValue()));
-						case Practitioner.SP_GIVEN:
-							if ((lacksAlias(criteria, "pro")
-							        && (lacksAlias(criteria, "ps") && (lacksAlias(criteria, "pn"))))) {
-								criteria.createAlias("ep.provider", "pro").createAlias("pro.person", "ps")
-								        .createAlias("ps.names", "pn");
-							}
-							return Optional.of(ilike("pn.givenName", participantToken.getValue(), MatchMode.START));
-						case Practitioner.SP_FAMILY:
-							if ((lacksAlias(criteria, "pro")
-							        && (lacksAlias(criteria, "ps") && (lacksAlias(criteria, "pn"))))) {
-								criteria.createAlias("ep.provider", "pro").createAlias("pro.person", "ps")
-								        .createAlias("ps.names", "pn");
-							}
-							return Optional.of(ilike("pn.familyName", participantToken.getValue(), MatchMode.START));
-						case Practitioner.SP_NAME:
-							if ((lacksAlias(criteria, "pro")
-							        && (lacksAlias(criteria, "ps") && (lacksAlias(criteria, "pn"))))) {
-								criteria.createAlias("ep.provider", "pro").createAlias("pro.person", "ps")
-								        .createAlias("ps.names", "pn");
-							}
-							
-							List<Optional<Criterion>> criterionList = new ArrayList<>();
-							
-							for (String token : StringUtils.split(participantToken.getValue(), " \t,")) {
-								criterionList.add(propertyLike("pn.givenName", token));
-								criterionList.add(propertyLike("pn.middleName", token));
-								criterionList.add(propertyLike("pn.familyName", token));
-							}
-							
-							return Optional.of(or(toCriteriaArray(criterionList)));
-					}
-				} else {
-					if (lacksAlias(criteria, "pro")) {
-						criteria.createAlias("ep.provider", "pro");
-					}
-					return Optional.of(eq("pro.uuid", participantToken.getValue()));
+			if (participantToken.getChain() != null) {
+				switch (participantToken.getChain()) {
+					case Practitioner.SP_IDENTIFIER:
+						participantCriterion = Optional.of(ilike("pro.identifier", participantToken.getValue()));
+						break;
+					case Practitioner.SP_GIVEN:
+						participants.createAlias("pro.person", "ps").createAlias("ps.names", "pn");
+						participantCriterion = Optional
+						        .of(ilike("pn.givenName", participantToken.getValue(), MatchMode.START));
+						break;
+					case Practitioner.SP_FAMILY:
+						participants.createAlias("pro.person", "ps").createAlias("ps.names", "pn");
+						participantCriterion = Optional
+						        .of(ilike("pn.familyName", participantToken.getValue(), MatchMode.START));
+						break;
+					case Practitioner.SP_NAME:
+						participants.createAlias("pro.person", "ps").createAlias("ps.names", "pn");
+						
+						List<Optional<Criterion>> criterionList = new ArrayList<>();
+						
+						for (String token : StringUtils.split(participantToken.getValue(), " \t,")) {
+							criterionList.add(propertyLike("pn.givenName", token));
+							criterionList.add(propertyLike("pn.middleName", token));
+							criterionList.add(propertyLike("pn.familyName", token));
+						}
+						
+						participantCriterion = Optional.of(or(toCriteriaArray(criterionList)));
+						break;
 				}
-				
-				return Optional.empty();
-			}).ifPresent(criteria::add);
-		}
+			} else {
+				participantCriterion = Optional.of(eq("pro.uuid", participantToken.getValue()));
+			}
+			
+			return participantCriterion
+			        .map(criterion -> semiJoin(idProperty, participants, participantOwnerProperty, criterion));
+		}).ifPresent(criteria::add);
 	}
 	
 	//Added this method to allow handling classes with provider instead  of encounterProvider
@@ -630,20 +709,12 @@ public abstract class BaseDao {
 						case Practitioner.SP_IDENTIFIER:
 							return Optional.of(ilike("or.identifier", participantToken.getValue()));
 						case Practitioner.SP_GIVEN:
-							if ((lacksAlias(criteria, "ps") && (lacksAlias(criteria, "pn")))) {
-								criteria.createAlias("or.person", "ps").createAlias("ps.names", "pn");
-							}
-							return Optional.of(ilike("pn.givenName", participantToken.getValue(), MatchMode.START));
+							return Optional.of(ordererNameMatches(
+							    ilike("pn.givenName", participantToken.getValue(), MatchMode.START)));
 						case Practitioner.SP_FAMILY:
-							if ((lacksAlias(criteria, "ps") && (lacksAlias(criteria, "pn")))) {
-								criteria.createAlias("or.person", "ps").createAlias("ps.names", "pn");
-							}
-							return Optional.of(ilike("pn.familyName", participantToken.getValue(), MatchMode.START));
+							return Optional.of(ordererNameMatches(
+							    ilike("pn.familyName", participantToken.getValue(), MatchMode.START)));
 						case Practitioner.SP_NAME:
-							if ((lacksAlias(criteria, "ps") && (lacksAlias(criteria, "pn")))) {
-								criteria.createAlias("or.person", "ps").createAlias("ps.names", "pn");
-							}
-							
 							List<Optional<Criterion>> criterionList = new ArrayList<>();
 							
 							for (String token : StringUtils.split(participantToken.getValue(), " \t,")) {
@@ -652,7 +723,7 @@ public abstract class BaseDao {
 								criterionList.add(propertyLike("pn.familyName", token));
 							}
 							
-							return Optional.of(or(toCriteriaArray(criterionList)));
+							return Optional.of(ordererNameMatches(or(toCriteriaArray(criterionList))));
 					}
 				} else {
 					return Optional.of(eq("or.uuid", participantToken.getValue()));
@@ -663,6 +734,10 @@ public abstract class BaseDao {
 		}
 	}
 	
+	private static Criterion ordererNameMatches(Criterion nameCriterion) {
+		return semiJoin("or.person.id", DetachedCriteria.forClass(PersonName.class, "pn"), "pn.person.id", nameCriterion);
+	}
+	
 	protected Optional<Criterion> handleCodeableConcept(Criteria criteria, TokenAndListParam concepts,
 	        @Nonnull String conceptAlias, @Nonnull String conceptMapAlias, @Nonnull String conceptReferenceTermAlias) {
 		if (concepts == null) {
@@ -672,16 +747,27 @@ public abstract class BaseDao {
 		return handleAndListParamBySystem(concepts, (system, tokens) -> {
 			if (system.isEmpty()) {
 				return Optional.of(or(
-				    in(String.format("%s.conceptId", conceptAlias),
+				    paddedIn(String.format("%s.conceptId", conceptAlias),
 				        tokensToParams(tokens).map(NumberUtils::toInt).collect(Collectors.toList())),
-				    in(String.format("%s.uuid", conceptAlias), tokensToList(tokens))));
+				    paddedIn(String.format("%s.uuid", conceptAlias), tokensToList(tokens))));
 			} else {
-				if (lacksAlias(criteria, conceptMapAlias)) {
-					criteria.createAlias(String.format("%s.conceptMappings", conceptAlias), conceptMapAlias).createAlias(
-					    String.format("%s.conceptReferenceTerm", conceptMapAlias), conceptReferenceTermAlias);
+				int[] conceptIds = conceptCodeIndex == null ? null
+				        : conceptCodeIndex.getConceptIds(system, tokensToList(tokens));
+				if (conceptIds != null) {
+					// no concept is mapped to any of the codes, so nothing can match
+					if (conceptIds.length == 0) {
+						return Optional.of(sqlRestriction("1 = 0"));
+					}
+					
+					return Optional.of(paddedIn(String.format("%s.conceptId", conceptAlias), Ints.asList(conceptIds)));
 				}
 				
-				return Optional.of(generateSystemQuery(system, tokensToList(tokens), conceptReferenceTermAlias));
+				DetachedCriteria mappings = DetachedCriteria.forClass(ConceptMap.class, conceptMapAlias).createAlias(
+				    String.format("%s.conceptReferenceTerm", conceptMapAlias), conceptReferenceTermAlias);
+				
+				return Optional.of(semiJoin(String.format("%s.conceptId", conceptAlias), mappings,
+				    String.format("%s.concept.id", conceptMapAlias),
+				    generateSystemQuery(system, tokensToList(tokens), conceptReferenceTermAlias)));
 			}
 		});
 	}
@@ -697,30 +783,29 @@ public abstract class BaseDao {
 			return;
 		}
 		
-		if (lacksAlias(criteria, "pn")) {
-			if (StringUtils.isNotBlank(personAlias)) {
-				criteria.createAlias(String.format("%s.names", personAlias), "pn");
-			} else {
-				criteria.createAlias("names", "pn");
-			}
-		}
+		List<Optional<Criterion>> criterionList = new ArrayList<>();
 		
 		if (name != null) {
-			handleAndListParamAsStream(name,
+			criterionList.add(handleAndListParamAsStream(name,
 			    (nameParam) -> Arrays.stream(StringUtils.split(nameParam.getValue(), " \t,"))
 			            .map(token -> new StringParam().setValue(token).setExact(nameParam.isExact())
 			                    .setContains(nameParam.isContains()))
-			            .map(tokenParam -> Arrays.asList(propertyLike("pn.givenName", tokenParam),
-			                propertyLike("pn.middleName", tokenParam), propertyLike("pn.familyName", tokenParam)))
-			            .flatMap(Collection::stream)).ifPresent(criteria::add);
+			            .map(tokenParam -> nameLike("pn", tokenParam, GIVEN, MIDDLE, FAMILY))));
 		}
 		
 		if (given != null) {
-			handleAndListParam(given, (givenName) -> propertyLike("pn.givenName", givenName)).ifPresent(criteria::add);
+			criterionList.add(handleAndListParam(given, (givenName) -> nameLike("pn", givenName, GIVEN)));
 		}
 		
 		if (family != null) {
-			handleAndListParam(family, (familyName) -> propertyLike("pn.familyName", familyName)).ifPresent(criteria::add);
+			criterionList.add(handleAndListParam(family, (familyName) -> nameLike("pn", familyName, FAMILY)));
+		}
+		
+		Criterion[] nameCriteria = toCriteriaArray(criterionList);
+		if (nameCriteria.length > 0) {
+			// a single name has to match all of the parameters
+			criteria.add(semiJoin(StringUtils.isNotBlank(personAlias) ? personAlias + ".personId" : "personId",
+			    DetachedCriteria.forClass(PersonName.class, "pn"), "pn.person.id", and(nameCriteria)));
 		}
 	}
 	
@@ -733,47 +818,51 @@ public abstract class BaseDao {
 		if (patientReference != null) {
 			criteria.createAlias(associationPath, "p");
 			
-			handleAndListParam(patientReference, patientToken -> {
-				if (patientToken.getChain() != null) {
-					switch (patientToken.getChain()) {
-						case Patient.SP_IDENTIFIER:
-							if (lacksAlias(criteria, "pi")) {
-								criteria.createAlias("p.identifiers", "pi");
-							}
-							return Optional.of(ilike("pi.identifier", patientToken.getValue()));
-						case Patient.SP_GIVEN:
-							if (lacksAlias(criteria, "pn")) {
-								criteria.createAlias("p.names", "pn");
-							}
-							return Optional.of(ilike("pn.givenName", patientToken.getValue(), MatchMode.START));
-						case Patient.SP_FAMILY:
-							if (lacksAlias(criteria, "pn")) {
-								criteria.createAlias("p.names", "pn");
-							}
-							return Optional.of(ilike("pn.familyName", patientToken.getValue(), MatchMode.START));
-						case Patient.SP_NAME:
-							if (lacksAlias(criteria, "pn")) {
-								criteria.createAlias("p.names", "pn");
-							}
-							List<Optional<Criterion>> criterionList = new ArrayList<>();
-							
-							for (String token : StringUtils.split(patientToken.getValue(), " \t,")) {
-								criterionList.add(propertyLike("pn.givenName", token));
-								criterionList.add(propertyLike("pn.middleName", token));
-								criterionList.add(propertyLike("pn.familyName", token));
-							}
-							
-							return Optional.of(or(toCriteriaArray(criterionList)));
-					}
-				} else {
-					return Optional.of(eq("p.uuid", patientToken.getValue()));
-				}
-				
-				return Optional.empty();
-			}).ifPresent(criteria::add);
+			handlePatientReference("p", patientReference).ifPresent(criteria::add);
 		}
 	}
 	
+	protected Optional<Criterion> handlePatientReference(@Nonnull String patientAlias,
+	        ReferenceAndListParam patientReference) {
+		if (patientReference == null) {
+			return Optional.empty();
+		}
+		
+		String patientId = String.format("%s.personId", patientAlias);
+		return handleAndListParam(patientReference, patientToken -> {
+			if (patientToken.getChain() != null) {
+				switch (patientToken.getChain()) {
+					case Patient.SP_IDENTIFIER:
+						DetachedCriteria identifiers = DetachedCriteria.forClass(PatientIdentifier.class, "pi");
+						return Optional.of(semiJoin(patientId, identifiers, "pi.patient.id",
+						    ilike("pi.identifier", patientToken.getValue())));
+					case Patient.SP_GIVEN:
+						return nameLike("pn", new StringParam(patientToken.getValue()), GIVEN)
+						        .map(c -> patientNameMatches(patientId, c));
+					case Patient.SP_FAMILY:
+						return nameLike("pn", new StringParam(patientToken.getValue()), FAMILY)
+						        .map(c -> patientNameMatches(patientId, c));
+					case Patient.SP_NAME:
+						List<Optional<Criterion>> criterionList = new ArrayList<>();
+						
+						for (String token : StringUtils.split(patientToken.getValue(), " \t,")) {
+							criterionList.add(nameLike("pn", new StringParam(token), GIVEN, MIDDLE, FAMILY));
+						}
+						
+						return Optional.of(patientNameMatches(patientId, or(toCriteriaArray(criterionList))));
+				}
+			} else {
+				return Optional.of(eq(String.format("%s.uuid", patientAlias), patientToken.getValue()));
+			}
+			
+			return Optional.empty();
+		});
+	}
+	
+	private static Criterion patientNameMatches(String patientId, Criterion nameCriterion) {
+		return semiJoin(patientId, DetachedCriteria.forClass(PersonName.class, "pn"), "pn.person.id", nameCriterion);
+	}
+	
 	protected Optional<Criterion> handleCommonSearchParameters(List<PropParam<?>> theCommonParams) {
 		List<Optional<Criterion>> criterionList = new ArrayList<>();
 		
@@ -879,13 +968,50 @@ public abstract class BaseDao {
 		return Optional.of(orderings);
 	}
 	
+	/**
+	 * Sorts people by their preferred name using the person display name index, without joining their
+	 * names
+	 *
+	 * @param sortState the current sort state, whose parameter is {@code name}, {@code given} or
+	 *            {@code family}
+	 * @param personIdProperty the property holding the id of the person being sorted
+	 * @return the ordering, or null if the index is disabled
+	 */
+	protected Collection<Order> handlePersonNameSort(@Nonnull SortState sortState, @Nonnull String personIdProperty) {
+		if (personDisplayNameIndex == null || !personDisplayNameIndex.isEnabled()) {
+			return null;
+		}
+		
+		String column;
+		switch (sortState.getParameter()) {
+			case Patient.SP_GIVEN:
+				column = PersonDisplayNameIndex.GIVEN_NAME_COLUMN;
+				break;
+			case Patient.SP_FAMILY:
+				column = PersonDisplayNameIndex.FAMILY_NAME_COLUMN;
+				break;
+			default:
+				column = PersonDisplayNameIndex.SORT_KEY_COLUMN;
+				break;
+		}
+		
+		switch (sortState.getSortOrder()) {
+			case ASC:
+				return Collections.singletonList(PersonDisplayNameOrder.asc(personIdProperty, column));
+			case DESC:
+				return Collections.singletonList(PersonDisplayNameOrder.desc(personIdProperty, column));
+		}
+		
+		return null;
+	}
+	
 	protected Criterion generateSystemQuery(String system, List<String> codes, String conceptReferenceTermAlias) {
 		DetachedCriteria conceptSourceCriteria = DetachedCriteria.forClass(FhirConceptSource.class).add(eq("url", system))
 		        .setProjection(property("conceptSource"));
 		
 		if (codes.size() > 1) {
 			return and(propertyEq(String.format("%s.conceptSource", conceptReferenceTermAlias), conceptSourceCriteria),
-			    in(String.format("%s.code", conceptReferenceTermAlias), codes));
+			    paddedIn(String.format("%s.code", conceptReferenceTermAlias), codes));
 		} else {
 			return and(propertyEq(String.format("%s.conceptSource", conceptReferenceTermAlias), conceptSourceCriteria),
 			    eq(String.format("%s.code", conceptReferenceTermAlias), codes.get(0)));
@@ -991,6 +1117,41 @@ public abstract class BaseDao {
 		return Optional.of(ilike(propertyName, param.getValue(), MatchMode.START));
 	}
 	
+	/**
+	 * Creates a restriction matching person names for which any of the given name parts matches the
+	 * search value. The person name token index is used where it is enabled, otherwise each name part
+	 * is compared using {@link #propertyLike(String, StringParam)}.
+	 *
+	 * @param nameAlias the alias of the person name being searched
+	 * @param param the search value
+	 * @param nameParts the name parts to search, from {@link PersonNameTokenIndex}
+	 * @return the restriction, if any
+	 */
+	protected Optional<Criterion> nameLike(@Nonnull String nameAlias, StringParam param, @Nonnull String... nameParts) {
+		if (param == null || param.getValue() == null) {
+			return Optional.empty();
+		}
+		
+		if (personNameTokenIndex != null) {
+			Optional<Criterion> nameCriterion = personNameTokenIndex.getNameCriterion(nameAlias + ".personNameId", param,
+			    nameParts);
+			if (nameCriterion.isPresent()) {
+				return nameCriterion;
+			}
+		}
+		
+		List<Optional<Criterion>> criterionList = new ArrayList<>(nameParts.length);
+		for (String namePart : nameParts) {
+			criterionList.add(propertyLike(nameAlias + "." + PersonNameTokenIndex.getPropertyName(namePart), param));
+		}
+		
+		if (criterionList.size() == 1) {
+			return criterionList.get(0);
+		}
+		
+		return Optional.of(or(toCriteriaArray(criterionList)));
+	}
+	
 	protected Optional<CriteriaImpl> asImpl(Criteria criteria) {
 		if (CriteriaImpl.class.isAssignableFrom(criteria.getClass())) {
 			return Optional.of((CriteriaImpl) criteria);
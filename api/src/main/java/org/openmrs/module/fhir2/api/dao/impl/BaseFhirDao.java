@@ -11,31 +11,48 @@ package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hibernate.criterion.Restrictions.and;
 import static org.hibernate.criterion.Restrictions.eq;
-import static org.hibernate.criterion.Restrictions.in;
+import static org.hibernate.criterion.Restrictions.gt;
 import static org.hibernate.criterion.Restrictions.isNull;
 import static org.hibernate.criterion.Restrictions.or;
 
 import javax.annotation.Nonnull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
 import com.google.common.reflect.TypeToken;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
 import org.hibernate.Hibernate;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Projections;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.proxy.HibernateProxy;
 import org.hl7.fhir.r4.model.DomainResource;
 import org.openmrs.Auditable;
@@ -46,6 +63,8 @@ import org.openmrs.Retireable;
 import org.openmrs.Voidable;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.search.SearchQueryMonitor;
+import org.openmrs.module.fhir2.api.search.SearchResultCache;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -62,6 +81,17 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends BaseDao implements FhirDao<T> {
 	
+	/**
+	 * The maximum number of values passed in a single IN clause when loading search results. This is a
+	 * power of two no larger than {@link #MAX_PADDED_IN_CLAUSE_SIZE}, so full chunks are never padded.
+	 */
+	protected static final int MAX_IN_CLAUSE_SIZE = 512;
+	
+	/**
+	 * The number of objects loaded at a time by {@link #streamSearchResults(SearchParameterMap)}
+	 */
+	protected static final int STREAM_BATCH_SIZE = 500;
+	
 	@SuppressWarnings("UnstableApiUsage")
 	protected final TypeToken<T> typeToken;
 	
@@ -77,6 +107,17 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	@Qualifier("sessionFactory")
 	private SessionFactory sessionFactory;
 	
+	@Autowired(required = false)
+	@Setter(AccessLevel.PUBLIC)
+	private SearchResultCache searchResultCache;
+	
+	@Autowired(required = false)
+	@Setter(AccessLevel.PUBLIC)
+	private SearchQueryMonitor searchQueryMonitor;
+	
+	@Setter(AccessLevel.PACKAGE)
+	private int streamBatchSize = STREAM_BATCH_SIZE;
+	
 	@SuppressWarnings("UnstableApiUsage")
 	protected BaseFhirDao() {
 		// @formatter:off
@@ -108,7 +149,7 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	@SuppressWarnings("unchecked")
 	public List<T> get(@Nonnull Collection<String> uuids) {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
-		criteria.add(in("uuid", uuids));
+		criteria.add(paddedIn("uuid", uuids));
 		
 		if (isVoidable) {
 			handleVoidable(criteria);
@@ -149,33 +190,338 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	
 	@Override
 	public List<String> getSearchResultUuids(@Nonnull SearchParameterMap theParams) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
+		Criteria criteria = createSearchCriteria(theParams);
+		handleSort(criteria, theParams.getSortSpec());
 		
-		if (isVoidable) {
-			handleVoidable(criteria);
-		} else if (isRetireable) {
-			handleRetireable(criteria);
+		criteria.setProjection(Projections.property("uuid"));
+		
+		List<String> results = listSearchResults("searchResultUuids", theParams, criteria);
+		
+		return results.stream().distinct().collect(Collectors.toList());
+	}
+	
+	@Override
+	public int[] getSearchResultIds(@Nonnull SearchParameterMap theParams) {
+		if (searchResultCache != null) {
+			return searchResultCache.getIds(getClass(), typeToken.getRawType(), theParams,
+			    () -> findSearchResultIds(theParams));
 		}
 		
-		setupSearchParams(criteria, theParams);
+		return findSearchResultIds(theParams);
+	}
+	
+	private int[] findSearchResultIds(SearchParameterMap theParams) {
+		if (!supportsWindowedSearch(theParams)) {
+			return getIdsForUuids(getSearchResultUuids(theParams));
+		}
+		
+		Criteria criteria = createSearchCriteria(theParams);
 		handleSort(criteria, theParams.getSortSpec());
 		
-		criteria.setProjection(Projections.property("uuid"));
+		criteria.setProjection(Projections.property(getIdentifierPropertyName()));
 		
-		@SuppressWarnings("unchecked")
-		List<String> results = criteria.list();
+		List<Number> results = listSearchResults("searchResultIds", theParams, criteria);
 		
-		return results.stream().distinct().collect(Collectors.toList());
+		return results.stream().mapToInt(Number::intValue).distinct().toArray();
+	}
+	
+	@Override
+	public List<T> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults) {
+		firstResult = Math.max(firstResult, 0);
+		
+		if (!supportsWindowedSearch(theParams)) {
+			List<String> resourceUuids = getSearchResultUuids(theParams);
+			
+			int fromIndex = Math.min(firstResult, resourceUuids.size());
+			int toIndex = maxResults < 1 ? resourceUuids.size()
+			        : (int) Math.min(resourceUuids.size(), (long) fromIndex + maxResults);
+			
+			if (fromIndex >= toIndex) {
+				return Collections.emptyList();
+			}
+			
+			return getSearchResults(theParams, resourceUuids.subList(fromIndex, toIndex));
+		}
+		
+		Criteria criteria = createSearchCriteria(theParams);
+		handleSort(criteria, theParams.getSortSpec());
+		// the primary key is used as a tie-breaker so that consecutive windows never overlap
+		criteria.addOrder(org.hibernate.criterion.Order.asc(getIdentifierPropertyName()));
+		
+		criteria.setProjection(Projections.property(getIdentifierPropertyName()));
+		criteria.setFirstResult(firstResult);
+		if (maxResults > 0) {
+			criteria.setMaxResults(maxResults);
+		}
+		
+		List<Number> results = listSearchResults("searchResultsWindow", theParams, criteria);
+		
+		if (results.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		return getSearchResultsByIds(theParams, results.stream().mapToInt(Number::intValue).distinct().toArray());
+	}
+	
+	@Override
+	public int getSearchResultsCount(@Nonnull SearchParameterMap theParams) {
+		if (searchResultCache != null) {
+			return searchResultCache.getCount(getClass(), typeToken.getRawType(), theParams,
+			    () -> findSearchResultsCount(theParams));
+		}
+		
+		return findSearchResultsCount(theParams);
+	}
+	
+	private int findSearchResultsCount(SearchParameterMap theParams) {
+		if (!supportsWindowedSearch(theParams)) {
+			return getSearchResultUuids(theParams).size();
+		}
+		
+		Criteria criteria = createSearchCriteria(theParams);
+		criteria.setProjection(Projections.countDistinct(getIdentifierPropertyName()));
+		
+		List<Number> results = listSearchResults("searchResultsCount", theParams, criteria);
+		return results.isEmpty() || results.get(0) == null ? 0 : results.get(0).intValue();
+	}
+	
+	@Override
+	public int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum) {
+		if (maximum < 1) {
+			return 0;
+		}
+		
+		if (!supportsWindowedSearch(theParams)) {
+			return Math.min(getSearchResultUuids(theParams).size(), maximum);
+		}
+		
+		Criteria criteria = createSearchCriteria(theParams);
+		criteria.setProjection(Projections.property(getIdentifierPropertyName()));
+		criteria.setMaxResults(maximum);
+		
+		List<Number> results = listSearchResults("boundedSearchResultsCount", theParams, criteria);
+		
+		return (int) results.stream().mapToInt(Number::intValue).distinct().count();
 	}
 	
 	@Override
 	public List<T> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<String> resourceUuids) {
-		@SuppressWarnings("unchecked")
-		List<T> results = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType())
-		        .add(in("uuid", resourceUuids)).list();
+		return loadSearchResults("searchResults", theParams, "uuid", resourceUuids, OpenmrsObject::getUuid);
+	}
+	
+	@Override
+	public List<T> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids) {
+		return loadSearchResults("searchResultsByIds", theParams, getIdentifierPropertyName(), Ints.asList(ids),
+		    OpenmrsObject::getId);
+	}
+	
+	@Override
+	public Stream<T> streamSearchResults(@Nonnull SearchParameterMap theParams) {
+		SearchResultIterator iterator;
+		if (supportsWindowedSearch(theParams)) {
+			// each batch of ids is read by its own query continuing from the last id read, as the MySQL driver reads
+			// every row of a scrolled query into memory unless it is made to stream them one at a time
+			iterator = new SearchResultIterator(theParams, lastId -> getSearchResultIdsAfter(theParams, lastId));
+		} else {
+			// searches which are not windowed are resolved in the JVM, so their ids are loaded anyway
+			int[] ids = getSearchResultIds(theParams);
+			Arrays.sort(ids);
+			iterator = new SearchResultIterator(theParams, lastId -> {
+				int from = lastId == null ? 0 : Arrays.binarySearch(ids, lastId) + 1;
+				return Arrays.copyOfRange(ids, from, Math.min(from + streamBatchSize, ids.length));
+			});
+		}
+		
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+		    false).onClose(iterator::close);
+	}
+	
+	/**
+	 * @param theParams the search parameters
+	 * @param lastId the last id already read or null to read the first batch
+	 * @return the next batch of ids of the objects matching the search in order of id
+	 */
+	private int[] getSearchResultIdsAfter(SearchParameterMap theParams, Integer lastId) {
+		Criteria criteria = createSearchCriteria(theParams);
+		if (lastId != null) {
+			criteria.add(gt(getIdentifierPropertyName(), lastId));
+		}
+		
+		criteria.setProjection(Projections.distinct(Projections.property(getIdentifierPropertyName())))
+		        .addOrder(org.hibernate.criterion.Order.asc(getIdentifierPropertyName())).setMaxResults(streamBatchSize);
+		
+		List<Number> results = listSearchResults("streamSearchResultIds", theParams, criteria);
+		
+		return results.stream().mapToInt(Number::intValue).toArray();
+	}
+	
+	@Override
+	public List<String> getIncludedUuids(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids,
+	        @Nonnull String includeParam) {
+		String includePath = getIncludePath(includeParam);
+		if (includePath == null) {
+			return null;
+		}
+		
+		List<String> results = new ArrayList<>();
+		for (List<Integer> chunk : Lists.partition(Ints.asList(ids), MAX_IN_CLAUSE_SIZE)) {
+			Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType())
+			        .createAlias(includePath, "included").add(paddedIn(getIdentifierPropertyName(), chunk))
+			        .setProjection(Projections.distinct(Projections.property("included.uuid")));
+			
+			results.addAll(listSearchResults("includedUuids", theParams, criteria));
+		}
 		
-		results.sort(Comparator.comparingInt(r -> resourceUuids.indexOf(r.getUuid())));
-		return results.stream().map(this::deproxyResult).collect(Collectors.toList());
+		return results.stream().distinct().collect(Collectors.toList());
+	}
+	
+	@Override
+	public List<String> getIncludedUuids(@Nonnull SearchParameterMap theParams, @Nonnull List<T> objects,
+	        @Nonnull String includeParam) {
+		String includePath = getIncludePath(includeParam);
+		if (includePath == null) {
+			return null;
+		}
+		
+		ClassMetadata metadata = sessionFactory.getClassMetadata(typeToken.getRawType());
+		Set<String> results = new LinkedHashSet<>();
+		List<Integer> unloadedIds = new ArrayList<>();
+		for (T object : objects) {
+			Object included = metadata.getPropertyValue(object, includePath);
+			if (included instanceof HibernateProxy
+			        && ((HibernateProxy) included).getHibernateLazyInitializer().isUninitialized()) {
+				unloadedIds.add(object.getId());
+			} else if (included instanceof OpenmrsObject) {
+				results.add(((OpenmrsObject) included).getUuid());
+			}
+		}
+		
+		// reading the uuid of a reference that has not been loaded would load each referenced object in turn
+		if (!unloadedIds.isEmpty()) {
+			results.addAll(getIncludedUuids(theParams, Ints.toArray(unloadedIds), includeParam));
+		}
+		
+		return new ArrayList<>(results);
+	}
+	
+	/**
+	 * Runs a search query, recording its timing with the {@link SearchQueryMonitor}
+	 *
+	 * @param operation the name of the Dao operation running the query
+	 * @param theParams the search parameters
+	 * @param criteria the query
+	 * @return the results of the query
+	 */
+	@SuppressWarnings("unchecked")
+	protected <R> List<R> listSearchResults(String operation, SearchParameterMap theParams, Criteria criteria) {
+		return recordSearch(operation, theParams, criteria, () -> (List<R>) criteria.list());
+	}
+	
+	/**
+	 * Runs a search query which is not executed with {@link Criteria#list()}, recording its timing with
+	 * the {@link SearchQueryMonitor}
+	 *
+	 * @param operation the name of the Dao operation running the query
+	 * @param theParams the search parameters
+	 * @param criteria the query
+	 * @param query a function executing the query and returning its results
+	 * @return the results of the query
+	 */
+	protected <R> List<R> recordSearch(String operation, SearchParameterMap theParams, Criteria criteria,
+	        Supplier<List<R>> query) {
+		if (searchQueryMonitor == null) {
+			return query.get();
+		}
+		
+		long start = System.nanoTime();
+		List<R> results = query.get();
+		searchQueryMonitor.record(getClass().getSimpleName(), operation, theParams, criteria, System.nanoTime() - start,
+		    results.size());
+		
+		return results;
+	}
+	
+	/**
+	 * Loads the objects identified by the given keys in chunks, applying the fetch plan for this type
+	 * and returning the objects in the order of the keys. The time taken and the number of statements
+	 * run are recorded with the {@link SearchQueryMonitor}.
+	 *
+	 * @param operation the name of the Dao operation loading the objects
+	 * @param theParams the search parameters
+	 * @param keyProperty the property the keys refer to
+	 * @param keys the keys of the objects to load
+	 * @param keyFunction a function returning the key of a loaded object
+	 * @return the loaded objects, in the order of the keys
+	 */
+	protected <K> List<T> loadSearchResults(String operation, SearchParameterMap theParams, String keyProperty,
+	        List<K> keys, Function<T, K> keyFunction) {
+		if (keys.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		long start = System.nanoTime();
+		
+		ClassMetadata metadata = sessionFactory.getClassMetadata(typeToken.getRawType());
+		List<String> collectionFetchPaths = new ArrayList<>();
+		List<String> joinFetchPaths = new ArrayList<>();
+		for (String path : getSearchResultsFetchPlan()) {
+			if (metadata.getPropertyType(path).isCollectionType()) {
+				collectionFetchPaths.add(path);
+			} else {
+				joinFetchPaths.add(path);
+			}
+		}
+		
+		Map<K, T> resultsByKey = new HashMap<>(keys.size());
+		int statements = 0;
+		for (List<K> chunk : Lists.partition(keys, MAX_IN_CLAUSE_SIZE)) {
+			Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType())
+			        .add(paddedIn(keyProperty, chunk));
+			joinFetchPaths.forEach(path -> criteria.setFetchMode(path, FetchMode.JOIN));
+			
+			@SuppressWarnings("unchecked")
+			List<T> results = criteria.list();
+			statements++;
+			
+			if (results.isEmpty()) {
+				continue;
+			}
+			
+			results.forEach(result -> resultsByKey.put(keyFunction.apply(result), result));
+			
+			// each collection is initialized by its own query to avoid a cartesian product between collections
+			for (String path : collectionFetchPaths) {
+				sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType()).add(paddedIn(keyProperty, chunk))
+				        .setFetchMode(path, FetchMode.JOIN).setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY).list();
+				statements++;
+			}
+		}
+		
+		// removing each result as it is consumed ensures each object is returned at most once
+		List<T> results = keys.stream().map(resultsByKey::remove).filter(Objects::nonNull).map(this::deproxyResult)
+		        .collect(Collectors.toList());
+		
+		if (searchQueryMonitor != null) {
+			searchQueryMonitor.record(getClass().getSimpleName(), operation, theParams, null, System.nanoTime() - start,
+			    results.size(), statements);
+		}
+		
+		return results;
+	}
+	
+	private int[] getIdsForUuids(List<String> resourceUuids) {
+		Map<String, Integer> idsByUuid = new HashMap<>(resourceUuids.size());
+		for (List<String> chunk : Lists.partition(resourceUuids, MAX_IN_CLAUSE_SIZE)) {
+			@SuppressWarnings("unchecked")
+			List<Object[]> results = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType())
+			        .add(paddedIn("uuid", chunk)).setProjection(Projections.projectionList()
+			                .add(Projections.property("uuid")).add(Projections.property(getIdentifierPropertyName())))
+			        .list();
+			
+			results.forEach(result -> idsByUuid.put((String) result[0], ((Number) result[1]).intValue()));
+		}
+		
+		return resourceUuids.stream().map(idsByUuid::get).filter(Objects::nonNull).mapToInt(Integer::intValue).toArray();
 	}
 	
 	@Override
@@ -245,6 +591,69 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		return object;
 	}
 	
+	/**
+	 * Creates the criteria object used for searches, with the voided / retired handling and the search
+	 * parameters applied, but without any sort order or projection
+	 *
+	 * @param theParams the parameters for this search
+	 * @return the criteria object representing this search
+	 */
+	protected Criteria createSearchCriteria(SearchParameterMap theParams) {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
+		
+		if (isVoidable) {
+			handleVoidable(criteria);
+		} else if (isRetireable) {
+			handleRetireable(criteria);
+		}
+		
+		setupSearchParams(criteria, theParams);
+		
+		return criteria;
+	}
+	
+	/**
+	 * Determines whether the given search can be evaluated entirely in the database, i.e. windowed,
+	 * counted or projected to primary keys. Subclasses should return false for searches whose results
+	 * are post-processed in memory, e.g. the $lastn operations, in which case these fall back to the
+	 * list returned from {@link #getSearchResultUuids(SearchParameterMap)}
+	 *
+	 * @param theParams the parameters for this search
+	 * @return true if the search can be limited and counted in the database
+	 */
+	protected boolean supportsWindowedSearch(SearchParameterMap theParams) {
+		return true;
+	}
+	
+	/**
+	 * This is intended to be overridden by subclasses to list the associations that should be loaded
+	 * together with the results of a search, typically those the translator for this type will touch.
+	 * Single-valued associations are join fetched as part of the main query, while each collection is
+	 * initialized with one additional query per chunk of results.
+	 *
+	 * @return the association paths to eagerly load for search results
+	 */
+	protected Collection<String> getSearchResultsFetchPlan() {
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * This is intended to be overridden by subclasses to map the include parameters of this type onto
+	 * the association holding the referenced objects, so that {@link #getIncludedUuids} can find them
+	 * without translating the objects. The association must be single-valued and refer to the object whose uuid is
+	 * used as the id of the included resource.
+	 *
+	 * @param includeParam the name of the include parameter
+	 * @return the path of the association or null if the include is not supported
+	 */
+	protected String getIncludePath(@Nonnull String includeParam) {
+		return null;
+	}
+	
+	protected String getIdentifierPropertyName() {
+		return sessionFactory.getClassMetadata(typeToken.getRawType()).getIdentifierPropertyName();
+	}
+	
 	/**
 	 * This is intended to be overridden by subclasses to implement any special handling they might
 	 * require
@@ -304,4 +713,73 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	protected T deproxyResult(T result) {
 		return deproxyObject(result);
 	}
+	
+	/**
+	 * Loads the objects matching a search in batches of ids, evicting each batch from the session once
+	 * the next one is loaded so that the session does not grow with the number of objects read
+	 */
+	private class SearchResultIterator implements Iterator<T> {
+		
+		private final SearchParameterMap theParams;
+		
+		// returns the batch of ids following the given id, or the first batch if it is null
+		private final Function<Integer, int[]> nextBatchIds;
+		
+		private List<T> batch = Collections.emptyList();
+		
+		private Iterator<T> current = Collections.emptyIterator();
+		
+		private Integer lastId;
+		
+		private boolean exhausted;
+		
+		private SearchResultIterator(SearchParameterMap theParams, Function<Integer, int[]> nextBatchIds) {
+			this.theParams = theParams;
+			this.nextBatchIds = nextBatchIds;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			while (!current.hasNext()) {
+				evictBatch();
+				if (exhausted) {
+					return false;
+				}
+				
+				int[] batchIds = nextBatchIds.apply(lastId);
+				if (batchIds.length < streamBatchSize) {
+					exhausted = true;
+				}
+				
+				if (batchIds.length > 0) {
+					lastId = batchIds[batchIds.length - 1];
+					batch = getSearchResultsByIds(theParams, batchIds);
+					current = batch.iterator();
+				}
+			}
+			
+			return true;
+		}
+		
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			return current.next();
+		}
+		
+		private void evictBatch() {
+			Session session = sessionFactory.getCurrentSession();
+			batch.forEach(session::evict);
+			batch = Collections.emptyList();
+		}
+		
+		private void close() {
+			evictBatch();
+			current = Collections.emptyIterator();
+			exhausted = true;
+		}
+	}
 }
@@ -42,6 +42,7 @@ import org.openmrs.Auditable;
 import org.openmrs.OpenmrsObject;
 import org.openmrs.Patient;
 import org.openmrs.Person;
+import org.openmrs.PersonAddress;
 import org.openmrs.PersonName;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.search.param.PropParam;
@@ -90,6 +91,11 @@ public abstract class BasePersonDao<T extends OpenmrsObject & Auditable> extends
 		if (param.startsWith("address") && lacksAlias(criteria, "pad")) {
 			criteria.createAlias(getAssociationPath("addresses"), "pad", JoinType.LEFT_OUTER_JOIN);
 		} else if (param.equals(SP_NAME) || param.equals(SP_GIVEN) || param.equals(SP_FAMILY)) {
+			Collection<Order> displayNameOrders = handlePersonNameSort(sortState, getAssociationPath("personId"));
+			if (displayNameOrders != null) {
+				return displayNameOrders;
+			}
+			
 			if (lacksAlias(criteria, "pn")) {
 				criteria.createAlias(getAssociationPath("names"), "pn", JoinType.LEFT_OUTER_JOIN);
 			}
@@ -178,10 +184,8 @@ public abstract class BasePersonDao<T extends OpenmrsObject & Auditable> extends
 			}
 		}
 		
-		handlePersonAddress("pad", city, state, postalCode, country).ifPresent(c -> {
-			criteria.createAlias(getAssociationPath("addresses"), "pad");
-			criteria.add(c);
-		});
+		handlePersonAddress("pad", city, state, postalCode, country).ifPresent(c -> criteria.add(semiJoin(
+		    getAssociationPath("personId"), DetachedCriteria.forClass(PersonAddress.class, "pad"), "pad.person.id", c)));
 	}
 	
 	protected void handleNames(Criteria criteria, List<PropParam<?>> params) {
@@ -167,4 +167,14 @@ public class FhirAllergyIntoleranceDaoImpl extends BaseFhirDao<Allergy> implemen
 		
 		return super.paramToProp(param);
 	}
+	
+	@Override
+	protected String getIncludePath(@Nonnull String includeParam) {
+		switch (includeParam) {
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+				return "patient";
+		}
+		
+		return null;
+	}
 }
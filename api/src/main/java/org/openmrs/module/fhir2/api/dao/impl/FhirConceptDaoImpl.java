@@ -11,6 +11,8 @@ package org.openmrs.module.fhir2.api.dao.impl;
 
 import javax.annotation.Nonnull;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Optional;
 
 import lombok.AccessLevel;
@@ -37,4 +39,9 @@ public class FhirConceptDaoImpl extends BaseFhirDao<Concept> implements FhirConc
 	public Optional<Concept> getConceptBySourceNameAndCode(String sourceName, String code) {
 		return Optional.ofNullable(conceptService.getConceptByMapping(code, sourceName, false));
 	}
+	
+	@Override
+	protected Collection<String> getSearchResultsFetchPlan() {
+		return Arrays.asList("names", "conceptMappings");
+	}
 }
@@ -15,6 +15,7 @@ import javax.annotation.Nonnull;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.QuantityAndListParam;
@@ -75,6 +76,56 @@ public class FhirConditionDaoImpl extends BaseFhirDao<Obs> implements FhirCondit
 		return super.getSearchResults(theParams, resourceUuids);
 	}
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public int[] getSearchResultIds(@Nonnull SearchParameterMap theParams) {
+		return super.getSearchResultIds(theParams);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public List<Obs> getSearchResultsByIds(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids) {
+		return super.getSearchResultsByIds(theParams, ids);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public Stream<Obs> streamSearchResults(@Nonnull SearchParameterMap theParams) {
+		return super.streamSearchResults(theParams);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public List<Obs> getSearchResults(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults) {
+		return super.getSearchResults(theParams, firstResult, maxResults);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public int getSearchResultsCount(@Nonnull SearchParameterMap theParams) {
+		return super.getSearchResultsCount(theParams);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public int getSearchResultsCount(@Nonnull SearchParameterMap theParams, int maximum) {
+		return super.getSearchResultsCount(theParams, maximum);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public List<String> getIncludedUuids(@Nonnull SearchParameterMap theParams, @Nonnull int[] ids,
+	        @Nonnull String includeParam) {
+		return super.getIncludedUuids(theParams, ids, includeParam);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public List<String> getIncludedUuids(@Nonnull SearchParameterMap theParams, @Nonnull List<Obs> objects,
+	        @Nonnull String includeParam) {
+		return super.getIncludedUuids(theParams, objects, includeParam);
+	}
+	
 	@Override
 	protected void setupSearchParams(Criteria criteria, SearchParameterMap theParams) {
 		criteria.createAlias("concept", "c");
@@ -90,4 +90,15 @@ public class FhirDiagnosticReportDaoImpl extends BaseFhirDao<FhirDiagnosticRepor
 		return super.paramToProp(param);
 	}
 	
+	@Override
+	protected String getIncludePath(@Nonnull String includeParam) {
+		switch (includeParam) {
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+				return "subject";
+			case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
+				return "encounter";
+		}
+		
+		return null;
+	}
 }
@@ -16,6 +16,8 @@ import static org.openmrs.module.fhir2.api.util.LastnOperationUtils.getTopNRanke
 
 import javax.annotation.Nonnull;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -48,9 +50,8 @@ public class FhirEncounterDaoImpl extends BaseEncounterDao<Encounter> implements
 			
 			criteria.setProjection(Projections.projectionList().add(property("uuid")).add(property("encounterDatetime")));
 			
-			@SuppressWarnings("unchecked")
-			List<LastnResult> results = ((List<Object[]>) criteria.list()).stream().map(LastnResult::new)
-			        .collect(Collectors.toList());
+			List<Object[]> rows = listSearchResults("lastnSearchResultUuids", theParams, criteria);
+			List<LastnResult> results = rows.stream().map(LastnResult::new).collect(Collectors.toList());
 			
 			return getTopNRankedUuids(results, getMaxParameter(theParams));
 		}
@@ -58,6 +59,11 @@ public class FhirEncounterDaoImpl extends BaseEncounterDao<Encounter> implements
 		return super.getSearchResultUuids(theParams);
 	}
 	
+	@Override
+	protected boolean supportsWindowedSearch(SearchParameterMap theParams) {
+		return theParams.getParameters(FhirConstants.LASTN_ENCOUNTERS_SEARCH_HANDLER).isEmpty();
+	}
+	
 	private int getMaxParameter(SearchParameterMap theParams) {
 		return ((NumberParam) theParams.getParameters(FhirConstants.MAX_SEARCH_HANDLER).get(0).getParam()).getValue()
 		        .intValue();
@@ -76,8 +82,7 @@ public class FhirEncounterDaoImpl extends BaseEncounterDao<Encounter> implements
 	
 	@Override
 	protected void handleParticipant(Criteria criteria, ReferenceAndListParam referenceAndListParam) {
-		criteria.createAlias("encounterProviders", "ep");
-		handleParticipantReference(criteria, (ReferenceAndListParam) referenceAndListParam);
+		handleParticipantReference(criteria, referenceAndListParam, "encounterId", "en.encounterId");
 	}
 	
 	@Override
@@ -89,4 +94,21 @@ public class FhirEncounterDaoImpl extends BaseEncounterDao<Encounter> implements
 				return null;
 		}
 	}
+	
+	@Override
+	protected Collection<String> getSearchResultsFetchPlan() {
+		return Arrays.asList("encounterType", "location", "patient", "visit", "encounterProviders");
+	}
+	
+	@Override
+	protected String getIncludePath(@Nonnull String includeParam) {
+		switch (includeParam) {
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+				return "patient";
+			case FhirConstants.INCLUDE_LOCATION_PARAM:
+				return "location";
+		}
+		
+		return null;
+	}
 }
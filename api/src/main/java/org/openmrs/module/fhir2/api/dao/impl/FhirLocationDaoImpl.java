@@ -13,6 +13,8 @@ import static org.hibernate.criterion.Restrictions.eq;
 
 import javax.annotation.Nonnull;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +24,7 @@ import ca.uhn.fhir.rest.param.TokenAndListParam;
 import lombok.AccessLevel;
 import lombok.Setter;
 import org.hibernate.Criteria;
+import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.sql.JoinType;
 import org.openmrs.Location;
 import org.openmrs.LocationAttribute;
@@ -106,8 +109,9 @@ public class FhirLocationDaoImpl extends BaseFhirDao<Location> implements FhirLo
 	
 	private void handleTag(Criteria criteria, TokenAndListParam tags) {
 		if (tags != null) {
-			criteria.createAlias("tags", "t");
-			handleAndListParam(tags, (tag) -> Optional.of(eq("t.name", tag.getValue()))).ifPresent(criteria::add);
+			handleAndListParam(tags, (tag) -> Optional.of(semiJoin("locationId",
+			    DetachedCriteria.forClass(Location.class, "tl").createAlias("tl.tags", "t"), "tl.locationId",
+			    eq("t.name", tag.getValue())))).ifPresent(criteria::add);
 		}
 	}
 	
@@ -142,4 +146,19 @@ public class FhirLocationDaoImpl extends BaseFhirDao<Location> implements FhirLo
 	public LocationTag saveLocationTag(LocationTag tag) {
 		return locationService.saveLocationTag(tag);
 	}
+	
+	@Override
+	protected Collection<String> getSearchResultsFetchPlan() {
+		return Arrays.asList("parentLocation", "tags", "attributes");
+	}
+	
+	@Override
+	protected String getIncludePath(@Nonnull String includeParam) {
+		switch (includeParam) {
+			case FhirConstants.INCLUDE_PART_OF_PARAM:
+				return "parentLocation";
+		}
+		
+		return null;
+	}
 }
@@ -9,6 +9,8 @@
  */
 package org.openmrs.module.fhir2.api.dao.impl;
 
+import javax.annotation.Nonnull;
+
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import lombok.AccessLevel;
@@ -64,4 +66,19 @@ public class FhirMedicationRequestDaoImpl extends BaseFhirDao<DrugOrder> impleme
 		}
 	}
 	
+	@Override
+	protected String getIncludePath(@Nonnull String includeParam) {
+		switch (includeParam) {
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+				return "patient";
+			case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
+				return "encounter";
+			case FhirConstants.INCLUDE_MEDICATION_PARAM:
+				return "drug";
+			case FhirConstants.INCLUDE_REQUESTER_PARAM:
+				return "orderer";
+		}
+		
+		return null;
+	}
 }
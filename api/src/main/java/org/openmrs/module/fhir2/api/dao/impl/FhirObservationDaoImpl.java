@@ -11,11 +11,15 @@ package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hibernate.criterion.Projections.property;
 import static org.hibernate.criterion.Restrictions.eq;
+import static org.hibernate.criterion.Restrictions.gtProperty;
+import static org.hibernate.criterion.Restrictions.sqlRestriction;
 import static org.openmrs.module.fhir2.api.util.LastnOperationUtils.getTopNRankedUuids;
 
 import javax.annotation.Nonnull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,24 +30,32 @@ import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.NumberParam;
 import ca.uhn.fhir.rest.param.QuantityAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
-import ca.uhn.fhir.rest.param.ReferenceOrListParam;
-import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import com.google.common.primitives.Ints;
+import lombok.AccessLevel;
+import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.Criteria;
+import org.hibernate.criterion.CriteriaQuery;
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Subqueries;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.Type;
 import org.hl7.fhir.r4.model.Observation;
 import org.openmrs.Concept;
+import org.openmrs.Encounter;
 import org.openmrs.Obs;
 import org.openmrs.module.fhir2.FhirConstants;
-import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
 import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
 import org.openmrs.module.fhir2.api.mappings.ObservationCategoryMap;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.DatabaseFeatures;
 import org.openmrs.module.fhir2.api.util.LastnResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -51,11 +63,16 @@ import org.springframework.stereotype.Component;
 @Component
 public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObservationDao {
 	
+	private static final String LASTN_RANK = "lastn_rank";
+	
+	static final int LASTN_PAGE_SIZE = 1000;
+	
 	@Autowired
 	private ObservationCategoryMap categoryMap;
 	
-	@Autowired
-	private FhirEncounterDao encounterDao;
+	@Autowired(required = false)
+	@Setter(AccessLevel.PACKAGE)
+	private DatabaseFeatures databaseFeatures;
 	
 	@Override
 	public List<String> getSearchResultUuids(@Nonnull SearchParameterMap theParams) {
@@ -65,11 +82,15 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 			
 			setupSearchParams(criteria, theParams);
 			
+			if (databaseFeatures != null && databaseFeatures.supportsWindowFunctions()) {
+				return getRankedLastnUuids(criteria, theParams);
+			}
+			
 			criteria.setProjection(
 			    Projections.projectionList().add(property("uuid")).add(property("concept")).add(property("obsDatetime")));
 			
-			@SuppressWarnings("unchecked")
-			List<LastnResult> results = ((List<Object[]>) criteria.list()).stream().map(objects -> {
+			List<Object[]> rows = listSearchResults("lastnSearchResultUuids", theParams, criteria);
+			List<LastnResult> results = rows.stream().map(objects -> {
 				Map<String, Object> attributes = new HashMap<>();
 				attributes.put("concept", objects[1]);
 				return new LastnResult(objects[0], objects[2], attributes);
@@ -79,28 +100,29 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 			        .collect(Collectors.toList());
 		}
 		
-		if (!theParams.getParameters(FhirConstants.LASTN_ENCOUNTERS_SEARCH_HANDLER).isEmpty()) {
-			ReferenceAndListParam encountersReferences = new ReferenceAndListParam();
-			ReferenceOrListParam referenceOrListParam = new ReferenceOrListParam();
-			
-			List<String> encounters = encounterDao.getSearchResultUuids(theParams);
-			
-			encounters.forEach(encounter -> referenceOrListParam.addOr(new ReferenceParam().setValue(encounter)));
-			encountersReferences.addAnd(referenceOrListParam);
-			
-			theParams.addParameter(FhirConstants.ENCOUNTER_REFERENCE_SEARCH_HANDLER, encountersReferences);
-		}
-		
 		return super.getSearchResultUuids(theParams);
 	}
 	
+	@Override
+	protected boolean supportsWindowedSearch(SearchParameterMap theParams) {
+		return theParams.getParameters(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER).isEmpty();
+	}
+	
 	@Override
 	protected void setupSearchParams(Criteria criteria, SearchParameterMap theParams) {
 		theParams.getParameters().forEach(entry -> {
 			switch (entry.getKey()) {
 				case FhirConstants.ENCOUNTER_REFERENCE_SEARCH_HANDLER:
 					entry.getValue().forEach(p -> handleEncounterReference("e", (ReferenceAndListParam) p.getParam())
-					        .ifPresent(c -> criteria.createAlias("encounter", "e").add(c)));
+					        .ifPresent(c -> {
+						        if (lacksAlias(criteria, "e")) {
+							        criteria.createAlias("encounter", "e");
+						        }
+						        criteria.add(c);
+					        }));
+					break;
+				case FhirConstants.LASTN_ENCOUNTERS_SEARCH_HANDLER:
+					handleLastnEncounters(criteria, theParams);
 					break;
 				case FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER:
 					entry.getValue().forEach(patientReference -> handlePatientReference(criteria,
@@ -142,6 +164,31 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 		});
 	}
 	
+	/**
+	 * Restricts the observations to those recorded in the last n encounters, i.e. the unvoided
+	 * encounters for which fewer than n distinct encounter dates are later than their own date. Only
+	 * unvoided encounters of the patients matching the patient reference, if any, are compared.
+	 */
+	private void handleLastnEncounters(Criteria criteria, SearchParameterMap theParams) {
+		if (lacksAlias(criteria, "e")) {
+			criteria.createAlias("encounter", "e");
+		}
+		
+		DetachedCriteria laterEncounterDates = DetachedCriteria.forClass(Encounter.class, "le")
+		        .add(eq("le.voided", false)).add(gtProperty("le.encounterDatetime", "e.encounterDatetime"))
+		        .setProjection(Projections.countDistinct("le.encounterDatetime"));
+		
+		List<PropParam<?>> patientReferences = theParams.getParameters(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER);
+		if (!patientReferences.isEmpty()) {
+			laterEncounterDates.createAlias("le.patient", "lp");
+			patientReferences.forEach(patientReference -> handlePatientReference("lp",
+			    (ReferenceAndListParam) patientReference.getParam()).ifPresent(laterEncounterDates::add));
+		}
+		
+		criteria.add(eq("e.voided", false));
+		criteria.add(Subqueries.gt((long) getMaxParameter(theParams), laterEncounterDates));
+	}
+	
 	private void handleHasMemberReference(Criteria criteria, ReferenceAndListParam hasMemberReference) {
 		if (hasMemberReference != null) {
 			if (lacksAlias(criteria, "gm")) {
@@ -186,14 +233,8 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 	}
 	
 	private void handleConceptClass(Criteria criteria, TokenAndListParam category) {
-		if (category != null) {
-			if (lacksAlias(criteria, "c")) {
-				criteria.createAlias("concept", "c");
-			}
-			
-			if (lacksAlias(criteria, "cc")) {
-				criteria.createAlias("c.conceptClass", "cc");
-			}
+		if (category != null && lacksAlias(criteria, "c")) {
+			criteria.createAlias("concept", "c");
 		}
 		
 		handleAndListParam(category, (param) -> {
@@ -201,6 +242,20 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 				return Optional.empty();
 			}
 			
+			int[] conceptClassIds = categoryMap.getConceptClassIds(param.getValue());
+			if (conceptClassIds != null) {
+				// no concept class is mapped to the category, so nothing can match
+				if (conceptClassIds.length == 0) {
+					return Optional.of(sqlRestriction("1 = 0"));
+				}
+				
+				return Optional.of(paddedIn("c.conceptClass.id", Ints.asList(conceptClassIds)));
+			}
+			
+			if (lacksAlias(criteria, "cc")) {
+				criteria.createAlias("c.conceptClass", "cc");
+			}
+			
 			return Optional.of(Subqueries.propertyIn("cc.uuid", categoryMap.queryConceptClassByCategory(param.getValue())));
 		}).ifPresent(criteria::add);
 	}
@@ -235,6 +290,41 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 		        .intValue();
 	}
 	
+	/**
+	 * Ranks the observations of each concept by their date in the database and reads the results in
+	 * order of rank, a page at a time, until every observation ranked within the maximum has been read
+	 */
+	private List<String> getRankedLastnUuids(Criteria criteria, SearchParameterMap theParams) {
+		int max = getMaxParameter(theParams);
+		
+		criteria.setProjection(Projections.projectionList().add(property("uuid")).add(Projections.sqlProjection(
+		    "dense_rank() over (partition by {alias}.concept_id order by {alias}.obs_datetime desc) as " + LASTN_RANK,
+		    new String[] { LASTN_RANK }, new Type[] { IntegerType.INSTANCE })));
+		// obsId makes the order of observations with the same rank stable between pages
+		criteria.addOrder(new LastnRankOrder()).addOrder(Order.asc("obsId"));
+		
+		List<String> results = recordSearch("lastnSearchResultUuids", theParams, criteria, () -> {
+			List<String> uuids = new ArrayList<>();
+			for (int firstResult = 0;; firstResult += LASTN_PAGE_SIZE) {
+				@SuppressWarnings("unchecked")
+				List<Object[]> rows = criteria.setFirstResult(firstResult).setMaxResults(LASTN_PAGE_SIZE).list();
+				for (Object[] row : rows) {
+					if (((Number) row[1]).intValue() > max) {
+						return uuids;
+					}
+					
+					uuids.add((String) row[0]);
+				}
+				
+				if (rows.size() < LASTN_PAGE_SIZE) {
+					return uuids;
+				}
+			}
+		});
+		
+		return results.stream().distinct().collect(Collectors.toList());
+	}
+	
 	private Map<Concept, List<LastnResult>> handleGrouping(List<LastnResult> observations) {
 		return observations.stream().collect(Collectors.groupingBy(obs -> (Concept) (obs.getAttributes().get("concept"))));
 	}
@@ -248,4 +338,36 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 		}
 		return results;
 	}
+	
+	/**
+	 * Orders the results of a $lastn query by the rank of each observation
+	 */
+	private static class LastnRankOrder extends Order {
+		
+		private LastnRankOrder() {
+			super(LASTN_RANK, true);
+		}
+		
+		@Override
+		public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) {
+			return LASTN_RANK + " asc";
+		}
+	}
+	
+	@Override
+	protected Collection<String> getSearchResultsFetchPlan() {
+		return Arrays.asList("concept", "encounter", "person", "groupMembers");
+	}
+	
+	@Override
+	protected String getIncludePath(@Nonnull String includeParam) {
+		switch (includeParam) {
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+				return "person";
+			case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
+				return "encounter";
+		}
+		
+		return null;
+	}
 }
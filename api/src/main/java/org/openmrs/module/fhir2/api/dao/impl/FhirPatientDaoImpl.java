@@ -11,12 +11,12 @@ package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hibernate.criterion.Restrictions.and;
 import static org.hibernate.criterion.Restrictions.eq;
-import static org.hibernate.criterion.Restrictions.in;
 import static org.hibernate.criterion.Restrictions.or;
 import static org.hl7.fhir.r4.model.Patient.SP_DEATH_DATE;
 
 import javax.annotation.Nonnull;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -27,8 +27,9 @@ import ca.uhn.fhir.rest.param.TokenAndListParam;
 import lombok.AccessLevel;
 import lombok.Setter;
 import org.hibernate.Criteria;
-import org.hibernate.sql.JoinType;
+import org.hibernate.criterion.DetachedCriteria;
 import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
@@ -48,7 +49,7 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 	@Override
 	@SuppressWarnings("unchecked")
 	public List<Patient> getPatientsByIds(@Nonnull Collection<Integer> ids) {
-		return getSessionFactory().getCurrentSession().createCriteria(Patient.class).add(in("id", ids)).list();
+		return getSessionFactory().getCurrentSession().createCriteria(Patient.class).add(paddedIn("id", ids)).list();
 	}
 	
 	@Override
@@ -112,17 +113,18 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 			return;
 		}
 		
-		criteria.createAlias("identifiers", "pi", JoinType.INNER_JOIN, eq("pi.voided", false));
-		
 		handleAndListParamBySystem(identifier, (system, tokens) -> {
+			DetachedCriteria identifiers = DetachedCriteria.forClass(PatientIdentifier.class, "pi")
+			        .add(eq("pi.voided", false));
+			
 			if (system.isEmpty()) {
-				return Optional.of(in("pi.identifier", tokensToList(tokens)));
+				return Optional.of(
+				    semiJoin("patientId", identifiers, "pi.patient.id", paddedIn("pi.identifier", tokensToList(tokens))));
 			} else {
-				if (lacksAlias(criteria, "pit")) {
-					criteria.createAlias("pi.identifierType", "pit");
-				}
+				identifiers.createAlias("pi.identifierType", "pit");
 				
-				return Optional.of(and(eq("pit.name", system), in("pi.identifier", tokensToList(tokens))));
+				return Optional.of(semiJoin("patientId", identifiers, "pi.patient.id",
+				    and(eq("pit.name", system), paddedIn("pi.identifier", tokensToList(tokens)))));
 			}
 		}).ifPresent(criteria::add);
 	}
@@ -140,4 +142,9 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 		
 		return super.paramToProp(param);
 	}
+	
+	@Override
+	protected Collection<String> getSearchResultsFetchPlan() {
+		return Arrays.asList("names", "identifiers", "addresses", "attributes");
+	}
 }
@@ -16,6 +16,8 @@ import static org.hibernate.criterion.Restrictions.or;
 
 import javax.annotation.Nonnull;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -95,4 +97,9 @@ public class FhirPersonDaoImpl extends BasePersonDao<Person> implements FhirPers
 		object.setPersonVoidReason("Voided via FHIR API");
 		return object;
 	}
+	
+	@Override
+	protected Collection<String> getSearchResultsFetchPlan() {
+		return Arrays.asList("names", "addresses", "attributes");
+	}
 }
@@ -42,6 +42,7 @@ import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Subqueries;
 import org.hibernate.sql.JoinType;
+import org.openmrs.PersonAddress;
 import org.openmrs.PersonName;
 import org.openmrs.Relationship;
 import org.openmrs.module.fhir2.FhirConstants;
@@ -93,6 +94,11 @@ public class FhirRelatedPersonDaoImpl extends BaseFhirDao<Relationship> implemen
 		if (param.startsWith("address") && lacksAlias(criteria, "pad")) {
 			criteria.createAlias("m.addresses", "pad", JoinType.LEFT_OUTER_JOIN);
 		} else if (param.equals(SP_NAME) || param.equals(SP_GIVEN) || param.equals(SP_FAMILY)) {
+			Collection<Order> displayNameOrders = handlePersonNameSort(sortState, "m.personId");
+			if (displayNameOrders != null) {
+				return displayNameOrders;
+			}
+			
 			if (lacksAlias(criteria, "pn")) {
 				criteria.createAlias("m.names", "pn", JoinType.LEFT_OUTER_JOIN);
 			}
@@ -179,9 +185,7 @@ public class FhirRelatedPersonDaoImpl extends BaseFhirDao<Relationship> implemen
 			}
 		}
 		
-		handlePersonAddress("pad", city, state, postalCode, country).ifPresent(c -> {
-			criteria.createAlias("m.addresses", "pad");
-			criteria.add(c);
-		});
+		handlePersonAddress("pad", city, state, postalCode, country).ifPresent(c -> criteria
+		        .add(semiJoin("m.personId", DetachedCriteria.forClass(PersonAddress.class, "pad"), "pad.person.id", c)));
 	}
 }
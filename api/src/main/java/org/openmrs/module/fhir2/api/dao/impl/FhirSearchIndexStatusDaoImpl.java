@@ -0,0 +1,74 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hibernate.criterion.Restrictions.gt;
+import static org.hibernate.criterion.Restrictions.or;
+
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Projections;
+import org.openmrs.BaseOpenmrsData;
+import org.openmrs.module.fhir2.api.dao.FhirSearchIndexStatusDao;
+import org.openmrs.module.fhir2.model.FhirSearchIndexStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+@Component
+@Transactional
+@Setter(AccessLevel.PACKAGE)
+public class FhirSearchIndexStatusDaoImpl implements FhirSearchIndexStatusDao {
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Override
+	@Transactional(readOnly = true)
+	public boolean isCurrent(@Nonnull String indexName, @Nonnull Class<? extends BaseOpenmrsData> sourceType) {
+		FhirSearchIndexStatus status = (FhirSearchIndexStatus) sessionFactory.getCurrentSession()
+		        .get(FhirSearchIndexStatus.class, indexName);
+		if (status == null) {
+			return false;
+		}
+		
+		// objects saved while the index was not maintained, e.g. while the module was stopped, are missing from it
+		Date currentUntil = status.getCurrentUntil();
+		return sessionFactory.getCurrentSession().createCriteria(sourceType)
+		        .add(or(gt("dateCreated", currentUntil), gt("dateChanged", currentUntil), gt("dateVoided", currentUntil)))
+		        .setProjection(Projections.id()).setMaxResults(1).list().isEmpty();
+	}
+	
+	@Override
+	public void markCurrent(@Nonnull String indexName, @Nonnull Date currentUntil) {
+		FhirSearchIndexStatus status = (FhirSearchIndexStatus) sessionFactory.getCurrentSession()
+		        .get(FhirSearchIndexStatus.class, indexName);
+		if (status == null) {
+			status = new FhirSearchIndexStatus();
+			status.setIndexName(indexName);
+		}
+		
+		status.setCurrentUntil(currentUntil);
+		sessionFactory.getCurrentSession().saveOrUpdate(status);
+	}
+	
+	@Override
+	public void clear(@Nonnull String indexName) {
+		sessionFactory.getCurrentSession().createQuery("delete from FhirSearchIndexStatus s where s.indexName = :name")
+		        .setString("name", indexName).executeUpdate();
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hibernate.criterion.Restrictions.eq;
+
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.openmrs.module.fhir2.api.dao.FhirSearchSnapshotDao;
+import org.openmrs.module.fhir2.model.FhirSearchSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+@Component
+@Transactional
+@Setter(AccessLevel.PACKAGE)
+public class FhirSearchSnapshotDaoImpl implements FhirSearchSnapshotDao {
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Override
+	@Transactional(readOnly = true)
+	public FhirSearchSnapshot get(@Nonnull String uuid) {
+		return (FhirSearchSnapshot) sessionFactory.getCurrentSession().createCriteria(FhirSearchSnapshot.class)
+		        .add(eq("uuid", uuid)).uniqueResult();
+	}
+	
+	@Override
+	public FhirSearchSnapshot save(@Nonnull FhirSearchSnapshot snapshot) {
+		sessionFactory.getCurrentSession().saveOrUpdate(snapshot);
+		return snapshot;
+	}
+	
+	@Override
+	public int deleteExpired(@Nonnull Date now) {
+		return sessionFactory.getCurrentSession()
+		        .createQuery("delete from FhirSearchSnapshot s where s.expiryDate < :now").setTimestamp("now", now)
+		        .executeUpdate();
+	}
+	
+	@Override
+	public int deleteOldest(int maximumSnapshots) {
+		if (maximumSnapshots < 1) {
+			return sessionFactory.getCurrentSession().createQuery("delete from FhirSearchSnapshot").executeUpdate();
+		}
+		
+		Integer oldestRetainedId = (Integer) sessionFactory.getCurrentSession().createCriteria(FhirSearchSnapshot.class)
+		        .setProjection(Projections.id()).addOrder(Order.desc("id")).setFirstResult(maximumSnapshots - 1)
+		        .setMaxResults(1).uniqueResult();
+		
+		if (oldestRetainedId == null) {
+			return 0;
+		}
+		
+		return sessionFactory.getCurrentSession().createQuery("delete from FhirSearchSnapshot s where s.id < :id")
+		        .setInteger("id", oldestRetainedId).executeUpdate();
+	}
+}
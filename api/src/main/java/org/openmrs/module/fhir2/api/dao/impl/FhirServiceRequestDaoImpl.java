@@ -12,6 +12,8 @@ package org.openmrs.module.fhir2.api.dao.impl;
 import static org.hibernate.criterion.Restrictions.and;
 import static org.hibernate.criterion.Restrictions.or;
 
+import javax.annotation.Nonnull;
+
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -84,4 +86,17 @@ public class FhirServiceRequestDaoImpl extends BaseFhirDao<TestOrder> implements
 		        handleDate("autoExpireDate", dateRangeParam.getUpperBound())))))))));
 	}
 	
+	@Override
+	protected String getIncludePath(@Nonnull String includeParam) {
+		switch (includeParam) {
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+				return "patient";
+			case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
+				return "encounter";
+			case FhirConstants.INCLUDE_REQUESTER_PARAM:
+				return "orderer";
+		}
+		
+		return null;
+	}
 }
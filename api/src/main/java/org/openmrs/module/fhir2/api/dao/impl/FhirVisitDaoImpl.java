@@ -43,9 +43,7 @@ public class FhirVisitDaoImpl extends BaseEncounterDao<Visit> implements FhirVis
 	
 	@Override
 	protected void handleParticipant(Criteria criteria, ReferenceAndListParam referenceAndListParam) {
-		criteria.createAlias("encounters", "en");
-		criteria.createAlias("en.encounterProviders", "ep");
-		handleParticipantReference(criteria, (ReferenceAndListParam) referenceAndListParam);
+		handleParticipantReference(criteria, referenceAndListParam, "visitId", "en.visit.id");
 	}
 	
 	@Override
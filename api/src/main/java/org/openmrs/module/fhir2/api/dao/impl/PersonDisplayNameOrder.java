@@ -0,0 +1,63 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import org.hibernate.Criteria;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Order;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+/**
+ * Provides Hibernate Criteria API ordering by a column of the fhir_person_display_name table, which
+ * is looked up by its primary key for each person being sorted
+ *
+ * @see org.openmrs.module.fhir2.api.search.PersonDisplayNameIndex
+ */
+public class PersonDisplayNameOrder extends Order {
+	
+	private final String personIdProperty;
+	
+	private final String column;
+	
+	protected PersonDisplayNameOrder(String personIdProperty, String column, boolean ascending) {
+		super(personIdProperty, ascending);
+		this.personIdProperty = personIdProperty;
+		this.column = column;
+	}
+	
+	public static Order asc(String personIdProperty, String column) {
+		return new PersonDisplayNameOrder(personIdProperty, column, true);
+	}
+	
+	public static Order desc(String personIdProperty, String column) {
+		return new PersonDisplayNameOrder(personIdProperty, column, false);
+	}
+	
+	@Override
+	public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) {
+		final SessionFactoryImplementor factory = criteriaQuery.getFactory();
+		final String[] personIdColumns = criteriaQuery.getColumnsUsingProjection(criteria, personIdProperty);
+		
+		if (personIdColumns.length != 1) {
+			throw new IllegalStateException("Cannot order by the display name of " + personIdProperty);
+		}
+		
+		final String subquery = "(select fpdn." + column + " from fhir_person_display_name fpdn where fpdn.person_id = "
+		        + personIdColumns[0] + ")";
+		
+		return factory.getDialect().renderOrderByElement(subquery, null, isAscending() ? "asc" : "desc",
+		    factory.getSettings().getDefaultNullPrecedence());
+	}
+	
+	@Override
+	public String toString() {
+		return "displayName(" + personIdProperty + ")." + column + " " + (isAscending() ? "asc" : "desc");
+	}
+}
@@ -11,9 +11,11 @@ package org.openmrs.module.fhir2.api.impl;
 
 import javax.annotation.Nonnull;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
@@ -30,6 +32,7 @@ import org.openmrs.module.fhir2.api.FhirService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
 import org.openmrs.module.fhir2.api.translators.OpenmrsFhirTranslator;
 import org.openmrs.module.fhir2.api.translators.UpdatableOpenmrsTranslator;
+import org.openmrs.module.fhir2.api.util.FhirRequestContext;
 import org.openmrs.module.fhir2.api.util.FhirUtils;
 import org.openmrs.validator.ValidateUtil;
 
@@ -66,8 +69,22 @@ public abstract class BaseFhirService<T extends IAnyResource, U extends OpenmrsO
 	
 	@Override
 	public List<T> get(@Nonnull Collection<String> uuids) {
+		Map<String, U> objectsByUuid = new HashMap<>(uuids.size());
+		getDao().get(uuids).forEach(openmrsObj -> objectsByUuid.put(openmrsObj.getUuid(), openmrsObj));
+		
+		// the objects are always loaded, so that resources translated earlier in this request are only reused for
+		// objects that have not changed since
 		OpenmrsFhirTranslator<U, T> translator = getTranslator();
-		return getDao().get(uuids).stream().map(translator::toFhirResource).collect(Collectors.toList());
+		List<T> results = new ArrayList<>(objectsByUuid.size());
+		for (String uuid : uuids) {
+			U openmrsObj = objectsByUuid.remove(uuid);
+			if (openmrsObj != null) {
+				results.add(
+				    FhirRequestContext.getTranslatedResource(resourceClass, openmrsObj, translator::toFhirResource));
+			}
+		}
+		
+		return results;
 	}
 	
 	@Override
@@ -124,6 +141,7 @@ public abstract class BaseFhirService<T extends IAnyResource, U extends OpenmrsO
 		}
 		
 		validateObject(updatedObject);
+		FhirRequestContext.evictTranslatedResource(resourceClass, uuid);
 		
 		return translator.toFhirResource(getDao().createOrUpdate(updatedObject));
 	}
@@ -135,6 +153,7 @@ public abstract class BaseFhirService<T extends IAnyResource, U extends OpenmrsO
 		}
 		
 		U openmrsObj = getDao().delete(uuid);
+		FhirRequestContext.evictTranslatedResource(resourceClass, uuid);
 		
 		if (openmrsObj == null) {
 			throw resourceNotFound(uuid);
@@ -31,6 +31,8 @@ import org.openmrs.module.fhir2.api.FhirEncounterService;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.FhirVisitService;
 import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
+import org.openmrs.module.fhir2.api.search.ConcurrentSearchExecutor;
+import org.openmrs.module.fhir2.api.search.EncounterSortComparatorFactory;
 import org.openmrs.module.fhir2.api.search.SearchQuery;
 import org.openmrs.module.fhir2.api.search.SearchQueryInclude;
 import org.openmrs.module.fhir2.api.search.TwoSearchQueryBundleProvider;
@@ -65,6 +67,12 @@ public class FhirEncounterServiceImpl extends BaseFhirService<Encounter, org.ope
 	@Autowired
 	private FhirVisitService visitService;
 	
+	@Autowired
+	private ConcurrentSearchExecutor searchExecutor;
+	
+	@Autowired
+	private EncounterSortComparatorFactory sortComparatorFactory;
+	
 	@Override
 	public Encounter get(@Nonnull String uuid) {
 		
@@ -159,14 +167,10 @@ public class FhirEncounterServiceImpl extends BaseFhirService<Encounter, org.ope
 		
 		IBundleProvider visitBundle = visitService.searchForVisits(theParams);
 		IBundleProvider encounterBundle = searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
+		searchExecutor.runSearches(encounterBundle, visitBundle);
 		
-		if (!encounterBundle.isEmpty() && !visitBundle.isEmpty()) {
-			return new TwoSearchQueryBundleProvider(visitBundle, encounterBundle, globalPropertyService);
-		} else if (encounterBundle.isEmpty() && !visitBundle.isEmpty()) {
-			return visitBundle;
-		}
-		
-		return encounterBundle;
+		return TwoSearchQueryBundleProvider.combine(visitBundle, encounterBundle, globalPropertyService,
+		    sortComparatorFactory, sort);
 	}
 	
 	@Override
@@ -181,14 +185,19 @@ public class FhirEncounterServiceImpl extends BaseFhirService<Encounter, org.ope
 		
 		IBundleProvider visitBundle = visitService.searchForVisits(theParams);
 		IBundleProvider encounterBundle = searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
+		searchExecutor.runSearches(encounterBundle, visitBundle);
 		
-		if (!encounterBundle.isEmpty() && !visitBundle.isEmpty()) {
-			return new TwoSearchQueryBundleProvider(encounterBundle, visitBundle, globalPropertyService);
-		} else if (encounterBundle.isEmpty() && !visitBundle.isEmpty()) {
-			return visitBundle;
-		}
-		
-		return encounterBundle;
+		return TwoSearchQueryBundleProvider.combine(encounterBundle, visitBundle, globalPropertyService,
+		    sortComparatorFactory, theParams.getSortSpec());
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public IBundleProvider searchForEncounters(SearchParameterMap theParams) {
+		// the searches are combined even if either has no results, as finding that out would mean running it
+		return new TwoSearchQueryBundleProvider(visitService.searchForVisits(theParams),
+		        searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude), globalPropertyService,
+		        sortComparatorFactory, theParams.getSortSpec());
 	}
 	
 	private void populateReverseIncludeForEverythingOperationParams(SearchParameterMap theParams) {
@@ -33,6 +33,7 @@ import org.openmrs.module.fhir2.api.FhirPractitionerService;
 import org.openmrs.module.fhir2.api.FhirUserService;
 import org.openmrs.module.fhir2.api.dao.FhirPractitionerDao;
 import org.openmrs.module.fhir2.api.dao.FhirUserDao;
+import org.openmrs.module.fhir2.api.search.ConcurrentSearchExecutor;
 import org.openmrs.module.fhir2.api.search.SearchQuery;
 import org.openmrs.module.fhir2.api.search.SearchQueryInclude;
 import org.openmrs.module.fhir2.api.search.TwoSearchQueryBundleProvider;
@@ -69,6 +70,9 @@ public class FhirPractitionerServiceImpl extends BaseFhirService<Practitioner, P
 	@Autowired
 	private FhirUserService userService;
 	
+	@Autowired
+	private ConcurrentSearchExecutor searchExecutor;
+	
 	@Override
 	public Practitioner get(@Nonnull String uuid) {
 		if (uuid == null) {
@@ -115,13 +119,9 @@ public class FhirPractitionerServiceImpl extends BaseFhirService<Practitioner, P
 		
 		IBundleProvider providerBundle = searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
 		IBundleProvider userBundle = userService.searchForUsers(theParams);
+		searchExecutor.runSearches(providerBundle, userBundle);
 		
-		if (!providerBundle.isEmpty() && !userBundle.isEmpty()) {
-			return new TwoSearchQueryBundleProvider(providerBundle, userBundle, globalPropertyService);
-		} else if (providerBundle.isEmpty() && !userBundle.isEmpty()) {
-			return userBundle;
-		}
-		
-		return providerBundle;
+		// practitioner searches cannot be sorted, so the users simply follow the providers
+		return TwoSearchQueryBundleProvider.combine(providerBundle, userBundle, globalPropertyService, null);
 	}
 }
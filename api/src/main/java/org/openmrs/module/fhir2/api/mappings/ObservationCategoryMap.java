@@ -12,33 +12,109 @@ package org.openmrs.module.fhir2.api.mappings;
 import static org.hibernate.criterion.Restrictions.eq;
 
 import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.primitives.Ints;
 import lombok.AccessLevel;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.HibernateException;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openmrs.ConceptClass;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.util.GlobalPropertyFlag;
 import org.openmrs.module.fhir2.model.FhirObservationCategoryMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+/**
+ * Maps concept classes to observation categories. If
+ * {@link FhirConstants#OPENMRS_FHIR_OBSERVATION_CATEGORY_CACHE} is set to true, the whole
+ * fhir_observation_category_map table is held in memory, so that neither translating an observation
+ * nor searching by category needs to query it. The cached mappings are discarded whenever a mapping
+ * or concept class is saved or deleted, or when {@link #refresh()} is called.
+ */
 @Component
 @Slf4j
 @Setter(AccessLevel.PUBLIC)
-public class ObservationCategoryMap {
+public class ObservationCategoryMap implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+	
+	private static final long serialVersionUID = 1L;
 	
 	@Autowired
 	@Qualifier("sessionFactory")
 	private SessionFactory sessionFactory;
 	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("adminService")
+	private AdministrationService administrationService;
+	
+	// incremented whenever the mappings are discarded so that mappings loaded before a change are not kept
+	private final AtomicLong generation = new AtomicLong();
+	
+	private volatile Mappings mappings;
+	
+	private final GlobalPropertyFlag property = new GlobalPropertyFlag(
+	    FhirConstants.OPENMRS_FHIR_OBSERVATION_CATEGORY_CACHE);
+	
+	@PostConstruct
+	public void registerListeners() {
+		property.register(administrationService, globalPropertyService);
+		
+		if (!(sessionFactory instanceof SessionFactoryImplementor)) {
+			return;
+		}
+		
+		EventListenerRegistry registry = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+		        .getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+		registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+		registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+	}
+	
+	@PreDestroy
+	public void preDestroy() {
+		property.unregister();
+	}
+	
 	public String getCategory(@Nonnull String conceptClassUuid) {
+		if (property.isEnabled()) {
+			Mappings mappings = getMappings();
+			return mappings == null ? null : mappings.categoryByConceptClassUuid.get(conceptClassUuid);
+		}
+		
 		try {
 			return (String) sessionFactory.getCurrentSession().createCriteria(FhirObservationCategoryMap.class)
 			        .createAlias("conceptClass", "cc").add(eq("cc.uuid", conceptClassUuid))
-			        .setProjection(Projections.property("observationCategory")).uniqueResult();
+			        .setProjection(Projections.property("observationCategory")).addOrder(Order.asc("id")).setMaxResults(1)
+			        .uniqueResult();
 		}
 		catch (HibernateException e) {
 			log.error("Exception caught while trying to load category for concept class '{}'", conceptClassUuid, e);
@@ -47,8 +123,123 @@ public class ObservationCategoryMap {
 		return null;
 	}
 	
+	/**
+	 * Finds the concept classes mapped to the given category without querying the database
+	 *
+	 * @param category the observation category
+	 * @return the ids of the concept classes mapped to the category, which may be empty, or null if the
+	 *         mappings are not held in memory
+	 */
+	public int[] getConceptClassIds(@Nonnull String category) {
+		if (!property.isEnabled()) {
+			return null;
+		}
+		
+		Mappings mappings = getMappings();
+		return mappings == null ? null : Ints.toArray(mappings.conceptClassIdsByCategory.get(category));
+	}
+	
 	public DetachedCriteria queryConceptClassByCategory(@Nonnull String category) {
 		return DetachedCriteria.forClass(FhirObservationCategoryMap.class).createAlias("conceptClass", "cmcc")
 		        .add(eq("observationCategory", category)).setProjection(Projections.property("cmcc.uuid"));
 	}
+	
+	/**
+	 * Discards the mappings held in memory; they are loaded again when they are next used
+	 */
+	public void refresh() {
+		generation.incrementAndGet();
+		mappings = null;
+	}
+	
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		refresh(event.getPersister().getMappedClass());
+	}
+	
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		refresh(event.getPersister().getMappedClass());
+	}
+	
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		refresh(event.getPersister().getMappedClass());
+	}
+	
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return true;
+	}
+	
+	private void refresh(Class<?> type) {
+		if (FhirObservationCategoryMap.class.isAssignableFrom(type) || ConceptClass.class.isAssignableFrom(type)) {
+			refresh();
+		}
+	}
+	
+	private Mappings getMappings() {
+		Mappings mappings = this.mappings;
+		if (mappings != null) {
+			return mappings;
+		}
+		
+		long expectedGeneration = generation.get();
+		try {
+			mappings = loadMappings();
+		}
+		catch (HibernateException e) {
+			log.error("Exception caught while trying to load the observation category mappings", e);
+			return null;
+		}
+		
+		if (generation.get() == expectedGeneration) {
+			this.mappings = mappings;
+		}
+		
+		return mappings;
+	}
+	
+	/**
+	 * Loads every mapping from a concept class to an observation category
+	 */
+	Mappings loadMappings() {
+		@SuppressWarnings("unchecked")
+		List<Object[]> rows = sessionFactory.getCurrentSession().createCriteria(FhirObservationCategoryMap.class)
+		        .createAlias("conceptClass", "cc").setProjection(Projections.projectionList()
+		                .add(Projections.property("cc.uuid")).add(Projections.property("cc.conceptClassId"))
+		                .add(Projections.property("observationCategory")))
+		        .addOrder(Order.asc("id")).list();
+		
+		return createMappings(rows);
+	}
+	
+	/**
+	 * Builds the mappings from the uuid, id and category of each mapped concept class, in mapping order
+	 */
+	static Mappings createMappings(List<Object[]> rows) {
+		// nothing prevents a concept class being mapped twice; like the database, a search by category matches every
+		// mapping, while an observation is translated with the category of the first mapping
+		Map<String, String> categoryByConceptClassUuid = new HashMap<>();
+		ImmutableSetMultimap.Builder<String, Integer> conceptClassIdsByCategory = ImmutableSetMultimap.builder();
+		for (Object[] row : rows) {
+			categoryByConceptClassUuid.putIfAbsent((String) row[0], (String) row[2]);
+			conceptClassIdsByCategory.put((String) row[2], ((Number) row[1]).intValue());
+		}
+		
+		return new Mappings(ImmutableMap.copyOf(categoryByConceptClassUuid), conceptClassIdsByCategory.build());
+	}
+	
+	static class Mappings {
+		
+		private final ImmutableMap<String, String> categoryByConceptClassUuid;
+		
+		private final ImmutableSetMultimap<String, Integer> conceptClassIdsByCategory;
+		
+		Mappings(ImmutableMap<String, String> categoryByConceptClassUuid,
+		    ImmutableSetMultimap<String, Integer> conceptClassIdsByCategory) {
+			this.categoryByConceptClassUuid = categoryByConceptClassUuid;
+			this.conceptClassIdsByCategory = conceptClassIdsByCategory;
+		}
+	}
 }
@@ -0,0 +1,250 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hibernate.criterion.Projections.property;
+import static org.hibernate.criterion.Restrictions.eq;
+import static org.hibernate.criterion.Subqueries.propertyEq;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Projections;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.util.GlobalPropertyFlag;
+import org.openmrs.module.fhir2.model.FhirConceptSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * An in-memory index from a code system URL and code to the ids of the concepts mapped to that
+ * code. It allows coded searches, e.g. {@code Observation?code=http://loinc.org|1234-5}, to be
+ * turned into a simple {@code concept_id IN (...)} restriction instead of joining the concept
+ * mappings and reference terms in every query.
+ * <p/>
+ * The mappings of a code system are loaded the first time the system is searched and are kept until
+ * a concept mapping, reference term, concept source or FHIR concept source is saved or deleted, at
+ * which point the whole index is discarded. The index is disabled unless
+ * {@link FhirConstants#OPENMRS_FHIR_CONCEPT_CODE_INDEX} is set to true.
+ * <p/>
+ * Codes are compared case-sensitively in memory, whereas whether the database ignores case depends
+ * on its collation. Where a code only matches an indexed code if case is ignored, or the system has
+ * codes which only differ in case, the index leaves the search to the database.
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class ConceptCodeIndex implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final List<Class<?>> INDEXED_TYPES = Collections.unmodifiableList(
+	    Arrays.asList(ConceptMap.class, ConceptReferenceTerm.class, ConceptSource.class, FhirConceptSource.class));
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Autowired
+	@Qualifier("adminService")
+	private AdministrationService administrationService;
+	
+	// incremented whenever the index is discarded so that mappings loaded before a change are not kept
+	private final AtomicLong generation = new AtomicLong();
+	
+	private final Map<String, IndexedCodes> indexedCodesBySystem = new ConcurrentHashMap<>();
+	
+	private final GlobalPropertyFlag property = new GlobalPropertyFlag(FhirConstants.OPENMRS_FHIR_CONCEPT_CODE_INDEX);
+	
+	@PostConstruct
+	public void registerListeners() {
+		property.register(administrationService, globalPropertyService);
+		
+		if (!(sessionFactory instanceof SessionFactoryImplementor)) {
+			return;
+		}
+		
+		EventListenerRegistry registry = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+		        .getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+		registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+		registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+	}
+	
+	@PreDestroy
+	public void preDestroy() {
+		property.unregister();
+	}
+	
+	/**
+	 * Finds the concepts mapped to any of the given codes in the given code system
+	 *
+	 * @param system the URL of the code system
+	 * @param codes the codes to look up
+	 * @return the ids of the concepts mapped to the codes, which may be empty, or null if the index is
+	 *         disabled or the result would depend on whether the database ignores case
+	 */
+	public int[] getConceptIds(@Nonnull String system, @Nonnull Collection<String> codes) {
+		if (!property.isEnabled()) {
+			return null;
+		}
+		
+		IndexedCodes indexedCodes = getIndexedCodes(system);
+		
+		IntStream.Builder conceptIds = IntStream.builder();
+		for (String code : codes) {
+			String lowerCaseCode = code.toLowerCase(Locale.ROOT);
+			if (!indexedCodes.codesByLowerCase.containsKey(lowerCaseCode)) {
+				continue;
+			}
+			
+			if (!code.equals(indexedCodes.codesByLowerCase.get(lowerCaseCode))) {
+				return null;
+			}
+			
+			Arrays.stream(indexedCodes.conceptIdsByCode.get(code)).forEach(conceptIds);
+		}
+		
+		return conceptIds.build().distinct().toArray();
+	}
+	
+	/**
+	 * Discards every indexed code system; they are loaded again when they are next searched
+	 */
+	public void evict() {
+		generation.incrementAndGet();
+		indexedCodesBySystem.clear();
+	}
+	
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		evict(event.getPersister().getMappedClass());
+	}
+	
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		evict(event.getPersister().getMappedClass());
+	}
+	
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		evict(event.getPersister().getMappedClass());
+	}
+	
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return true;
+	}
+	
+	private void evict(Class<?> type) {
+		if (INDEXED_TYPES.stream().anyMatch(indexedType -> indexedType.isAssignableFrom(type))) {
+			evict();
+		}
+	}
+	
+	private IndexedCodes getIndexedCodes(String system) {
+		IndexedCodes indexedCodes = indexedCodesBySystem.get(system);
+		if (indexedCodes != null) {
+			return indexedCodes;
+		}
+		
+		long expectedGeneration = generation.get();
+		indexedCodes = new IndexedCodes(loadConceptIdsByCode(system));
+		if (generation.get() == expectedGeneration) {
+			indexedCodesBySystem.putIfAbsent(system, indexedCodes);
+		}
+		
+		return indexedCodes;
+	}
+	
+	/**
+	 * Loads the concept ids mapped to every code of the given code system
+	 */
+	Map<String, int[]> loadConceptIdsByCode(String system) {
+		DetachedCriteria conceptSourceCriteria = DetachedCriteria.forClass(FhirConceptSource.class).add(eq("url", system))
+		        .setProjection(property("conceptSource"));
+		
+		@SuppressWarnings("unchecked")
+		List<Object[]> mappings = sessionFactory.getCurrentSession().createCriteria(ConceptMap.class)
+		        .createAlias("concept", "c").createAlias("conceptReferenceTerm", "crt")
+		        .add(propertyEq("crt.conceptSource", conceptSourceCriteria))
+		        .setProjection(Projections.projectionList().add(property("crt.code")).add(property("c.conceptId"))).list();
+		
+		Map<String, int[]> conceptIdsByCode = new HashMap<>();
+		for (Object[] mapping : mappings) {
+			String code = (String) mapping[0];
+			int conceptId = ((Number) mapping[1]).intValue();
+			
+			int[] conceptIds = conceptIdsByCode.get(code);
+			if (conceptIds == null) {
+				conceptIdsByCode.put(code, new int[] { conceptId });
+			} else if (Arrays.stream(conceptIds).noneMatch(id -> id == conceptId)) {
+				int[] newConceptIds = Arrays.copyOf(conceptIds, conceptIds.length + 1);
+				newConceptIds[conceptIds.length] = conceptId;
+				conceptIdsByCode.put(code, newConceptIds);
+			}
+		}
+		
+		log.debug("Indexed {} codes of {}", conceptIdsByCode.size(), system);
+		return conceptIdsByCode;
+	}
+	
+	private static class IndexedCodes {
+		
+		private final Map<String, int[]> conceptIdsByCode;
+		
+		// the indexed code for each code in lower case, or null where indexed codes only differ in case
+		private final Map<String, String> codesByLowerCase = new HashMap<>();
+		
+		private IndexedCodes(Map<String, int[]> conceptIdsByCode) {
+			this.conceptIdsByCode = conceptIdsByCode;
+			for (String code : conceptIdsByCode.keySet()) {
+				String lowerCaseCode = code.toLowerCase(Locale.ROOT);
+				codesByLowerCase.put(lowerCaseCode, codesByLowerCase.containsKey(lowerCaseCode) ? null : code);
+			}
+		}
+	}
+}
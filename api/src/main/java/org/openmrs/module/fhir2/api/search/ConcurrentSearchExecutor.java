@@ -0,0 +1,190 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.util.GlobalPropertyFlag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the queries behind several searches at the same time, so that a request combining the results
+ * of more than one search takes about as long as the slowest of those searches rather than the sum of
+ * all of them. Each search is run in its own read-only session on behalf of the current user. When all
+ * threads are busy, searches are run on the calling thread.
+ * <p/>
+ * Because the other sessions cannot see changes which the calling thread has not yet committed,
+ * searches are only run concurrently if {@link FhirConstants#OPENMRS_FHIR_CONCURRENT_SEARCHES} is
+ * enabled.
+ */
+@Component
+public class ConcurrentSearchExecutor {
+	
+	private static final int QUEUE_SIZE = 100;
+	
+	private final ThreadPoolExecutor executor;
+	
+	private final TransactionTemplate transactionTemplate;
+	
+	private final FhirGlobalPropertyService globalPropertyService;
+	
+	private final AdministrationService administrationService;
+	
+	@Autowired(required = false)
+	private ReadReplicaRouter readReplicaRouter;
+	
+	private final GlobalPropertyFlag property = new GlobalPropertyFlag(FhirConstants.OPENMRS_FHIR_CONCURRENT_SEARCHES);
+	
+	@Autowired
+	public ConcurrentSearchExecutor(PlatformTransactionManager transactionManager,
+	    FhirGlobalPropertyService globalPropertyService,
+	    @Qualifier("adminService") AdministrationService administrationService) {
+		this(transactionManager, globalPropertyService, administrationService,
+		        Math.max(2, Runtime.getRuntime().availableProcessors()), QUEUE_SIZE);
+	}
+	
+	ConcurrentSearchExecutor(PlatformTransactionManager transactionManager, FhirGlobalPropertyService globalPropertyService,
+	    AdministrationService administrationService, int threads, int queueSize) {
+		this.globalPropertyService = globalPropertyService;
+		this.administrationService = administrationService;
+		
+		AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "fhir2-search-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		
+		this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+		        new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+		
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+	}
+	
+	/**
+	 * Runs the queries for the given searches concurrently. The first search is run on the calling
+	 * thread. Once this method returns, the results of each search are loaded and can be read from the
+	 * calling thread. If concurrent searches are disabled, this does nothing and each search runs when
+	 * its results are first read.
+	 *
+	 * @param providers the searches to run
+	 */
+	public void runSearches(IBundleProvider... providers) {
+		if (providers.length < 2 || !property.isEnabled()) {
+			return;
+		}
+		
+		UserContext userContext = getUserContext();
+		boolean routed = readReplicaRouter != null && readReplicaRouter.isRouted();
+		Thread callingThread = Thread.currentThread();
+		
+		List<CompletableFuture<Integer>> futures = new ArrayList<>(providers.length - 1);
+		for (int i = 1; i < providers.length; i++) {
+			IBundleProvider provider = providers[i];
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				// CallerRunsPolicy may run the search on the calling thread, which already has a session
+				if (Thread.currentThread() == callingThread) {
+					return provider.size();
+				}
+				
+				return runInSession(userContext, provider, routed);
+			}, executor));
+		}
+		
+		providers[0].size();
+		
+		for (CompletableFuture<Integer> future : futures) {
+			try {
+				future.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for search results", e);
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+	
+	private Integer runInSession(UserContext userContext, IBundleProvider provider, boolean routed) {
+		openSession(userContext);
+		try {
+			// searches of a request which runs against a read replica use the replica on every thread; the
+			// replica session has to be bound before the transaction starts, so that the transaction uses it
+			if (routed) {
+				return readReplicaRouter.callOnReplica(() -> transactionTemplate.execute(status -> provider.size()));
+			}
+			
+			return transactionTemplate.execute(status -> provider.size());
+		}
+		finally {
+			closeSession();
+		}
+	}
+	
+	/**
+	 * @return the user context of the calling thread
+	 */
+	UserContext getUserContext() {
+		return Context.getUserContext();
+	}
+	
+	/**
+	 * Opens a session for a worker thread which acts on behalf of the given user
+	 */
+	void openSession(UserContext userContext) {
+		Context.openSession();
+		Context.setUserContext(userContext);
+	}
+	
+	void closeSession() {
+		Context.closeSession();
+	}
+	
+	@PostConstruct
+	public void registerListener() {
+		property.register(administrationService, globalPropertyService);
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		property.unregister();
+		
+		executor.shutdownNow();
+	}
+}
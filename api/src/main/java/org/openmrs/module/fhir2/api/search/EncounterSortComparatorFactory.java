@@ -0,0 +1,71 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nullable;
+
+import java.util.Comparator;
+import java.util.Date;
+
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Encounter;
+import org.openmrs.module.fhir2.api.util.DatabaseFeatures;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds comparators matching the order in which the encounter and visit Daos sort their results, so
+ * that the two sets of results can be merged
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class EncounterSortComparatorFactory implements SearchResultComparatorFactory {
+	
+	@Autowired(required = false)
+	private DatabaseFeatures databaseFeatures;
+	
+	/**
+	 * @param sort the requested sort
+	 * @return the comparator or null if the results are not sorted or where the database sorts nulls is
+	 *         not known
+	 */
+	@Nullable
+	@Override
+	public Comparator<IBaseResource> getComparator(@Nullable SortSpec sort) {
+		if (databaseFeatures == null) {
+			return null;
+		}
+		
+		Comparator<IBaseResource> result = null;
+		for (; sort != null; sort = sort.getChain()) {
+			// date is the only sort parameter supported by both Daos
+			if (!Encounter.SP_DATE.equals(sort.getParamName())) {
+				continue;
+			}
+			
+			boolean descending = sort.getOrder() == SortOrderEnum.DESC;
+			Comparator<Date> dates = descending ? Comparator.reverseOrder() : Comparator.naturalOrder();
+			dates = databaseFeatures.sortsNullsFirst(descending) ? Comparator.nullsFirst(dates)
+			        : Comparator.nullsLast(dates);
+			
+			Comparator<IBaseResource> comparator = Comparator.comparing(
+			    resource -> ((Encounter) resource).hasPeriod() ? ((Encounter) resource).getPeriod().getStart() : null,
+			    dates);
+			
+			result = result == null ? comparator : result.thenComparing(comparator);
+		}
+		
+		return result;
+	}
+}
@@ -0,0 +1,423 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hibernate.criterion.Projections.property;
+import static org.hibernate.criterion.Restrictions.eq;
+import static org.hibernate.criterion.Restrictions.gt;
+import static org.hibernate.criterion.Restrictions.in;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirSearchIndexStatusDao;
+import org.openmrs.module.fhir2.api.util.GlobalPropertyFlag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintains the fhir_person_display_name table, which holds the preferred non-voided name of every
+ * person along with a pre-computed key to sort people by their whole name. Sorting people by name
+ * can then look up a single row by the id of the person instead of joining every name of each person
+ * and choosing the preferred one with correlated subqueries.
+ * <p/>
+ * The preferred name of a person is their preferred non-voided name or, if none of their names is
+ * preferred, the first non-voided name they were given. The table is populated by
+ * {@link #rebuild()}, which can be run by the {@link PersonDisplayNameIndexRebuildTask}, and is then
+ * kept up to date as person names are saved. The table is only maintained if
+ * {@link FhirConstants#OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX} is set to true. Enabling that property
+ * rebuilds the table in the background, and people are sorted using the person_name table until the
+ * rebuild has finished. Once rebuilt, the table is recorded as current with the
+ * {@link FhirSearchIndexStatusDao}. That record is removed whenever the property is disabled, so a
+ * table which was not maintained for a while is rebuilt rather than used.
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class PersonDisplayNameIndex implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public static final String GIVEN_NAME_COLUMN = "given_name";
+	
+	public static final String FAMILY_NAME_COLUMN = "family_name";
+	
+	public static final String SORT_KEY_COLUMN = "sort_key";
+	
+	private static final int MAXIMUM_SORT_KEY_LENGTH = 512;
+	
+	private static final int BATCH_SIZE = 1000;
+	
+	private static final String DELETE_ALL = "delete from fhir_person_display_name";
+	
+	private static final String DELETE_PERSON = "delete from fhir_person_display_name where person_id = ?";
+	
+	private static final String SELECT_NAMES = "select person_name_id, given_name, middle_name, family_name, "
+	        + "family_name2, family_name_prefix, family_name_suffix from person_name where person_id = ? and voided = ? "
+	        + "order by preferred desc, person_name_id";
+	
+	private static final String INSERT = "insert into fhir_person_display_name (person_id, person_name_id, given_name, "
+	        + "family_name, sort_key) values (?, ?, ?, ?, ?)";
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	@Autowired
+	private FhirSearchIndexStatusDao indexStatusDao;
+	
+	@Autowired
+	@Qualifier("adminService")
+	private AdministrationService administrationService;
+	
+	// read outside of the flush listeners, as those cannot run queries against the session being flushed
+	private final GlobalPropertyFlag property = new GlobalPropertyFlag(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX,
+	    this::propertyChanged);
+	
+	// whether the table holds the name of every person, i.e. whether sorts can use it
+	private volatile boolean populated;
+	
+	@PostConstruct
+	public void registerListeners() {
+		try {
+			if (property.register(administrationService, globalPropertyService)) {
+				populated = indexStatusDao.isCurrent(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX, PersonName.class);
+				if (!populated) {
+					rebuildInBackground();
+				}
+			} else {
+				indexStatusDao.clear(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX);
+			}
+		}
+		catch (Exception e) {
+			log.error("An error occurred while trying to read the status of the person display name index", e);
+			populated = false;
+		}
+		
+		if (!(sessionFactory instanceof SessionFactoryImplementor)) {
+			return;
+		}
+		
+		EventListenerRegistry registry = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+		        .getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_INSERT, this);
+		registry.appendListeners(EventType.POST_UPDATE, this);
+		registry.appendListeners(EventType.POST_DELETE, this);
+	}
+	
+	@PreDestroy
+	public void preDestroy() {
+		property.unregister();
+		
+		// names saved from now on are not indexed until the module is started again
+		if (property.isEnabled() && populated) {
+			try {
+				indexStatusDao.markCurrent(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX, new Date());
+			}
+			catch (Exception e) {
+				log.warn("Could not record that the person display name index is current", e);
+			}
+		}
+	}
+	
+	/**
+	 * @return true if people should be sorted by name using this index, i.e. it is enabled and has
+	 *         been rebuilt
+	 */
+	public boolean isEnabled() {
+		return property.isEnabled() && populated;
+	}
+	
+	/**
+	 * Replaces the contents of the table with the preferred name of every person. People are indexed in
+	 * batches, each in its own transaction, so names saved while the table is rebuilt may need to be
+	 * indexed again by a later rebuild. People are not sorted using the table while it is being rebuilt.
+	 *
+	 * @return the number of people with a preferred name
+	 */
+	public synchronized int rebuild() {
+		populated = false;
+		indexStatusDao.clear(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX);
+		
+		// names saved once the rebuild starts are indexed as they are saved
+		Date rebuildStarted = new Date();
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.execute(status -> {
+			sessionFactory.getCurrentSession().doWork(connection -> {
+				try (PreparedStatement statement = connection.prepareStatement(DELETE_ALL)) {
+					statement.executeUpdate();
+				}
+			});
+			return null;
+		});
+		
+		int indexed = 0;
+		int lastPersonId = 0;
+		while (true) {
+			final int afterPersonId = lastPersonId;
+			Batch batch = transactionTemplate.execute(status -> {
+				List<Integer> personIds = loadPersonIds(afterPersonId);
+				if (personIds.isEmpty()) {
+					return new Batch(personIds, new ArrayList<>());
+				}
+				
+				List<DisplayName> names = loadDisplayNames(personIds);
+				sessionFactory.getCurrentSession().doWork(connection -> insertDisplayNames(connection, names));
+				return new Batch(personIds, names);
+			});
+			
+			if (batch == null || batch.getPersonIds().isEmpty()) {
+				break;
+			}
+			
+			indexed += batch.getNames().size();
+			lastPersonId = batch.getPersonIds().get(batch.getPersonIds().size() - 1);
+			log.debug("Indexed the names of {} people", indexed);
+		}
+		
+		if (property.isEnabled()) {
+			indexStatusDao.markCurrent(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX, rebuildStarted);
+			populated = true;
+		}
+		
+		log.info("Rebuilt the person display name index with {} people", indexed);
+		return indexed;
+	}
+	
+	/**
+	 * Starts {@link #rebuild()} on a separate thread, as it can take a long time and the property is
+	 * usually changed by a request
+	 */
+	void rebuildInBackground() {
+		Thread thread = new Thread(() -> {
+			try {
+				rebuild();
+			}
+			catch (Exception e) {
+				log.error("Failed to rebuild the person display name index", e);
+			}
+		}, "fhir2-person-display-name-index");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	void propertyChanged(boolean enabled) {
+		if (enabled) {
+			rebuildInBackground();
+		} else {
+			populated = false;
+			indexStatusDao.clear(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX);
+		}
+	}
+	
+	void setEnabled(boolean enabled) {
+		property.setEnabled(enabled);
+	}
+	
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		if (event.getEntity() instanceof PersonName) {
+			updateDisplayName(event.getSession(), (PersonName) event.getEntity());
+		}
+	}
+	
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (event.getEntity() instanceof PersonName) {
+			updateDisplayName(event.getSession(), (PersonName) event.getEntity());
+		}
+	}
+	
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof PersonName) {
+			updateDisplayName(event.getSession(), (PersonName) event.getEntity());
+		}
+	}
+	
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+	
+	/**
+	 * Recomputes the preferred name of the person once the current transaction is about to be
+	 * committed, by which point every change to their names has been flushed
+	 */
+	private void updateDisplayName(EventSource session, PersonName personName) {
+		Person person = personName.getPerson();
+		if (!property.isEnabled() || person == null || person.getPersonId() == null) {
+			return;
+		}
+		
+		Integer personId = person.getPersonId();
+		BeforeTransactionCompletionProcess process = completingSession -> ((Session) completingSession)
+		        .doWork(connection -> refreshDisplayName(connection, personId));
+		
+		session.getActionQueue().registerProcess(process);
+	}
+	
+	private static void refreshDisplayName(Connection connection, Integer personId) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(DELETE_PERSON)) {
+			statement.setInt(1, personId);
+			statement.executeUpdate();
+		}
+		
+		DisplayName displayName = null;
+		try (PreparedStatement statement = connection.prepareStatement(SELECT_NAMES)) {
+			statement.setInt(1, personId);
+			statement.setBoolean(2, false);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (resultSet.next()) {
+					displayName = toDisplayName(personId, resultSet.getInt(1), resultSet.getString(2),
+					    resultSet.getString(3), resultSet.getString(4), resultSet.getString(5), resultSet.getString(6),
+					    resultSet.getString(7));
+				}
+			}
+		}
+		
+		if (displayName != null) {
+			insertDisplayNames(connection, Collections.singletonList(displayName));
+		}
+	}
+	
+	private List<Integer> loadPersonIds(int afterPersonId) {
+		@SuppressWarnings("unchecked")
+		List<Integer> personIds = sessionFactory.getCurrentSession().createCriteria(Person.class)
+		        .add(gt("personId", afterPersonId)).addOrder(Order.asc("personId")).setProjection(property("personId"))
+		        .setMaxResults(BATCH_SIZE).list();
+		return personIds;
+	}
+	
+	private List<DisplayName> loadDisplayNames(List<Integer> personIds) {
+		@SuppressWarnings("unchecked")
+		List<Object[]> rows = sessionFactory.getCurrentSession().createCriteria(PersonName.class)
+		        .add(in("person.personId", personIds)).add(eq("voided", false)).addOrder(Order.asc("person.personId"))
+		        .addOrder(Order.desc("preferred")).addOrder(Order.asc("personNameId"))
+		        .setProjection(Projections.projectionList().add(property("person.personId")).add(property("personNameId"))
+		                .add(property("givenName")).add(property("middleName")).add(property("familyName"))
+		                .add(property("familyName2")).add(property("familyNamePrefix")).add(property("familyNameSuffix")))
+		        .list();
+		
+		// the names of each person are ordered so that their preferred name comes first
+		Map<Integer, DisplayName> displayNames = new LinkedHashMap<>();
+		for (Object[] row : rows) {
+			displayNames.computeIfAbsent((Integer) row[0], personId -> toDisplayName(personId, (Integer) row[1],
+			    (String) row[2], (String) row[3], (String) row[4], (String) row[5], (String) row[6], (String) row[7]));
+		}
+		
+		return new ArrayList<>(displayNames.values());
+	}
+	
+	private static void insertDisplayNames(Connection connection, List<DisplayName> names) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+			for (DisplayName name : names) {
+				statement.setInt(1, name.getPersonId());
+				statement.setInt(2, name.getPersonNameId());
+				statement.setString(3, name.getGivenName());
+				statement.setString(4, name.getFamilyName());
+				statement.setString(5, name.getSortKey());
+				statement.addBatch();
+			}
+			
+			statement.executeBatch();
+		}
+	}
+	
+	private static DisplayName toDisplayName(Integer personId, Integer personNameId, String givenName, String middleName,
+	        String familyName, String familyName2, String familyNamePrefix, String familyNameSuffix) {
+		return new DisplayName(personId, personNameId, givenName, familyName,
+		    getSortKey(familyName, familyName2, givenName, middleName, familyNamePrefix, familyNameSuffix));
+	}
+	
+	/**
+	 * Computes the key used to sort people by their whole name, which orders names by each of the given
+	 * name parts in turn
+	 *
+	 * @param nameParts the parts of the name, in the order they should be compared
+	 * @return the lower-cased name parts separated by spaces
+	 */
+	static String getSortKey(String... nameParts) {
+		String sortKey = Arrays.stream(nameParts).map(part -> part == null ? "" : part.trim().toLowerCase(Locale.ROOT))
+		        .collect(Collectors.joining(" "));
+		return StringUtils.truncate(sortKey, MAXIMUM_SORT_KEY_LENGTH);
+	}
+	
+	@Value
+	private static class DisplayName {
+		
+		Integer personId;
+		
+		Integer personNameId;
+		
+		String givenName;
+		
+		String familyName;
+		
+		String sortKey;
+	}
+	
+	@Value
+	private static class Batch {
+		
+		List<Integer> personIds;
+		
+		List<DisplayName> names;
+	}
+}
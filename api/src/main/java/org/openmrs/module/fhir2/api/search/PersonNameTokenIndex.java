@@ -0,0 +1,497 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hibernate.criterion.Projections.property;
+import static org.hibernate.criterion.Restrictions.eq;
+import static org.hibernate.criterion.Restrictions.gt;
+import static org.hibernate.criterion.Restrictions.in;
+import static org.hibernate.criterion.Restrictions.like;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+import ca.uhn.fhir.rest.param.StringParam;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.MatchMode;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Subqueries;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openmrs.PersonName;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirSearchIndexStatusDao;
+import org.openmrs.module.fhir2.api.util.GlobalPropertyFlag;
+import org.openmrs.module.fhir2.model.FhirPersonNameToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintains the fhir_person_name_token table, which holds the given, middle and family names of
+ * every person name lower-cased and with accents removed, along with the trigrams of each of those
+ * names. Name searches can then use indexed prefix or equality lookups on that table instead of
+ * case-insensitive pattern matches on the person_name table, and searches with the {@code :contains}
+ * modifier only need to check names sharing every trigram of the searched value.
+ * <p/>
+ * The table is populated by {@link #rebuild()}, which can be run by the
+ * {@link PersonNameTokenIndexRebuildTask}, and is then kept up to date as person names are saved.
+ * The index is only maintained if {@link FhirConstants#OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX} is set
+ * to true. Enabling that property rebuilds the table in the background, and searches keep matching
+ * the person_name table until the rebuild has finished. Once rebuilt, the index is recorded as current
+ * with the {@link FhirSearchIndexStatusDao}. That record is removed whenever the property is disabled,
+ * so an index which was not maintained for a while is rebuilt rather than used.
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class PersonNameTokenIndex implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public static final String GIVEN = "given";
+	
+	public static final String MIDDLE = "middle";
+	
+	public static final String FAMILY = "family";
+	
+	static final String TOKEN_TYPE_NAME = "name";
+	
+	static final String TOKEN_TYPE_TRIGRAM = "trigram";
+	
+	private static final int TRIGRAM_LENGTH = 3;
+	
+	// the remaining trigrams add little selectivity as the names are checked against the whole value anyway
+	private static final int MAXIMUM_TRIGRAMS = 4;
+	
+	private static final int BATCH_SIZE = 1000;
+	
+	private static final String DELETE_ALL = "delete from fhir_person_name_token";
+	
+	private static final String DELETE_PERSON_NAME = "delete from fhir_person_name_token where person_name_id = ?";
+	
+	private static final String INSERT = "insert into fhir_person_name_token (person_name_id, person_id, name_part, "
+	        + "token_type, token) values (?, ?, ?, ?, ?)";
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	@Autowired
+	private FhirSearchIndexStatusDao indexStatusDao;
+	
+	@Autowired
+	@Qualifier("adminService")
+	private AdministrationService administrationService;
+	
+	// read outside of the flush listeners, as those cannot run queries against the session being flushed
+	private final GlobalPropertyFlag property = new GlobalPropertyFlag(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX,
+	    this::propertyChanged);
+	
+	// whether the table holds every person name, i.e. whether searches can use it
+	private volatile boolean populated;
+	
+	@PostConstruct
+	public void registerListeners() {
+		try {
+			if (property.register(administrationService, globalPropertyService)) {
+				populated = indexStatusDao.isCurrent(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX, PersonName.class);
+				if (!populated) {
+					rebuildInBackground();
+				}
+			} else {
+				indexStatusDao.clear(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX);
+			}
+		}
+		catch (Exception e) {
+			log.error("An error occurred while trying to read the status of the person name token index", e);
+			populated = false;
+		}
+		
+		if (!(sessionFactory instanceof SessionFactoryImplementor)) {
+			return;
+		}
+		
+		EventListenerRegistry registry = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+		        .getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_INSERT, this);
+		registry.appendListeners(EventType.POST_UPDATE, this);
+		registry.appendListeners(EventType.POST_DELETE, this);
+	}
+	
+	@PreDestroy
+	public void preDestroy() {
+		property.unregister();
+		
+		// names saved from now on are not indexed until the module is started again
+		if (property.isEnabled() && populated) {
+			try {
+				indexStatusDao.markCurrent(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX, new Date());
+			}
+			catch (Exception e) {
+				log.warn("Could not record that the person name token index is current", e);
+			}
+		}
+	}
+	
+	/**
+	 * Creates a restriction matching the person names for which any of the given name parts matches
+	 * the search value, using the index
+	 *
+	 * @param personNameIdProperty the property holding the id of the person name being searched
+	 * @param param the search value
+	 * @param nameParts the parts of the name to search, i.e. {@link #GIVEN}, {@link #MIDDLE} or
+	 *            {@link #FAMILY}
+	 * @return the restriction, or an empty optional if the index is disabled, has not been rebuilt yet
+	 *         or cannot be used for this value
+	 */
+	public Optional<Criterion> getNameCriterion(@Nonnull String personNameIdProperty, @Nonnull StringParam param,
+	        @Nonnull String... nameParts) {
+		if (!property.isEnabled() || !populated) {
+			return Optional.empty();
+		}
+		
+		String value = normalize(param.getValue());
+		if (value.isEmpty()) {
+			return Optional.empty();
+		}
+		
+		DetachedCriteria names = tokens("n", TOKEN_TYPE_NAME, nameParts);
+		if (param.isExact()) {
+			names.add(eq("n.token", value));
+		} else if (param.isContains()) {
+			// values shorter than a trigram would need to check every name
+			if (value.length() < TRIGRAM_LENGTH) {
+				return Optional.empty();
+			}
+			
+			names.add(like("n.token", value, MatchMode.ANYWHERE));
+			
+			int i = 0;
+			for (String trigram : trigrams(value)) {
+				if (i == MAXIMUM_TRIGRAMS) {
+					break;
+				}
+				
+				String alias = "t" + i++;
+				names.add(Subqueries.propertyIn("n.personNameId",
+				    tokens(alias, TOKEN_TYPE_TRIGRAM, nameParts).add(eq(alias + ".token", trigram))));
+			}
+		} else {
+			names.add(like("n.token", value, MatchMode.START));
+		}
+		
+		return Optional.of(Subqueries.propertyIn(personNameIdProperty, names));
+	}
+	
+	/**
+	 * Replaces the contents of the index with the names of every person. Names are indexed in batches,
+	 * each in its own transaction, so names saved while the index is rebuilt may need to be indexed
+	 * again by a later rebuild. Searches do not use the index while it is being rebuilt.
+	 *
+	 * @return the number of person names indexed
+	 */
+	public synchronized int rebuild() {
+		populated = false;
+		indexStatusDao.clear(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX);
+		
+		// names saved once the rebuild starts are indexed as they are saved
+		Date rebuildStarted = new Date();
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.execute(status -> {
+			sessionFactory.getCurrentSession().doWork(connection -> {
+				try (PreparedStatement statement = connection.prepareStatement(DELETE_ALL)) {
+					statement.executeUpdate();
+				}
+			});
+			return null;
+		});
+		
+		int indexed = 0;
+		int lastPersonNameId = 0;
+		while (true) {
+			final int afterPersonNameId = lastPersonNameId;
+			List<NameTokens> batch = transactionTemplate.execute(status -> {
+				List<NameTokens> names = loadNames(afterPersonNameId);
+				sessionFactory.getCurrentSession().doWork(connection -> insertTokens(connection, names));
+				return names;
+			});
+			
+			if (batch == null || batch.isEmpty()) {
+				break;
+			}
+			
+			indexed += batch.size();
+			lastPersonNameId = batch.get(batch.size() - 1).getPersonNameId();
+			log.debug("Indexed {} person names", indexed);
+		}
+		
+		if (property.isEnabled()) {
+			indexStatusDao.markCurrent(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX, rebuildStarted);
+			populated = true;
+		}
+		
+		log.info("Rebuilt the person name token index with {} person names", indexed);
+		return indexed;
+	}
+	
+	/**
+	 * Starts {@link #rebuild()} on a separate thread, as it can take a long time and the property is
+	 * usually changed by a request
+	 */
+	void rebuildInBackground() {
+		Thread thread = new Thread(() -> {
+			try {
+				rebuild();
+			}
+			catch (Exception e) {
+				log.error("Failed to rebuild the person name token index", e);
+			}
+		}, "fhir2-person-name-token-index");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	void propertyChanged(boolean enabled) {
+		if (enabled) {
+			rebuildInBackground();
+		} else {
+			populated = false;
+			indexStatusDao.clear(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX);
+		}
+	}
+	
+	void setEnabled(boolean enabled) {
+		property.setEnabled(enabled);
+	}
+	
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		if (event.getEntity() instanceof PersonName) {
+			updateTokens(event.getSession(), (PersonName) event.getEntity(), false);
+		}
+	}
+	
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (event.getEntity() instanceof PersonName) {
+			updateTokens(event.getSession(), (PersonName) event.getEntity(), false);
+		}
+	}
+	
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof PersonName) {
+			updateTokens(event.getSession(), (PersonName) event.getEntity(), true);
+		}
+	}
+	
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+	
+	/**
+	 * Replaces the tokens of a person name once the current transaction is about to be committed, so
+	 * that they are written in the same transaction as the name but not while the session is flushed
+	 */
+	private void updateTokens(EventSource session, PersonName personName, boolean deleted) {
+		if (!property.isEnabled() || personName.getPersonNameId() == null) {
+			return;
+		}
+		
+		NameTokens nameTokens = deleted ? new NameTokens(personName.getPersonNameId(), null, null, null, null)
+		        : toNameTokens(personName.getPersonNameId(),
+		            personName.getPerson() == null ? null : personName.getPerson().getPersonId(),
+		            personName.getGivenName(), personName.getMiddleName(), personName.getFamilyName());
+		
+		BeforeTransactionCompletionProcess process = completingSession -> ((Session) completingSession)
+		        .doWork(connection -> {
+			        try (PreparedStatement statement = connection.prepareStatement(DELETE_PERSON_NAME)) {
+				        statement.setInt(1, nameTokens.getPersonNameId());
+				        statement.executeUpdate();
+			        }
+			
+			        insertTokens(connection, Collections.singletonList(nameTokens));
+		        });
+		
+		session.getActionQueue().registerProcess(process);
+	}
+	
+	private List<NameTokens> loadNames(int afterPersonNameId) {
+		@SuppressWarnings("unchecked")
+		List<Object[]> rows = sessionFactory.getCurrentSession().createCriteria(PersonName.class)
+		        .add(gt("personNameId", afterPersonNameId)).addOrder(Order.asc("personNameId"))
+		        .setProjection(Projections.projectionList().add(property("personNameId")).add(property("person.personId"))
+		                .add(property("givenName")).add(property("middleName")).add(property("familyName")))
+		        .setMaxResults(BATCH_SIZE).list();
+		
+		List<NameTokens> names = new ArrayList<>(rows.size());
+		for (Object[] row : rows) {
+			names.add(toNameTokens((Integer) row[0], (Integer) row[1], (String) row[2], (String) row[3], (String) row[4]));
+		}
+		
+		return names;
+	}
+	
+	private static void insertTokens(Connection connection, List<NameTokens> names) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+			for (NameTokens name : names) {
+				if (name.getPersonId() == null) {
+					continue;
+				}
+				
+				addTokens(statement, name, GIVEN, name.getGivenName());
+				addTokens(statement, name, MIDDLE, name.getMiddleName());
+				addTokens(statement, name, FAMILY, name.getFamilyName());
+			}
+			
+			statement.executeBatch();
+		}
+	}
+	
+	private static void addTokens(PreparedStatement statement, NameTokens name, String namePart, String value)
+	        throws SQLException {
+		if (value == null || value.isEmpty()) {
+			return;
+		}
+		
+		addToken(statement, name, namePart, TOKEN_TYPE_NAME, value);
+		for (String trigram : trigrams(value)) {
+			addToken(statement, name, namePart, TOKEN_TYPE_TRIGRAM, trigram);
+		}
+	}
+	
+	private static void addToken(PreparedStatement statement, NameTokens name, String namePart, String tokenType,
+	        String token) throws SQLException {
+		statement.setInt(1, name.getPersonNameId());
+		statement.setInt(2, name.getPersonId());
+		statement.setString(3, namePart);
+		statement.setString(4, tokenType);
+		statement.setString(5, token);
+		statement.addBatch();
+	}
+	
+	private static NameTokens toNameTokens(Integer personNameId, Integer personId, String givenName, String middleName,
+	        String familyName) {
+		return new NameTokens(personNameId, personId, normalize(givenName), normalize(middleName), normalize(familyName));
+	}
+	
+	private static DetachedCriteria tokens(String alias, String tokenType, String... nameParts) {
+		return DetachedCriteria.forClass(FhirPersonNameToken.class, alias).add(eq(alias + ".tokenType", tokenType))
+		        .add(in(alias + ".namePart", Arrays.asList(nameParts))).setProjection(property(alias + ".personNameId"));
+	}
+	
+	/**
+	 * Converts a name into the form stored in the index, i.e. lower-cased, without accents and with
+	 * whitespace collapsed
+	 *
+	 * @param value the name
+	 * @return the normalized name, which is empty if the name is null or blank
+	 */
+	static String normalize(String value) {
+		if (value == null) {
+			return "";
+		}
+		
+		String withoutAccents = Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+		return StringUtils.normalizeSpace(withoutAccents).toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * @param value a normalized name
+	 * @return the distinct substrings of three characters of the name in the order they appear
+	 */
+	static Set<String> trigrams(String value) {
+		Set<String> trigrams = new LinkedHashSet<>();
+		for (int i = 0; i + TRIGRAM_LENGTH <= value.length(); i++) {
+			trigrams.add(value.substring(i, i + TRIGRAM_LENGTH));
+		}
+		
+		return trigrams;
+	}
+	
+	/**
+	 * Maps a name part to the property of {@link PersonName} holding it
+	 *
+	 * @param namePart {@link #GIVEN}, {@link #MIDDLE} or {@link #FAMILY}
+	 * @return the name of the property
+	 */
+	public static String getPropertyName(@Nonnull String namePart) {
+		switch (namePart) {
+			case GIVEN:
+				return "givenName";
+			case MIDDLE:
+				return "middleName";
+			case FAMILY:
+				return "familyName";
+		}
+		
+		throw new IllegalArgumentException("Unknown name part " + namePart);
+	}
+	
+	@Value
+	private static class NameTokens {
+		
+		Integer personNameId;
+		
+		Integer personId;
+		
+		String givenName;
+		
+		String middleName;
+		
+		String familyName;
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.api.context.Context;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+/**
+ * A scheduled task which repopulates the person name token index from the person_name table. The
+ * index is rebuilt when {@link org.openmrs.module.fhir2.FhirConstants#OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX}
+ * is enabled, so this is only needed if names were changed outside of OpenMRS.
+ */
+@Slf4j
+public class PersonNameTokenIndexRebuildTask extends AbstractTask {
+	
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			startExecuting();
+			try {
+				Context.getRegisteredComponents(PersonNameTokenIndex.class).get(0).rebuild();
+			}
+			catch (Exception e) {
+				log.error("Failed to rebuild the person name token index", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+}
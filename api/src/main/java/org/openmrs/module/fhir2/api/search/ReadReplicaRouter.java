@@ -0,0 +1,605 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import com.mchange.v2.c3p0.DataSources;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openmrs.GlobalProperty;
+import org.openmrs.User;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.util.GlobalPropertyFlag;
+import org.openmrs.module.fhir2.model.FhirSearchSnapshot;
+import org.openmrs.util.OpenmrsClassLoader;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.orm.hibernate4.LocalSessionFactoryBean;
+import org.springframework.orm.hibernate4.SessionHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs read-only FHIR requests against a read replica of the OpenMRS database. While a request is
+ * routed, the Hibernate session bound to the thread is replaced by a read-only session of a separate
+ * session factory whose connections come from a pool for each replica, so every query made through
+ * {@link SessionFactory#getCurrentSession()} is sent to the replica. Like any other session, the
+ * replica session takes a pooled connection for each transaction and returns it when the transaction
+ * completes. The original session is bound again once the request completes.
+ * <p/>
+ * Replicas are used in turn. A replica which cannot be connected to is skipped for
+ * {@link #RETRY_INTERVAL} and the request is run against the primary database if no replica is
+ * available. Requests made by a user who has saved anything within the last
+ * {@link FhirConstants#OPENMRS_FHIR_READ_REPLICA_PIN_WINDOW} seconds are run against the primary
+ * database, so that users see their own changes even when the replicas lag behind. The users who
+ * have saved are only remembered by the server which handled the save, so where several servers
+ * share the database the load balancer must send each user's requests to the same server, i.e. use
+ * sticky sessions, for users to be sure of seeing their own changes.
+ * <p/>
+ * Routing is disabled unless {@link FhirConstants#OPENMRS_FHIR_READ_REPLICAS} is set to true. The
+ * replicas are configured with the runtime properties {@link #REPLICA_URLS_PROPERTY}, a comma
+ * separated list of JDBC urls, {@link #REPLICA_USERNAME_PROPERTY} and
+ * {@link #REPLICA_PASSWORD_PROPERTY}; the replica user should only be allowed to read.
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class ReadReplicaRouter implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public static final String REPLICA_URLS_PROPERTY = "fhir2.readReplica.urls";
+	
+	public static final String REPLICA_USERNAME_PROPERTY = "fhir2.readReplica.username";
+	
+	public static final String REPLICA_PASSWORD_PROPERTY = "fhir2.readReplica.password";
+	
+	/**
+	 * How long a replica which could not be connected to is skipped, in milliseconds
+	 */
+	static final long RETRY_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+	
+	/**
+	 * How long to wait for a connection to a replica, in milliseconds
+	 */
+	static final int CONNECTION_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(5);
+	
+	private static final int DEFAULT_PIN_WINDOW = 10;
+	
+	private static final int MAXIMUM_PINNED_USERS = 10_000;
+	
+	private static final ThreadLocal<RoutedSession> routedSession = new ThreadLocal<>();
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Autowired
+	private BeanFactory beanFactory;
+	
+	@Autowired
+	@Qualifier("adminService")
+	private AdministrationService administrationService;
+	
+	private final AtomicInteger nextReplica = new AtomicInteger();
+	
+	private volatile List<Replica> replicas;
+	
+	private volatile SessionFactory replicaSessionFactory;
+	
+	private volatile StandardServiceRegistry replicaServiceRegistry;
+	
+	// local to this server, see the class documentation
+	private volatile Cache<Integer, Boolean> pinnedUsers;
+	
+	// the properties are read outside of the flush listeners, which cannot query the session being flushed
+	private final GlobalPropertyFlag property = new GlobalPropertyFlag(FhirConstants.OPENMRS_FHIR_READ_REPLICAS);
+	
+	private final GlobalPropertyListener pinWindowListener = new GlobalPropertyListener() {
+		
+		@Override
+		public boolean supportsPropertyName(String propertyName) {
+			return FhirConstants.OPENMRS_FHIR_READ_REPLICA_PIN_WINDOW.equals(propertyName);
+		}
+		
+		@Override
+		public void globalPropertyChanged(GlobalProperty newValue) {
+			pinnedUsers = createPinnedUsers(NumberUtils.toInt(newValue.getPropertyValue(), DEFAULT_PIN_WINDOW));
+		}
+		
+		@Override
+		public void globalPropertyDeleted(String propertyName) {
+			pinnedUsers = createPinnedUsers(DEFAULT_PIN_WINDOW);
+		}
+	};
+	
+	@PostConstruct
+	public void registerListeners() {
+		property.register(administrationService, globalPropertyService);
+		
+		if (administrationService != null) {
+			administrationService.addGlobalPropertyListener(pinWindowListener);
+		}
+		
+		try {
+			pinnedUsers = createPinnedUsers(globalPropertyService
+			        .getGlobalProperty(FhirConstants.OPENMRS_FHIR_READ_REPLICA_PIN_WINDOW, DEFAULT_PIN_WINDOW));
+		}
+		catch (Exception e) {
+			log.error("An error occurred while trying to read the {} property",
+			    FhirConstants.OPENMRS_FHIR_READ_REPLICA_PIN_WINDOW, e);
+		}
+		
+		if (!(sessionFactory instanceof SessionFactoryImplementor)) {
+			return;
+		}
+		
+		// writes are recorded as they are made rather than on commit so that no read can slip in between
+		EventListenerRegistry registry = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+		        .getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_INSERT, this);
+		registry.appendListeners(EventType.POST_UPDATE, this);
+		registry.appendListeners(EventType.POST_DELETE, this);
+	}
+	
+	/**
+	 * Binds a session connected to a read replica to the current thread if routing is enabled, a
+	 * replica is available and the current user is not pinned to the primary database. Every call to
+	 * this method must be followed by a call to {@link #release()}, even if it returns false.
+	 *
+	 * @return true if the current thread now uses a replica
+	 */
+	public boolean route() {
+		if (routedSession.get() != null || !property.isEnabled() || isCurrentUserPinned()
+		        || (TransactionSynchronizationManager.isActualTransactionActive()
+		                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())) {
+			return false;
+		}
+		
+		Replica replica = getAvailableReplica();
+		if (replica == null) {
+			return false;
+		}
+		
+		// the session only takes a connection when it first runs a query, by which time the replica is known
+		Session session = getReplicaSessionFactory().openSession();
+		session.setDefaultReadOnly(true);
+		session.setFlushMode(FlushMode.MANUAL);
+		
+		SessionHolder previousHolder = null;
+		if (TransactionSynchronizationManager.hasResource(sessionFactory)) {
+			previousHolder = (SessionHolder) TransactionSynchronizationManager.unbindResource(sessionFactory);
+		}
+		
+		SessionHolder replicaHolder = new SessionHolder(session);
+		TransactionSynchronizationManager.bindResource(sessionFactory, replicaHolder);
+		
+		routedSession.set(new RoutedSession(replica, replicaHolder, previousHolder));
+		return true;
+	}
+	
+	/**
+	 * Closes the replica session bound by {@link #route()}, if any, and binds the session it replaced
+	 */
+	public void release() {
+		RoutedSession routed = routedSession.get();
+		if (routed == null) {
+			return;
+		}
+		
+		try {
+			TransactionSynchronizationManager.unbindResourceIfPossible(sessionFactory);
+			if (routed.previousHolder != null) {
+				TransactionSynchronizationManager.bindResource(sessionFactory, routed.previousHolder);
+			}
+		}
+		finally {
+			try {
+				routed.replicaHolder.getSession().close();
+			}
+			catch (RuntimeException e) {
+				log.warn("Failed to close read replica session", e);
+			}
+			finally {
+				routedSession.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Runs the given query against a read replica if possible
+	 *
+	 * @param query the query to run
+	 * @return the result of the query
+	 */
+	public <T> T callOnReplica(Supplier<T> query) {
+		boolean routed = route();
+		try {
+			return query.get();
+		}
+		finally {
+			if (routed) {
+				release();
+			}
+		}
+	}
+	
+	/**
+	 * Runs the given call against the primary database, even if the current thread uses a replica.
+	 * This is needed to write, and to read anything which has only just been written.
+	 *
+	 * @param call the call to run
+	 * @return the result of the call
+	 */
+	public <T> T callOnPrimary(Supplier<T> call) {
+		RoutedSession routed = routedSession.get();
+		if (routed == null || routed.suspended) {
+			return call.get();
+		}
+		
+		TransactionSynchronizationManager.unbindResourceIfPossible(sessionFactory);
+		if (routed.previousHolder != null) {
+			TransactionSynchronizationManager.bindResource(sessionFactory, routed.previousHolder);
+		}
+		
+		routed.suspended = true;
+		try {
+			return call.get();
+		}
+		finally {
+			routed.suspended = false;
+			TransactionSynchronizationManager.unbindResourceIfPossible(sessionFactory);
+			TransactionSynchronizationManager.bindResource(sessionFactory, routed.replicaHolder);
+		}
+	}
+	
+	/**
+	 * @return true if the current thread is using a replica
+	 */
+	public boolean isRouted() {
+		RoutedSession routed = routedSession.get();
+		return routed != null && !routed.suspended;
+	}
+	
+	/**
+	 * @return true if the current user has saved anything recently, so that their reads must use the
+	 *         primary database
+	 */
+	boolean isCurrentUserPinned() {
+		Integer userId = getCurrentUserId();
+		return userId != null && getPinnedUsers().getIfPresent(userId) != null;
+	}
+	
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		pinCurrentUser(event.getEntity());
+	}
+	
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		pinCurrentUser(event.getEntity());
+	}
+	
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		pinCurrentUser(event.getEntity());
+	}
+	
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+	
+	private void pinCurrentUser(Object entity) {
+		// search snapshots are saved by every search, but are only ever read from the primary database
+		if (entity instanceof FhirSearchSnapshot || !property.isEnabled()) {
+			return;
+		}
+		
+		Integer userId = getCurrentUserId();
+		if (userId != null) {
+			getPinnedUsers().put(userId, Boolean.TRUE);
+		}
+	}
+	
+	private Replica getAvailableReplica() {
+		List<Replica> replicas = getReplicas();
+		if (replicas.isEmpty()) {
+			return null;
+		}
+		
+		int first = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = replicas.get((first + i) % replicas.size());
+			if (replica.unavailableUntil > now) {
+				continue;
+			}
+			
+			// checking a connection out of the pool is cheap and keeps an unreachable replica from failing the request
+			try (Connection ignored = replica.dataSource.getConnection()) {
+				return replica;
+			}
+			catch (SQLException e) {
+				log.warn("Could not connect to read replica {}, it will not be used for {} seconds", replica.url,
+				    TimeUnit.MILLISECONDS.toSeconds(RETRY_INTERVAL), e);
+				replica.unavailableUntil = now + RETRY_INTERVAL;
+			}
+		}
+		
+		log.debug("No read replica is available, using the primary database");
+		return null;
+	}
+	
+	private List<Replica> getReplicas() {
+		if (replicas == null) {
+			synchronized (this) {
+				if (replicas == null) {
+					Properties runtimeProperties = Context.getRuntimeProperties();
+					String username = runtimeProperties.getProperty(REPLICA_USERNAME_PROPERTY);
+					String password = runtimeProperties.getProperty(REPLICA_PASSWORD_PROPERTY);
+					
+					List<Replica> configuredReplicas = new ArrayList<>();
+					for (String url : StringUtils.split(runtimeProperties.getProperty(REPLICA_URLS_PROPERTY, ""), ',')) {
+						if (StringUtils.isNotBlank(url)) {
+							configuredReplicas
+							        .add(new Replica(url.trim(), createDataSource(url.trim(), username, password)));
+						}
+					}
+					
+					if (configuredReplicas.isEmpty()) {
+						log.warn("{} is enabled, but no replicas are configured in the runtime property {}",
+						    FhirConstants.OPENMRS_FHIR_READ_REPLICAS, REPLICA_URLS_PROPERTY);
+					}
+					
+					replicas = Collections.unmodifiableList(configuredReplicas);
+				}
+			}
+		}
+		
+		return replicas;
+	}
+	
+	/**
+	 * Creates the pool of connections to a replica
+	 */
+	DataSource createDataSource(String url, String username, String password) {
+		ComboPooledDataSource dataSource = new ComboPooledDataSource();
+		dataSource.setJdbcUrl(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
+		// give up on an unreachable replica quickly, so that the request can use another one
+		dataSource.setAcquireRetryAttempts(1);
+		dataSource.setCheckoutTimeout(CONNECTION_TIMEOUT);
+		return dataSource;
+	}
+	
+	private SessionFactory getReplicaSessionFactory() {
+		if (replicaSessionFactory == null) {
+			synchronized (this) {
+				if (replicaSessionFactory == null) {
+					replicaSessionFactory = buildReplicaSessionFactory(new ReplicaDataSource());
+				}
+			}
+		}
+		
+		return replicaSessionFactory;
+	}
+	
+	/**
+	 * Builds the session factory used for replica sessions. It has the mappings of the primary session
+	 * factory, but gets its connections from the given data source and has no second-level cache, which
+	 * must only hold what has been read from the primary database.
+	 */
+	SessionFactory buildReplicaSessionFactory(DataSource dataSource) {
+		Configuration configuration = beanFactory.getBean("&sessionFactory", LocalSessionFactoryBean.class)
+		        .getConfiguration();
+		
+		Properties settings = new Properties();
+		settings.putAll(configuration.getProperties());
+		settings.keySet().removeIf(key -> key.toString().startsWith("hibernate.connection.")
+		        || key.toString().startsWith("hibernate.c3p0.") || key.toString().startsWith("hibernate.cache."));
+		settings.remove(AvailableSettings.HBM2DDL_AUTO);
+		settings.remove(AvailableSettings.SESSION_FACTORY_NAME);
+		settings.put(AvailableSettings.DATASOURCE, dataSource);
+		settings.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false");
+		settings.put(AvailableSettings.USE_QUERY_CACHE, "false");
+		
+		Thread thread = Thread.currentThread();
+		ClassLoader contextClassLoader = thread.getContextClassLoader();
+		synchronized (configuration) {
+			// the session factory takes most of its settings from the configuration rather than the registry
+			Properties primarySettings = configuration.getProperties();
+			configuration.setProperties(settings);
+			thread.setContextClassLoader(OpenmrsClassLoader.getInstance());
+			try {
+				replicaServiceRegistry = new StandardServiceRegistryBuilder().applySettings(settings).build();
+				return configuration.buildSessionFactory(replicaServiceRegistry);
+			}
+			finally {
+				thread.setContextClassLoader(contextClassLoader);
+				configuration.setProperties(primarySettings);
+			}
+		}
+	}
+	
+	private Cache<Integer, Boolean> getPinnedUsers() {
+		if (pinnedUsers == null) {
+			synchronized (this) {
+				if (pinnedUsers == null) {
+					pinnedUsers = createPinnedUsers(DEFAULT_PIN_WINDOW);
+				}
+			}
+		}
+		
+		return pinnedUsers;
+	}
+	
+	private static Cache<Integer, Boolean> createPinnedUsers(Integer pinWindow) {
+		return CacheBuilder.newBuilder().maximumSize(MAXIMUM_PINNED_USERS)
+		        .expireAfterWrite(Math.max(pinWindow == null ? DEFAULT_PIN_WINDOW : pinWindow, 0), TimeUnit.SECONDS)
+		        .build();
+	}
+	
+	/**
+	 * @return the id of the authenticated user, or null if there is none
+	 */
+	Integer getCurrentUserId() {
+		if (!Context.isSessionOpen()) {
+			return null;
+		}
+		
+		User user = Context.getAuthenticatedUser();
+		return user == null ? null : user.getUserId();
+	}
+	
+	void setEnabled(boolean enabled) {
+		property.setEnabled(enabled);
+	}
+	
+	/**
+	 * Closes the replica session factory and the connection pools
+	 */
+	@PreDestroy
+	public synchronized void close() {
+		property.unregister();
+		
+		if (administrationService != null) {
+			administrationService.removeGlobalPropertyListener(pinWindowListener);
+		}
+		
+		if (replicaSessionFactory != null) {
+			try {
+				replicaSessionFactory.close();
+			}
+			finally {
+				replicaSessionFactory = null;
+				if (replicaServiceRegistry != null) {
+					StandardServiceRegistryBuilder.destroy(replicaServiceRegistry);
+					replicaServiceRegistry = null;
+				}
+			}
+		}
+		
+		if (replicas != null) {
+			for (Replica replica : replicas) {
+				try {
+					DataSources.destroy(replica.dataSource);
+				}
+				catch (SQLException e) {
+					log.warn("Failed to close the connections to read replica {}", replica.url, e);
+				}
+			}
+			
+			replicas = null;
+		}
+	}
+	
+	private static class Replica {
+		
+		private final String url;
+		
+		private final DataSource dataSource;
+		
+		private volatile long unavailableUntil;
+		
+		private Replica(String url, DataSource dataSource) {
+			this.url = url;
+			this.dataSource = dataSource;
+		}
+	}
+	
+	private static class RoutedSession {
+		
+		private final Replica replica;
+		
+		private final SessionHolder replicaHolder;
+		
+		private final SessionHolder previousHolder;
+		
+		private boolean suspended;
+		
+		private RoutedSession(Replica replica, SessionHolder replicaHolder, SessionHolder previousHolder) {
+			this.replica = replica;
+			this.replicaHolder = replicaHolder;
+			this.previousHolder = previousHolder;
+		}
+	}
+	
+	/**
+	 * Hands out connections from the pool of the replica which the current thread is routed to
+	 */
+	private static class ReplicaDataSource extends AbstractDataSource {
+		
+		@Override
+		public Connection getConnection() throws SQLException {
+			return getRoutedReplica().dataSource.getConnection();
+		}
+		
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			return getRoutedReplica().dataSource.getConnection(username, password);
+		}
+		
+		private static Replica getRoutedReplica() throws SQLException {
+			RoutedSession routed = routedSession.get();
+			if (routed == null) {
+				throw new SQLException("The current thread does not use a read replica");
+			}
+			
+			return routed.replica;
+		}
+	}
+}
@@ -0,0 +1,424 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IQueryParameterAnd;
+import ca.uhn.fhir.model.api.IQueryParameterOr;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.QualifiedParamList;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.BaseAndListParam;
+import ca.uhn.fhir.rest.param.BaseOrListParam;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+/**
+ * Converts a {@link SearchParameterMap} to and from the form stored in a search snapshot. Search
+ * parameters are written as their query tokens, i.e. the same strings they are parsed from in a
+ * request, along with the name of their HAPI parameter class, so snapshots do not depend on the
+ * serialized form of those classes. Only HAPI parameter types, includes, enums, strings, numbers,
+ * booleans and dates are supported, and no other class is ever instantiated when reading a snapshot.
+ */
+final class SearchParameterMapCodec {
+	
+	static final byte FORMAT_VERSION = 1;
+	
+	private static final byte NULL = 0;
+	
+	private static final byte STRING = 1;
+	
+	private static final byte INTEGER = 2;
+	
+	private static final byte LONG = 3;
+	
+	private static final byte BOOLEAN = 4;
+	
+	private static final byte DATE = 5;
+	
+	private static final byte ENUM = 6;
+	
+	private static final byte INCLUDE = 7;
+	
+	private static final byte PARAM = 8;
+	
+	private static final byte OR_LIST = 9;
+	
+	private static final byte AND_LIST = 10;
+	
+	// and parameters which are not lists of or lists, e.g. date ranges
+	private static final byte QUERY_TOKENS = 11;
+	
+	private static final byte LIST = 12;
+	
+	private static final byte SET = 13;
+	
+	private SearchParameterMapCodec() {
+	}
+	
+	/**
+	 * @param theParams the search parameters
+	 * @param fhirContext the context used to convert parameters to query tokens, if any
+	 * @return the encoded search parameters
+	 * @throws IOException if the search parameters hold a value which cannot be encoded
+	 */
+	static byte[] encode(SearchParameterMap theParams, @Nullable FhirContext fhirContext) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(FORMAT_VERSION);
+			
+			List<SortSpec> sorts = new ArrayList<>();
+			for (SortSpec sort = theParams.getSortSpec(); sort != null; sort = sort.getChain()) {
+				sorts.add(sort);
+			}
+			
+			out.writeInt(sorts.size());
+			for (SortSpec sort : sorts) {
+				writeString(out, sort.getParamName());
+				writeString(out, sort.getOrder() == null ? null : sort.getOrder().name());
+			}
+			
+			Set<Map.Entry<String, List<PropParam<?>>>> parameters = theParams.getParameters();
+			out.writeInt(parameters.size());
+			for (Map.Entry<String, List<PropParam<?>>> entry : parameters) {
+				writeString(out, entry.getKey());
+				out.writeInt(entry.getValue().size());
+				for (PropParam<?> param : entry.getValue()) {
+					writeString(out, param.getPropertyName());
+					writeValue(out, param.getParam(), fhirContext);
+				}
+			}
+		}
+		
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * @param bytes the search parameters as encoded by {@link #encode(SearchParameterMap, FhirContext)}
+	 * @param fhirContext the context used to parse query tokens, if any
+	 * @return the search parameters
+	 * @throws IOException if the search parameters cannot be decoded, e.g. because they were written by
+	 *             an incompatible version or refer to a class which is no longer available
+	 */
+	static SearchParameterMap decode(byte[] bytes, @Nullable FhirContext fhirContext) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		byte version = in.readByte();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported search snapshot format " + version);
+		}
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		
+		int sortCount = in.readInt();
+		SortSpec first = null;
+		SortSpec last = null;
+		for (int i = 0; i < sortCount; i++) {
+			String paramName = readString(in);
+			String order = readString(in);
+			SortSpec sort = new SortSpec(paramName, order == null ? null : valueOf(SortOrderEnum.class, order));
+			if (first == null) {
+				first = sort;
+			} else {
+				last.setChain(sort);
+			}
+			
+			last = sort;
+		}
+		
+		theParams.setSortSpec(first);
+		
+		int parameterCount = in.readInt();
+		for (int i = 0; i < parameterCount; i++) {
+			String key = readString(in);
+			int count = in.readInt();
+			for (int j = 0; j < count; j++) {
+				String propertyName = readString(in);
+				Object value = readValue(in, fhirContext);
+				if (!(value instanceof Serializable)) {
+					throw new IOException("Search parameter " + key + " has no value");
+				}
+				
+				theParams.addParameter(key, propertyName, (Serializable) value);
+			}
+		}
+		
+		return theParams;
+	}
+	
+	private static void writeValue(DataOutputStream out, Object value, FhirContext fhirContext) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Date) {
+			out.writeByte(DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (value instanceof Enum) {
+			out.writeByte(ENUM);
+			writeString(out, ((Enum<?>) value).getDeclaringClass().getName());
+			writeString(out, ((Enum<?>) value).name());
+		} else if (value instanceof Include) {
+			out.writeByte(INCLUDE);
+			writeString(out, ((Include) value).getValue());
+			out.writeBoolean(((Include) value).isRecurse());
+		} else if (value instanceof IQueryParameterType) {
+			out.writeByte(PARAM);
+			writeParam(out, (IQueryParameterType) value, fhirContext);
+		} else if (value instanceof BaseOrListParam) {
+			out.writeByte(OR_LIST);
+			writeOrList(out, (BaseOrListParam<?, ?>) value, fhirContext);
+		} else if (value instanceof BaseAndListParam) {
+			out.writeByte(AND_LIST);
+			writeString(out, value.getClass().getName());
+			
+			List<? extends IQueryParameterOr<?>> orLists = ((BaseAndListParam<?>) value).getValuesAsQueryTokens();
+			out.writeInt(orLists.size());
+			for (IQueryParameterOr<?> orList : orLists) {
+				if (!(orList instanceof BaseOrListParam)) {
+					throw new IOException("Cannot store search parameters of type " + orList.getClass().getName());
+				}
+				
+				writeOrList(out, (BaseOrListParam<?, ?>) orList, fhirContext);
+			}
+		} else if (value instanceof IQueryParameterAnd) {
+			out.writeByte(QUERY_TOKENS);
+			writeString(out, value.getClass().getName());
+			
+			List<? extends IQueryParameterOr<?>> orLists = ((IQueryParameterAnd<?>) value).getValuesAsQueryTokens();
+			out.writeInt(orLists.size());
+			for (IQueryParameterOr<?> orList : orLists) {
+				List<? extends IQueryParameterType> params = orList.getValuesAsQueryTokens();
+				writeString(out, params.isEmpty() ? null : params.get(0).getQueryParameterQualifier());
+				out.writeInt(params.size());
+				for (IQueryParameterType param : params) {
+					writeString(out, param.getValueAsQueryToken(fhirContext));
+				}
+			}
+		} else if (value instanceof List || value instanceof Set) {
+			out.writeByte(value instanceof List ? LIST : SET);
+			out.writeInt(((Collection<?>) value).size());
+			for (Object element : (Collection<?>) value) {
+				writeValue(out, element, fhirContext);
+			}
+		} else {
+			throw new IOException("Cannot store search parameters of type " + value.getClass().getName());
+		}
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object readValue(DataInputStream in, FhirContext fhirContext) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+			case NULL:
+				return null;
+			case STRING:
+				return readString(in);
+			case INTEGER:
+				return in.readInt();
+			case LONG:
+				return in.readLong();
+			case BOOLEAN:
+				return in.readBoolean();
+			case DATE:
+				return new Date(in.readLong());
+			case ENUM:
+				return valueOf(loadClass(readString(in), Enum.class), readString(in));
+			case INCLUDE:
+				return new Include(readString(in), in.readBoolean());
+			case PARAM:
+				return readParam(in, fhirContext);
+			case OR_LIST:
+				return readOrList(in, fhirContext);
+			case AND_LIST: {
+				BaseAndListParam andList = newInstance(loadClass(readString(in), BaseAndListParam.class));
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					andList.addAnd(readOrList(in, fhirContext));
+				}
+				
+				return andList;
+			}
+			case QUERY_TOKENS: {
+				IQueryParameterAnd<?> param = newInstance(loadClass(readString(in), IQueryParameterAnd.class));
+				int count = in.readInt();
+				List<QualifiedParamList> orLists = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					QualifiedParamList orList = new QualifiedParamList();
+					orList.setQualifier(readString(in));
+					int size = in.readInt();
+					for (int j = 0; j < size; j++) {
+						orList.add(readString(in));
+					}
+					
+					orLists.add(orList);
+				}
+				
+				try {
+					param.setValuesAsQueryTokens(fhirContext, null, orLists);
+				}
+				catch (RuntimeException e) {
+					throw new IOException("Could not restore search parameter of type " + param.getClass().getName(), e);
+				}
+				
+				return param;
+			}
+			case LIST:
+			case SET: {
+				int size = in.readInt();
+				Collection<Object> values = type == LIST ? new ArrayList<>(size) : new HashSet<>();
+				for (int i = 0; i < size; i++) {
+					values.add(readValue(in, fhirContext));
+				}
+				
+				return values;
+			}
+			default:
+				throw new IOException("Unknown search parameter type " + type);
+		}
+	}
+	
+	private static void writeOrList(DataOutputStream out, BaseOrListParam<?, ?> orList, FhirContext fhirContext)
+	        throws IOException {
+		writeString(out, orList.getClass().getName());
+		
+		List<? extends IQueryParameterType> params = orList.getValuesAsQueryTokens();
+		out.writeInt(params.size());
+		for (IQueryParameterType param : params) {
+			writeParam(out, param, fhirContext);
+		}
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static BaseOrListParam<?, ?> readOrList(DataInputStream in, FhirContext fhirContext) throws IOException {
+		BaseOrListParam orList = newInstance(loadClass(readString(in), BaseOrListParam.class));
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			orList.addOr(readParam(in, fhirContext));
+		}
+		
+		return orList;
+	}
+	
+	private static void writeParam(DataOutputStream out, IQueryParameterType param, FhirContext fhirContext)
+	        throws IOException {
+		writeString(out, param.getClass().getName());
+		writeString(out, param.getQueryParameterQualifier());
+		writeString(out, param.getValueAsQueryToken(fhirContext));
+	}
+	
+	private static IQueryParameterType readParam(DataInputStream in, FhirContext fhirContext) throws IOException {
+		IQueryParameterType param = newInstance(loadClass(readString(in), IQueryParameterType.class));
+		String qualifier = readString(in);
+		String value = readString(in);
+		
+		try {
+			param.setValueAsQueryToken(fhirContext, null, qualifier, value);
+		}
+		catch (RuntimeException e) {
+			throw new IOException("Could not restore search parameter of type " + param.getClass().getName(), e);
+		}
+		
+		return param;
+	}
+	
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Loads a class named in a snapshot, which must be a subtype of the expected type. The class is only
+	 * initialized once it is known to be of that type, so a snapshot cannot cause arbitrary code to run.
+	 */
+	private static <T> Class<? extends T> loadClass(String className, Class<T> expectedType) throws IOException {
+		if (className == null) {
+			throw new IOException("Search snapshot is missing a class name");
+		}
+		
+		Class<?> type;
+		try {
+			type = Class.forName(className, false, SearchParameterMapCodec.class.getClassLoader());
+		}
+		catch (ClassNotFoundException e) {
+			throw new IOException("Search snapshot refers to the unknown class " + className, e);
+		}
+		
+		if (!expectedType.isAssignableFrom(type)) {
+			throw new IOException("Search snapshot refers to the unexpected class " + className);
+		}
+		
+		return type.asSubclass(expectedType);
+	}
+	
+	private static <T> T newInstance(Class<T> type) throws IOException {
+		try {
+			return type.getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IOException("Could not create search parameter of type " + type.getName(), e);
+		}
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <T extends Enum> T valueOf(Class<T> type, String name) throws IOException {
+		try {
+			return (T) Enum.valueOf(type, name);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException("Search snapshot refers to the unknown value " + name + " of " + type.getName(), e);
+		}
+	}
+}
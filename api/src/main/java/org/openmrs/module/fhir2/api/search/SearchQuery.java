@@ -9,6 +9,7 @@
  */
 package org.openmrs.module.fhir2.api.search;
 
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.SimpleBundleProvider;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -19,6 +20,7 @@ import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+import org.openmrs.module.fhir2.api.util.FhirRequestContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -53,6 +55,13 @@ public class SearchQuery<T extends OpenmrsObject & Auditable, U extends IBaseRes
 			result.setPreferredPageSize(result.size());
 			return result;
 		}
+		
+		// the requested total mode is kept with the parameters so it is preserved when the search is paged
+		SearchTotalModeEnum totalMode = FhirRequestContext.getSearchTotalMode();
+		if (totalMode != null && theParams.getParameters(FhirConstants.TOTAL_MODE_SEARCH_HANDLER).isEmpty()) {
+			theParams.addParameter(FhirConstants.TOTAL_MODE_SEARCH_HANDLER, totalMode);
+		}
+		
 		return new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude);
 	}
 }
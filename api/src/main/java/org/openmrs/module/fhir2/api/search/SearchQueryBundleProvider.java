@@ -13,7 +13,9 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import java.io.Serializable;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -22,7 +24,10 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import com.google.common.reflect.TypeToken;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
@@ -33,22 +38,36 @@ import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+import org.openmrs.module.fhir2.api.util.FhirRequestContext;
 import org.openmrs.module.fhir2.api.util.FhirUtils;
 import org.springframework.transaction.annotation.Transactional;
 
+@SuppressWarnings("UnstableApiUsage")
 public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U extends IBaseResource> implements IBundleProvider, Serializable {
 	
-	private static final long serialVersionUID = 4L;
+	private static final long serialVersionUID = 5L;
 	
+	/**
+	 * The largest total reported when the client requests {@code _total=estimate}; larger result sets
+	 * are reported without a total
+	 */
+	static final int MAXIMUM_ESTIMATED_TOTAL = 1000;
+	
+	@Getter(AccessLevel.PACKAGE)
 	private final FhirDao<T> dao;
 	
 	@Getter
 	private final IPrimitiveType<Date> published;
 	
+	@Getter(AccessLevel.PACKAGE)
 	private final SearchParameterMap searchParameterMap;
 	
+	@Getter(AccessLevel.PACKAGE)
 	private final ToFhirTranslator<T, U> translator;
 	
+	// the type of resource produced by the translator, used to share translated resources within a request
+	private final Class<?> resourceClass;
+	
 	@Getter
 	private final String uuid;
 	
@@ -58,31 +77,53 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 	
 	private transient Integer pageSize;
 	
-	private transient List<String> matchingResourceUuids;
+	// primary keys are kept rather than uuids as they take a fraction of the memory
+	private transient int[] matchingResourceIds;
+	
+	private transient Boolean windowed;
+	
+	private transient boolean countCalculated;
 	
+	@Getter(AccessLevel.PACKAGE)
 	private final SearchQueryInclude<U> searchQueryInclude;
 	
 	public SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao,
 	    ToFhirTranslator<T, U> translator, FhirGlobalPropertyService globalPropertyService,
 	    SearchQueryInclude<U> searchQueryInclude) {
+		this(searchParameterMap, dao, translator, globalPropertyService, searchQueryInclude, FhirUtils.newUuid(),
+		        InstantDt.withCurrentTime(), null);
+	}
+	
+	/**
+	 * Used to restore a search from a previously stored snapshot
+	 */
+	SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao, ToFhirTranslator<T, U> translator,
+	    FhirGlobalPropertyService globalPropertyService, SearchQueryInclude<U> searchQueryInclude, String uuid,
+	    IPrimitiveType<Date> published, int[] matchingResourceIds) {
 		this.dao = dao;
-		this.published = InstantDt.withCurrentTime();
+		this.published = published;
 		this.searchParameterMap = searchParameterMap;
 		this.translator = translator;
-		this.uuid = FhirUtils.newUuid();
+		this.resourceClass = getResourceClass(translator);
+		this.uuid = uuid;
 		this.globalPropertyService = globalPropertyService;
 		this.searchQueryInclude = searchQueryInclude;
+		this.matchingResourceIds = matchingResourceIds;
 	}
 	
 	@Transactional(readOnly = true)
 	@Override
 	@Nonnull
 	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
-		if (matchingResourceUuids == null) {
-			matchingResourceUuids = dao.getSearchResultUuids(searchParameterMap);
+		if (isWindowed()) {
+			return getWindowedResources(fromIndex, toIndex);
+		}
+		
+		if (matchingResourceIds == null) {
+			matchingResourceIds = dao.getSearchResultIds(searchParameterMap);
 		}
 		
-		if (matchingResourceUuids.isEmpty()) {
+		if (matchingResourceIds.length == 0) {
 			return Collections.emptyList();
 		}
 		
@@ -104,12 +145,52 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 			lastResult = Math.min(lastResult, toIndex);
 		}
 		
-		List<U> returnedResourceList = dao
-		        .getSearchResults(searchParameterMap, matchingResourceUuids.subList(firstResult, lastResult)).stream()
-		        .map(translator::toFhirResource).filter(Objects::nonNull).collect(Collectors.toList());
+		return translateAndInclude(dao.getSearchResultsByIds(searchParameterMap,
+		    Arrays.copyOfRange(matchingResourceIds, firstResult, lastResult)));
+	}
+	
+	/**
+	 * Loads only the requested window of results from the database, i.e. without first loading the
+	 * uuids of every matching resource
+	 */
+	private List<IBaseResource> getWindowedResources(int fromIndex, int toIndex) {
+		int firstResult = Math.max(fromIndex, 0);
+		
+		Integer size = countCalculated ? count : null;
+		if (size != null && firstResult >= size) {
+			return Collections.emptyList();
+		}
+		
+		int maxResults = toIndex > firstResult ? toIndex - firstResult : -1;
 		
+		List<T> results = dao.getSearchResults(searchParameterMap, firstResult, maxResults);
+		if (results.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		return translateAndInclude(results);
+	}
+	
+	/**
+	 * Loads at most the given number of results with a single limited query, i.e. without first
+	 * loading the primary keys of every matching resource
+	 *
+	 * @param maxResults the maximum number of results to load
+	 * @return the first results of this search
+	 */
+	List<IBaseResource> getFirstResources(int maxResults) {
+		return getWindowedResources(0, maxResults);
+	}
+	
+	private List<IBaseResource> translateAndInclude(List<T> results) {
+		List<U> returnedResourceList = results.stream()
+		        .map(result -> FhirRequestContext.getTranslatedResource(resourceClass, result, translator::toFhirResource))
+		        .filter(Objects::nonNull).collect(Collectors.toList());
+		
+		// the ids of included resources are read from the loaded objects where possible rather than from the translated
+		// resources
 		Set<IBaseResource> includedResources = searchQueryInclude.getIncludedResources(returnedResourceList,
-		    this.searchParameterMap);
+		    this.searchParameterMap, (resourceType, paramName) -> getIncludedUuids(results, resourceType, paramName));
 		
 		List<IBaseResource> resultList = new ArrayList<>(returnedResourceList);
 		resultList.addAll(includedResources);
@@ -117,6 +198,14 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 		return resultList;
 	}
 	
+	private List<String> getIncludedUuids(List<T> results, String resourceType, String paramName) {
+		if (resourceClass == null || !resourceClass.getSimpleName().equals(resourceType)) {
+			return null;
+		}
+		
+		return dao.getIncludedUuids(searchParameterMap, results, paramName);
+	}
+	
 	@Override
 	public Integer preferredPageSize() {
 		if (pageSize == null) {
@@ -129,14 +218,96 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 	@Override
 	@Nullable
 	public Integer size() {
-		if (matchingResourceUuids == null) {
-			matchingResourceUuids = dao.getSearchResultUuids(searchParameterMap);
+		if (isWindowed()) {
+			if (!countCalculated) {
+				count = countWindowedResults();
+				countCalculated = true;
+			}
+			
+			return count;
+		}
+		
+		if (matchingResourceIds == null) {
+			matchingResourceIds = dao.getSearchResultIds(searchParameterMap);
 		}
 		
 		if (count == null) {
-			count = matchingResourceUuids.size();
+			count = matchingResourceIds.length;
 		}
 		
 		return count;
 	}
+	
+	/**
+	 * Counts the matching resources, even if the client asked for no total or only an estimate
+	 *
+	 * @return the number of matching resources
+	 */
+	int countAll() {
+		Integer size = size();
+		return size != null ? size : dao.getSearchResultsCount(searchParameterMap);
+	}
+	
+	private Integer countWindowedResults() {
+		SearchTotalModeEnum totalMode = getSearchTotalMode();
+		if (totalMode == SearchTotalModeEnum.NONE) {
+			return null;
+		}
+		
+		if (totalMode == SearchTotalModeEnum.ESTIMATED) {
+			int bounded = dao.getSearchResultsCount(searchParameterMap, MAXIMUM_ESTIMATED_TOTAL + 1);
+			return bounded > MAXIMUM_ESTIMATED_TOTAL ? null : bounded;
+		}
+		
+		return dao.getSearchResultsCount(searchParameterMap);
+	}
+	
+	private boolean isWindowed() {
+		if (windowed == null) {
+			// a client that asks about the total only wants the current page, so there is no need to load every match
+			windowed = getSearchTotalMode() != null || Boolean.parseBoolean(
+			    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_WINDOWED_PAGING, "false"));
+		}
+		
+		return windowed;
+	}
+	
+	private SearchTotalModeEnum getSearchTotalMode() {
+		return searchParameterMap.getParameters(FhirConstants.TOTAL_MODE_SEARCH_HANDLER).stream().findFirst()
+		        .map(param -> (SearchTotalModeEnum) param.getParam()).orElse(null);
+	}
+	
+	/**
+	 * @return the concrete type of resource the translator returns or null if it cannot be determined
+	 */
+	private static Class<?> getResourceClass(ToFhirTranslator<?, ?> translator) {
+		if (translator == null) {
+			return null;
+		}
+		
+		Class<?> resourceClass = TypeToken.of(translator.getClass())
+		        .resolveType(ToFhirTranslator.class.getTypeParameters()[1]).getRawType();
+		
+		if (resourceClass.isInterface() || Modifier.isAbstract(resourceClass.getModifiers())) {
+			return null;
+		}
+		
+		return resourceClass;
+	}
+	
+	/**
+	 * @return the primary keys of all resources matching this search in search order, or null if this
+	 *         search is paged in the database
+	 */
+	int[] getMatchingResourceIds() {
+		if (isWindowed()) {
+			return null;
+		}
+		
+		if (matchingResourceIds == null) {
+			matchingResourceIds = dao.getSearchResultIds(searchParameterMap);
+		}
+		
+		return matchingResourceIds;
+	}
 }
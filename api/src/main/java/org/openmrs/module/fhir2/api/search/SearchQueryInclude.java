@@ -10,18 +10,29 @@
 package org.openmrs.module.fhir2.api.search;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceOrListParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
+import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import org.apache.commons.collections.CollectionUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.AllergyIntolerance;
@@ -31,15 +42,18 @@ import org.hl7.fhir.r4.model.Encounter;
 import org.hl7.fhir.r4.model.Location;
 import org.hl7.fhir.r4.model.MedicationRequest;
 import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.Person;
 import org.hl7.fhir.r4.model.Reference;
 import org.hl7.fhir.r4.model.RelatedPerson;
+import org.hl7.fhir.r4.model.Resource;
 import org.hl7.fhir.r4.model.ServiceRequest;
 import org.hl7.fhir.r4.model.Task;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirAllergyIntoleranceService;
 import org.openmrs.module.fhir2.api.FhirDiagnosticReportService;
 import org.openmrs.module.fhir2.api.FhirEncounterService;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.FhirLocationService;
 import org.openmrs.module.fhir2.api.FhirMedicationRequestService;
 import org.openmrs.module.fhir2.api.FhirMedicationService;
@@ -54,8 +68,27 @@ import org.springframework.stereotype.Component;
 
 @Component
 @NoArgsConstructor
+@Setter(AccessLevel.PACKAGE)
 public class SearchQueryInclude<U extends IBaseResource> {
 	
+	// the most resources returned for each _revinclude when the global property is not set
+	private static final int DEFAULT_REVERSE_INCLUDE_MAXIMUM = 1000;
+	
+	private static final int DEFAULT_INCLUDE_ITERATE_MAXIMUM_DEPTH = 5;
+	
+	private static final int DEFAULT_INCLUDE_ITERATE_MAXIMUM = 1000;
+	
+	/**
+	 * The include parameters considered for {@code _include=*}; only those that apply to the type of
+	 * resource being searched are resolved
+	 */
+	private static final List<String> WILDCARD_INCLUDE_PARAMS = Collections.unmodifiableList(
+	    Arrays.asList(FhirConstants.INCLUDE_PART_OF_PARAM, FhirConstants.INCLUDE_ENCOUNTER_PARAM,
+	        FhirConstants.INCLUDE_PATIENT_PARAM, FhirConstants.INCLUDE_HAS_MEMBER_PARAM,
+	        FhirConstants.INCLUDE_PARTICIPANT_PARAM, FhirConstants.INCLUDE_LOCATION_PARAM,
+	        FhirConstants.INCLUDE_MEDICATION_PARAM, FhirConstants.INCLUDE_LINK_PARAM, FhirConstants.INCLUDE_BASED_0N_PARAM,
+	        FhirConstants.INCLUDE_OWNER_PARAM));
+	
 	@Autowired
 	private FhirLocationService locationService;
 	
@@ -86,9 +119,26 @@ public class SearchQueryInclude<U extends IBaseResource> {
 	@Autowired
 	private FhirAllergyIntoleranceService allergyIntoleranceService;
 	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
 	public Set<IBaseResource> getIncludedResources(List<U> resourceList, SearchParameterMap theParams) {
+		return getIncludedResources(resourceList, theParams, null);
+	}
+	
+	/**
+	 * Resolves the includes and reverse includes for a page of resources
+	 *
+	 * @param resourceList the page of resources
+	 * @param theParams the parameters of the search the page belongs to
+	 * @param includedIdsLookup used to find the ids referenced by the page without reading the references
+	 *            of the translated resources, may be null
+	 * @return the included resources
+	 */
+	public Set<IBaseResource> getIncludedResources(List<U> resourceList, SearchParameterMap theParams,
+	        IncludedIdsLookup includedIdsLookup) {
 		List<PropParam<?>> includeParamList = theParams.getParameters(FhirConstants.INCLUDE_SEARCH_HANDLER);
-		Set<IBaseResource> _includeResources = handleInclude(resourceList, includeParamList);
+		Set<IBaseResource> _includeResources = handleInclude(resourceList, includeParamList, includedIdsLookup);
 		
 		List<PropParam<?>> revIncludeParamList = theParams.getParameters(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER);
 		Set<IBaseResource> _revIncludeResources = handleRevInclude(resourceList, revIncludeParamList);
@@ -100,11 +150,18 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		return resourcesToBeReturned;
 	}
 	
+	/**
+	 * Resolves the {@code _revinclude} parameters for a page of resources. Each reverse include is
+	 * loaded with a single limited query, and at most
+	 * {@link FhirConstants#OPENMRS_FHIR_REVERSE_INCLUDE_MAXIMUM} resources of each type are returned.
+	 * If any reverse include had to be truncated, a warning {@link OperationOutcome} is added to the
+	 * returned resources.
+	 */
 	@SuppressWarnings("unchecked")
 	private Set<IBaseResource> handleRevInclude(List<U> resourceList, List<PropParam<?>> revIncludeParamList) {
 		Set<IBaseResource> revIncludedResourcesSet = new HashSet<>();
 		
-		if (CollectionUtils.isEmpty(revIncludeParamList)) {
+		if (CollectionUtils.isEmpty(revIncludeParamList) || resourceList.isEmpty()) {
 			return revIncludedResourcesSet;
 		}
 		
@@ -113,101 +170,411 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		resourceList.forEach(resource -> params.addOr(new ReferenceParam(resource.getIdElement().getIdPart())));
 		referenceParams.addAnd(params);
 		
+		Map<String, Integer> remainingByType = new HashMap<>();
+		List<Include> truncatedRevIncludes = new ArrayList<>();
+		
 		Set<Include> revIncludeSet = (HashSet<Include>) revIncludeParamList.get(0).getParam();
 		revIncludeSet.forEach(revIncludeParam -> {
+			String targetType = revIncludeParam.getParamType();
+			if (revIncludeParam.getParamName() == null || targetType == null) {
+				return;
+			}
+			
 			IBundleProvider bundleProvider = null;
 			switch (revIncludeParam.getParamName()) {
 				case FhirConstants.INCLUDE_PART_OF_PARAM:
 				case FhirConstants.INCLUDE_LOCATION_PARAM:
-					bundleProvider = handleLocationReverseInclude(referenceParams, revIncludeParam.getParamType());
+					bundleProvider = handleLocationReverseInclude(referenceParams, targetType);
 					break;
 				case FhirConstants.INCLUDE_CONTEXT_PARAM:
 				case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
-					bundleProvider = handleEncounterReverseInclude(referenceParams, revIncludeParam.getParamType());
+					bundleProvider = handleEncounterReverseInclude(referenceParams, targetType);
 					break;
 				case FhirConstants.INCLUDE_MEDICATION_PARAM:
-					bundleProvider = handleMedicationReverseInclude(referenceParams, revIncludeParam.getParamType());
+					bundleProvider = handleMedicationReverseInclude(referenceParams, targetType);
 					break;
 				case FhirConstants.INCLUDE_PATIENT_PARAM:
-					bundleProvider = handlePatientReverseInclude(referenceParams, revIncludeParam.getParamType());
+					bundleProvider = handlePatientReverseInclude(referenceParams, targetType);
 					break;
 				case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
 				case FhirConstants.INCLUDE_RESULT_PARAM:
 				case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
-					bundleProvider = handleObservationReverseInclude(referenceParams, revIncludeParam.getParamType());
+					bundleProvider = handleObservationReverseInclude(referenceParams, targetType);
 					break;
 				case FhirConstants.INCLUDE_REQUESTER_PARAM:
 				case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
-					bundleProvider = handlePractitionerReverseInclude(referenceParams, revIncludeParam.getParamType());
+					bundleProvider = handlePractitionerReverseInclude(referenceParams, targetType);
 					break;
 			}
 			
-			if (bundleProvider != null) {
-				revIncludedResourcesSet.addAll(bundleProvider.getResources(0, -1));
+			if (bundleProvider == null) {
+				return;
+			}
+			
+			int remaining = remainingByType.computeIfAbsent(targetType, this::getReverseIncludeMaximum);
+			if (remaining <= 0) {
+				truncatedRevIncludes.add(revIncludeParam);
+				return;
+			}
+			
+			// one more than the remaining maximum is requested to find out whether the results were truncated
+			List<IBaseResource> revIncludedResources = getFirstResources(bundleProvider, remaining + 1);
+			if (revIncludedResources.size() > remaining) {
+				revIncludedResources = revIncludedResources.subList(0, remaining);
+				truncatedRevIncludes.add(revIncludeParam);
 			}
+			
+			revIncludedResourcesSet.addAll(revIncludedResources);
+			remainingByType.put(targetType, remaining - revIncludedResources.size());
 		});
 		
+		if (!truncatedRevIncludes.isEmpty()) {
+			revIncludedResourcesSet.add(createIncompleteResultsOutcome(truncatedRevIncludes.stream()
+			        .map(revInclude -> "Results for _revinclude=" + revInclude.getValue()
+			                + " were truncated as they exceeded the maximum number of reverse included resources")
+			        .collect(Collectors.toList())));
+		}
+		
 		return revIncludedResourcesSet;
 	}
 	
-	@SuppressWarnings("unchecked")
+	private int getReverseIncludeMaximum(String resourceType) {
+		Integer maximum = globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_REVERSE_INCLUDE_MAXIMUM,
+		    DEFAULT_REVERSE_INCLUDE_MAXIMUM);
+		return globalPropertyService
+		        .getGlobalProperty(FhirConstants.OPENMRS_FHIR_REVERSE_INCLUDE_MAXIMUM + "." + resourceType, maximum);
+	}
+	
+	static List<IBaseResource> getFirstResources(IBundleProvider bundleProvider, int maxResults) {
+		if (bundleProvider instanceof SearchQueryBundleProvider) {
+			return ((SearchQueryBundleProvider<?, ?>) bundleProvider).getFirstResources(maxResults);
+		}
+		
+		if (bundleProvider instanceof TwoSearchQueryBundleProvider) {
+			return ((TwoSearchQueryBundleProvider) bundleProvider).getFirstResources(maxResults);
+		}
+		
+		return bundleProvider.getResources(0, maxResults);
+	}
+	
+	private static OperationOutcome createIncompleteResultsOutcome(List<String> diagnostics) {
+		OperationOutcome outcome = new OperationOutcome();
+		diagnostics.forEach(diagnostic -> {
+			OperationOutcome.OperationOutcomeIssueComponent issue = outcome.addIssue();
+			issue.setSeverity(OperationOutcome.IssueSeverity.WARNING);
+			issue.setCode(OperationOutcome.IssueType.INCOMPLETE);
+			issue.setDiagnostics(diagnostic);
+		});
+		
+		ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(outcome, BundleEntrySearchModeEnum.OUTCOME);
+		return outcome;
+	}
+	
+	/**
+	 * Resolves the {@code _include} parameters for a page of resources. The ids referenced by every
+	 * include are collected first, grouped by the type of resource they refer to, so that each type
+	 * is loaded with a single query no matter how many includes or resources refer to it.
+	 * <p/>
+	 * Includes with the {@code :iterate} modifier are then applied to the included resources again
+	 * until no new resources are found. Resources are never loaded twice, which also ends cycles such
+	 * as Location partOf chains, and the number of iterations and of resources they load is limited by
+	 * {@link FhirConstants#OPENMRS_FHIR_INCLUDE_ITERATE_MAXIMUM_DEPTH} and
+	 * {@link FhirConstants#OPENMRS_FHIR_INCLUDE_ITERATE_MAXIMUM}. If either limit is reached, a warning
+	 * {@link OperationOutcome} is added to the returned resources.
+	 */
 	public Set<IBaseResource> handleInclude(List<U> resourceList, List<PropParam<?>> includeParamList) {
+		return handleInclude(resourceList, includeParamList, null);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Set<IBaseResource> handleInclude(List<U> resourceList, List<PropParam<?>> includeParamList,
+	        IncludedIdsLookup includedIdsLookup) {
 		Set<IBaseResource> includedResourcesSet = new HashSet<>();
 		
-		if (CollectionUtils.isEmpty(includeParamList)) {
+		if (CollectionUtils.isEmpty(includeParamList) || resourceList.isEmpty()) {
 			return includedResourcesSet;
 		}
 		
 		Set<Include> includeSet = (HashSet<Include>) includeParamList.get(0).getParam();
-		includeSet.forEach(includeParam -> {
-			switch (includeParam.getParamName()) {
-				case FhirConstants.INCLUDE_PART_OF_PARAM:
-					includedResourcesSet.addAll(handleParentLocationInclude((List<Location>) resourceList));
-					break;
-				case FhirConstants.INCLUDE_CONTEXT_PARAM:
-				case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
-					includedResourcesSet.addAll(handleEncounterInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_PATIENT_PARAM:
-					includedResourcesSet.addAll(handlePatientInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
-				case FhirConstants.INCLUDE_RESULT_PARAM:
-				case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
-					includedResourcesSet.addAll(handleObsGroupInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_REQUESTER_PARAM:
-				case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
-					includedResourcesSet.addAll(handleParticipantInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_LOCATION_PARAM:
-					includedResourcesSet.addAll(handleLocationInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_MEDICATION_PARAM:
-					includedResourcesSet.addAll(handleMedicationInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_LINK_PARAM:
-					includedResourcesSet.addAll(handlePersonLinkInclude(resourceList, includeParam.getParamTargetType()));
-					break;
-				case FhirConstants.INCLUDE_BASED_0N_PARAM:
-					includedResourcesSet.addAll(handleServiceRequestInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_OWNER_PARAM:
-					includedResourcesSet.addAll(handlePractitionerInclude(resourceList, includeParam.getParamType()));
-					break;
+		
+		// resources that are already part of the page do not need to be loaded again
+		Map<String, Set<String>> loadedIdsByType = new HashMap<>();
+		resourceList.forEach(
+		    resource -> idsOfType(loadedIdsByType, getResourceType(resource)).add(resource.getIdElement().getIdPart()));
+		
+		Map<String, Set<String>> includedIdsByType = collectIncludedIds(resourceList, includeSet, loadedIdsByType,
+		    includedIdsLookup);
+		List<IBaseResource> includedResources = getResourcesByType(includedIdsByType);
+		includedResourcesSet.addAll(includedResources);
+		
+		List<Include> iterateIncludes = includeSet.stream().filter(Include::isRecurse).collect(Collectors.toList());
+		if (iterateIncludes.isEmpty()) {
+			return includedResourcesSet;
+		}
+		
+		int maximumDepth = globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_INCLUDE_ITERATE_MAXIMUM_DEPTH,
+		    DEFAULT_INCLUDE_ITERATE_MAXIMUM_DEPTH);
+		int remaining = globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_INCLUDE_ITERATE_MAXIMUM,
+		    DEFAULT_INCLUDE_ITERATE_MAXIMUM);
+		
+		String truncation = null;
+		for (int depth = 2; !includedResources.isEmpty(); depth++) {
+			includedIdsByType = collectIncludedIds(includedResources, iterateIncludes, loadedIdsByType, null);
+			
+			int found = includedIdsByType.values().stream().mapToInt(Set::size).sum();
+			if (found == 0) {
+				break;
 			}
-		});
+			
+			if (depth > maximumDepth) {
+				truncation = "Results for _include:iterate were truncated after " + maximumDepth + " levels of includes";
+				break;
+			}
+			
+			if (found > remaining) {
+				truncation = "Results for _include:iterate were truncated as they exceeded the maximum number of "
+				        + "included resources";
+				limitIds(includedIdsByType, remaining);
+			}
+			
+			includedResources = getResourcesByType(includedIdsByType);
+			includedResourcesSet.addAll(includedResources);
+			remaining -= includedResources.size();
+			
+			if (truncation != null) {
+				break;
+			}
+		}
+		
+		if (truncation != null) {
+			includedResourcesSet.add(createIncompleteResultsOutcome(Collections.singletonList(truncation)));
+		}
 		
 		return includedResourcesSet;
 	}
 	
+	/**
+	 * Collects the ids of the resources referenced by the given includes, grouped by resource type.
+	 * Ids already present in loadedIdsByType are skipped, and the collected ids are added to it.
+	 */
+	private Map<String, Set<String>> collectIncludedIds(List<? extends IBaseResource> resourceList,
+	        Collection<Include> includes, Map<String, Set<String>> loadedIdsByType, IncludedIdsLookup includedIdsLookup) {
+		Map<String, List<IBaseResource>> resourcesByType = new LinkedHashMap<>();
+		resourceList.forEach(
+		    resource -> resourcesByType.computeIfAbsent(getResourceType(resource), k -> new ArrayList<>()).add(resource));
+		
+		Map<String, Set<String>> includedIdsByType = new LinkedHashMap<>();
+		includes.forEach(includeParam -> {
+			if (isWildcard(includeParam)) {
+				resourcesByType.forEach((resourceType, resources) -> WILDCARD_INCLUDE_PARAMS.forEach(paramName -> {
+					if (!lookupIncludedIds(resources, paramName, resourceType, null, includedIdsByType, includedIdsLookup)) {
+						collectIncludedIds(resources, paramName, resourceType, null, includedIdsByType);
+					}
+				}));
+			} else {
+				List<IBaseResource> resources = getResourcesOfType(resourcesByType, includeParam.getParamType());
+				String resourceType = getSearchedResourceType(includeParam.getParamType());
+				if (!lookupIncludedIds(resources, includeParam.getParamName(), resourceType,
+				    includeParam.getParamTargetType(), includedIdsByType, includedIdsLookup)) {
+					collectIncludedIds(resources, includeParam.getParamName(), includeParam.getParamType(),
+					    includeParam.getParamTargetType(), includedIdsByType);
+				}
+			}
+		});
+		
+		includedIdsByType.forEach((resourceType, includedIds) -> {
+			includedIds.removeIf(Objects::isNull);
+			includedIds.removeAll(loadedIdsByType.getOrDefault(resourceType, Collections.emptySet()));
+			idsOfType(loadedIdsByType, resourceType).addAll(includedIds);
+		});
+		
+		return includedIdsByType;
+	}
+	
+	/**
+	 * Uses the lookup to find the ids referenced by an include, if the lookup supports it
+	 *
+	 * @return true if the ids were found by the lookup, false if they need to be read from the references
+	 *         of the resources
+	 */
+	private static boolean lookupIncludedIds(List<? extends IBaseResource> resourceList, String paramName,
+	        String resourceType, String targetType, Map<String, Set<String>> includedIdsByType,
+	        IncludedIdsLookup includedIdsLookup) {
+		if (includedIdsLookup == null || resourceList.isEmpty() || paramName == null || resourceType == null) {
+			return false;
+		}
+		
+		String includedType = getIncludedResourceType(paramName);
+		if (includedType == null || (targetType != null && !targetType.equals(includedType))) {
+			return false;
+		}
+		
+		List<String> includedIds = includedIdsLookup.getIncludedIds(resourceType, paramName);
+		if (includedIds == null) {
+			return false;
+		}
+		
+		idsOfType(includedIdsByType, includedType).addAll(includedIds);
+		return true;
+	}
+	
+	/**
+	 * @return the type of resource an include parameter refers to, or null if that depends on the
+	 *         resource being included from
+	 */
+	private static String getIncludedResourceType(String paramName) {
+		switch (paramName) {
+			case FhirConstants.INCLUDE_PART_OF_PARAM:
+			case FhirConstants.INCLUDE_LOCATION_PARAM:
+				return FhirConstants.LOCATION;
+			case FhirConstants.INCLUDE_CONTEXT_PARAM:
+			case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
+				return FhirConstants.ENCOUNTER;
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+			case FhirConstants.INCLUDE_LINK_PARAM:
+				return FhirConstants.PATIENT;
+			case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
+			case FhirConstants.INCLUDE_RESULT_PARAM:
+			case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
+				return FhirConstants.OBSERVATION;
+			case FhirConstants.INCLUDE_REQUESTER_PARAM:
+			case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
+			case FhirConstants.INCLUDE_OWNER_PARAM:
+				return FhirConstants.PRACTITIONER;
+			case FhirConstants.INCLUDE_MEDICATION_PARAM:
+				return FhirConstants.MEDICATION;
+			case FhirConstants.INCLUDE_BASED_0N_PARAM:
+				return FhirConstants.SERVICE_REQUEST;
+		}
+		
+		return null;
+	}
+	
+	private List<IBaseResource> getResourcesByType(Map<String, Set<String>> includedIdsByType) {
+		List<IBaseResource> includedResources = new ArrayList<>();
+		includedIdsByType.forEach((resourceType, includedIds) -> {
+			if (!includedIds.isEmpty()) {
+				includedResources.addAll(getResourcesByType(resourceType, includedIds));
+			}
+		});
+		
+		return includedResources;
+	}
+	
+	private static void limitIds(Map<String, Set<String>> idsByType, int maximum) {
+		int remaining = Math.max(maximum, 0);
+		for (Set<String> ids : idsByType.values()) {
+			Iterator<String> iterator = ids.iterator();
+			while (iterator.hasNext()) {
+				iterator.next();
+				if (remaining > 0) {
+					remaining--;
+				} else {
+					iterator.remove();
+				}
+			}
+		}
+	}
+	
+	private static List<IBaseResource> getResourcesOfType(Map<String, List<IBaseResource>> resourcesByType,
+	        String paramType) {
+		return resourcesByType.getOrDefault(getSearchedResourceType(paramType), Collections.emptyList());
+	}
+	
+	private static String getSearchedResourceType(String paramType) {
+		// ProcedureRequests are represented as ServiceRequests internally
+		return FhirConstants.PROCEDURE_REQUEST.equals(paramType) ? FhirConstants.SERVICE_REQUEST : paramType;
+	}
+	
+	private void collectIncludedIds(List<? extends IBaseResource> resourceList, String paramName, String paramType,
+	        String targetType, Map<String, Set<String>> includedIdsByType) {
+		if (paramName == null || paramType == null) {
+			return;
+		}
+		
+		switch (paramName) {
+			case FhirConstants.INCLUDE_PART_OF_PARAM:
+				collectParentLocationInclude(resourceList, paramType, idsOfType(includedIdsByType, FhirConstants.LOCATION));
+				break;
+			case FhirConstants.INCLUDE_CONTEXT_PARAM:
+			case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
+				collectEncounterInclude(resourceList, paramType, idsOfType(includedIdsByType, FhirConstants.ENCOUNTER));
+				break;
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+				collectPatientInclude(resourceList, paramType, idsOfType(includedIdsByType, FhirConstants.PATIENT));
+				break;
+			case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
+			case FhirConstants.INCLUDE_RESULT_PARAM:
+			case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
+				collectObsGroupInclude(resourceList, paramType, idsOfType(includedIdsByType, FhirConstants.OBSERVATION));
+				break;
+			case FhirConstants.INCLUDE_REQUESTER_PARAM:
+			case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
+				collectParticipantInclude(resourceList, paramType,
+				    idsOfType(includedIdsByType, FhirConstants.PRACTITIONER));
+				break;
+			case FhirConstants.INCLUDE_LOCATION_PARAM:
+				collectLocationInclude(resourceList, paramType, idsOfType(includedIdsByType, FhirConstants.LOCATION));
+				break;
+			case FhirConstants.INCLUDE_MEDICATION_PARAM:
+				collectMedicationInclude(resourceList, paramType, idsOfType(includedIdsByType, FhirConstants.MEDICATION));
+				break;
+			case FhirConstants.INCLUDE_LINK_PARAM:
+				collectPersonLinkInclude(resourceList, paramType, targetType,
+				    idsOfType(includedIdsByType, FhirConstants.PATIENT));
+				break;
+			case FhirConstants.INCLUDE_BASED_0N_PARAM:
+				collectServiceRequestInclude(resourceList, paramType,
+				    idsOfType(includedIdsByType, FhirConstants.SERVICE_REQUEST));
+				break;
+			case FhirConstants.INCLUDE_OWNER_PARAM:
+				collectPractitionerInclude(resourceList, paramType,
+				    idsOfType(includedIdsByType, FhirConstants.PRACTITIONER));
+				break;
+		}
+	}
+	
+	private List<? extends IBaseResource> getResourcesByType(String resourceType, Set<String> uuids) {
+		switch (resourceType) {
+			case FhirConstants.LOCATION:
+				return locationService.get(uuids);
+			case FhirConstants.ENCOUNTER:
+				return encounterService.get(uuids);
+			case FhirConstants.PATIENT:
+				return patientService.get(uuids);
+			case FhirConstants.OBSERVATION:
+				return observationService.get(uuids);
+			case FhirConstants.PRACTITIONER:
+				return practitionerService.get(uuids);
+			case FhirConstants.MEDICATION:
+				return medicationService.get(uuids);
+			case FhirConstants.SERVICE_REQUEST:
+				return serviceRequestService.get(uuids);
+		}
+		
+		return Collections.emptyList();
+	}
+	
+	private static Set<String> idsOfType(Map<String, Set<String>> includedIdsByType, String resourceType) {
+		return includedIdsByType.computeIfAbsent(resourceType, k -> new HashSet<>());
+	}
+	
+	private static boolean isWildcard(Include include) {
+		return "*".equals(include.getValue()) || "*".equals(include.getParamName());
+	}
+	
+	private static String getResourceType(IBaseResource resource) {
+		return resource instanceof Resource ? ((Resource) resource).fhirType() : null;
+	}
+	
 	private IBundleProvider handleLocationReverseInclude(ReferenceAndListParam params, String targetType) {
 		switch (targetType) {
 			case FhirConstants.LOCATION:
 				return locationService.searchForLocations(null, null, null, null, null, null, params, null, null, null, null,
 				    null);
 			case FhirConstants.ENCOUNTER:
-				return encounterService.searchForEncounters(null, params, null, null, null, null, null, null, null, null);
+				return encounterService.searchForEncounters(
+				    new SearchParameterMap().addParameter(FhirConstants.LOCATION_REFERENCE_SEARCH_HANDLER, params));
 		}
 		
 		return null;
@@ -229,7 +596,8 @@ public class SearchQueryInclude<U extends IBaseResource> {
 	private IBundleProvider handlePractitionerReverseInclude(ReferenceAndListParam params, String targetType) {
 		switch (targetType) {
 			case FhirConstants.ENCOUNTER:
-				return encounterService.searchForEncounters(null, null, params, null, null, null, null, null, null, null);
+				return encounterService.searchForEncounters(
+				    new SearchParameterMap().addParameter(FhirConstants.PARTICIPANT_REFERENCE_SEARCH_HANDLER, params));
 			case FhirConstants.MEDICATION_REQUEST:
 				return medicationRequestService.searchForMedicationRequests(null, null, null, params, null, null, null,
 				    null);
@@ -282,7 +650,8 @@ public class SearchQueryInclude<U extends IBaseResource> {
 				return allergyIntoleranceService.searchForAllergies(params, null, null, null, null, null, null, null, null,
 				    null);
 			case FhirConstants.ENCOUNTER:
-				return encounterService.searchForEncounters(null, null, null, params, null, null, null, null, null, null);
+				return encounterService.searchForEncounters(
+				    new SearchParameterMap().addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, params));
 			case FhirConstants.MEDICATION_REQUEST:
 				return medicationRequestService.searchForMedicationRequests(params, null, null, null, null, null, null,
 				    null);
@@ -294,54 +663,43 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		return null;
 	}
 	
-	private List<Location> handleParentLocationInclude(List<Location> resourceList) {
-		Set<String> uniqueParentLocationUUIDs = resourceList.stream().map(Location::getPartOf)
-		        .map(SearchQueryInclude::getIdFromReference).filter(Objects::nonNull).collect(Collectors.toSet());
-		
-		return locationService.get(uniqueParentLocationUUIDs);
+	private void collectParentLocationInclude(List<? extends IBaseResource> resourceList, String paramType,
+	        Set<String> uniqueLocationUUIDs) {
+		switch (paramType) {
+			case FhirConstants.LOCATION:
+				resourceList.forEach(
+				    resource -> uniqueLocationUUIDs.add(getIdFromReference(((Location) resource).getPartOf())));
+				break;
+		}
 	}
 	
-	private Set<IBaseResource> handlePersonLinkInclude(List<U> resourceList, String targetType) {
-		Set<IBaseResource> includedResources = new HashSet<>();
-		
-		switch (targetType) {
-			case FhirConstants.PATIENT:
-				resourceList.forEach(resource -> {
-					List<Reference> patientReferenceList = new ArrayList<>();
-					((Person) resource).getLink().stream()
-					        .filter(res -> res.getTarget().getType().equals(FhirConstants.PATIENT))
-					        .forEach(patient -> patientReferenceList.add(patient.getTarget()));
-					
-					includedResources
-					        .addAll(patientService.get(new HashSet<>(getIdsFromReferenceList(patientReferenceList))));
-				});
-				break;
+	private void collectPersonLinkInclude(List<? extends IBaseResource> resourceList, String paramType, String targetType,
+	        Set<String> uniquePatientUUIDs) {
+		if (!FhirConstants.PERSON.equals(paramType) || (targetType != null && !FhirConstants.PATIENT.equals(targetType))) {
+			return;
 		}
 		
-		return includedResources;
+		resourceList.forEach(resource -> {
+			List<Reference> patientReferenceList = new ArrayList<>();
+			((Person) resource).getLink().stream()
+			        .filter(res -> FhirConstants.PATIENT.equals(res.getTarget().getType()))
+			        .forEach(patient -> patientReferenceList.add(patient.getTarget()));
+			uniquePatientUUIDs.addAll(getIdsFromReferenceList(patientReferenceList));
+		});
 	}
 	
-	private Set<IBaseResource> handleMedicationInclude(List<U> resourceList, String paramType) {
-		Set<IBaseResource> includedResources = new HashSet<>();
-		Set<String> uniqueMedicationUUIDs = new HashSet<>();
-		
+	private void collectMedicationInclude(List<? extends IBaseResource> resourceList, String paramType,
+	        Set<String> uniqueMedicationUUIDs) {
 		switch (paramType) {
 			case FhirConstants.MEDICATION_REQUEST:
 				resourceList.forEach(resource -> uniqueMedicationUUIDs
 				        .add(getIdFromReference(((MedicationRequest) resource).getMedicationReference())));
 				break;
 		}
-		
-		uniqueMedicationUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(medicationService.get(uniqueMedicationUUIDs));
-		
-		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleLocationInclude(List<U> resourceList, String paramType) {
-		Set<IBaseResource> includedResources = new HashSet<>();
-		Set<String> uniqueLocationUUIDs = new HashSet<>();
-		
+	private void collectLocationInclude(List<? extends IBaseResource> resourceList, String paramType,
+	        Set<String> uniqueLocationUUIDs) {
 		switch (paramType) {
 			case FhirConstants.ENCOUNTER:
 				resourceList.forEach(resource -> {
@@ -352,17 +710,10 @@ public class SearchQueryInclude<U extends IBaseResource> {
 				});
 				break;
 		}
-		
-		uniqueLocationUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(locationService.get(uniqueLocationUUIDs));
-		
-		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleParticipantInclude(List<U> resourceList, String paramType) {
-		Set<IBaseResource> includedResources = new HashSet<>();
-		Set<String> uniqueParticipantUUIDs = new HashSet<>();
-		
+	private void collectParticipantInclude(List<? extends IBaseResource> resourceList, String paramType,
+	        Set<String> uniqueParticipantUUIDs) {
 		switch (paramType) {
 			case FhirConstants.ENCOUNTER:
 				resourceList.forEach(resource -> {
@@ -382,17 +733,10 @@ public class SearchQueryInclude<U extends IBaseResource> {
 				    resource -> uniqueParticipantUUIDs.add(getIdFromReference(((ServiceRequest) resource).getRequester())));
 				break;
 		}
-		
-		uniqueParticipantUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(practitionerService.get(uniqueParticipantUUIDs));
-		
-		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleObsGroupInclude(List<U> resourceList, String paramType) {
-		Set<IBaseResource> includedResources = new HashSet<>();
-		Set<String> uniqueObservationUUIDs = new HashSet<>();
-		
+	private void collectObsGroupInclude(List<? extends IBaseResource> resourceList, String paramType,
+	        Set<String> uniqueObservationUUIDs) {
 		switch (paramType) {
 			case FhirConstants.OBSERVATION:
 				resourceList.forEach(resource -> uniqueObservationUUIDs
@@ -403,17 +747,10 @@ public class SearchQueryInclude<U extends IBaseResource> {
 				        .addAll(getIdsFromReferenceList(((DiagnosticReport) resource).getResult())));
 				break;
 		}
-		
-		uniqueObservationUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(observationService.get(uniqueObservationUUIDs));
-		
-		return includedResources;
 	}
 	
-	private Set<IBaseResource> handlePatientInclude(List<U> resourceList, String paramType) {
-		Set<IBaseResource> includedResources = new HashSet<>();
-		Set<String> uniquePatientUUIDs = new HashSet<>();
-		
+	private void collectPatientInclude(List<? extends IBaseResource> resourceList, String paramType,
+	        Set<String> uniquePatientUUIDs) {
 		switch (paramType) {
 			case FhirConstants.OBSERVATION:
 				resourceList.forEach(
@@ -459,17 +796,10 @@ public class SearchQueryInclude<U extends IBaseResource> {
 				resourceList.forEach(resource -> uniquePatientUUIDs.add(getIdFromReference(((Task) resource).getFor())));
 				break;
 		}
-		
-		uniquePatientUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(patientService.get(uniquePatientUUIDs));
-		
-		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleEncounterInclude(List<U> resourceList, String paramType) {
-		Set<IBaseResource> includedResources = new HashSet<>();
-		Set<String> uniqueEncounterUUIDs = new HashSet<>();
-		
+	private void collectEncounterInclude(List<? extends IBaseResource> resourceList, String paramType,
+	        Set<String> uniqueEncounterUUIDs) {
 		switch (paramType) {
 			case FhirConstants.OBSERVATION:
 				resourceList.forEach(
@@ -493,17 +823,10 @@ public class SearchQueryInclude<U extends IBaseResource> {
 				        .forEach(resource -> uniqueEncounterUUIDs.add(getIdFromReference(((Task) resource).getEncounter())));
 				break;
 		}
-		
-		uniqueEncounterUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(encounterService.get(uniqueEncounterUUIDs));
-		
-		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleServiceRequestInclude(List<U> resourceList, String paramType) {
-		Set<IBaseResource> includedResources = new HashSet<>();
-		Set<String> uniqueServiceRequestUUIDs = new HashSet<>();
-		
+	private void collectServiceRequestInclude(List<? extends IBaseResource> resourceList, String paramType,
+	        Set<String> uniqueServiceRequestUUIDs) {
 		switch (paramType) {
 			case FhirConstants.TASK:
 				resourceList.forEach(resource -> {
@@ -514,26 +837,16 @@ public class SearchQueryInclude<U extends IBaseResource> {
 				});
 				break;
 		}
-		uniqueServiceRequestUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(serviceRequestService.get(uniqueServiceRequestUUIDs));
-		return includedResources;
 	}
 	
-	private Set<IBaseResource> handlePractitionerInclude(List<U> resourceList, String paramType) {
-		Set<IBaseResource> includedResources = new HashSet<>();
-		Set<String> uniquePractitionerUUIDs = new HashSet<>();
-		
+	private void collectPractitionerInclude(List<? extends IBaseResource> resourceList, String paramType,
+	        Set<String> uniquePractitionerUUIDs) {
 		switch (paramType) {
 			case FhirConstants.TASK:
 				resourceList
 				        .forEach(resource -> uniquePractitionerUUIDs.add(getIdFromReference(((Task) resource).getOwner())));
 				break;
 		}
-		
-		uniquePractitionerUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(practitionerService.get(uniquePractitionerUUIDs));
-		
-		return includedResources;
 	}
 	
 	private static List<String> getIdsFromReferenceList(List<Reference> referenceList) {
@@ -549,4 +862,18 @@ public class SearchQueryInclude<U extends IBaseResource> {
 	protected static String getIdFromReference(Reference reference) {
 		return reference != null ? reference.getReferenceElement().getIdPart() : null;
 	}
+	
+	/**
+	 * Finds the ids of the resources referenced by a page of resources directly from the database
+	 */
+	@FunctionalInterface
+	public interface IncludedIdsLookup {
+		
+		/**
+		 * @param resourceType the type of the resources on the page
+		 * @param paramName the name of the include parameter
+		 * @return the ids of the referenced resources, or null if they cannot be found this way
+		 */
+		List<String> getIncludedIds(String resourceType, String paramName);
+	}
 }
@@ -0,0 +1,269 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Criteria;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.loader.criteria.CriteriaJoinWalker;
+import org.hibernate.loader.criteria.CriteriaQueryTranslator;
+import org.hibernate.persister.entity.OuterJoinLoadable;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records how long the queries run by the Daos take. A histogram of query times is kept for each
+ * Dao operation, and for the queries of each Dao operation which used a given search handler. The
+ * latter records the time of the whole query, not the part of it due to the handler. Queries which take longer than
+ * {@link FhirConstants#OPENMRS_FHIR_SLOW_SEARCH_THRESHOLD} milliseconds are logged, together with the
+ * search handlers applied, the number of rows returned and the SQL Hibernate generated, to the
+ * {@value #SLOW_SEARCH_LOGGER} logger.
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class SearchQueryMonitor {
+	
+	public static final String SLOW_SEARCH_LOGGER = "org.openmrs.module.fhir2.slowSearch";
+	
+	private static final Logger slowSearchLog = LoggerFactory.getLogger(SLOW_SEARCH_LOGGER);
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+	
+	private volatile Long slowSearchThresholdNanos;
+	
+	/**
+	 * Records a query run by a Dao
+	 *
+	 * @param dao the name of the Dao which ran the query
+	 * @param operation the Dao operation which ran the query
+	 * @param theParams the search parameters of the query, if any
+	 * @param criteria the query, if any
+	 * @param elapsedNanos the time taken by the query
+	 * @param rows the number of rows returned by the query
+	 */
+	public void record(@Nonnull String dao, @Nonnull String operation, SearchParameterMap theParams, Criteria criteria,
+	        long elapsedNanos, int rows) {
+		record(dao, operation, theParams, criteria, elapsedNanos, rows, 1);
+	}
+	
+	/**
+	 * Records a Dao operation which ran one or more SQL statements
+	 *
+	 * @param dao the name of the Dao which ran the operation
+	 * @param operation the Dao operation
+	 * @param theParams the search parameters of the operation, if any
+	 * @param criteria the main query of the operation, if any
+	 * @param elapsedNanos the time taken by the operation
+	 * @param rows the number of objects returned by the operation
+	 * @param statements the number of SQL statements the operation ran
+	 */
+	public void record(@Nonnull String dao, @Nonnull String operation, SearchParameterMap theParams, Criteria criteria,
+	        long elapsedNanos, int rows, int statements) {
+		String name = dao + "." + operation;
+		Set<String> handlers = getHandlers(theParams);
+		
+		histograms.computeIfAbsent(name, k -> new Histogram()).record(elapsedNanos, statements);
+		for (String handler : handlers) {
+			histograms.computeIfAbsent(name + " using " + handler, k -> new Histogram()).record(elapsedNanos,
+			    statements);
+		}
+		
+		long threshold = getSlowSearchThresholdNanos();
+		if (threshold > 0 && elapsedNanos >= threshold && slowSearchLog.isWarnEnabled()) {
+			slowSearchLog.warn("dao={} operation={} handlers={} rows={} statements={} timeMs={} sql={}", dao, operation,
+			    handlers, rows, statements, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), toSql(criteria));
+		}
+	}
+	
+	/**
+	 * @return a copy of the histograms recorded so far, keyed by Dao operation, e.g.
+	 *         {@code FhirObservationDaoImpl.searchResultIds}, and by Dao operation for the queries using
+	 *         a search handler, e.g. {@code FhirObservationDaoImpl.searchResultIds using coded.search.handler}
+	 */
+	public Map<String, Histogram> getHistograms() {
+		Map<String, Histogram> result = new TreeMap<>();
+		histograms.forEach((name, histogram) -> result.put(name, histogram.copy()));
+		return result;
+	}
+	
+	public void reset() {
+		histograms.clear();
+	}
+	
+	private long getSlowSearchThresholdNanos() {
+		if (slowSearchThresholdNanos == null) {
+			slowSearchThresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+			    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SLOW_SEARCH_THRESHOLD, 1000));
+		}
+		
+		return slowSearchThresholdNanos;
+	}
+	
+	private static Set<String> getHandlers(SearchParameterMap theParams) {
+		if (theParams == null) {
+			return Collections.emptySet();
+		}
+		
+		Set<String> handlers = new TreeSet<>();
+		for (Map.Entry<String, List<PropParam<?>>> entry : theParams.getParameters()) {
+			if (!entry.getValue().isEmpty()) {
+				handlers.add(entry.getKey());
+			}
+		}
+		
+		if (theParams.getSortSpec() != null) {
+			handlers.add("_sort");
+		}
+		
+		return handlers;
+	}
+	
+	/**
+	 * Generates the SQL for a Hibernate criteria query
+	 *
+	 * @param criteria the query
+	 * @return the SQL or null if it cannot be generated
+	 */
+	static String toSql(Criteria criteria) {
+		if (!(criteria instanceof CriteriaImpl)) {
+			return null;
+		}
+		
+		try {
+			CriteriaImpl criteriaImpl = (CriteriaImpl) criteria;
+			SessionImplementor session = criteriaImpl.getSession();
+			SessionFactoryImplementor factory = session.getFactory();
+			String entityName = criteriaImpl.getEntityOrClassName();
+			OuterJoinLoadable persister = (OuterJoinLoadable) factory
+			        .getEntityPersister(factory.getImplementors(entityName)[0]);
+			
+			CriteriaQueryTranslator translator = new CriteriaQueryTranslator(factory, criteriaImpl, entityName,
+			        CriteriaQueryTranslator.ROOT_SQL_ALIAS);
+			return new CriteriaJoinWalker(persister, translator, factory, criteriaImpl, entityName,
+			        session.getLoadQueryInfluencers()).getSQLString();
+		}
+		catch (RuntimeException e) {
+			log.debug("Could not generate the SQL for the query {}", criteria, e);
+			return null;
+		}
+	}
+	
+	/**
+	 * A histogram of query times using fixed buckets
+	 */
+	public static class Histogram {
+		
+		/**
+		 * The upper bound, in milliseconds, of each bucket except the last, which has no upper bound
+		 */
+		public static final long[] BUCKET_UPPER_BOUNDS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000,
+		        10000 };
+		
+		private final AtomicLongArray buckets;
+		
+		private final LongAdder count = new LongAdder();
+		
+		private final LongAdder totalNanos = new LongAdder();
+		
+		private final LongAdder statements = new LongAdder();
+		
+		private final AtomicLong maximumNanos = new AtomicLong();
+		
+		Histogram() {
+			buckets = new AtomicLongArray(BUCKET_UPPER_BOUNDS_MILLIS.length + 1);
+		}
+		
+		void record(long elapsedNanos, int statementCount) {
+			long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+			int bucket = 0;
+			while (bucket < BUCKET_UPPER_BOUNDS_MILLIS.length && millis >= BUCKET_UPPER_BOUNDS_MILLIS[bucket]) {
+				bucket++;
+			}
+			
+			buckets.incrementAndGet(bucket);
+			count.increment();
+			totalNanos.add(elapsedNanos);
+			statements.add(statementCount);
+			maximumNanos.accumulateAndGet(elapsedNanos, Math::max);
+		}
+		
+		Histogram copy() {
+			Histogram copy = new Histogram();
+			for (int i = 0; i < buckets.length(); i++) {
+				copy.buckets.set(i, buckets.get(i));
+			}
+			
+			copy.count.add(count.sum());
+			copy.totalNanos.add(totalNanos.sum());
+			copy.statements.add(statements.sum());
+			copy.maximumNanos.set(maximumNanos.get());
+			return copy;
+		}
+		
+		/**
+		 * @return the number of queries in each bucket; see {@link #BUCKET_UPPER_BOUNDS_MILLIS}
+		 */
+		public long[] getBucketCounts() {
+			long[] result = new long[buckets.length()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = buckets.get(i);
+			}
+			
+			return result;
+		}
+		
+		public long getCount() {
+			return count.sum();
+		}
+		
+		public long getTotalMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(totalNanos.sum());
+		}
+		
+		/**
+		 * @return the number of SQL statements run by the recorded queries
+		 */
+		public long getStatementCount() {
+			return statements.sum();
+		}
+		
+		public long getMaximumMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(maximumNanos.get());
+		}
+	}
+}
@@ -0,0 +1,439 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IQueryParameterAnd;
+import ca.uhn.fhir.model.api.IQueryParameterOr;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.SortSpec;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.model.FhirSearchSnapshot;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * A bounded cache of the results of searches, keyed by the Dao which ran the search, the type searched
+ * and a canonical form of the {@link SearchParameterMap}. Entries expire after a configurable time and
+ * the whole cache is cleared as soon as any object is saved, voided, retired or deleted, as searches
+ * depend on objects of many types: a patient search by name depends on {@link org.openmrs.PersonName}s, and an
+ * observation search chained on the patient's name does too. The cache is disabled unless
+ * {@link FhirConstants#OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE} is set to a positive value. The cache
+ * is created again, discarding its entries, whenever either of its properties is changed.
+ * <p/>
+ * Changes made without going through a Hibernate session, e.g. bulk updates, are not seen by the
+ * cache, so entries for such types may be stale until they expire. The cache is only cleared on the
+ * server where the change was saved, so it should only be enabled where a single server uses the
+ * database: other servers would return results which are stale until they expire.
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class SearchResultCache implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final String KIND_IDS = "ids";
+	
+	private static final String KIND_COUNT = "count";
+	
+	private static final int DEFAULT_MAXIMUM_SIZE = 0;
+	
+	private static final int DEFAULT_TIME_TO_LIVE = 30;
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Autowired
+	@Qualifier("fhirR4")
+	private FhirContext fhirContext;
+	
+	@Autowired
+	@Qualifier("adminService")
+	private AdministrationService administrationService;
+	
+	// incremented on every eviction so that results computed before a change are not cached after it
+	private final AtomicLong generation = new AtomicLong();
+	
+	private volatile Cache<CacheKey, Object> cache;
+	
+	private volatile boolean enabled = true;
+	
+	// read from the global property service when the cache is first used, then kept up to date by the listener
+	private Integer maximumSize;
+	
+	private Integer timeToLive;
+	
+	private final GlobalPropertyListener globalPropertyListener = new GlobalPropertyListener() {
+		
+		@Override
+		public boolean supportsPropertyName(String propertyName) {
+			return FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE.equals(propertyName)
+			        || FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_TIME_TO_LIVE.equals(propertyName);
+		}
+		
+		@Override
+		public void globalPropertyChanged(GlobalProperty newValue) {
+			propertyChanged(newValue.getProperty(), newValue.getPropertyValue());
+		}
+		
+		@Override
+		public void globalPropertyDeleted(String propertyName) {
+			propertyChanged(propertyName, null);
+		}
+	};
+	
+	@PostConstruct
+	public void registerListeners() {
+		if (administrationService != null) {
+			administrationService.addGlobalPropertyListener(globalPropertyListener);
+		}
+		
+		if (!(sessionFactory instanceof SessionFactoryImplementor)) {
+			return;
+		}
+		
+		EventListenerRegistry registry = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+		        .getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+		registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+		registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+	}
+	
+	@PreDestroy
+	public void preDestroy() {
+		if (administrationService != null) {
+			administrationService.removeGlobalPropertyListener(globalPropertyListener);
+		}
+	}
+	
+	/**
+	 * Returns the primary keys matching the given search, running the supplied query if they are not
+	 * already cached
+	 *
+	 * @param daoType the class of the Dao running the search
+	 * @param type the type being searched
+	 * @param theParams the search parameters
+	 * @param query the query to run if the results are not cached
+	 * @return the primary keys of the matching objects in search order
+	 */
+	public int[] getIds(@Nonnull Class<?> daoType, @Nonnull Class<?> type, @Nonnull SearchParameterMap theParams,
+	        @Nonnull Supplier<int[]> query) {
+		int[] ids = get(daoType, type, KIND_IDS, theParams, query);
+		// callers receive a copy so that the cached keys cannot be modified
+		return ids == null ? null : ids.clone();
+	}
+	
+	/**
+	 * Returns the number of objects matching the given search, running the supplied query if neither
+	 * the count nor the matching keys are already cached
+	 *
+	 * @param daoType the class of the Dao running the search
+	 * @param type the type being searched
+	 * @param theParams the search parameters
+	 * @param query the query to run if the count is not cached
+	 * @return the number of matching objects
+	 */
+	public int getCount(@Nonnull Class<?> daoType, @Nonnull Class<?> type, @Nonnull SearchParameterMap theParams,
+	        @Nonnull Supplier<Integer> query) {
+		Cache<CacheKey, Object> cache = getCache();
+		String parameters = cache == null ? null : toCanonicalString(theParams);
+		if (parameters != null) {
+			Object ids = cache.getIfPresent(new CacheKey(daoType, type, KIND_IDS, parameters));
+			if (ids != null) {
+				return ((int[]) ids).length;
+			}
+		}
+		
+		return get(daoType, type, KIND_COUNT, theParams, query);
+	}
+	
+	/**
+	 * @return the hit and miss statistics of the cache, or null if the cache is disabled
+	 */
+	public CacheStats getStatistics() {
+		Cache<CacheKey, Object> cache = getCache();
+		return cache == null ? null : cache.stats();
+	}
+	
+	/**
+	 * Evicts all cached results unless the changed type never affects the results of a search
+	 *
+	 * @param type the type of object which was changed
+	 */
+	public void evict(@Nonnull Class<?> type) {
+		// search snapshots are saved whenever a search is paged
+		if (FhirSearchSnapshot.class.isAssignableFrom(type)) {
+			return;
+		}
+		
+		generation.incrementAndGet();
+		
+		Cache<CacheKey, Object> cache = this.cache;
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+	
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		evict(event.getPersister().getMappedClass());
+	}
+	
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		evict(event.getPersister().getMappedClass());
+	}
+	
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		evict(event.getPersister().getMappedClass());
+	}
+	
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return true;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <V> V get(Class<?> daoType, Class<?> type, String kind, SearchParameterMap theParams, Supplier<V> query) {
+		Cache<CacheKey, Object> cache = getCache();
+		String parameters = cache == null ? null : toCanonicalString(theParams);
+		if (parameters == null) {
+			return query.get();
+		}
+		
+		CacheKey key = new CacheKey(daoType, type, kind, parameters);
+		Object result = cache.getIfPresent(key);
+		if (result != null) {
+			return (V) result;
+		}
+		
+		long expectedGeneration = generation.get();
+		V value = query.get();
+		if (value != null && generation.get() == expectedGeneration) {
+			cache.put(key, value);
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Discards the cache, so that it is created with the new value of the property when it is next used
+	 *
+	 * @param propertyName the name of the property which was changed
+	 * @param value the new value of the property, or null if it was deleted
+	 */
+	synchronized void propertyChanged(String propertyName, String value) {
+		if (FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE.equals(propertyName)) {
+			maximumSize = toInt(value, DEFAULT_MAXIMUM_SIZE);
+		} else if (FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_TIME_TO_LIVE.equals(propertyName)) {
+			timeToLive = toInt(value, DEFAULT_TIME_TO_LIVE);
+		}
+		
+		generation.incrementAndGet();
+		cache = null;
+		enabled = true;
+	}
+	
+	private Cache<CacheKey, Object> getCache() {
+		if (cache == null && enabled) {
+			synchronized (this) {
+				if (cache == null && enabled) {
+					if (maximumSize == null) {
+						maximumSize = globalPropertyService.getGlobalProperty(
+						    FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE, DEFAULT_MAXIMUM_SIZE);
+					}
+					
+					if (timeToLive == null) {
+						timeToLive = globalPropertyService.getGlobalProperty(
+						    FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE);
+					}
+					
+					if (maximumSize < 1 || timeToLive < 1) {
+						enabled = false;
+						return null;
+					}
+					
+					cache = CacheBuilder.newBuilder().maximumSize(maximumSize)
+					        .expireAfterWrite(timeToLive, TimeUnit.SECONDS).recordStats().build();
+				}
+			}
+		}
+		
+		return cache;
+	}
+	
+	private static int toInt(String value, int defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+	
+	/**
+	 * Converts the parameters which determine the results of a search into a string which does not
+	 * depend on the order in which parameters, or the values of and / or parameters, were supplied.
+	 *
+	 * @param theParams the search parameters
+	 * @return the canonical form of the search parameters or null if they contain a value with no
+	 *         stable string form, in which case the search cannot be cached
+	 */
+	String toCanonicalString(SearchParameterMap theParams) {
+		Map<String, List<String>> parameters = new TreeMap<>();
+		for (Map.Entry<String, List<PropParam<?>>> entry : theParams.getParameters()) {
+			String handler = entry.getKey();
+			switch (handler) {
+				// these parameters do not affect which objects match the search
+				case FhirConstants.INCLUDE_SEARCH_HANDLER:
+				case FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER:
+				case FhirConstants.TOTAL_MODE_SEARCH_HANDLER:
+					continue;
+			}
+			
+			List<String> values = new ArrayList<>(entry.getValue().size());
+			for (PropParam<?> param : entry.getValue()) {
+				String value = toCanonicalString(param.getParam());
+				if (value == null) {
+					return null;
+				}
+				
+				values.add(param.getPropertyName() + "=" + value);
+			}
+			
+			values.sort(null);
+			parameters.put(handler.toLowerCase(), values);
+		}
+		
+		StringBuilder result = new StringBuilder(parameters.toString());
+		for (SortSpec sort = theParams.getSortSpec(); sort != null; sort = sort.getChain()) {
+			result.append("|").append(sort.getParamName()).append(":").append(sort.getOrder());
+		}
+		
+		return result.toString();
+	}
+	
+	private String toCanonicalString(Object value) {
+		if (value == null) {
+			return "";
+		}
+		
+		if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+		        || value instanceof Enum) {
+			return value.toString();
+		}
+		
+		if (value instanceof Date) {
+			return String.valueOf(((Date) value).getTime());
+		}
+		
+		if (value instanceof Include) {
+			Include include = (Include) value;
+			return (include.isRecurse() ? "iterate:" : "") + include.getValue();
+		}
+		
+		if (value instanceof IQueryParameterType) {
+			IQueryParameterType param = (IQueryParameterType) value;
+			String qualifier = param.getQueryParameterQualifier();
+			return (qualifier == null ? "" : qualifier) + "=" + param.getValueAsQueryToken(fhirContext);
+		}
+		
+		if (value instanceof IQueryParameterOr) {
+			return toCanonicalString(((IQueryParameterOr<?>) value).getValuesAsQueryTokens(), ",");
+		}
+		
+		if (value instanceof IQueryParameterAnd) {
+			return toCanonicalString(((IQueryParameterAnd<?>) value).getValuesAsQueryTokens(), "&");
+		}
+		
+		if (value instanceof Collection) {
+			return toCanonicalString((Collection<?>) value, ",");
+		}
+		
+		return null;
+	}
+	
+	private String toCanonicalString(Collection<?> values, String separator) {
+		List<String> result = new ArrayList<>(values.size());
+		for (Object value : values) {
+			String canonicalValue = toCanonicalString(value);
+			if (canonicalValue == null) {
+				return null;
+			}
+			
+			result.add(canonicalValue);
+		}
+		
+		result.sort(null);
+		return "(" + String.join(separator, result) + ")";
+	}
+	
+	@Value
+	private static class CacheKey {
+		
+		Class<?> daoType;
+		
+		Class<?> type;
+		
+		String kind;
+		
+		String parameters;
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nullable;
+
+import java.util.Comparator;
+
+import ca.uhn.fhir.rest.api.SortSpec;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+/**
+ * Builds the comparators used to merge the sorted results of two searches. Implementations are Spring
+ * beans, so that a merged search restored from a snapshot on another node is merged in the same way.
+ *
+ * @see TwoSearchQueryBundleProvider
+ */
+public interface SearchResultComparatorFactory {
+	
+	/**
+	 * @param sort the requested sort
+	 * @return a comparator matching the order in which the searches return their results, or null if
+	 *         the results cannot be merged in that order
+	 */
+	@Nullable
+	Comparator<IBaseResource> getComparator(@Nullable SortSpec sort);
+}
@@ -0,0 +1,411 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.BasePagingProvider;
+import ca.uhn.fhir.rest.server.FifoMemoryPagingProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.dao.FhirSearchSnapshotDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+import org.openmrs.module.fhir2.model.FhirSearchSnapshot;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ListableBeanFactory;
+
+/**
+ * A paging provider which stores a compact snapshot of each search in the database rather than
+ * keeping the search in memory. As the snapshot only refers to the Spring beans used to run the
+ * search by name, any node sharing the database can serve subsequent pages of the search. The search
+ * parameters are stored in the format of {@link SearchParameterMapCodec} rather than as serialized
+ * Java objects.
+ * <p/>
+ * Results combining two searches in a {@link TwoSearchQueryBundleProvider} are stored as a snapshot of
+ * each search and a snapshot recording the sort used to merge them. Results which are not backed by
+ * these providers cannot be snapshotted and are kept in an in-memory cache on the node instead.
+ * <p/>
+ * Snapshots are always read and written on the primary database, even while the request runs against
+ * a read replica, as a replica cannot be written to and may not have a snapshot which was only just
+ * stored.
+ */
+@Slf4j
+public class SearchSnapshotPagingProvider extends BasePagingProvider {
+	
+	private static final int IN_MEMORY_FALLBACK_SIZE = 10000;
+	
+	private static final long EVICTION_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+	
+	private static final String FHIR_CONTEXT_BEAN = "fhirR4";
+	
+	private final FhirSearchSnapshotDao snapshotDao;
+	
+	private final FhirGlobalPropertyService globalPropertyService;
+	
+	private final ListableBeanFactory beanFactory;
+	
+	private final long timeToLive;
+	
+	private final int maximumSnapshots;
+	
+	private final ReadReplicaRouter readReplicaRouter;
+	
+	private final FifoMemoryPagingProvider fallbackPagingProvider = new FifoMemoryPagingProvider(IN_MEMORY_FALLBACK_SIZE);
+	
+	private final Map<Object, String> beanNames = Collections.synchronizedMap(new IdentityHashMap<>());
+	
+	private final AtomicLong nextEviction = new AtomicLong();
+	
+	/**
+	 * @param snapshotDao the DAO used to store snapshots
+	 * @param globalPropertyService passed to restored searches
+	 * @param beanFactory used to resolve the beans used to run restored searches
+	 * @param timeToLive the time in milliseconds for which a snapshot can be used
+	 * @param maximumSnapshots the maximum number of snapshots to retain
+	 */
+	public SearchSnapshotPagingProvider(FhirSearchSnapshotDao snapshotDao, FhirGlobalPropertyService globalPropertyService,
+	    ListableBeanFactory beanFactory, long timeToLive, int maximumSnapshots) {
+		this(snapshotDao, globalPropertyService, beanFactory, timeToLive, maximumSnapshots, null);
+	}
+	
+	/**
+	 * @param snapshotDao the DAO used to store snapshots
+	 * @param globalPropertyService passed to restored searches
+	 * @param beanFactory used to resolve the beans used to run restored searches
+	 * @param timeToLive the time in milliseconds for which a snapshot can be used
+	 * @param maximumSnapshots the maximum number of snapshots to retain
+	 * @param readReplicaRouter the router used to keep snapshots on the primary database, if any
+	 */
+	public SearchSnapshotPagingProvider(FhirSearchSnapshotDao snapshotDao, FhirGlobalPropertyService globalPropertyService,
+	    ListableBeanFactory beanFactory, long timeToLive, int maximumSnapshots,
+	    @Nullable ReadReplicaRouter readReplicaRouter) {
+		this.snapshotDao = snapshotDao;
+		this.globalPropertyService = globalPropertyService;
+		this.beanFactory = beanFactory;
+		this.timeToLive = timeToLive;
+		this.maximumSnapshots = maximumSnapshots;
+		this.readReplicaRouter = readReplicaRouter;
+	}
+	
+	@Override
+	public IBundleProvider retrieveResultList(@Nullable RequestDetails theRequestDetails, @Nonnull String theSearchId) {
+		IBundleProvider result = fallbackPagingProvider.retrieveResultList(theRequestDetails, theSearchId);
+		if (result != null) {
+			return result;
+		}
+		
+		try {
+			return restore(theSearchId);
+		}
+		catch (BeansException | UncheckedIOException e) {
+			log.warn("Could not restore search {}", theSearchId, e);
+			return null;
+		}
+	}
+	
+	@Override
+	public String storeResultList(@Nullable RequestDetails theRequestDetails, IBundleProvider theList) {
+		IBundleProvider bundleProvider = theList;
+		boolean dstu3 = false;
+		if (bundleProvider instanceof SearchQueryBundleProviderR3Wrapper) {
+			bundleProvider = ((SearchQueryBundleProviderR3Wrapper) bundleProvider).getBundleProvider();
+			dstu3 = true;
+		}
+		
+		List<FhirSearchSnapshot> snapshots = createSnapshots(bundleProvider, dstu3, new Date());
+		if (snapshots == null) {
+			return fallbackPagingProvider.storeResultList(theRequestDetails, theList);
+		}
+		
+		onPrimary(() -> {
+			evictSnapshots();
+			snapshots.forEach(snapshotDao::save);
+			return null;
+		});
+		
+		return snapshots.get(snapshots.size() - 1).getUuid();
+	}
+	
+	@Override
+	public void setDefaultPageSize(int theDefaultPageSize) {
+		super.setDefaultPageSize(theDefaultPageSize);
+		fallbackPagingProvider.setDefaultPageSize(theDefaultPageSize);
+	}
+	
+	@Override
+	public void setMaximumPageSize(int theMaximumPageSize) {
+		super.setMaximumPageSize(theMaximumPageSize);
+		fallbackPagingProvider.setMaximumPageSize(theMaximumPageSize);
+	}
+	
+	/**
+	 * @return the snapshots needed to restore the search, ending with the snapshot of the search itself,
+	 *         or null if the search cannot be snapshotted
+	 */
+	private List<FhirSearchSnapshot> createSnapshots(IBundleProvider bundleProvider, boolean dstu3, Date now) {
+		if (bundleProvider instanceof SearchQueryBundleProvider) {
+			FhirSearchSnapshot snapshot = createSnapshot((SearchQueryBundleProvider<?, ?>) bundleProvider, dstu3, now);
+			return snapshot == null ? null : new ArrayList<>(Collections.singletonList(snapshot));
+		}
+		
+		if (bundleProvider instanceof TwoSearchQueryBundleProvider) {
+			return createCombinedSnapshots((TwoSearchQueryBundleProvider) bundleProvider, dstu3, now);
+		}
+		
+		return null;
+	}
+	
+	private List<FhirSearchSnapshot> createCombinedSnapshots(TwoSearchQueryBundleProvider bundleProvider, boolean dstu3,
+	        Date now) {
+		String comparatorBean = null;
+		if (bundleProvider.getComparatorFactory() != null) {
+			comparatorBean = getBeanName(bundleProvider.getComparatorFactory(), SearchResultComparatorFactory.class);
+			if (comparatorBean == null) {
+				return null;
+			}
+		} else if (bundleProvider.getComparator() != null) {
+			// the comparator cannot be rebuilt when the search is restored
+			return null;
+		}
+		
+		List<FhirSearchSnapshot> snapshots = createSnapshots(bundleProvider.getFirstProvider(), false, now);
+		List<FhirSearchSnapshot> secondSnapshots = createSnapshots(bundleProvider.getSecondProvider(), false, now);
+		if (snapshots == null || secondSnapshots == null) {
+			return null;
+		}
+		
+		FhirSearchSnapshot snapshot = newSnapshot(bundleProvider.getUuid(), dstu3, now);
+		snapshot.setFirstSearchUuid(snapshots.get(snapshots.size() - 1).getUuid());
+		snapshot.setSecondSearchUuid(secondSnapshots.get(secondSnapshots.size() - 1).getUuid());
+		snapshot.setComparatorBean(comparatorBean);
+		
+		try {
+			// only the sort is needed to merge the results of the two searches
+			snapshot.setSearchParameters(
+			    SearchParameterMapCodec.encode(new SearchParameterMap().setSortSpec(bundleProvider.getSort()),
+			        getFhirContext()));
+		}
+		catch (IOException e) {
+			log.warn("Could not create a snapshot of search {}", bundleProvider.getUuid(), e);
+			return null;
+		}
+		
+		snapshots.addAll(secondSnapshots);
+		snapshots.add(snapshot);
+		return snapshots;
+	}
+	
+	private FhirSearchSnapshot createSnapshot(SearchQueryBundleProvider<?, ?> bundleProvider, boolean dstu3, Date now) {
+		String daoBean = getBeanName(bundleProvider.getDao(), FhirDao.class);
+		String translatorBean = getBeanName(bundleProvider.getTranslator(), ToFhirTranslator.class);
+		String includeBean = getBeanName(bundleProvider.getSearchQueryInclude(), SearchQueryInclude.class);
+		
+		if (daoBean == null || translatorBean == null || includeBean == null) {
+			return null;
+		}
+		
+		FhirSearchSnapshot snapshot = newSnapshot(bundleProvider.getUuid(), dstu3, now);
+		snapshot.setDaoBean(daoBean);
+		snapshot.setTranslatorBean(translatorBean);
+		snapshot.setIncludeBean(includeBean);
+		
+		try {
+			snapshot.setSearchParameters(
+			    SearchParameterMapCodec.encode(bundleProvider.getSearchParameterMap(), getFhirContext()));
+			
+			int[] matchingResourceIds = bundleProvider.getMatchingResourceIds();
+			if (matchingResourceIds != null) {
+				snapshot.setResults(encodeIds(matchingResourceIds));
+			}
+		}
+		catch (IOException e) {
+			log.warn("Could not create a snapshot of search {}", bundleProvider.getUuid(), e);
+			return null;
+		}
+		
+		return snapshot;
+	}
+	
+	private FhirSearchSnapshot newSnapshot(String uuid, boolean dstu3, Date now) {
+		FhirSearchSnapshot snapshot = new FhirSearchSnapshot();
+		snapshot.setUuid(uuid);
+		snapshot.setDstu3(dstu3);
+		snapshot.setDateCreated(now);
+		snapshot.setExpiryDate(new Date(now.getTime() + timeToLive));
+		return snapshot;
+	}
+	
+	/**
+	 * @return the restored search or null if there is no current snapshot of the search
+	 */
+	private IBundleProvider restore(String searchId) {
+		FhirSearchSnapshot snapshot = onPrimary(() -> snapshotDao.get(searchId));
+		if (snapshot == null || snapshot.getExpiryDate().before(new Date())) {
+			return null;
+		}
+		
+		IBundleProvider result;
+		try {
+			result = snapshot.getFirstSearchUuid() != null ? restoreCombined(snapshot) : restoreSearch(snapshot);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		if (result != null && Boolean.TRUE.equals(snapshot.getDstu3())) {
+			result = new SearchQueryBundleProviderR3Wrapper(result);
+		}
+		
+		return result;
+	}
+	
+	private IBundleProvider restoreCombined(FhirSearchSnapshot snapshot) throws IOException {
+		IBundleProvider firstProvider = restore(snapshot.getFirstSearchUuid());
+		IBundleProvider secondProvider = restore(snapshot.getSecondSearchUuid());
+		if (firstProvider == null || secondProvider == null) {
+			return null;
+		}
+		
+		SearchResultComparatorFactory comparatorFactory = null;
+		if (snapshot.getComparatorBean() != null) {
+			comparatorFactory = beanFactory.getBean(snapshot.getComparatorBean(), SearchResultComparatorFactory.class);
+		}
+		
+		SearchParameterMap theParams = SearchParameterMapCodec.decode(snapshot.getSearchParameters(), getFhirContext());
+		return new TwoSearchQueryBundleProvider(firstProvider, secondProvider, globalPropertyService, comparatorFactory,
+		        theParams.getSortSpec(), snapshot.getUuid(), new InstantDt(snapshot.getDateCreated()));
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private IBundleProvider restoreSearch(FhirSearchSnapshot snapshot) throws IOException {
+		FhirDao dao = beanFactory.getBean(snapshot.getDaoBean(), FhirDao.class);
+		ToFhirTranslator translator = beanFactory.getBean(snapshot.getTranslatorBean(), ToFhirTranslator.class);
+		SearchQueryInclude searchQueryInclude = beanFactory.getBean(snapshot.getIncludeBean(), SearchQueryInclude.class);
+		
+		int[] matchingResourceIds = null;
+		if (snapshot.getResults() != null) {
+			matchingResourceIds = decodeIds(snapshot.getResults());
+		}
+		
+		return new SearchQueryBundleProvider(
+		        SearchParameterMapCodec.decode(snapshot.getSearchParameters(), getFhirContext()), dao, translator,
+		        globalPropertyService, searchQueryInclude, snapshot.getUuid(), new InstantDt(snapshot.getDateCreated()),
+		        matchingResourceIds);
+	}
+	
+	private FhirContext getFhirContext() {
+		return beanFactory.containsBean(FHIR_CONTEXT_BEAN) ? beanFactory.getBean(FHIR_CONTEXT_BEAN, FhirContext.class)
+		        : null;
+	}
+	
+	private <T> T onPrimary(Supplier<T> call) {
+		return readReplicaRouter == null ? call.get() : readReplicaRouter.callOnPrimary(call);
+	}
+	
+	private String getBeanName(Object bean, Class<?> beanType) {
+		if (bean == null) {
+			return null;
+		}
+		
+		return beanNames.computeIfAbsent(bean,
+		    b -> beanFactory.getBeansOfType(beanType).entrySet().stream().filter(e -> e.getValue() == b)
+		            .map(Map.Entry::getKey).findFirst().orElse(null));
+	}
+	
+	private void evictSnapshots() {
+		long now = System.currentTimeMillis();
+		long next = nextEviction.get();
+		if (now < next || !nextEviction.compareAndSet(next, now + EVICTION_INTERVAL)) {
+			return;
+		}
+		
+		int evicted = snapshotDao.deleteExpired(new Date(now)) + snapshotDao.deleteOldest(maximumSnapshots);
+		log.debug("Evicted {} search snapshots", evicted);
+	}
+	
+	/**
+	 * Encodes the ids as the zig-zag encoded variable-length differences between consecutive ids, so
+	 * that ids in roughly ascending or descending order take one or two bytes each
+	 */
+	static byte[] encodeIds(int[] ids) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(ids.length * 2 + 5);
+		writeVarInt(bytes, ids.length);
+		
+		int previous = 0;
+		for (int id : ids) {
+			int delta = id - previous;
+			writeVarInt(bytes, (delta << 1) ^ (delta >> 31));
+			previous = id;
+		}
+		
+		return bytes.toByteArray();
+	}
+	
+	static int[] decodeIds(byte[] bytes) throws IOException {
+		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+		int[] ids = new int[readVarInt(in)];
+		
+		int previous = 0;
+		for (int i = 0; i < ids.length; i++) {
+			int value = readVarInt(in);
+			previous += (value >>> 1) ^ -(value & 1);
+			ids[i] = previous;
+		}
+		
+		return ids;
+	}
+	
+	private static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		
+		out.write(value);
+	}
+	
+	private static int readVarInt(ByteArrayInputStream in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.read();
+			if (b < 0) {
+				throw new IOException("Unexpected end of search snapshot");
+			}
+			
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		
+		return value;
+	}
+}
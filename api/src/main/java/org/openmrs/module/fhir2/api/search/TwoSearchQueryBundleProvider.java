@@ -14,13 +14,19 @@ import javax.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 
 import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
@@ -28,21 +34,52 @@ import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Combines the results of two searches. If a comparator is supplied, the results of both searches
+ * are expected to already be sorted in the comparator's order and are merged into a single sorted
+ * result; otherwise the results of the second search follow those of the first.
+ * <p/>
+ * The results can only be paged if it is known where the results of each search end, so searches
+ * which do not report their size, e.g. because the client asked for {@code _total=none}, are
+ * counted anyway. The combined total is still only reported if both searches report theirs. The
+ * searches are only counted once the results are paged, so {@link #getFirstResources(int)} can read
+ * the first results of a combined search without counting every match.
+ * <p/>
+ * Where the comparator is built by a {@link SearchResultComparatorFactory}, the combined search can be
+ * stored by the {@link SearchSnapshotPagingProvider} as snapshots of the two searches and the sort.
+ */
 public class TwoSearchQueryBundleProvider implements IBundleProvider {
 	
+	@Getter(AccessLevel.PACKAGE)
 	private final IBundleProvider firstProvider;
 	
+	@Getter(AccessLevel.PACKAGE)
 	private final IBundleProvider secondProvider;
 	
 	private final FhirGlobalPropertyService globalPropertyService;
 	
+	@Getter(AccessLevel.PACKAGE)
+	private final Comparator<IBaseResource> comparator;
+	
+	@Getter(AccessLevel.PACKAGE)
+	private final SearchResultComparatorFactory comparatorFactory;
+	
+	@Getter(AccessLevel.PACKAGE)
+	private final SortSpec sort;
+	
+	// maps positions in the merged results to the positions reached in each provider, so that paging
+	// through the results does not need to merge from the beginning each time
+	private transient TreeMap<Integer, int[]> mergePositions;
+	
 	private transient Integer pageSize;
 	
 	private transient Integer count;
 	
-	private final int firstProviderSize;
+	private transient Integer firstProviderSize;
+	
+	private transient Integer secondProviderSize;
 	
-	private final int secondProviderSize;
+	private transient Boolean sizeReported;
 	
 	@Getter
 	private final IPrimitiveType<Date> published;
@@ -52,13 +89,93 @@ public class TwoSearchQueryBundleProvider implements IBundleProvider {
 	
 	public TwoSearchQueryBundleProvider(IBundleProvider firstProvider, IBundleProvider secondProvider,
 	    FhirGlobalPropertyService globalPropertyService) {
+		this(firstProvider, secondProvider, globalPropertyService, null);
+	}
+	
+	public TwoSearchQueryBundleProvider(IBundleProvider firstProvider, IBundleProvider secondProvider,
+	    FhirGlobalPropertyService globalPropertyService, Comparator<IBaseResource> comparator) {
+		this(firstProvider, secondProvider, globalPropertyService, comparator, null, null, UUID.randomUUID().toString(),
+		        InstantDt.withCurrentTime());
+	}
+	
+	public TwoSearchQueryBundleProvider(IBundleProvider firstProvider, IBundleProvider secondProvider,
+	    FhirGlobalPropertyService globalPropertyService, @Nullable SearchResultComparatorFactory comparatorFactory,
+	    @Nullable SortSpec sort) {
+		this(firstProvider, secondProvider, globalPropertyService, comparatorFactory, sort, UUID.randomUUID().toString(),
+		        InstantDt.withCurrentTime());
+	}
+	
+	/**
+	 * Used to restore a combined search from a previously stored snapshot
+	 */
+	TwoSearchQueryBundleProvider(IBundleProvider firstProvider, IBundleProvider secondProvider,
+	    FhirGlobalPropertyService globalPropertyService, @Nullable SearchResultComparatorFactory comparatorFactory,
+	    @Nullable SortSpec sort, String uuid, IPrimitiveType<Date> published) {
+		this(firstProvider, secondProvider, globalPropertyService,
+		        comparatorFactory == null ? null : comparatorFactory.getComparator(sort), comparatorFactory, sort, uuid,
+		        published);
+	}
+	
+	private TwoSearchQueryBundleProvider(IBundleProvider firstProvider, IBundleProvider secondProvider,
+	    FhirGlobalPropertyService globalPropertyService, Comparator<IBaseResource> comparator,
+	    SearchResultComparatorFactory comparatorFactory, SortSpec sort, String uuid, IPrimitiveType<Date> published) {
 		this.firstProvider = firstProvider;
+		this.comparator = comparator;
+		this.comparatorFactory = comparatorFactory;
+		this.sort = sort;
 		this.secondProvider = secondProvider;
-		this.published = InstantDt.withCurrentTime();
-		this.uuid = UUID.randomUUID().toString();
+		this.published = published;
+		this.uuid = uuid;
 		this.globalPropertyService = globalPropertyService;
-		this.firstProviderSize = Optional.ofNullable(firstProvider.size()).orElse(Integer.MAX_VALUE);
-		this.secondProviderSize = Optional.ofNullable(secondProvider.size()).orElse(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Combines the results of two searches, returning either search alone if the other has no results
+	 *
+	 * @param firstProvider the first search
+	 * @param secondProvider the second search
+	 * @param globalPropertyService used to find the default page size
+	 * @param comparator the order in which both searches return their results, or null if they are not
+	 *            sorted
+	 * @return the combined results
+	 */
+	public static IBundleProvider combine(IBundleProvider firstProvider, IBundleProvider secondProvider,
+	        FhirGlobalPropertyService globalPropertyService, @Nullable Comparator<IBaseResource> comparator) {
+		if (firstProvider.isEmpty()) {
+			return secondProvider;
+		}
+		
+		if (secondProvider.isEmpty()) {
+			return firstProvider;
+		}
+		
+		return new TwoSearchQueryBundleProvider(firstProvider, secondProvider, globalPropertyService, comparator);
+	}
+	
+	/**
+	 * Combines the results of two searches, returning either search alone if the other has no results
+	 *
+	 * @param firstProvider the first search
+	 * @param secondProvider the second search
+	 * @param globalPropertyService used to find the default page size
+	 * @param comparatorFactory builds the comparator for the order in which both searches return their
+	 *            results
+	 * @param sort the requested sort
+	 * @return the combined results
+	 */
+	public static IBundleProvider combine(IBundleProvider firstProvider, IBundleProvider secondProvider,
+	        FhirGlobalPropertyService globalPropertyService, @Nullable SearchResultComparatorFactory comparatorFactory,
+	        @Nullable SortSpec sort) {
+		if (firstProvider.isEmpty()) {
+			return secondProvider;
+		}
+		
+		if (secondProvider.isEmpty()) {
+			return firstProvider;
+		}
+		
+		return new TwoSearchQueryBundleProvider(firstProvider, secondProvider, globalPropertyService, comparatorFactory,
+		        sort);
 	}
 	
 	@Transactional(readOnly = true)
@@ -70,32 +187,33 @@ public class TwoSearchQueryBundleProvider implements IBundleProvider {
 			firstResult = fromIndex;
 		}
 		
-		Integer size = size();
-		if (size != null && firstResult > size) {
+		int lastResult = getTotal();
+		if (firstResult > lastResult) {
 			return Collections.emptyList();
 		}
 		
-		// NPE-safe unboxing
-		int lastResult = Integer.MAX_VALUE;
-		lastResult = size == null ? lastResult : size;
-		
 		if (toIndex - firstResult > 0) {
 			lastResult = Math.min(lastResult, toIndex);
 		}
 		
-		if (lastResult <= firstProviderSize) {
+		if (isMerged()) {
+			return getMergedResources(firstResult, lastResult);
+		}
+		
+		int firstSize = getFirstProviderSize();
+		if (lastResult <= firstSize) {
 			return firstProvider.getResources(firstResult, lastResult);
 		}
 		
-		if (firstResult >= firstProviderSize) {
-			return secondProvider.getResources(firstResult - firstProviderSize, lastResult - firstProviderSize);
+		if (firstResult >= firstSize) {
+			return secondProvider.getResources(firstResult - firstSize, lastResult - firstSize);
 		}
 		
 		// case of intersection
-		int numResultsFromFirstProvider = firstProviderSize - firstResult;
-		int numResultsFromSecondProvider = lastResult - firstProviderSize;
+		int numResultsFromFirstProvider = firstSize - firstResult;
+		int numResultsFromSecondProvider = lastResult - firstSize;
 		
-		List<IBaseResource> resourcesFromFirstProvider = firstProvider.getResources(firstResult, firstProviderSize);
+		List<IBaseResource> resourcesFromFirstProvider = firstProvider.getResources(firstResult, firstSize);
 		List<IBaseResource> requiredResourcesFromFirstProvider = resourcesFromFirstProvider.subList(0,
 		    numResultsFromFirstProvider);
 		List<IBaseResource> includedResourcesFromFirstProvider = resourcesFromFirstProvider
@@ -119,6 +237,68 @@ public class TwoSearchQueryBundleProvider implements IBundleProvider {
 		return resultList;
 	}
 	
+	private boolean isMerged() {
+		// the results can only be merged if we know where each set of results ends
+		return comparator != null && getFirstProviderSize() != Integer.MAX_VALUE
+		        && getSecondProviderSize() != Integer.MAX_VALUE;
+	}
+	
+	private List<IBaseResource> getMergedResources(int firstResult, int lastResult) {
+		if (mergePositions == null) {
+			mergePositions = new TreeMap<>();
+			mergePositions.put(0, new int[] { 0, 0 });
+		}
+		
+		Map.Entry<Integer, int[]> start = mergePositions.floorEntry(firstResult);
+		int batchSize = Math.max(lastResult - firstResult, 1);
+		MergeCursor first = new MergeCursor(firstProvider, getFirstProviderSize(), start.getValue()[0], batchSize);
+		MergeCursor second = new MergeCursor(secondProvider, getSecondProviderSize(), start.getValue()[1], batchSize);
+		
+		List<IBaseResource> resultList = new ArrayList<>(lastResult - firstResult);
+		int firstPageStart = -1;
+		int secondPageStart = -1;
+		
+		int position = start.getKey();
+		for (; position < lastResult; position++) {
+			if (position == firstResult) {
+				firstPageStart = first.position;
+				secondPageStart = second.position;
+			}
+			
+			MergeCursor next;
+			if (first.peek() == null) {
+				next = second;
+			} else if (second.peek() == null) {
+				next = first;
+			} else {
+				// on ties, results from the first provider come first
+				next = comparator.compare(first.peek(), second.peek()) <= 0 ? first : second;
+			}
+			
+			if (next.peek() == null) {
+				break;
+			}
+			
+			if (position >= firstResult) {
+				resultList.add(next.peek());
+			}
+			
+			next.advance();
+		}
+		
+		mergePositions.put(position, new int[] { first.position, second.position });
+		
+		// as with unmerged results, included resources follow the resources from each provider
+		if (firstPageStart >= 0) {
+			Set<IBaseResource> includedResources = new LinkedHashSet<>();
+			includedResources.addAll(first.getIncludedResources(firstPageStart, first.position));
+			includedResources.addAll(second.getIncludedResources(secondPageStart, second.position));
+			resultList.addAll(includedResources);
+		}
+		
+		return resultList;
+	}
+	
 	@Override
 	public Integer preferredPageSize() {
 		if (pageSize == null) {
@@ -131,11 +311,60 @@ public class TwoSearchQueryBundleProvider implements IBundleProvider {
 	@Nullable
 	@Override
 	public Integer size() {
+		if (sizeReported == null) {
+			sizeReported = firstProvider.size() != null && secondProvider.size() != null;
+		}
+		
+		if (!sizeReported) {
+			return null;
+		}
+		
+		int total = getTotal();
+		return total == Integer.MAX_VALUE ? null : total;
+	}
+	
+	/**
+	 * Loads at most the given number of results without counting either search, i.e. the first
+	 * results of each search are read with a single limited query where possible
+	 *
+	 * @param maxResults the maximum number of results to load
+	 * @return the first results of the combined search
+	 */
+	List<IBaseResource> getFirstResources(int maxResults) {
+		List<IBaseResource> firstResources = SearchQueryInclude.getFirstResources(firstProvider, maxResults);
+		if (comparator == null) {
+			if (firstResources.size() >= maxResults) {
+				return firstResources;
+			}
+			
+			List<IBaseResource> resultList = new ArrayList<>(firstResources);
+			resultList.addAll(SearchQueryInclude.getFirstResources(secondProvider, maxResults - firstResources.size()));
+			return resultList;
+		}
+		
+		// the first results of the merged search are among the first results of each search
+		List<IBaseResource> secondResources = SearchQueryInclude.getFirstResources(secondProvider, maxResults);
+		List<IBaseResource> resultList = new ArrayList<>(firstResources.size() + secondResources.size());
+		int first = 0;
+		int second = 0;
+		while (resultList.size() < maxResults && (first < firstResources.size() || second < secondResources.size())) {
+			if (second >= secondResources.size() || (first < firstResources.size()
+			        && comparator.compare(firstResources.get(first), secondResources.get(second)) <= 0)) {
+				resultList.add(firstResources.get(first++));
+			} else {
+				resultList.add(secondResources.get(second++));
+			}
+		}
+		
+		return resultList;
+	}
+	
+	private int getTotal() {
 		if (count == null) {
-			if (firstProviderSize == Integer.MAX_VALUE || secondProviderSize == Integer.MAX_VALUE) {
+			if (getFirstProviderSize() == Integer.MAX_VALUE || getSecondProviderSize() == Integer.MAX_VALUE) {
 				return Integer.MAX_VALUE;
 			} else {
-				count = firstProviderSize + secondProviderSize;
+				count = getFirstProviderSize() + getSecondProviderSize();
 			}
 			
 			// accounting for integer overflow
@@ -146,4 +375,101 @@ public class TwoSearchQueryBundleProvider implements IBundleProvider {
 		
 		return count;
 	}
+	
+	private int getFirstProviderSize() {
+		if (firstProviderSize == null) {
+			firstProviderSize = getProviderSize(firstProvider);
+		}
+		
+		return firstProviderSize;
+	}
+	
+	private int getSecondProviderSize() {
+		if (secondProviderSize == null) {
+			secondProviderSize = getProviderSize(secondProvider);
+		}
+		
+		return secondProviderSize;
+	}
+	
+	private static int getProviderSize(IBundleProvider provider) {
+		Integer size = provider.size();
+		if (size == null && provider instanceof SearchQueryBundleProvider) {
+			size = ((SearchQueryBundleProvider<?, ?>) provider).countAll();
+		}
+		
+		return size == null ? Integer.MAX_VALUE : size;
+	}
+	
+	/**
+	 * Reads the results of a single provider in batches
+	 */
+	private static class MergeCursor {
+		
+		private final IBundleProvider provider;
+		
+		private final int size;
+		
+		private final int batchSize;
+		
+		private int position;
+		
+		private int batchStart;
+		
+		private List<IBaseResource> batch = Collections.emptyList();
+		
+		private List<IBaseResource> batchIncludedResources = Collections.emptyList();
+		
+		MergeCursor(IBundleProvider provider, int size, int position, int batchSize) {
+			this.provider = provider;
+			this.size = size;
+			this.position = position;
+			this.batchStart = position;
+			this.batchSize = batchSize;
+		}
+		
+		IBaseResource peek() {
+			if (position >= size) {
+				return null;
+			}
+			
+			if (position >= batchStart + batch.size()) {
+				int lastResult = Math.min(size, position + batchSize);
+				List<IBaseResource> resources = provider.getResources(position, lastResult);
+				
+				// each batch contains the requested resources followed by any resources they include
+				int primaryResources = Math.min(lastResult - position, resources.size());
+				batchStart = position;
+				batch = resources.subList(0, primaryResources);
+				batchIncludedResources = resources.subList(primaryResources, resources.size());
+				
+				if (batch.isEmpty()) {
+					return null;
+				}
+			}
+			
+			return batch.get(position - batchStart);
+		}
+		
+		/**
+		 * @return the resources included by the resources between the given positions
+		 */
+		List<IBaseResource> getIncludedResources(int from, int to) {
+			if (from >= to) {
+				return Collections.emptyList();
+			}
+			
+			if (from == batchStart && to == batchStart + batch.size()) {
+				return batchIncludedResources;
+			}
+			
+			// the batch also includes resources for results which are not on the page
+			List<IBaseResource> resources = provider.getResources(from, to);
+			return resources.subList(Math.min(to - from, resources.size()), resources.size());
+		}
+		
+		void advance() {
+			position++;
+		}
+	}
 }
@@ -0,0 +1,130 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import java.sql.DatabaseMetaData;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Detects which optional SQL features are supported by the database OpenMRS is connected to, so that
+ * queries can use them where they are available and fall back to processing the results in the JVM
+ * where they are not
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class DatabaseFeatures {
+	
+	private static final Pattern MARIADB_VERSION = Pattern.compile("(\\d+)\\.(\\d+)\\.\\d+-MariaDB");
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private volatile Boolean windowFunctions;
+	
+	// whether nulls are sorted first in ascending and in descending order respectively
+	private volatile boolean[] nullsFirst;
+	
+	/**
+	 * @return true if the database supports window functions such as {@code DENSE_RANK() OVER (...)}
+	 */
+	public boolean supportsWindowFunctions() {
+		if (windowFunctions == null) {
+			windowFunctions = sessionFactory.getCurrentSession().doReturningWork(connection -> {
+				DatabaseMetaData metaData = connection.getMetaData();
+				return supportsWindowFunctions(metaData.getDatabaseProductName(), metaData.getDatabaseProductVersion(),
+				    metaData.getDatabaseMajorVersion(), metaData.getDatabaseMinorVersion());
+			});
+			
+			log.debug("Window functions are {}supported by the database", windowFunctions ? "" : "not ");
+		}
+		
+		return windowFunctions;
+	}
+	
+	/**
+	 * @param descending true if the values are sorted in descending order
+	 * @return true if the database sorts null values before all other values when the order does not
+	 *         say where nulls go
+	 */
+	public boolean sortsNullsFirst(boolean descending) {
+		if (nullsFirst == null) {
+			nullsFirst = sessionFactory.getCurrentSession().doReturningWork(connection -> {
+				DatabaseMetaData metaData = connection.getMetaData();
+				boolean atStart = metaData.nullsAreSortedAtStart();
+				boolean atEnd = metaData.nullsAreSortedAtEnd();
+				boolean high = metaData.nullsAreSortedHigh();
+				return new boolean[] { sortsNullsFirst(atStart, atEnd, high, false),
+				        sortsNullsFirst(atStart, atEnd, high, true) };
+			});
+		}
+		
+		return nullsFirst[descending ? 1 : 0];
+	}
+	
+	/**
+	 * Nulls are either sorted at the start or the end whatever the order, or are sorted as if they
+	 * were higher or lower than any other value. MySQL and H2 sort them low, PostgreSQL sorts them high.
+	 */
+	static boolean sortsNullsFirst(boolean atStart, boolean atEnd, boolean high, boolean descending) {
+		if (atStart || atEnd) {
+			return atStart;
+		}
+		
+		return high == descending;
+	}
+	
+	/**
+	 * Window functions are supported by PostgreSQL, MySQL 8 and MariaDB 10.2 or later. MariaDB may
+	 * report itself as MySQL, in which case its version is only found in the version string.
+	 */
+	static boolean supportsWindowFunctions(String productName, String productVersion, int majorVersion,
+	        int minorVersion) {
+		if (productName == null) {
+			return false;
+		}
+		
+		String product = productName.toLowerCase(Locale.ROOT);
+		if (product.contains("postgresql")) {
+			return true;
+		}
+		
+		if (product.contains("mariadb")) {
+			return supportsMariaDbWindowFunctions(majorVersion, minorVersion);
+		}
+		
+		if (product.contains("mysql")) {
+			Matcher mariaDbVersion = MARIADB_VERSION.matcher(productVersion == null ? "" : productVersion);
+			if (mariaDbVersion.find()) {
+				return supportsMariaDbWindowFunctions(Integer.parseInt(mariaDbVersion.group(1)),
+				    Integer.parseInt(mariaDbVersion.group(2)));
+			}
+			
+			return majorVersion >= 8;
+		}
+		
+		return false;
+	}
+	
+	private static boolean supportsMariaDbWindowFunctions(int majorVersion, int minorVersion) {
+		return majorVersion > 10 || (majorVersion == 10 && minorVersion >= 2);
+	}
+}
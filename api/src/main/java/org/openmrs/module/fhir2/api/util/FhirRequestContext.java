@@ -0,0 +1,124 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Resource;
+import org.openmrs.Auditable;
+import org.openmrs.OpenmrsObject;
+
+/**
+ * Holds details of the FHIR request being processed by the current thread which are needed by code
+ * that is not passed the request itself. The servlet is responsible for populating the context when
+ * a request is received and for clearing it once the request has been processed.
+ */
+public class FhirRequestContext {
+	
+	private static final ThreadLocal<SearchTotalModeEnum> searchTotalMode = new ThreadLocal<>();
+	
+	private static final ThreadLocal<Map<Class<?>, Map<String, TranslatedResource>>> translatedResources =
+	        new ThreadLocal<>();
+	
+	private FhirRequestContext() {
+	}
+	
+	/**
+	 * @return the value of the _total parameter of the current request, or null if it was not supplied
+	 */
+	public static SearchTotalModeEnum getSearchTotalMode() {
+		return searchTotalMode.get();
+	}
+	
+	public static void setSearchTotalMode(SearchTotalModeEnum mode) {
+		searchTotalMode.set(mode);
+	}
+	
+	/**
+	 * Starts caching the FHIR resources translated while processing the current request, so that an
+	 * object which appears several times in a response, e.g. as a search result and as an included
+	 * resource, is only translated once
+	 */
+	public static void enableTranslatedResourceCache() {
+		translatedResources.set(new HashMap<>());
+	}
+	
+	/**
+	 * Translates the given object, reusing the resource translated from the same version of the object
+	 * earlier in the current request if there is one. A reused resource is copied, so that no two
+	 * entries of a response share a resource. If the translated resource cache is not enabled for the
+	 * current thread, this just calls the translator.
+	 *
+	 * @param resourceClass the type of FHIR resource the object is translated to
+	 * @param object the object to translate
+	 * @param translator the translation to apply
+	 * @return the translated resource
+	 */
+	@SuppressWarnings("unchecked")
+	public static <O extends OpenmrsObject & Auditable, R extends IBaseResource> R getTranslatedResource(
+	        Class<?> resourceClass, O object, Function<? super O, R> translator) {
+		Map<Class<?>, Map<String, TranslatedResource>> cache = translatedResources.get();
+		if (cache == null || resourceClass == null || object == null || object.getUuid() == null) {
+			return translator.apply(object);
+		}
+		
+		Map<String, TranslatedResource> resourcesByUuid = cache.computeIfAbsent(resourceClass, k -> new HashMap<>());
+		Date version = object.getDateChanged() != null ? object.getDateChanged() : object.getDateCreated();
+		
+		TranslatedResource translatedResource = resourcesByUuid.get(object.getUuid());
+		if (translatedResource != null && Objects.equals(translatedResource.version, version)
+		        && translatedResource.resource instanceof Resource) {
+			return (R) ((Resource) translatedResource.resource).copy();
+		}
+		
+		R resource = translator.apply(object);
+		if (resource != null) {
+			resourcesByUuid.put(object.getUuid(), new TranslatedResource(version, resource));
+		}
+		
+		return resource;
+	}
+	
+	/**
+	 * Removes the translation of an object that was changed by the current request
+	 *
+	 * @param resourceClass the type of FHIR resource
+	 * @param uuid the uuid of the changed object
+	 */
+	public static void evictTranslatedResource(Class<?> resourceClass, String uuid) {
+		Map<Class<?>, Map<String, TranslatedResource>> cache = translatedResources.get();
+		if (cache != null && cache.containsKey(resourceClass)) {
+			cache.get(resourceClass).remove(uuid);
+		}
+	}
+	
+	public static void clear() {
+		searchTotalMode.remove();
+		translatedResources.remove();
+	}
+	
+	private static class TranslatedResource {
+		
+		private final Date version;
+		
+		private final IBaseResource resource;
+		
+		private TranslatedResource(Date version, IBaseResource resource) {
+			this.version = version;
+			this.resource = resource;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import javax.annotation.Nonnull;
+
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+
+/**
+ * A boolean global property which switches a feature on or off while the module is running. The
+ * property is read when the feature is started and followed as it is changed or deleted from then on;
+ * a deleted property, or one which cannot be read, is treated as false.
+ */
+@Slf4j
+public class GlobalPropertyFlag implements GlobalPropertyListener {
+	
+	private final String propertyName;
+	
+	private final Consumer<Boolean> onChange;
+	
+	private volatile boolean enabled;
+	
+	private AdministrationService administrationService;
+	
+	public GlobalPropertyFlag(@Nonnull String propertyName) {
+		this(propertyName, enabled -> {});
+	}
+	
+	/**
+	 * @param propertyName the name of the property
+	 * @param onChange called with the new value whenever the property is changed from true to false or
+	 *            from false to true
+	 */
+	public GlobalPropertyFlag(@Nonnull String propertyName, @Nonnull Consumer<Boolean> onChange) {
+		this.propertyName = propertyName;
+		this.onChange = onChange;
+	}
+	
+	/**
+	 * Reads the property and starts following changes to it. The change callback is not called for the
+	 * value read here.
+	 *
+	 * @param administrationService the service to register with, or null if changes are not followed
+	 * @param globalPropertyService the service to read the property with
+	 * @return whether the property is enabled
+	 */
+	public boolean register(AdministrationService administrationService,
+	        @Nonnull FhirGlobalPropertyService globalPropertyService) {
+		if (administrationService != null) {
+			administrationService.addGlobalPropertyListener(this);
+			this.administrationService = administrationService;
+		}
+		
+		try {
+			enabled = Boolean.parseBoolean(globalPropertyService.getGlobalProperty(propertyName, "false"));
+		}
+		catch (Exception e) {
+			log.error("An error occurred while trying to read the {} property", propertyName, e);
+			enabled = false;
+		}
+		
+		return enabled;
+	}
+	
+	/**
+	 * Stops following changes to the property
+	 */
+	public void unregister() {
+		if (administrationService != null) {
+			administrationService.removeGlobalPropertyListener(this);
+			administrationService = null;
+		}
+	}
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Sets the value without calling the change callback, for features which set up the matching state
+	 * themselves
+	 *
+	 * @param enabled the new value
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	@Override
+	public boolean supportsPropertyName(String propertyName) {
+		return this.propertyName.equals(propertyName);
+	}
+	
+	@Override
+	public void globalPropertyChanged(GlobalProperty newValue) {
+		propertyChanged(Boolean.parseBoolean(newValue.getPropertyValue()));
+	}
+	
+	@Override
+	public void globalPropertyDeleted(String propertyName) {
+		propertyChanged(false);
+	}
+	
+	private synchronized void propertyChanged(boolean enabled) {
+		boolean wasEnabled = this.enabled;
+		this.enabled = enabled;
+		
+		if (enabled != wasEnabled) {
+			onChange.accept(enabled);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * The name used to sort a person, taken from their preferred non-voided name. Rows are maintained by
+ * {@link org.openmrs.module.fhir2.api.search.PersonDisplayNameIndex}.
+ */
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "fhir_person_display_name")
+public class FhirPersonDisplayName {
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@Column(name = "person_id")
+	private Integer personId;
+	
+	@Column(name = "person_name_id", nullable = false)
+	private Integer personNameId;
+	
+	@Column(name = "given_name")
+	private String givenName;
+	
+	@Column(name = "family_name")
+	private String familyName;
+	
+	@Column(name = "sort_key", nullable = false, length = 512)
+	private String sortKey;
+}
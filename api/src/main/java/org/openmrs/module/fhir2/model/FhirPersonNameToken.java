@@ -0,0 +1,53 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * A normalized part of a person name, or a trigram of one, used to search for names without
+ * case-insensitive pattern matches on the person_name table. Rows are maintained by
+ * {@link org.openmrs.module.fhir2.api.search.PersonNameTokenIndex}.
+ */
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "fhir_person_name_token")
+public class FhirPersonNameToken {
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Column(name = "fhir_person_name_token_id")
+	private Integer id;
+	
+	@Column(name = "person_name_id", nullable = false)
+	private Integer personNameId;
+	
+	@Column(name = "person_id", nullable = false)
+	private Integer personId;
+	
+	@Column(name = "name_part", nullable = false, length = 16)
+	private String namePart;
+	
+	@Column(name = "token_type", nullable = false, length = 16)
+	private String tokenType;
+	
+	@Column(name = "token", nullable = false)
+	private String token;
+}
@@ -0,0 +1,40 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import java.util.Date;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Records the time up to which a search index is known to hold every object it is built from. The
+ * row is written once the index has been rebuilt and removed whenever the index stops being
+ * maintained, so that a stale index is never used.
+ */
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "fhir_search_index_status")
+public class FhirSearchIndexStatus {
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@Column(name = "index_name", length = 64)
+	private String indexName;
+	
+	@Column(name = "current_until", nullable = false)
+	private Date currentUntil;
+}
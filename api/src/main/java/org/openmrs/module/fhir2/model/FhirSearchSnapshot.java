@@ -0,0 +1,85 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import java.util.Date;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * A snapshot of a search, stored so that subsequent pages of the search can be served by any node
+ * without keeping the search in memory. The snapshot records the search parameters, the beans used
+ * to execute the search and, unless the search is paged in the database, the ordered results.
+ * <p/>
+ * A snapshot of two combined searches instead refers to the snapshots of each search and records the
+ * sort used to merge their results and the bean which builds the comparator for that sort.
+ */
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "fhir_search_snapshot")
+public class FhirSearchSnapshot {
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Column(name = "fhir_search_snapshot_id")
+	private Integer id;
+	
+	@Column(name = "uuid", unique = true, nullable = false, length = 38)
+	private String uuid;
+	
+	@Column(name = "dao_bean")
+	private String daoBean;
+	
+	@Column(name = "translator_bean")
+	private String translatorBean;
+	
+	@Column(name = "include_bean")
+	private String includeBean;
+	
+	@Column(name = "first_search_uuid", length = 38)
+	private String firstSearchUuid;
+	
+	@Column(name = "second_search_uuid", length = 38)
+	private String secondSearchUuid;
+	
+	@Column(name = "comparator_bean")
+	private String comparatorBean;
+	
+	@Column(name = "dstu3", nullable = false)
+	private Boolean dstu3 = Boolean.FALSE;
+	
+	@ToString.Exclude
+	@Lob
+	@Column(name = "search_parameters", nullable = false)
+	private byte[] searchParameters;
+	
+	@ToString.Exclude
+	@Lob
+	@Column(name = "results")
+	private byte[] results;
+	
+	@Column(name = "date_created", nullable = false, updatable = false)
+	private Date dateCreated;
+	
+	@Column(name = "expiry_date", nullable = false)
+	private Date expiryDate;
+}
@@ -35,6 +35,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.hl7.fhir.convertors.conv30_40.MedicationRequest30_40;
 import org.hl7.fhir.dstu3.model.Encounter;
 import org.hl7.fhir.dstu3.model.IdType;
+import org.hl7.fhir.dstu3.model.Location;
 import org.hl7.fhir.dstu3.model.Medication;
 import org.hl7.fhir.dstu3.model.MedicationRequest;
 import org.hl7.fhir.dstu3.model.OperationOutcome;
@@ -119,7 +120,9 @@ public class MedicationRequestFhirResourceProvider implements IResourceProvider
 	        @IncludeParam(allow = { "MedicationRequest:" + MedicationRequest.SP_MEDICATION,
 	                "MedicationRequest:" + MedicationRequest.SP_REQUESTER,
 	                "MedicationRequest:" + MedicationRequest.SP_PATIENT,
-	                "MedicationRequest:" + MedicationRequest.SP_CONTEXT }) HashSet<Include> includes) {
+	                "MedicationRequest:" + MedicationRequest.SP_CONTEXT,
+	                "Encounter:" + Encounter.SP_LOCATION, "Encounter:" + Encounter.SP_PARTICIPANT,
+	                "Location:" + Location.SP_PARTOF }) HashSet<Include> includes) {
 		if (patientReference == null) {
 			patientReference = subjectReference;
 		}
@@ -35,6 +35,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.hl7.fhir.convertors.VersionConvertor_30_40;
 import org.hl7.fhir.dstu3.model.Encounter;
 import org.hl7.fhir.dstu3.model.IdType;
+import org.hl7.fhir.dstu3.model.Location;
 import org.hl7.fhir.dstu3.model.OperationOutcome;
 import org.hl7.fhir.dstu3.model.Patient;
 import org.hl7.fhir.dstu3.model.Practitioner;
@@ -113,7 +114,9 @@ public class ProcedureRequestFhirResourceProvider implements IResourceProvider {
 	        @OptionalParam(name = "_lastUpdated") DateRangeParam lastUpdated,
 	        @IncludeParam(allow = { "ProcedureRequest:" + ProcedureRequest.SP_PATIENT,
 	                "ProcedureRequest:" + ProcedureRequest.SP_REQUESTER,
-	                "ProcedureRequest:" + ProcedureRequest.SP_ENCOUNTER }) HashSet<Include> includes) {
+	                "ProcedureRequest:" + ProcedureRequest.SP_ENCOUNTER,
+	                "Encounter:" + Encounter.SP_LOCATION, "Encounter:" + Encounter.SP_PARTICIPANT,
+	                "Location:" + Location.SP_PARTOF }) HashSet<Include> includes) {
 		if (patientReference == null) {
 			patientReference = subjectReference;
 		}
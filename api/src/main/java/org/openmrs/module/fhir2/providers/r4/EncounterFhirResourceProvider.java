@@ -119,7 +119,7 @@ public class EncounterFhirResourceProvider implements IResourceProvider {
 	        @OptionalParam(name = Encounter.SP_RES_ID) TokenAndListParam id,
 	        @OptionalParam(name = "_lastUpdated") DateRangeParam lastUpdated, @Sort SortSpec sort,
 	        @IncludeParam(allow = { "Encounter:" + Encounter.SP_LOCATION, "Encounter:" + Encounter.SP_PATIENT,
-	                "Encounter:" + Encounter.SP_PARTICIPANT }) HashSet<Include> includes,
+	                "Encounter:" + Encounter.SP_PARTICIPANT, "*" }) HashSet<Include> includes,
 	        @IncludeParam(reverse = true, allow = { "Observation:" + Observation.SP_ENCOUNTER,
 	                "DiagnosticReport:" + DiagnosticReport.SP_ENCOUNTER,
 	                "MedicationRequest:" + MedicationRequest.SP_ENCOUNTER,
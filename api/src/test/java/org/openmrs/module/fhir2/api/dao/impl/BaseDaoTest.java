@@ -0,0 +1,73 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+public class BaseDaoTest {
+	
+	@Test
+	public void padInClause_shouldPadValuesToTheNextPowerOfTwo() {
+		assertThat(BaseDao.padInClause(Arrays.asList(1, 2, 3)), contains(1, 2, 3, 3));
+		assertThat(BaseDao.padInClause(Arrays.asList(1, 2, 3, 4, 5)), contains(1, 2, 3, 4, 5, 5, 5, 5));
+	}
+	
+	@Test
+	public void padInClause_shouldNotPadAPowerOfTwo() {
+		List<Integer> values = Arrays.asList(1, 2, 3, 4);
+		
+		assertThat(BaseDao.padInClause(values), sameInstance(values));
+		assertThat(BaseDao.padInClause(Collections.singletonList("a")), contains("a"));
+	}
+	
+	@Test
+	public void padInClause_shouldNotPadEmptyOrLargeLists() {
+		List<Integer> values = new ArrayList<>();
+		for (int i = 0; i <= BaseDao.MAX_PADDED_IN_CLAUSE_SIZE; i++) {
+			values.add(i);
+		}
+		
+		Collection<Integer> padded = BaseDao.padInClause(values);
+		
+		assertThat(padded, hasSize(BaseDao.MAX_PADDED_IN_CLAUSE_SIZE + 1));
+		assertThat(BaseDao.padInClause(Collections.emptyList()), empty());
+	}
+	
+	@Test
+	public void padInClause_shouldNotPadPastOneThousandValues() {
+		List<Integer> values = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			values.add(i);
+		}
+		
+		assertThat(BaseDao.padInClause(values), hasSize(1000));
+		assertThat(BaseDao.padInClause(values.subList(0, 600)), hasSize(600));
+		assertThat(BaseDao.padInClause(values.subList(0, 500)), hasSize(512));
+		
+		// the chunks used to load search results stay within the limit once padded
+		for (List<Integer> chunk : Lists.partition(values, BaseFhirDao.MAX_IN_CLAUSE_SIZE)) {
+			assertThat(BaseDao.padInClause(chunk).size(), lessThanOrEqualTo(BaseFhirDao.MAX_IN_CLAUSE_SIZE));
+		}
+	}
+}
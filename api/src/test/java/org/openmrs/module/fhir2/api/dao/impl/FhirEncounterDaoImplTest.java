@@ -10,15 +10,38 @@
 package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.intThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Encounter;
+import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.search.SearchQueryMonitor;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -31,6 +54,12 @@ public class FhirEncounterDaoImplTest extends BaseModuleContextSensitiveTest {
 	
 	private static final String UNKNOWN_ENCOUNTER_UUID = "xx923xx-3423kk-2323-232jk23";
 	
+	private static final int ENCOUNTER_ID = 1;
+	
+	private static final String PATIENT_UUID = "a194be38-271a-44cb-ba3f-f2dbf4831fe9";
+	
+	private static final String LOCATION_UUID = "c36006e5-9fbb-4f20-866b-0ece245615a1";
+	
 	private static final String ENCOUNTER_INITIAL_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirEncounterDaoImplTest_initial_data.xml";
 	
 	@Autowired
@@ -59,4 +88,111 @@ public class FhirEncounterDaoImplTest extends BaseModuleContextSensitiveTest {
 		Encounter encounter = dao.get(UNKNOWN_ENCOUNTER_UUID);
 		assertThat(encounter, nullValue());
 	}
+	
+	@Test
+	public void getSearchResultsByIds_shouldRecordStatementsRunToLoadEncounters() {
+		SearchQueryMonitor searchQueryMonitor = mock(SearchQueryMonitor.class);
+		dao.setSearchQueryMonitor(searchQueryMonitor);
+		SearchParameterMap theParams = new SearchParameterMap();
+		
+		assertThat(dao.getSearchResultsByIds(theParams, new int[] { ENCOUNTER_ID }).size(), equalTo(1));
+		verify(searchQueryMonitor).record(eq("FhirEncounterDaoImpl"), eq("searchResultsByIds"), same(theParams), isNull(),
+		    anyLong(), eq(1), intThat(statements -> statements >= 1));
+	}
+	
+	@Test
+	public void getIncludedUuids_shouldReturnUuidsOfIncludedPatients() {
+		assertThat(dao.getIncludedUuids(new SearchParameterMap(), new int[] { ENCOUNTER_ID },
+		    FhirConstants.INCLUDE_PATIENT_PARAM), contains(PATIENT_UUID));
+	}
+	
+	@Test
+	public void getIncludedUuids_shouldReturnUuidsOfIncludedLocations() {
+		assertThat(dao.getIncludedUuids(new SearchParameterMap(), new int[] { ENCOUNTER_ID },
+		    FhirConstants.INCLUDE_LOCATION_PARAM), contains(LOCATION_UUID));
+	}
+	
+	@Test
+	public void getIncludedUuids_shouldReturnNullForUnsupportedInclude() {
+		assertThat(dao.getIncludedUuids(new SearchParameterMap(), new int[] { ENCOUNTER_ID },
+		    FhirConstants.INCLUDE_PARTICIPANT_PARAM), nullValue());
+	}
+	
+	@Test
+	public void getIncludedUuids_shouldReadUuidsFromLoadedReferencesWithoutQuerying() {
+		SearchQueryMonitor searchQueryMonitor = mock(SearchQueryMonitor.class);
+		dao.setSearchQueryMonitor(searchQueryMonitor);
+		
+		Encounter encounter = dao.get(ENCOUNTER_UUID);
+		Hibernate.initialize(encounter.getPatient());
+		
+		assertThat(dao.getIncludedUuids(new SearchParameterMap(), Collections.singletonList(encounter),
+		    FhirConstants.INCLUDE_PATIENT_PARAM), contains(PATIENT_UUID));
+		verifyNoInteractions(searchQueryMonitor);
+	}
+	
+	@Test
+	public void getIncludedUuids_shouldQueryUuidsOfReferencesNotLoaded() {
+		sessionFactory.getCurrentSession().clear();
+		Encounter encounter = dao.get(ENCOUNTER_UUID);
+		assertThat(Hibernate.isInitialized(encounter.getPatient()), is(false));
+		
+		assertThat(dao.getIncludedUuids(new SearchParameterMap(), Collections.singletonList(encounter),
+		    FhirConstants.INCLUDE_PATIENT_PARAM), contains(PATIENT_UUID));
+		assertThat(Hibernate.isInitialized(encounter.getPatient()), is(false));
+	}
+	
+	@Test
+	public void streamSearchResults_shouldReturnEveryMatchingEncounter() {
+		SearchParameterMap theParams = new SearchParameterMap();
+		List<String> expectedUuids = dao.getSearchResultUuids(theParams);
+		
+		try (Stream<Encounter> encounters = dao.streamSearchResults(theParams)) {
+			assertThat(encounters.map(Encounter::getUuid).collect(Collectors.toList()),
+			    containsInAnyOrder(expectedUuids.toArray()));
+		}
+	}
+	
+	@Test
+	public void streamSearchResults_shouldReturnEncountersInOrderOfId() {
+		try (Stream<Encounter> encounters = dao.streamSearchResults(new SearchParameterMap())) {
+			List<Integer> ids = encounters.map(Encounter::getEncounterId).collect(Collectors.toList());
+			
+			assertThat(ids, equalTo(ids.stream().sorted().collect(Collectors.toList())));
+		}
+	}
+	
+	@Test
+	public void streamSearchResults_shouldReturnEveryMatchingEncounterAcrossBatches() {
+		SearchParameterMap theParams = new SearchParameterMap();
+		List<String> expectedUuids = dao.getSearchResultUuids(theParams);
+		assertThat(expectedUuids.size(), greaterThan(2));
+		
+		dao.setStreamBatchSize(2);
+		try (Stream<Encounter> encounters = dao.streamSearchResults(theParams)) {
+			assertThat(encounters.map(Encounter::getUuid).collect(Collectors.toList()),
+			    containsInAnyOrder(expectedUuids.toArray()));
+		}
+	}
+	
+	@Test
+	public void streamSearchResults_shouldEvictEachBatchOnceTheNextIsLoaded() {
+		Session session = sessionFactory.getCurrentSession();
+		session.clear();
+		
+		dao.setStreamBatchSize(1);
+		Encounter second;
+		try (Stream<Encounter> encounters = dao.streamSearchResults(new SearchParameterMap())) {
+			Iterator<Encounter> iterator = encounters.iterator();
+			Encounter first = iterator.next();
+			assertThat(session.contains(first), is(true));
+			
+			second = iterator.next();
+			assertThat(session.contains(first), is(false));
+			assertThat(session.contains(second), is(true));
+		}
+		
+		// closing the stream evicts the last batch
+		assertThat(session.contains(second), is(false));
+	}
 }
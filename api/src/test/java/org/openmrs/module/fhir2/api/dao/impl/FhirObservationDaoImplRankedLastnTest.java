@@ -0,0 +1,166 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openmrs.module.fhir2.api.dao.impl.FhirObservationDaoImpl.LASTN_PAGE_SIZE;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.uhn.fhir.rest.param.NumberParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.DatabaseFeatures;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FhirObservationDaoImplRankedLastnTest {
+	
+	private static final int MAX = 2;
+	
+	@Mock
+	private SessionFactory sessionFactory;
+	
+	@Mock
+	private Session session;
+	
+	@Mock
+	private Criteria criteria;
+	
+	@Mock
+	private CriteriaQuery criteriaQuery;
+	
+	@Mock
+	private DatabaseFeatures databaseFeatures;
+	
+	private FhirObservationDaoImpl dao;
+	
+	@Before
+	public void setup() {
+		dao = new FhirObservationDaoImpl();
+		dao.setSessionFactory(sessionFactory);
+		dao.setDatabaseFeatures(databaseFeatures);
+		
+		when(sessionFactory.getCurrentSession()).thenReturn(session);
+		when(session.createCriteria(Obs.class)).thenReturn(criteria);
+		when(databaseFeatures.supportsWindowFunctions()).thenReturn(true);
+		when(criteria.addOrder(any(Order.class))).thenReturn(criteria);
+		when(criteria.setFirstResult(anyInt())).thenReturn(criteria);
+		when(criteria.setMaxResults(anyInt())).thenReturn(criteria);
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldRankObservationsOfEachConceptByDateInTheDatabase() {
+		when(criteria.list()).thenReturn(rows(0, 1, 1));
+		when(criteriaQuery.getSQLAlias(criteria)).thenReturn("this_");
+		
+		dao.getSearchResultUuids(lastn());
+		
+		ArgumentCaptor<Projection> projection = ArgumentCaptor.forClass(Projection.class);
+		verify(criteria).setProjection(projection.capture());
+		assertThat(projection.getValue(), instanceOf(ProjectionList.class));
+		
+		ProjectionList projections = (ProjectionList) projection.getValue();
+		assertThat(projections.getLength(), equalTo(2));
+		assertThat(projections.getProjection(1).toSqlString(criteria, 1, criteriaQuery), equalTo(
+		    "dense_rank() over (partition by this_.concept_id order by this_.obs_datetime desc) as lastn_rank"));
+		
+		ArgumentCaptor<Order> orders = ArgumentCaptor.forClass(Order.class);
+		verify(criteria, times(2)).addOrder(orders.capture());
+		assertThat(orders.getAllValues().get(0).toSqlString(criteria, criteriaQuery), equalTo("lastn_rank asc"));
+		assertThat(orders.getAllValues().get(1).toString(), equalTo("obsId asc"));
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldStopReadingAtTheFirstObservationRankedAboveTheMaximum() {
+		List<Object[]> page = rows(0, LASTN_PAGE_SIZE - 1, 1);
+		page.addAll(rows(LASTN_PAGE_SIZE - 1, 1, MAX + 1));
+		when(criteria.list()).thenReturn(page);
+		
+		List<String> results = dao.getSearchResultUuids(lastn());
+		
+		// the page is full, but the next page is not read as every later row is ranked above the maximum
+		assertThat(results, hasSize(LASTN_PAGE_SIZE - 1));
+		verify(criteria).setFirstResult(0);
+		verify(criteria).setMaxResults(LASTN_PAGE_SIZE);
+		verify(criteria, times(1)).list();
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldReadFurtherPagesUntilTheRankExceedsTheMaximum() {
+		List<Object[]> secondPage = rows(LASTN_PAGE_SIZE, 2, MAX);
+		secondPage.addAll(rows(LASTN_PAGE_SIZE + 2, 2, MAX + 1));
+		when(criteria.list()).thenReturn(rows(0, LASTN_PAGE_SIZE, 1), secondPage);
+		
+		List<String> results = dao.getSearchResultUuids(lastn());
+		
+		assertThat(results, hasSize(LASTN_PAGE_SIZE + 2));
+		assertThat(results.subList(LASTN_PAGE_SIZE, results.size()),
+		    contains(uuid(LASTN_PAGE_SIZE), uuid(LASTN_PAGE_SIZE + 1)));
+		verify(criteria).setFirstResult(0);
+		verify(criteria).setFirstResult(LASTN_PAGE_SIZE);
+		verify(criteria, times(2)).list();
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldStopReadingAtAPartialPage() {
+		when(criteria.list()).thenReturn(rows(0, 3, 1));
+		
+		List<String> results = dao.getSearchResultUuids(lastn());
+		
+		assertThat(results, contains(uuid(0), uuid(1), uuid(2)));
+		verify(criteria, times(1)).list();
+	}
+	
+	private static SearchParameterMap lastn() {
+		return new SearchParameterMap().addParameter(FhirConstants.MAX_SEARCH_HANDLER, new NumberParam(MAX))
+		        .addParameter(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER, new StringParam());
+	}
+	
+	/**
+	 * @return count rows of uuid and rank, numbered from first, all with the given rank
+	 */
+	private static List<Object[]> rows(int first, int count, int rank) {
+		List<Object[]> rows = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			rows.add(new Object[] { uuid(first + i), rank });
+		}
+		
+		return rows;
+	}
+	
+	private static String uuid(int row) {
+		return "obs-" + row;
+	}
+}
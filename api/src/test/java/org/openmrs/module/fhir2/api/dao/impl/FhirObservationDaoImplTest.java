@@ -10,18 +10,35 @@
 package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import ca.uhn.fhir.rest.param.NumberParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.Encounter;
 import org.openmrs.Obs;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
 import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
@@ -41,6 +58,8 @@ public class FhirObservationDaoImplTest extends BaseModuleContextSensitiveTest {
 	
 	private static final String OBS_CONCEPT_ID = "5089";
 	
+	private static final String PATIENT_UUID = "5946f880-b197-400b-9caa-a3c661d23041";
+	
 	@Autowired
 	private FhirObservationDao dao;
 	
@@ -80,4 +99,103 @@ public class FhirObservationDaoImplTest extends BaseModuleContextSensitiveTest {
 		assertThat(obs, notNullValue());
 	}
 	
+	@Test
+	public void search_shouldReturnResultsInTheOrderOfTheRequestedUuids() {
+		SearchParameterMap theParams = new SearchParameterMap();
+		
+		List<String> matchingResourceUuids = new ArrayList<>(dao.getSearchResultUuids(theParams));
+		Collections.reverse(matchingResourceUuids);
+		
+		List<String> resultUuids = dao.getSearchResults(theParams, matchingResourceUuids).stream().map(Obs::getUuid)
+		        .collect(Collectors.toList());
+		
+		assertThat(resultUuids, equalTo(matchingResourceUuids));
+	}
+	
+	@Test
+	public void search_shouldReturnIdsOfAllMatchingResults() {
+		SearchParameterMap theParams = new SearchParameterMap();
+		
+		int[] ids = dao.getSearchResultIds(theParams);
+		List<String> resultUuids = dao.getSearchResultsByIds(theParams, ids).stream().map(Obs::getUuid)
+		        .collect(Collectors.toList());
+		
+		assertThat(resultUuids, containsInAnyOrder(dao.getSearchResultUuids(theParams).toArray()));
+	}
+	
+	@Test
+	public void search_shouldReturnResultsInTheOrderOfTheRequestedIds() {
+		int[] ids = dao.getSearchResultIds(new SearchParameterMap());
+		int[] reversedIds = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			reversedIds[i] = ids[ids.length - 1 - i];
+		}
+		
+		int[] resultIds = dao.getSearchResultsByIds(new SearchParameterMap(), reversedIds).stream().mapToInt(Obs::getId)
+		        .toArray();
+		
+		assertThat(resultIds, equalTo(reversedIds));
+	}
+	
+	@Test
+	public void search_shouldReturnCountMatchingSearchQuery() {
+		SearchParameterMap theParams = new SearchParameterMap();
+		
+		assertThat(dao.getSearchResultsCount(theParams), equalTo(dao.getSearchResultUuids(theParams).size()));
+	}
+	
+	@Test
+	public void search_shouldStopCountingAtMaximum() {
+		SearchParameterMap theParams = new SearchParameterMap();
+		int count = dao.getSearchResultsCount(theParams);
+		
+		assertThat(dao.getSearchResultsCount(theParams, count + 1), equalTo(count));
+		assertThat(dao.getSearchResultsCount(theParams, 2), equalTo(Math.min(count, 2)));
+		assertThat(dao.getSearchResultsCount(theParams, 0), equalTo(0));
+	}
+	
+	@Test
+	public void search_shouldReturnEachResultExactlyOnceWhenLoadingWindows() {
+		SearchParameterMap theParams = new SearchParameterMap();
+		
+		List<String> matchingResourceUuids = dao.getSearchResultUuids(theParams);
+		int count = dao.getSearchResultsCount(theParams);
+		
+		List<String> windowedUuids = new ArrayList<>();
+		for (int i = 0; i < count; i += 3) {
+			List<Obs> window = dao.getSearchResults(theParams, i, 3);
+			assertThat(window.size(), lessThanOrEqualTo(3));
+			window.forEach(o -> windowedUuids.add(o.getUuid()));
+		}
+		
+		assertThat(windowedUuids, containsInAnyOrder(matchingResourceUuids.toArray()));
+	}
+	
+	@Test
+	public void search_shouldIgnoreVoidedEncountersForLastnEncounters() {
+		List<Obs> lastEncounterObs = dao.getSearchResults(lastnEncounters(1), dao.getSearchResultUuids(lastnEncounters(1)));
+		assertThat(lastEncounterObs, not(empty()));
+		
+		Encounter lastEncounter = lastEncounterObs.get(0).getEncounter();
+		lastEncounter.setVoided(true);
+		lastEncounter.setVoidReason("test");
+		Context.flushSession();
+		
+		List<Obs> results = dao.getSearchResults(lastnEncounters(1), dao.getSearchResultUuids(lastnEncounters(1)));
+		
+		// the voided encounter neither appears in the results nor counts towards the last encounter
+		assertThat(results, not(empty()));
+		assertThat(results, everyItem(hasProperty("encounter", hasProperty("voided", is(false)))));
+	}
+	
+	private static SearchParameterMap lastnEncounters(int max) {
+		TokenAndListParam code = new TokenAndListParam().addAnd(new TokenParam().setValue(OBS_CONCEPT_ID));
+		ReferenceAndListParam patient = new ReferenceAndListParam()
+		        .addAnd(new ReferenceOrListParam().add(new ReferenceParam().setValue(PATIENT_UUID)));
+		
+		return new SearchParameterMap().addParameter(FhirConstants.CODED_SEARCH_HANDLER, code)
+		        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patient)
+		        .addParameter(FhirConstants.MAX_SEARCH_HANDLER, new NumberParam(max))
+		        .addParameter(FhirConstants.LASTN_ENCOUNTERS_SEARCH_HANDLER, new StringParam());
+	}
 }
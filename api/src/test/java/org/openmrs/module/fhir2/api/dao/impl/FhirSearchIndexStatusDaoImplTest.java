@@ -0,0 +1,78 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.PersonName;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class FhirSearchIndexStatusDaoImplTest extends BaseModuleContextSensitiveTest {
+	
+	private static final String INDEX_NAME = "fhir2.search.personNameTokenIndex";
+	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	private FhirSearchIndexStatusDaoImpl dao;
+	
+	@Before
+	public void setup() {
+		dao = new FhirSearchIndexStatusDaoImpl();
+		dao.setSessionFactory(sessionFactory);
+	}
+	
+	@Test
+	public void isCurrent_shouldReturnFalseForIndexNeverMarkedCurrent() {
+		assertThat(dao.isCurrent(INDEX_NAME, PersonName.class), equalTo(false));
+	}
+	
+	@Test
+	public void isCurrent_shouldReturnTrueForIndexMarkedCurrentSinceTheLastChange() {
+		dao.markCurrent(INDEX_NAME, new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1)));
+		
+		assertThat(dao.isCurrent(INDEX_NAME, PersonName.class), equalTo(true));
+	}
+	
+	@Test
+	public void isCurrent_shouldReturnFalseWhenObjectsChangedAfterTheIndexWasMarkedCurrent() {
+		dao.markCurrent(INDEX_NAME, new Date(0));
+		
+		assertThat(dao.isCurrent(INDEX_NAME, PersonName.class), equalTo(false));
+	}
+	
+	@Test
+	public void markCurrent_shouldReplaceThePreviousDate() {
+		dao.markCurrent(INDEX_NAME, new Date(0));
+		dao.markCurrent(INDEX_NAME, new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1)));
+		
+		assertThat(dao.isCurrent(INDEX_NAME, PersonName.class), equalTo(true));
+	}
+	
+	@Test
+	public void clear_shouldRequireTheIndexToBeMarkedCurrentAgain() {
+		dao.markCurrent(INDEX_NAME, new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1)));
+		
+		dao.clear(INDEX_NAME);
+		
+		assertThat(dao.isCurrent(INDEX_NAME, PersonName.class), equalTo(false));
+	}
+}
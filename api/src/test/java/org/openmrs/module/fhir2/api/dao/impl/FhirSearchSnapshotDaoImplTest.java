@@ -0,0 +1,135 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.model.FhirSearchSnapshot;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class FhirSearchSnapshotDaoImplTest extends BaseModuleContextSensitiveTest {
+	
+	private static final String SNAPSHOT_UUID = "d4bd1a1a-8e65-4e2a-a1ff-c1a4cfe1d1b4";
+	
+	private static final String OTHER_SNAPSHOT_UUID = "0f67a9e4-4b1c-4b0e-8a3f-54fe0a38e25c";
+	
+	private static final String THIRD_SNAPSHOT_UUID = "9a3c6f4d-2a57-4b8c-9d6e-3e3b7b1f5a21";
+	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	private FhirSearchSnapshotDaoImpl dao;
+	
+	@Before
+	public void setup() {
+		dao = new FhirSearchSnapshotDaoImpl();
+		dao.setSessionFactory(sessionFactory);
+	}
+	
+	@Test
+	public void get_shouldReturnSavedSnapshotByUuid() {
+		// larger than the default length of a binary column
+		byte[] results = new byte[100_000];
+		for (int i = 0; i < results.length; i++) {
+			results[i] = (byte) i;
+		}
+		
+		FhirSearchSnapshot snapshot = newSnapshot(SNAPSHOT_UUID, TimeUnit.MINUTES.toMillis(1));
+		snapshot.setResults(results);
+		dao.save(snapshot);
+		sessionFactory.getCurrentSession().flush();
+		sessionFactory.getCurrentSession().clear();
+		
+		FhirSearchSnapshot result = dao.get(SNAPSHOT_UUID);
+		
+		assertThat(result, notNullValue());
+		assertThat(result.getDaoBean(), equalTo("obsDao"));
+		assertThat(result.getSearchParameters(), equalTo(new byte[] { 1, 2, 3 }));
+		assertThat(result.getResults(), equalTo(results));
+	}
+	
+	@Test
+	public void get_shouldReturnNullForUnknownUuid() {
+		assertThat(dao.get(SNAPSHOT_UUID), nullValue());
+	}
+	
+	@Test
+	public void deleteExpired_shouldDeleteOnlyExpiredSnapshots() {
+		dao.save(newSnapshot(SNAPSHOT_UUID, -TimeUnit.MINUTES.toMillis(1)));
+		dao.save(newSnapshot(OTHER_SNAPSHOT_UUID, TimeUnit.MINUTES.toMillis(1)));
+		sessionFactory.getCurrentSession().flush();
+		
+		assertThat(dao.deleteExpired(new Date()), equalTo(1));
+		sessionFactory.getCurrentSession().clear();
+		
+		assertThat(dao.get(SNAPSHOT_UUID), nullValue());
+		assertThat(dao.get(OTHER_SNAPSHOT_UUID), notNullValue());
+	}
+	
+	@Test
+	public void deleteOldest_shouldKeepOnlyTheNewestSnapshots() {
+		dao.save(newSnapshot(SNAPSHOT_UUID, TimeUnit.MINUTES.toMillis(1)));
+		dao.save(newSnapshot(OTHER_SNAPSHOT_UUID, TimeUnit.MINUTES.toMillis(1)));
+		dao.save(newSnapshot(THIRD_SNAPSHOT_UUID, TimeUnit.MINUTES.toMillis(1)));
+		sessionFactory.getCurrentSession().flush();
+		
+		assertThat(dao.deleteOldest(2), equalTo(1));
+		sessionFactory.getCurrentSession().clear();
+		
+		assertThat(dao.get(SNAPSHOT_UUID), nullValue());
+		assertThat(dao.get(OTHER_SNAPSHOT_UUID), notNullValue());
+		assertThat(dao.get(THIRD_SNAPSHOT_UUID), notNullValue());
+	}
+	
+	@Test
+	public void deleteOldest_shouldNotDeleteWhenBelowMaximum() {
+		dao.save(newSnapshot(SNAPSHOT_UUID, TimeUnit.MINUTES.toMillis(1)));
+		sessionFactory.getCurrentSession().flush();
+		
+		assertThat(dao.deleteOldest(2), equalTo(0));
+		assertThat(dao.get(SNAPSHOT_UUID), notNullValue());
+	}
+	
+	@Test
+	public void deleteOldest_shouldDeleteEverySnapshotWhenNoneMayBeKept() {
+		dao.save(newSnapshot(SNAPSHOT_UUID, TimeUnit.MINUTES.toMillis(1)));
+		dao.save(newSnapshot(OTHER_SNAPSHOT_UUID, TimeUnit.MINUTES.toMillis(1)));
+		sessionFactory.getCurrentSession().flush();
+		
+		assertThat(dao.deleteOldest(0), equalTo(2));
+	}
+	
+	private FhirSearchSnapshot newSnapshot(String uuid, long timeToLive) {
+		Date now = new Date();
+		
+		FhirSearchSnapshot snapshot = new FhirSearchSnapshot();
+		snapshot.setUuid(uuid);
+		snapshot.setDaoBean("obsDao");
+		snapshot.setTranslatorBean("obsTranslator");
+		snapshot.setIncludeBean("searchQueryInclude");
+		snapshot.setSearchParameters(new byte[] { 1, 2, 3 });
+		snapshot.setDateCreated(now);
+		snapshot.setExpiryDate(new Date(now.getTime() + timeToLive));
+		return snapshot;
+	}
+}
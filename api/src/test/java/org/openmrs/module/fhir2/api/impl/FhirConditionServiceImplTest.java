@@ -226,11 +226,11 @@ public class FhirConditionServiceImplTest {
 		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.LAST_UPDATED_PROPERTY, lastUpdated)
 		        .setSortSpec(sort);
 		
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(OBS_UUID));
-		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(obsCondition));
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(obsCondition));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(obsCondition)).thenReturn(condition);
 		
 		IBundleProvider result = fhirConditionService.searchConditions(patientReference, codeList, clinicalList, onsetDate,
@@ -205,12 +205,12 @@ public class FhirDiagnosticReportServiceImplTest {
 		
 		SearchParameterMap theParams = new SearchParameterMap();
 		
-		when(dao.getSearchResults(any(), any())).thenReturn(fhirDiagnosticReports);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(fhirDiagnosticReports);
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
 		when(translator.toFhirResource(fhirDiagnosticReport)).thenReturn(diagnosticReport);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = service.searchForDiagnosticReports(null, null, null, null, null, null, null, null, null);
 		
@@ -237,12 +237,12 @@ public class FhirDiagnosticReportServiceImplTest {
 		
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER, includes);
 		
-		when(dao.getSearchResults(any(), any())).thenReturn(diagnosticReportList);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(diagnosticReportList);
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
 		when(translator.toFhirResource(fhirDiagnosticReport)).thenReturn(diagnosticReport);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Patient()));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.singleton(new Patient()));
 		
 		IBundleProvider results = service.searchForDiagnosticReports(null, null, null, null, null, null, null, null,
 		    includes);
@@ -271,12 +271,12 @@ public class FhirDiagnosticReportServiceImplTest {
 		
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER, includes);
 		
-		when(dao.getSearchResults(any(), any())).thenReturn(diagnosticReportList);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(diagnosticReportList);
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
 		when(translator.toFhirResource(fhirDiagnosticReport)).thenReturn(diagnosticReport);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = service.searchForDiagnosticReports(null, null, null, null, null, null, null, null,
 		    includes);
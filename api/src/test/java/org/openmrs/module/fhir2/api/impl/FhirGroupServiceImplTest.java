@@ -206,12 +206,12 @@ public class FhirGroupServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap()
 		        .addParameter(FhirConstants.PARTICIPANT_REFERENCE_SEARCH_HANDLER, participant);
 		
-		when(dao.getSearchResults(any(), any())).thenReturn(cohorts);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(COHORT_UUID));
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(cohorts);
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
 		when(translator.toFhirResource(cohort)).thenReturn(group);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = groupService.searchForGroups(participant);
 		
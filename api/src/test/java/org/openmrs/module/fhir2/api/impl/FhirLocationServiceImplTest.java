@@ -10,6 +10,7 @@
 package org.openmrs.module.fhir2.api.impl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItem;
@@ -17,9 +18,12 @@ import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
@@ -30,6 +34,7 @@ import java.util.stream.Collectors;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import org.hl7.fhir.r4.model.Address;
 import org.hl7.fhir.r4.model.Location;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -43,12 +48,15 @@ import org.openmrs.module.fhir2.api.search.SearchQueryBundleProvider;
 import org.openmrs.module.fhir2.api.search.SearchQueryInclude;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.LocationTranslator;
+import org.openmrs.module.fhir2.api.util.FhirRequestContext;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FhirLocationServiceImplTest {
 	
 	private static final String LOCATION_UUID = "a1758922-b132-4ead-8ebe-5e2b4eaf43a1";
 	
+	private static final String OTHER_LOCATION_UUID = "8d6c993e-c2cc-11de-8d13-0010c6dffd0f";
+	
 	private static final String LOCATION_NAME = "Test location 1";
 	
 	private static final String LOCATION_DESCRIPTION = "Test description";
@@ -127,6 +135,11 @@ public class FhirLocationServiceImplTest {
 		fhirLocation.setAddress(address);
 	}
 	
+	@After
+	public void tearDown() {
+		FhirRequestContext.clear();
+	}
+	
 	@Test
 	public void getLocationByUuid_shouldGetLocationByUuid() {
 		when(locationDao.get(LOCATION_UUID)).thenReturn(location);
@@ -147,13 +160,13 @@ public class FhirLocationServiceImplTest {
 		
 		SearchParameterMap theParams = new SearchParameterMap();
 		
-		when(locationDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(LOCATION_UUID));
+		when(locationDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        locationDao, locationTranslator, globalPropertyService, searchQueryInclude));
 		
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(locationTranslator.toFhirResource(location)).thenReturn(fhirLocation);
-		when(locationDao.getSearchResults(any(), any())).thenReturn(locations);
+		when(locationDao.getSearchResultsByIds(any(), any())).thenReturn(locations);
 		
 		IBundleProvider results = fhirLocationService.searchForLocations(null, null, null, null, null, null, null, null,
 		    null, null, null, null);
@@ -170,4 +183,36 @@ public class FhirLocationServiceImplTest {
 		return results.getResources(START_INDEX, END_INDEX).stream().filter(it -> it instanceof Location)
 		        .map(it -> (Location) it).collect(Collectors.toList());
 	}
+	
+	@Test
+	public void get_shouldReturnLocationsInTheOrderOfTheUuids() {
+		org.openmrs.Location otherLocation = new org.openmrs.Location();
+		otherLocation.setUuid(OTHER_LOCATION_UUID);
+		otherLocation.setDateCreated(new Date());
+		Location otherFhirLocation = new Location();
+		otherFhirLocation.setId(OTHER_LOCATION_UUID);
+		
+		List<String> uuids = Arrays.asList(OTHER_LOCATION_UUID, LOCATION_UUID);
+		when(locationDao.get(uuids)).thenReturn(Arrays.asList(location, otherLocation));
+		when(locationTranslator.toFhirResource(location)).thenReturn(fhirLocation);
+		when(locationTranslator.toFhirResource(otherLocation)).thenReturn(otherFhirLocation);
+		
+		assertThat(fhirLocationService.get(uuids), contains(otherFhirLocation, fhirLocation));
+	}
+	
+	@Test
+	public void get_shouldTranslateLocationsChangedSinceTheyWereTranslatedInTheRequest() {
+		FhirRequestContext.enableTranslatedResourceCache();
+		List<String> uuids = Collections.singletonList(LOCATION_UUID);
+		when(locationDao.get(uuids)).thenReturn(Collections.singletonList(location));
+		when(locationTranslator.toFhirResource(location)).thenReturn(fhirLocation);
+		
+		fhirLocationService.get(uuids);
+		fhirLocationService.get(uuids);
+		verify(locationTranslator, times(1)).toFhirResource(location);
+		
+		location.setDateChanged(new Date(location.getDateCreated().getTime() + 1000L));
+		fhirLocationService.get(uuids);
+		verify(locationTranslator, times(2)).toFhirResource(location);
+	}
 }
@@ -129,11 +129,11 @@ public class FhirObservationServiceImplTest {
 		theParams.addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patientReference);
 		
 		when(globalPropertyService.getGlobalProperty(anyString(), anyInt())).thenReturn(10);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(OBS_UUID));
-		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(obs));
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(obs));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(obs)).thenReturn(observation);
 		
 		IBundleProvider results = fhirObservationService.searchForObservations(null, patientReference, null, null, null,
@@ -179,11 +179,11 @@ public class FhirObservationServiceImplTest {
 		        .addParameter(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER, new StringParam());
 		
 		when(globalPropertyService.getGlobalProperty(anyString(), anyInt())).thenReturn(10);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(OBS_UUID));
-		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(obs));
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(obs));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(obs)).thenReturn(observation);
 		
 		IBundleProvider results = fhirObservationService.getLastnObservations(max, referenceParam, categories, code);
@@ -228,11 +228,11 @@ public class FhirObservationServiceImplTest {
 		        .addParameter(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER, new StringParam());
 		
 		when(globalPropertyService.getGlobalProperty(anyString(), anyInt())).thenReturn(10);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(OBS_UUID));
-		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(obs));
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(obs));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(obs)).thenReturn(observation);
 		
 		IBundleProvider results = fhirObservationService.getLastnObservations(null, referenceParam, categories, code);
@@ -269,11 +269,11 @@ public class FhirObservationServiceImplTest {
 		        .addParameter(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER, new StringParam());
 		
 		when(globalPropertyService.getGlobalProperty(anyString(), anyInt())).thenReturn(10);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(OBS_UUID));
-		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(obs));
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(obs));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(obs)).thenReturn(observation);
 		
 		IBundleProvider results = fhirObservationService.getLastnObservations(max, null, categories, code);
@@ -318,11 +318,11 @@ public class FhirObservationServiceImplTest {
 		        .addParameter(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER, new StringParam());
 		
 		when(globalPropertyService.getGlobalProperty(anyString(), anyInt())).thenReturn(10);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(OBS_UUID));
-		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(obs));
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(obs));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(obs)).thenReturn(observation);
 		
 		IBundleProvider results = fhirObservationService.getLastnEncountersObservations(max, referenceParam, categories,
@@ -368,11 +368,11 @@ public class FhirObservationServiceImplTest {
 		        .addParameter(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER, new StringParam());
 		
 		when(globalPropertyService.getGlobalProperty(anyString(), anyInt())).thenReturn(10);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(OBS_UUID));
-		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(obs));
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(obs));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(obs)).thenReturn(observation);
 		
 		IBundleProvider results = fhirObservationService.getLastnEncountersObservations(null, referenceParam, categories,
@@ -410,11 +410,11 @@ public class FhirObservationServiceImplTest {
 		        .addParameter(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER, new StringParam());
 		
 		when(globalPropertyService.getGlobalProperty(anyString(), anyInt())).thenReturn(10);
-		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(OBS_UUID));
-		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(obs));
+		when(dao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(dao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(obs));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(obs)).thenReturn(observation);
 		
 		IBundleProvider results = fhirObservationService.getLastnEncountersObservations(max, null, categories, code);
@@ -9,7 +9,6 @@
  */
 package org.openmrs.module.fhir2.api.impl;
 
-import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.hasItem;
@@ -60,6 +59,7 @@ import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.FhirUserService;
 import org.openmrs.module.fhir2.api.dao.FhirPractitionerDao;
+import org.openmrs.module.fhir2.api.search.ConcurrentSearchExecutor;
 import org.openmrs.module.fhir2.api.search.SearchQuery;
 import org.openmrs.module.fhir2.api.search.SearchQueryBundleProvider;
 import org.openmrs.module.fhir2.api.search.SearchQueryInclude;
@@ -148,6 +148,9 @@ public class FhirPractitionerServiceImplTest {
 	
 	private Practitioner practitioner2;
 	
+	@Mock
+	private ConcurrentSearchExecutor searchExecutor;
+	
 	@Before
 	public void setUp() {
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
@@ -159,6 +162,7 @@ public class FhirPractitionerServiceImplTest {
 		practitionerService.setUserService(userService);
 		practitionerService.setSearchQueryInclude(searchQueryInclude);
 		practitionerService.setGlobalPropertyService(globalPropertyService);
+		practitionerService.setSearchExecutor(searchExecutor);
 		
 		provider = new Provider();
 		provider.setUuid(UUID);
@@ -210,11 +214,11 @@ public class FhirPractitionerServiceImplTest {
 		
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(NAME_SEARCH_HANDLER, NAME_PROPERTY, name);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(singletonList(provider));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
@@ -233,7 +237,7 @@ public class FhirPractitionerServiceImplTest {
 		StringAndListParam name = new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam(USER_NAME)));
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(NAME_SEARCH_HANDLER, NAME_PROPERTY, name);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		
@@ -254,11 +258,11 @@ public class FhirPractitionerServiceImplTest {
 		StringAndListParam name = new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam(USER_NAME)));
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(NAME_SEARCH_HANDLER, NAME_PROPERTY, name);
 		
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(provider));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider(practitioner2));
@@ -278,7 +282,7 @@ public class FhirPractitionerServiceImplTest {
 		StringAndListParam name = new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam(WRONG_NAME)));
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(NAME_SEARCH_HANDLER, NAME_PROPERTY, name);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		
@@ -299,11 +303,11 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
 		    identifier);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -323,7 +327,7 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
 		    identifier);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		
@@ -344,11 +348,11 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
 		    FhirConstants.GIVEN_PROPERTY, givenName);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider(practitioner2));
@@ -369,7 +373,7 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
 		    FhirConstants.GIVEN_PROPERTY, givenName);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		
@@ -390,9 +394,9 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
 		    FhirConstants.FAMILY_PROPERTY, familyName);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(provider));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
@@ -415,7 +419,7 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(NAME_SEARCH_HANDLER, FAMILY_PROPERTY,
 		    familyName);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider(practitioner2));
@@ -436,11 +440,11 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(NAME_SEARCH_HANDLER, FAMILY_PROPERTY,
 		    familyName);
 		
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(singletonList(provider));
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(singletonList(UUID));
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(singletonList(provider));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider(practitioner2));
 		
@@ -460,7 +464,7 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
 		    FhirConstants.FAMILY_PROPERTY, familyName);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
@@ -480,9 +484,9 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.ADDRESS_SEARCH_HANDLER,
 		    FhirConstants.CITY_PROPERTY, city);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(provider));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
@@ -504,7 +508,7 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.ADDRESS_SEARCH_HANDLER,
 		    FhirConstants.CITY_PROPERTY, city);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
@@ -524,9 +528,9 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.ADDRESS_SEARCH_HANDLER,
 		    FhirConstants.STATE_PROPERTY, state);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
@@ -548,7 +552,7 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.ADDRESS_SEARCH_HANDLER,
 		    FhirConstants.STATE_PROPERTY, state);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
@@ -568,11 +572,11 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.ADDRESS_SEARCH_HANDLER,
 		    FhirConstants.POSTAL_CODE_PROPERTY, postalCode);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -592,7 +596,7 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.ADDRESS_SEARCH_HANDLER,
 		    FhirConstants.POSTAL_CODE_PROPERTY, postalCode);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
@@ -612,11 +616,11 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.ADDRESS_SEARCH_HANDLER,
 		    FhirConstants.COUNTRY_PROPERTY, country);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -636,7 +640,7 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.ADDRESS_SEARCH_HANDLER,
 		    FhirConstants.COUNTRY_PROPERTY, country);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
@@ -657,11 +661,11 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.COMMON_SEARCH_HANDLER,
 		    FhirConstants.ID_PROPERTY, uuid);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -682,7 +686,7 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.COMMON_SEARCH_HANDLER,
 		    FhirConstants.ID_PROPERTY, uuid);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
@@ -703,11 +707,11 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.COMMON_SEARCH_HANDLER,
 		    FhirConstants.LAST_UPDATED_PROPERTY, lastUpdated);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -729,7 +733,7 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.COMMON_SEARCH_HANDLER,
 		    FhirConstants.ID_PROPERTY, lastUpdated);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
@@ -751,9 +755,10 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER,
 		    revIncludes);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(singletonList(provider));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Encounter()));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(singletonList(provider));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Encounter()));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
@@ -778,9 +783,9 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER,
 		    revIncludes);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(singletonList(provider));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(singletonList(provider));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
@@ -804,9 +809,10 @@ public class FhirPractitionerServiceImplTest {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER,
 		    revIncludes);
 		
-		when(practitionerDao.getSearchResultUuids(any())).thenReturn(singletonList(UUID));
-		when(practitionerDao.getSearchResults(any(), any())).thenReturn(singletonList(provider));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Encounter()));
+		when(practitionerDao.getSearchResultIds(any())).thenReturn(new int[] { 1 });
+		when(practitionerDao.getSearchResultsByIds(any(), any())).thenReturn(singletonList(provider));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Encounter()));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
@@ -0,0 +1,132 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.mappings;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.BaseInMemoryMappingsTest;
+import org.openmrs.module.fhir2.model.FhirObservationCategoryMap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ObservationCategoryMapTest extends BaseInMemoryMappingsTest {
+	
+	private static final String LABORATORY_CONCEPT_CLASS_UUID = "8d4907b2-c2cc-11de-8d13-0010c6dffd0f";
+	
+	private static final String TEST_CONCEPT_CLASS_UUID = "8d4a4488-c2cc-11de-8d13-0010c6dffd0f";
+	
+	private ObservationCategoryMap categoryMap;
+	
+	@Before
+	public void setup() {
+		categoryMap = new ObservationCategoryMap() {
+			
+			@Override
+			Mappings loadMappings() {
+				loads.incrementAndGet();
+				
+				return new Mappings(
+				        ImmutableMap.of(LABORATORY_CONCEPT_CLASS_UUID, "laboratory", TEST_CONCEPT_CLASS_UUID, "laboratory"),
+				        ImmutableSetMultimap.of("laboratory", 1, "laboratory", 8));
+			}
+		};
+		categoryMap.setGlobalPropertyService(globalPropertyService);
+		categoryMap.setAdministrationService(administrationService);
+	}
+	
+	@Test
+	public void getConceptClassIds_shouldReturnTheConceptClassesMappedToTheCategory() {
+		whenEnabled();
+		
+		assertThat(categoryMap.getConceptClassIds("laboratory"), equalTo(new int[] { 1, 8 }));
+		assertThat(categoryMap.getConceptClassIds("exam"), equalTo(new int[0]));
+	}
+	
+	@Test
+	public void getCategory_shouldReturnTheCategoryOfTheConceptClassWithoutQuerying() {
+		whenEnabled();
+		
+		assertThat(categoryMap.getCategory(LABORATORY_CONCEPT_CLASS_UUID), equalTo("laboratory"));
+		assertThat(categoryMap.getCategory("unknown"), nullValue());
+		assertThat(categoryMap.getConceptClassIds("laboratory"), equalTo(new int[] { 1, 8 }));
+		assertThat(loads.get(), equalTo(1));
+	}
+	
+	@Test
+	public void refresh_shouldReloadTheMappings() {
+		whenEnabled();
+		
+		categoryMap.getCategory(LABORATORY_CONCEPT_CLASS_UUID);
+		categoryMap.refresh();
+		categoryMap.getCategory(LABORATORY_CONCEPT_CLASS_UUID);
+		
+		assertThat(loads.get(), equalTo(2));
+	}
+	
+	@Test
+	public void createMappings_shouldMatchEveryCategoryOfAConceptClassMappedTwice() {
+		ObservationCategoryMap.Mappings mappings = ObservationCategoryMap.createMappings(
+		    Arrays.asList(new Object[] { LABORATORY_CONCEPT_CLASS_UUID, 1, "laboratory" },
+		        new Object[] { TEST_CONCEPT_CLASS_UUID, 8, "laboratory" },
+		        new Object[] { LABORATORY_CONCEPT_CLASS_UUID, 1, "exam" }));
+		
+		categoryMap = new ObservationCategoryMap() {
+			
+			@Override
+			Mappings loadMappings() {
+				return mappings;
+			}
+		};
+		categoryMap.setGlobalPropertyService(globalPropertyService);
+		categoryMap.setAdministrationService(administrationService);
+		whenEnabled();
+		
+		assertThat(categoryMap.getCategory(LABORATORY_CONCEPT_CLASS_UUID), equalTo("laboratory"));
+		assertThat(categoryMap.getConceptClassIds("laboratory"), equalTo(new int[] { 1, 8 }));
+		assertThat(categoryMap.getConceptClassIds("exam"), equalTo(new int[] { 1 }));
+	}
+	
+	@Override
+	protected String getPropertyName() {
+		return FhirConstants.OPENMRS_FHIR_OBSERVATION_CATEGORY_CACHE;
+	}
+	
+	@Override
+	protected void registerListeners() {
+		categoryMap.registerListeners();
+	}
+	
+	@Override
+	protected Object lookup() {
+		return categoryMap.getConceptClassIds("laboratory");
+	}
+	
+	@Override
+	protected Object getMappedObject() {
+		return new FhirObservationCategoryMap();
+	}
+	
+	@Override
+	protected void saved(Object object) {
+		categoryMap.onPostUpdate(
+		    new PostUpdateEvent(object, 1, new Object[0], new Object[0], new int[0], persister, null));
+	}
+}
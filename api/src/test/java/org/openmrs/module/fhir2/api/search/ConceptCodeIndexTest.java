@@ -0,0 +1,110 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hibernate.event.spi.PostInsertEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.ConceptMap;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.BaseInMemoryMappingsTest;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConceptCodeIndexTest extends BaseInMemoryMappingsTest {
+	
+	private static final String LOINC = "http://loinc.org";
+	
+	private ConceptCodeIndex index;
+	
+	@Before
+	public void setup() {
+		index = new ConceptCodeIndex() {
+			
+			@Override
+			Map<String, int[]> loadConceptIdsByCode(String system) {
+				loads.incrementAndGet();
+				
+				Map<String, int[]> conceptIdsByCode = new HashMap<>();
+				conceptIdsByCode.put("1234-5", new int[] { 5089 });
+				conceptIdsByCode.put("5678-9", new int[] { 5090, 5091 });
+				conceptIdsByCode.put("LP1234-5", new int[] { 5092 });
+				conceptIdsByCode.put("LA12-3", new int[] { 5093 });
+				conceptIdsByCode.put("la12-3", new int[] { 5094 });
+				return conceptIdsByCode;
+			}
+		};
+		index.setGlobalPropertyService(globalPropertyService);
+		index.setAdministrationService(administrationService);
+	}
+	
+	@Test
+	public void getConceptIds_shouldReturnConceptsMappedToAnyOfTheCodes() {
+		whenEnabled();
+		
+		assertThat(index.getConceptIds(LOINC, Arrays.asList("1234-5", "5678-9", "0000-0")),
+		    equalTo(new int[] { 5089, 5090, 5091 }));
+		assertThat(index.getConceptIds(LOINC, Collections.singletonList("0000-0")), equalTo(new int[0]));
+	}
+	
+	@Test
+	public void getConceptIds_shouldLeaveCodesWhichOnlyMatchIgnoringCaseToTheDatabase() {
+		whenEnabled();
+		
+		assertThat(index.getConceptIds(LOINC, Collections.singletonList("LP1234-5")), equalTo(new int[] { 5092 }));
+		assertThat(index.getConceptIds(LOINC, Arrays.asList("1234-5", "lp1234-5")), nullValue());
+		assertThat(index.getConceptIds(LOINC, Collections.singletonList("LA12-3")), nullValue());
+	}
+	
+	@Test
+	public void getConceptIds_shouldLoadEachSystemOnce() {
+		whenEnabled();
+		
+		index.getConceptIds(LOINC, Collections.singletonList("1234-5"));
+		index.getConceptIds(LOINC, Collections.singletonList("5678-9"));
+		
+		assertThat(loads.get(), equalTo(1));
+	}
+	
+	@Override
+	protected String getPropertyName() {
+		return FhirConstants.OPENMRS_FHIR_CONCEPT_CODE_INDEX;
+	}
+	
+	@Override
+	protected void registerListeners() {
+		index.registerListeners();
+	}
+	
+	@Override
+	protected Object lookup() {
+		return index.getConceptIds(LOINC, Collections.singletonList("1234-5"));
+	}
+	
+	@Override
+	protected Object getMappedObject() {
+		return new ConceptMap();
+	}
+	
+	@Override
+	protected void saved(Object object) {
+		index.onPostInsert(new PostInsertEvent(object, 1, new Object[0], persister, null));
+	}
+}
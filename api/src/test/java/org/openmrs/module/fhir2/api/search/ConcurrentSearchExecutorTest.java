@@ -0,0 +1,222 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConcurrentSearchExecutorTest {
+	
+	@Mock
+	private PlatformTransactionManager transactionManager;
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private AdministrationService administrationService;
+	
+	@Mock
+	private UserContext userContext;
+	
+	@Mock
+	private IBundleProvider firstProvider;
+	
+	@Mock
+	private IBundleProvider secondProvider;
+	
+	@Mock
+	private IBundleProvider thirdProvider;
+	
+	@Mock
+	private IBundleProvider fourthProvider;
+	
+	private final Map<IBundleProvider, Thread> searchThreads = new ConcurrentHashMap<>();
+	
+	// the user context set by each worker session, recorded as the session is opened
+	private final List<UserContext> sessionUserContexts = new CopyOnWriteArrayList<>();
+	
+	private final List<Thread> closedSessionThreads = new CopyOnWriteArrayList<>();
+	
+	private Thread testThread;
+	
+	private ConcurrentSearchExecutor executor;
+	
+	@Before
+	public void setup() {
+		testThread = Thread.currentThread();
+		executor = createExecutor(2, 10);
+	}
+	
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+	
+	@Test
+	public void runSearches_shouldNotRunSearchesWhenDisabled() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_CONCURRENT_SEARCHES, "false"))
+		        .thenReturn("false");
+		executor.registerListener();
+		
+		executor.runSearches(firstProvider, secondProvider);
+		
+		verify(firstProvider, never()).size();
+		verify(secondProvider, never()).size();
+	}
+	
+	@Test
+	public void runSearches_shouldFollowGlobalPropertyChanges() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_CONCURRENT_SEARCHES, "false"))
+		        .thenReturn("false");
+		executor.registerListener();
+		
+		ArgumentCaptor<GlobalPropertyListener> listener = ArgumentCaptor.forClass(GlobalPropertyListener.class);
+		verify(administrationService).addGlobalPropertyListener(listener.capture());
+		assertThat(listener.getValue().supportsPropertyName(FhirConstants.OPENMRS_FHIR_CONCURRENT_SEARCHES), is(true));
+		
+		listener.getValue()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.OPENMRS_FHIR_CONCURRENT_SEARCHES, "true"));
+		recordSearchThread(firstProvider);
+		recordSearchThread(secondProvider);
+		
+		executor.runSearches(firstProvider, secondProvider);
+		
+		assertThat(searchThreads.keySet(), hasSize(2));
+		verify(globalPropertyService).getGlobalProperty(FhirConstants.OPENMRS_FHIR_CONCURRENT_SEARCHES, "false");
+	}
+	
+	@Test
+	public void runSearches_shouldRunOtherSearchesOnAWorkerThreadInItsOwnSession() {
+		whenEnabled();
+		recordSearchThread(firstProvider);
+		recordSearchThread(secondProvider);
+		
+		executor.runSearches(firstProvider, secondProvider);
+		
+		assertThat(searchThreads.get(firstProvider), sameInstance(testThread));
+		assertThat(searchThreads.get(secondProvider), not(sameInstance(testThread)));
+		assertThat(sessionUserContexts, hasSize(1));
+		assertThat(sessionUserContexts.get(0), sameInstance(userContext));
+		assertThat(closedSessionThreads, hasSize(1));
+		assertThat(closedSessionThreads.get(0), sameInstance(searchThreads.get(secondProvider)));
+		verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+	}
+	
+	@Test
+	public void runSearches_shouldRunSearchesOnTheCallingThreadWhenAllThreadsAreBusy() throws InterruptedException {
+		executor.shutdown();
+		executor = createExecutor(1, 1);
+		whenEnabled();
+		
+		// the second search occupies the only thread, the third search the only place in the queue
+		CountDownLatch searchStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(secondProvider.size()).thenAnswer(invocation -> {
+			searchThreads.put(secondProvider, Thread.currentThread());
+			searchStarted.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return 1;
+		});
+		recordSearchThread(firstProvider);
+		recordSearchThread(thirdProvider);
+		when(fourthProvider.size()).thenAnswer(invocation -> {
+			searchThreads.put(fourthProvider, Thread.currentThread());
+			assertThat(searchStarted.await(10, TimeUnit.SECONDS), is(true));
+			release.countDown();
+			return 1;
+		});
+		
+		executor.runSearches(firstProvider, secondProvider, thirdProvider, fourthProvider);
+		
+		assertThat(searchThreads.get(fourthProvider), sameInstance(testThread));
+		assertThat(searchThreads.get(secondProvider), not(sameInstance(testThread)));
+		assertThat(searchThreads.get(thirdProvider), equalTo(searchThreads.get(secondProvider)));
+		// only the searches run on the worker thread need a session of their own
+		assertThat(sessionUserContexts, hasSize(2));
+		assertThat(sessionUserContexts, everyItem(sameInstance(userContext)));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void runSearches_shouldRethrowTheExceptionOfAFailedSearch() {
+		whenEnabled();
+		when(secondProvider.size()).thenThrow(new IllegalArgumentException("Invalid search"));
+		
+		executor.runSearches(firstProvider, secondProvider);
+	}
+	
+	private void whenEnabled() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_CONCURRENT_SEARCHES, "false"))
+		        .thenReturn("true");
+		executor.registerListener();
+	}
+	
+	private void recordSearchThread(IBundleProvider provider) {
+		when(provider.size()).thenAnswer(invocation -> {
+			searchThreads.put(provider, Thread.currentThread());
+			return 1;
+		});
+	}
+	
+	private ConcurrentSearchExecutor createExecutor(int threads, int queueSize) {
+		return new ConcurrentSearchExecutor(transactionManager, globalPropertyService, administrationService, threads,
+		        queueSize) {
+			
+			@Override
+			UserContext getUserContext() {
+				return userContext;
+			}
+			
+			@Override
+			void openSession(UserContext userContext) {
+				sessionUserContexts.add(userContext);
+			}
+			
+			@Override
+			void closeSession() {
+				closedSessionThreads.add(Thread.currentThread());
+			}
+		};
+	}
+}
@@ -55,6 +55,7 @@ import org.hl7.fhir.r4.model.MedicationRequest;
 import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.ServiceRequest;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.module.fhir2.FhirConstants;
@@ -98,6 +99,12 @@ public class PatientSearchQueryTest extends BaseModuleContextSensitiveTest {
 	
 	private static final String BAD_PATIENT_IDENTIFIER = "9999X9999";
 	
+	private static final String PATIENT_PREFERRED_IDENTIFIER = "1234-4";
+	
+	private static final String PATIENT_OTHER_IDENTIFIER = "12345-5";
+	
+	private static final String PATIENT_WITH_IDENTIFIERS_UUID = "61b38324-e2fd-4feb-95b7-9e9a2a4400df";
+	
 	private static final String PATIENT_IDENTIFIER_TYPE = "Test Identifier Type";
 	
 	private static final String BAD_PATIENT_IDENTIFIER_TYPE = "Non-Existent Identifier";
@@ -149,6 +156,12 @@ public class PatientSearchQueryTest extends BaseModuleContextSensitiveTest {
 	@Autowired
 	private SearchQuery<org.openmrs.Patient, Patient, FhirPatientDao, PatientTranslator, SearchQueryInclude<Patient>> searchQuery;
 	
+	@Autowired
+	private PersonNameTokenIndex personNameTokenIndex;
+	
+	@Autowired
+	private PersonDisplayNameIndex personDisplayNameIndex;
+	
 	@Before
 	public void setup() throws Exception {
 		for (String search_data : PATIENT_SEARCH_DATA_FILES) {
@@ -178,6 +191,59 @@ public class PatientSearchQueryTest extends BaseModuleContextSensitiveTest {
 		return results.getAllResources();
 	}
 	
+	@After
+	public void disableNameIndexes() {
+		personNameTokenIndex.setEnabled(false);
+		personNameTokenIndex.setPopulated(false);
+		personDisplayNameIndex.setEnabled(false);
+		personDisplayNameIndex.setPopulated(false);
+	}
+	
+	private void enableNameIndexes() {
+		personNameTokenIndex.setEnabled(true);
+		personNameTokenIndex.rebuild();
+		personDisplayNameIndex.setEnabled(true);
+		personDisplayNameIndex.rebuild();
+	}
+	
+	private List<String> getSortedIds(IBundleProvider results) {
+		return getAllResources(results).stream().map(it -> it.getIdElement().getIdPart()).sorted()
+		        .collect(Collectors.toList());
+	}
+	
+	private List<String> getNames(IBundleProvider results) {
+		return getAllResources(results).stream().map(it -> ((Patient) it).getName().get(0).getNameAsSingleString())
+		        .collect(Collectors.toList());
+	}
+	
+	private void assertSameResultsWithNameIndexes(SearchParameterMap theParams) {
+		List<String> expected = getSortedIds(search(theParams));
+		assertThat(expected, not(empty()));
+		
+		enableNameIndexes();
+		
+		assertThat(getSortedIds(search(theParams)), equalTo(expected));
+	}
+	
+	@Test
+	public void searchForPatients_shouldReturnSameResultsForNamePrefixWithNameTokenIndex() {
+		assertSameResultsWithNameIndexes(new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.NAME_PROPERTY, new StringAndListParam().addAnd(new StringParam(PATIENT_PARTIAL_GIVEN_NAME))));
+	}
+	
+	@Test
+	public void searchForPatients_shouldReturnSameResultsForExactGivenNameWithNameTokenIndex() {
+		assertSameResultsWithNameIndexes(new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.GIVEN_PROPERTY, new StringAndListParam().addAnd(new StringParam(PATIENT_GIVEN_NAME, true))));
+	}
+	
+	@Test
+	public void searchForPatients_shouldReturnSameResultsForFamilyNameContainingValueWithNameTokenIndex() {
+		assertSameResultsWithNameIndexes(new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.FAMILY_PROPERTY, new StringAndListParam()
+		            .addAnd(new StringParam(PATIENT_FAMILY_NAME.substring(1, 5)).setContains(true))));
+	}
+	
 	@Test
 	public void searchForPatients_shouldSearchForPatientsByName() {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER, "name",
@@ -328,6 +394,40 @@ public class PatientSearchQueryTest extends BaseModuleContextSensitiveTest {
 		assertThat(resultList.get(0).getIdentifierFirstRep().getValue(), equalTo(PATIENT_IDENTIFIER));
 	}
 	
+	@Test
+	public void searchForPatients_shouldReturnPatientOnceWhenSeveralIdentifiersMatch() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
+		    new TokenAndListParam().addAnd(new TokenParam(null, PATIENT_PREFERRED_IDENTIFIER),
+		        new TokenParam(null, PATIENT_OTHER_IDENTIFIER)));
+		
+		IBundleProvider results = search(theParams);
+		
+		assertThat(results, notNullValue());
+		assertThat(results.size(), equalTo(1));
+		
+		List<Patient> resultList = get(results);
+		
+		assertThat(resultList, hasSize(equalTo(1)));
+		assertThat(resultList.get(0).getIdElement().getIdPart(), equalTo(PATIENT_WITH_IDENTIFIERS_UUID));
+	}
+	
+	@Test
+	public void searchForPatients_shouldMatchEachIdentifierAgainstAnyOfThePatientsIdentifiers() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
+		    new TokenAndListParam().addAnd(new TokenParam(null, PATIENT_PREFERRED_IDENTIFIER))
+		            .addAnd(new TokenParam(null, PATIENT_OTHER_IDENTIFIER)));
+		
+		IBundleProvider results = search(theParams);
+		
+		assertThat(results, notNullValue());
+		assertThat(results.size(), equalTo(1));
+		
+		List<Patient> resultList = get(results);
+		
+		assertThat(resultList, hasSize(equalTo(1)));
+		assertThat(resultList.get(0).getIdElement().getIdPart(), equalTo(PATIENT_WITH_IDENTIFIERS_UUID));
+	}
+	
 	@Test
 	public void searchForPatients_shouldSearchForPatientsByIdentifierWithType() {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
@@ -864,6 +964,29 @@ public class PatientSearchQueryTest extends BaseModuleContextSensitiveTest {
 		}
 	}
 	
+	@Test
+	public void shouldReturnCollectionOfPatientsSortedByNameWithDisplayNameTable() {
+		SortSpec sort = new SortSpec();
+		sort.setParamName("name");
+		sort.setOrder(SortOrderEnum.ASC);
+		
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.FAMILY_PROPERTY, new StringAndListParam().addAnd(new StringParam(PATIENT_PARTIAL_FAMILY_NAME)))
+		        .setSortSpec(sort);
+		
+		List<String> ascending = getNames(search(theParams));
+		sort.setOrder(SortOrderEnum.DESC);
+		List<String> descending = getNames(search(theParams));
+		
+		assertThat(ascending, hasSize(greaterThan(1)));
+		
+		enableNameIndexes();
+		
+		assertThat(getNames(search(theParams)), equalTo(descending));
+		sort.setOrder(SortOrderEnum.ASC);
+		assertThat(getNames(search(theParams)), equalTo(ascending));
+	}
+	
 	@Test
 	public void shouldReturnCollectionOfPatientsSortedByGivenName() {
 		SortSpec sort = new SortSpec();
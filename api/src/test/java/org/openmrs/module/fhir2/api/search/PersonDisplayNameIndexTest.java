@@ -0,0 +1,170 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.PersonName;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirSearchIndexStatusDao;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PersonDisplayNameIndexTest {
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private AdministrationService administrationService;
+	
+	@Mock
+	private FhirSearchIndexStatusDao indexStatusDao;
+	
+	private TestPersonDisplayNameIndex index;
+	
+	@Before
+	public void setup() {
+		index = new TestPersonDisplayNameIndex();
+		index.setGlobalPropertyService(globalPropertyService);
+		index.setAdministrationService(administrationService);
+		index.setIndexStatusDao(indexStatusDao);
+	}
+	
+	@Test
+	public void getSortKey_shouldJoinLowerCasedNameParts() {
+		assertThat(PersonDisplayNameIndex.getSortKey("Doe", null, " John ", "M"), equalTo("doe  john m"));
+	}
+	
+	@Test
+	public void getSortKey_shouldOrderByEachNamePartInTurn() {
+		String smithJohn = PersonDisplayNameIndex.getSortKey("Smith", null, "John");
+		String smithersAl = PersonDisplayNameIndex.getSortKey("Smithers", null, "Al");
+		String smithAdam = PersonDisplayNameIndex.getSortKey("smith", null, "Adam");
+		
+		assertThat(smithJohn.compareTo(smithersAl), lessThan(0));
+		assertThat(smithJohn.compareTo(smithAdam), greaterThan(0));
+	}
+	
+	@Test
+	public void isEnabled_shouldReadGlobalPropertyOnStartup() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX, "false"))
+		        .thenReturn("true");
+		when(indexStatusDao.isCurrent(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX, PersonName.class))
+		        .thenReturn(true);
+		
+		index.registerListeners();
+		
+		assertThat(index.isEnabled(), equalTo(true));
+		assertThat(index.isEnabled(), equalTo(true));
+		verify(globalPropertyService).getGlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX, "false");
+		assertThat(index.rebuilds, equalTo(0));
+	}
+	
+	@Test
+	public void isEnabled_shouldBeDisabledByDefault() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX, "false"))
+		        .thenReturn("false");
+		
+		index.registerListeners();
+		
+		assertThat(index.isEnabled(), equalTo(false));
+	}
+	
+	@Test
+	public void registerListeners_shouldClearTheIndexStatusWhenDisabled() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX, "false"))
+		        .thenReturn("false");
+		
+		index.registerListeners();
+		
+		verify(indexStatusDao).clear(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX);
+	}
+	
+	@Test
+	public void isEnabled_shouldBeDisabledUntilATableWhichIsNotCurrentIsRebuilt() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX, "false"))
+		        .thenReturn("true");
+		index.registerListeners();
+		
+		assertThat(index.isEnabled(), equalTo(false));
+		assertThat(index.rebuilds, equalTo(1));
+	}
+	
+	@Test
+	public void isEnabled_shouldFollowGlobalPropertyChanges() {
+		index.registerListeners();
+		
+		ArgumentCaptor<GlobalPropertyListener> listener = ArgumentCaptor.forClass(GlobalPropertyListener.class);
+		verify(administrationService).addGlobalPropertyListener(listener.capture());
+		
+		listener.getValue()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX, "true"));
+		assertThat(index.rebuilds, equalTo(1));
+		assertThat(index.isEnabled(), equalTo(false));
+		
+		index.setPopulated(true);
+		assertThat(index.isEnabled(), equalTo(true));
+		
+		listener.getValue().globalPropertyDeleted(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX);
+		assertThat(index.isEnabled(), equalTo(false));
+		// once as the property was not set on startup, and again when it was deleted
+		verify(indexStatusDao, times(2)).clear(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX);
+	}
+	
+	@Test
+	public void preDestroy_shouldRecordThatTheTableIsCurrent() {
+		index.setEnabled(true);
+		index.setPopulated(true);
+		
+		index.preDestroy();
+		
+		verify(indexStatusDao).markCurrent(eq(FhirConstants.OPENMRS_FHIR_PERSON_DISPLAY_NAME_INDEX), any(Date.class));
+	}
+	
+	@Test
+	public void preDestroy_shouldNotRecordThatATableBeingRebuiltIsCurrent() {
+		index.setEnabled(true);
+		
+		index.preDestroy();
+		
+		verify(indexStatusDao, never()).markCurrent(any(), any());
+	}
+	
+	private static class TestPersonDisplayNameIndex extends PersonDisplayNameIndex {
+		
+		private int rebuilds;
+		
+		@Override
+		void rebuildInBackground() {
+			rebuilds++;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import ca.uhn.fhir.rest.param.StringParam;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.PersonName;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirSearchIndexStatusDao;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PersonNameTokenIndexTest {
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private AdministrationService administrationService;
+	
+	@Mock
+	private FhirSearchIndexStatusDao indexStatusDao;
+	
+	private TestPersonNameTokenIndex index;
+	
+	@Before
+	public void setup() {
+		index = new TestPersonNameTokenIndex();
+		index.setGlobalPropertyService(globalPropertyService);
+		index.setIndexStatusDao(indexStatusDao);
+	}
+	
+	@Test
+	public void normalize_shouldLowerCaseAndRemoveAccents() {
+		assertThat(PersonNameTokenIndex.normalize("Jos\u00e9"), equalTo("jose"));
+		assertThat(PersonNameTokenIndex.normalize("M\u00dcLLER"), equalTo("muller"));
+	}
+	
+	@Test
+	public void normalize_shouldCollapseWhitespace() {
+		assertThat(PersonNameTokenIndex.normalize("  Van \t der  Berg "), equalTo("van der berg"));
+	}
+	
+	@Test
+	public void normalize_shouldReturnEmptyStringForNull() {
+		assertThat(PersonNameTokenIndex.normalize(null), equalTo(""));
+	}
+	
+	@Test
+	public void trigrams_shouldReturnDistinctTrigramsInOrder() {
+		assertThat(PersonNameTokenIndex.trigrams("anana"), contains("ana", "nan"));
+	}
+	
+	@Test
+	public void trigrams_shouldReturnNothingForShortNames() {
+		assertThat(PersonNameTokenIndex.trigrams("al"), empty());
+	}
+	
+	@Test
+	public void getPropertyName_shouldMapNamePartsToPersonNameProperties() {
+		assertThat(PersonNameTokenIndex.getPropertyName(PersonNameTokenIndex.GIVEN), equalTo("givenName"));
+		assertThat(PersonNameTokenIndex.getPropertyName(PersonNameTokenIndex.MIDDLE), equalTo("middleName"));
+		assertThat(PersonNameTokenIndex.getPropertyName(PersonNameTokenIndex.FAMILY), equalTo("familyName"));
+	}
+	
+	@Test
+	public void getNameCriterion_shouldReturnEmptyWhenDisabled() {
+		assertThat(index.getNameCriterion("pn.personNameId", new StringParam("john"), PersonNameTokenIndex.GIVEN),
+		    equalTo(Optional.empty()));
+	}
+	
+	@Test
+	public void getNameCriterion_shouldReturnEmptyUntilTheIndexIsRebuilt() {
+		index.propertyChanged(true);
+		
+		assertThat(index.rebuilds, equalTo(1));
+		assertThat(index.getNameCriterion("pn.personNameId", new StringParam("john"), PersonNameTokenIndex.GIVEN),
+		    equalTo(Optional.empty()));
+	}
+	
+	@Test
+	public void propertyChanged_shouldRebuildTheIndexWhenEnabledFromAGlobalPropertyChange() {
+		index.setAdministrationService(administrationService);
+		index.registerListeners();
+		
+		ArgumentCaptor<GlobalPropertyListener> listener = ArgumentCaptor.forClass(GlobalPropertyListener.class);
+		verify(administrationService).addGlobalPropertyListener(listener.capture());
+		assertThat(listener.getValue().supportsPropertyName(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX),
+		    equalTo(true));
+		
+		listener.getValue()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX, "true"));
+		listener.getValue()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX, "true"));
+		
+		assertThat(index.rebuilds, equalTo(1));
+	}
+	
+	@Test
+	public void propertyChanged_shouldStopUsingTheIndexWhenDisabled() {
+		whenEnabled();
+		
+		index.propertyChanged(false);
+		
+		assertThat(index.rebuilds, equalTo(0));
+		assertThat(index.getNameCriterion("pn.personNameId", new StringParam("john"), PersonNameTokenIndex.GIVEN),
+		    equalTo(Optional.empty()));
+		verify(indexStatusDao).clear(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX);
+	}
+	
+	@Test
+	public void registerListeners_shouldUseAnIndexRecordedAsCurrent() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX, "false"))
+		        .thenReturn("true");
+		when(indexStatusDao.isCurrent(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX, PersonName.class))
+		        .thenReturn(true);
+		
+		index.registerListeners();
+		
+		assertThat(index.rebuilds, equalTo(0));
+		assertThat(index.getNameCriterion("pn.personNameId", new StringParam("john"), PersonNameTokenIndex.GIVEN)
+		        .isPresent(),
+		    equalTo(true));
+	}
+	
+	@Test
+	public void registerListeners_shouldRebuildAnIndexNotRecordedAsCurrent() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX, "false"))
+		        .thenReturn("true");
+		
+		index.registerListeners();
+		
+		assertThat(index.rebuilds, equalTo(1));
+		assertThat(index.getNameCriterion("pn.personNameId", new StringParam("john"), PersonNameTokenIndex.GIVEN),
+		    equalTo(Optional.empty()));
+	}
+	
+	@Test
+	public void registerListeners_shouldClearTheIndexStatusWhenDisabled() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX, "false"))
+		        .thenReturn("false");
+		
+		index.registerListeners();
+		
+		verify(indexStatusDao).clear(FhirConstants.OPENMRS_FHIR_PERSON_NAME_TOKEN_INDEX);
+	}
+	
+	@Test
+	public void getNameCriterion_shouldReturnEmptyForContainsSearchesShorterThanATrigram() {
+		whenEnabled();
+		
+		assertThat(index.getNameCriterion("pn.personNameId", new StringParam("jo").setContains(true),
+		    PersonNameTokenIndex.GIVEN).isPresent(), equalTo(false));
+	}
+	
+	@Test
+	public void getNameCriterion_shouldReturnCriterionWhenEnabled() {
+		whenEnabled();
+		
+		assertThat(index.getNameCriterion("pn.personNameId", new StringParam("jo"), PersonNameTokenIndex.GIVEN).isPresent(),
+		    equalTo(true));
+		assertThat(index.getNameCriterion("pn.personNameId", new StringParam("john").setContains(true),
+		    PersonNameTokenIndex.GIVEN, PersonNameTokenIndex.FAMILY).isPresent(), equalTo(true));
+	}
+	
+	private void whenEnabled() {
+		index.setEnabled(true);
+		index.setPopulated(true);
+	}
+	
+	private static class TestPersonNameTokenIndex extends PersonNameTokenIndex {
+		
+		private int rebuilds;
+		
+		@Override
+		void rebuildInBackground() {
+			rebuilds++;
+		}
+	}
+}
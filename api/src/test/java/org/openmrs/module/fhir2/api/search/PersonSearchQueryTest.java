@@ -59,6 +59,7 @@ import org.hl7.fhir.r4.model.Enumerations;
 import org.hl7.fhir.r4.model.HumanName;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Person;
+import org.junit.After;
 import org.junit.Test;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
@@ -150,6 +151,12 @@ public class PersonSearchQueryTest extends BaseModuleContextSensitiveTest {
 	@Autowired
 	private SearchQuery<org.openmrs.Person, Person, FhirPersonDao, PersonTranslator, SearchQueryInclude<org.hl7.fhir.r4.model.Person>> searchQuery;
 	
+	@Autowired
+	private PersonNameTokenIndex personNameTokenIndex;
+	
+	@Autowired
+	private PersonDisplayNameIndex personDisplayNameIndex;
+	
 	private List<Person> get(IBundleProvider results) {
 		return results.getResources(START_INDEX, END_INDEX).stream().filter(it -> it instanceof Person)
 		        .map(it -> (Person) it).collect(Collectors.toList());
@@ -159,6 +166,59 @@ public class PersonSearchQueryTest extends BaseModuleContextSensitiveTest {
 		return searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
 	}
 	
+	@After
+	public void disableNameIndexes() {
+		personNameTokenIndex.setEnabled(false);
+		personNameTokenIndex.setPopulated(false);
+		personDisplayNameIndex.setEnabled(false);
+		personDisplayNameIndex.setPopulated(false);
+	}
+	
+	private void enableNameIndexes() {
+		personNameTokenIndex.setEnabled(true);
+		personNameTokenIndex.rebuild();
+		personDisplayNameIndex.setEnabled(true);
+		personDisplayNameIndex.rebuild();
+	}
+	
+	private List<String> getSortedIds(IBundleProvider results) {
+		return results.getAllResources().stream().map(it -> it.getIdElement().getIdPart()).sorted()
+		        .collect(Collectors.toList());
+	}
+	
+	private List<String> getNames(IBundleProvider results) {
+		return results.getAllResources().stream()
+		        .map(it -> ((Person) it).getNameFirstRep().getNameAsSingleString()).collect(Collectors.toList());
+	}
+	
+	private void assertSameResultsWithNameIndexes(SearchParameterMap theParams) {
+		List<String> expected = getSortedIds(search(theParams));
+		assertThat(expected, not(empty()));
+		
+		enableNameIndexes();
+		
+		assertThat(getSortedIds(search(theParams)), equalTo(expected));
+	}
+	
+	@Test
+	public void shouldReturnSameResultsForNamePrefixWithNameTokenIndex() {
+		assertSameResultsWithNameIndexes(new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.NAME_PROPERTY, new StringAndListParam().addAnd(new StringParam(PERSON_PARTIAL_NAME))));
+	}
+	
+	@Test
+	public void shouldReturnSameResultsForExactNameWithNameTokenIndex() {
+		assertSameResultsWithNameIndexes(new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.NAME_PROPERTY, new StringAndListParam().addAnd(new StringParam(PERSON_NAME, true))));
+	}
+	
+	@Test
+	public void shouldReturnSameResultsForNameContainingValueWithNameTokenIndex() {
+		assertSameResultsWithNameIndexes(new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.NAME_PROPERTY,
+		    new StringAndListParam().addAnd(new StringParam(PERSON_NAME.substring(1, 4)).setContains(true))));
+	}
+	
 	@Test
 	public void shouldReturnCollectionOfPeopleForMatchOnPersonName() {
 		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
@@ -518,6 +578,28 @@ public class PersonSearchQueryTest extends BaseModuleContextSensitiveTest {
 		}
 	}
 	
+	@Test
+	public void shouldReturnCollectionOfPeopleSortedByNameWithDisplayNameTable() {
+		SortSpec sort = new SortSpec();
+		sort.setParamName(SP_NAME);
+		sort.setOrder(SortOrderEnum.ASC);
+		
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.NAME_PROPERTY, new StringAndListParam().addAnd(new StringParam(""))).setSortSpec(sort);
+		
+		List<String> ascending = getNames(search(theParams));
+		sort.setOrder(SortOrderEnum.DESC);
+		List<String> descending = getNames(search(theParams));
+		
+		assertThat(ascending, hasSize(greaterThan(1)));
+		
+		enableNameIndexes();
+		
+		assertThat(getNames(search(theParams)), equalTo(descending));
+		sort.setOrder(SortOrderEnum.ASC);
+		assertThat(getNames(search(theParams)), equalTo(ascending));
+	}
+	
 	@Test
 	public void shouldReturnCollectionOfPeopleSortedByBirthDate() {
 		SortSpec sort = new SortSpec();
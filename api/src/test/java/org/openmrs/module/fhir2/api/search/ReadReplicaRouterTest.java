@@ -0,0 +1,293 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.sql.DataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Obs;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.model.FhirSearchSnapshot;
+import org.springframework.orm.hibernate4.SessionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReadReplicaRouterTest {
+	
+	private static final String REPLICA_1 = "jdbc:h2:mem:replica1";
+	
+	private static final String REPLICA_2 = "jdbc:h2:mem:replica2";
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private SessionFactory sessionFactory;
+	
+	@Mock
+	private AdministrationService administrationService;
+	
+	@Mock
+	private SessionFactory replicaSessionFactory;
+	
+	@Mock
+	private Session replicaSession;
+	
+	@Mock
+	private Session primarySession;
+	
+	@Mock
+	private DataSource replica1;
+	
+	@Mock
+	private DataSource replica2;
+	
+	@Mock
+	private Connection connection1;
+	
+	@Mock
+	private Connection connection2;
+	
+	private final Map<String, DataSource> dataSources = new HashMap<>();
+	
+	private Properties runtimeProperties;
+	
+	private Integer currentUserId;
+	
+	private ReadReplicaRouter router;
+	
+	@Before
+	public void setup() {
+		runtimeProperties = Context.getRuntimeProperties();
+		
+		Properties properties = new Properties();
+		properties.setProperty(ReadReplicaRouter.REPLICA_URLS_PROPERTY, REPLICA_1 + ", " + REPLICA_2);
+		Context.setRuntimeProperties(properties);
+		
+		dataSources.put(REPLICA_1, replica1);
+		dataSources.put(REPLICA_2, replica2);
+		
+		router = new ReadReplicaRouter() {
+			
+			@Override
+			DataSource createDataSource(String url, String username, String password) {
+				return dataSources.get(url);
+			}
+			
+			@Override
+			SessionFactory buildReplicaSessionFactory(DataSource dataSource) {
+				return replicaSessionFactory;
+			}
+			
+			@Override
+			Integer getCurrentUserId() {
+				return currentUserId;
+			}
+		};
+		router.setGlobalPropertyService(globalPropertyService);
+		router.setSessionFactory(sessionFactory);
+		router.setAdministrationService(administrationService);
+		
+		TransactionSynchronizationManager.bindResource(sessionFactory, new SessionHolder(primarySession));
+	}
+	
+	@After
+	public void tearDown() {
+		router.release();
+		TransactionSynchronizationManager.unbindResourceIfPossible(sessionFactory);
+		Context.setRuntimeProperties(runtimeProperties);
+	}
+	
+	@Test
+	public void route_shouldNotRouteWhenDisabled() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_READ_REPLICAS, "false"))
+		        .thenReturn("false");
+		router.registerListeners();
+		
+		assertThat(router.route(), is(false));
+		assertThat(getBoundSession(), sameInstance(primarySession));
+	}
+	
+	@Test
+	public void route_shouldFollowGlobalPropertyChanges() throws SQLException {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_READ_REPLICAS, "false"))
+		        .thenReturn("false");
+		router.registerListeners();
+		
+		// the pin window is followed by a listener of its own
+		ArgumentCaptor<GlobalPropertyListener> listeners = ArgumentCaptor.forClass(GlobalPropertyListener.class);
+		verify(administrationService, times(2)).addGlobalPropertyListener(listeners.capture());
+		GlobalPropertyListener listener = listeners.getAllValues().get(0);
+		assertThat(listener.supportsPropertyName(FhirConstants.OPENMRS_FHIR_READ_REPLICAS), is(true));
+		assertThat(listener.supportsPropertyName(FhirConstants.OPENMRS_FHIR_READ_REPLICA_PIN_WINDOW), is(false));
+		
+		listener.globalPropertyChanged(new GlobalProperty(FhirConstants.OPENMRS_FHIR_READ_REPLICAS, "true"));
+		when(replica1.getConnection()).thenReturn(connection1);
+		whenSessionsCanBeOpened();
+		
+		assertThat(router.route(), is(true));
+		router.release();
+		
+		listener.globalPropertyDeleted(FhirConstants.OPENMRS_FHIR_READ_REPLICAS);
+		
+		assertThat(router.route(), is(false));
+		verify(globalPropertyService).getGlobalProperty(FhirConstants.OPENMRS_FHIR_READ_REPLICAS, "false");
+	}
+	
+	@Test
+	public void route_shouldBindAReplicaSessionUntilReleased() throws SQLException {
+		whenEnabled();
+		when(replica1.getConnection()).thenReturn(connection1);
+		whenSessionsCanBeOpened();
+		
+		assertThat(router.route(), is(true));
+		assertThat(router.isRouted(), is(true));
+		assertThat(getBoundSession(), sameInstance(replicaSession));
+		verify(replicaSession).setDefaultReadOnly(true);
+		// the connection used to check the replica goes back to the pool straight away
+		verify(connection1).close();
+		
+		router.release();
+		
+		assertThat(router.isRouted(), is(false));
+		assertThat(getBoundSession(), sameInstance(primarySession));
+		verify(replicaSession).close();
+	}
+	
+	@Test
+	public void callOnPrimary_shouldBindThePrimarySessionWhileRouted() throws SQLException {
+		whenEnabled();
+		when(replica1.getConnection()).thenReturn(connection1);
+		whenSessionsCanBeOpened();
+		router.route();
+		
+		Session session = router.callOnPrimary(() -> {
+			assertThat(router.isRouted(), is(false));
+			return getBoundSession();
+		});
+		
+		assertThat(session, sameInstance(primarySession));
+		assertThat(router.isRouted(), is(true));
+		assertThat(getBoundSession(), sameInstance(replicaSession));
+	}
+	
+	@Test
+	public void route_shouldUseReplicasInTurn() throws SQLException {
+		whenEnabled();
+		when(replica1.getConnection()).thenReturn(connection1);
+		when(replica2.getConnection()).thenReturn(connection2);
+		whenSessionsCanBeOpened();
+		
+		router.route();
+		router.release();
+		router.route();
+		router.release();
+		
+		verify(replica1).getConnection();
+		verify(replica2).getConnection();
+	}
+	
+	@Test
+	public void route_shouldSkipAReplicaWhichCannotBeReached() throws SQLException {
+		whenEnabled();
+		when(replica1.getConnection()).thenThrow(new SQLException("Connection refused"));
+		when(replica2.getConnection()).thenReturn(connection2);
+		whenSessionsCanBeOpened();
+		
+		assertThat(router.route(), is(true));
+		router.release();
+		assertThat(router.route(), is(true));
+		router.release();
+		assertThat(router.route(), is(true));
+		router.release();
+		
+		// the failed replica is not tried again until the retry interval has passed
+		verify(replica1).getConnection();
+	}
+	
+	@Test
+	public void route_shouldUseThePrimaryDatabaseWhenNoReplicaCanBeReached() throws SQLException {
+		whenEnabled();
+		when(replica1.getConnection()).thenThrow(new SQLException("Connection refused"));
+		when(replica2.getConnection()).thenThrow(new SQLException("Connection refused"));
+		
+		assertThat(router.route(), is(false));
+		assertThat(getBoundSession(), sameInstance(primarySession));
+	}
+	
+	@Test
+	public void route_shouldUseThePrimaryDatabaseForAUserWhoHasJustSaved() throws SQLException {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_READ_REPLICA_PIN_WINDOW, 10))
+		        .thenReturn(10);
+		whenEnabled();
+		currentUserId = 1;
+		
+		router.onPostInsert(new PostInsertEvent(new Obs(), 1, new Object[0], null, null));
+		
+		assertThat(router.route(), is(false));
+		assertThat(getBoundSession(), sameInstance(primarySession));
+		verify(replica1, never()).getConnection();
+		verify(replica2, never()).getConnection();
+	}
+	
+	@Test
+	public void route_shouldNotPinAUserForSavingASearchSnapshot() throws SQLException {
+		whenEnabled();
+		when(replica1.getConnection()).thenReturn(connection1);
+		whenSessionsCanBeOpened();
+		currentUserId = 1;
+		
+		router.onPostInsert(new PostInsertEvent(new FhirSearchSnapshot(), 1, new Object[0], null, null));
+		
+		assertThat(router.route(), is(true));
+	}
+	
+	private void whenEnabled() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_READ_REPLICAS, "false"))
+		        .thenReturn("true");
+		router.registerListeners();
+	}
+	
+	private void whenSessionsCanBeOpened() {
+		when(replicaSessionFactory.openSession()).thenReturn(replicaSession);
+	}
+	
+	private Session getBoundSession() {
+		return ((SessionHolder) TransactionSynchronizationManager.getResource(sessionFactory)).getSession();
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
+import org.openmrs.module.fhir2.api.dao.FhirSearchSnapshotDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.PatientTranslator;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs searches through {@link ReadReplicaRouter} against a second in-memory database which starts
+ * as a copy of the test database. The replica gives every patient the family name
+ * {@link #REPLICA_FAMILY_NAME}, so the results show which database a search was run against.
+ */
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class ReadReplicaRoutingTest extends BaseModuleContextSensitiveTest {
+	
+	private static final String PATIENT_DATA = "org/openmrs/module/fhir2/api/dao/impl/"
+	        + "FhirPatientDaoImplTest_initial_data.xml";
+	
+	private static final String REPLICA_URL = "jdbc:h2:mem:fhir2replica;DB_CLOSE_DELAY=-1";
+	
+	private static final String REPLICA_FAMILY_NAME = "Replica";
+	
+	private static final int PAGE_SIZE = 2;
+	
+	@Autowired
+	private ReadReplicaRouter router;
+	
+	@Autowired
+	private FhirPatientDao dao;
+	
+	@Autowired
+	private PatientTranslator translator;
+	
+	@Autowired
+	private SearchQueryInclude<Patient> searchQueryInclude;
+	
+	@Autowired
+	private SearchQuery<org.openmrs.Patient, Patient, FhirPatientDao, PatientTranslator, SearchQueryInclude<Patient>> searchQuery;
+	
+	@Autowired
+	private FhirSearchSnapshotDao snapshotDao;
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	private ListableBeanFactory beanFactory;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	private Properties runtimeProperties;
+	
+	private ExecutorService executor;
+	
+	private TransactionTemplate readOnlyTransaction;
+	
+	@Before
+	public void setup() throws Exception {
+		executeDataSet(PATIENT_DATA);
+		
+		File script = File.createTempFile("fhir2replica", ".sql");
+		try {
+			try (Statement statement = getConnection().createStatement()) {
+				statement.execute("SCRIPT TO '" + script.getAbsolutePath() + "'");
+			}
+			
+			try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+			        Statement statement = replica.createStatement()) {
+				statement.execute("RUNSCRIPT FROM '" + script.getAbsolutePath() + "'");
+				statement.executeUpdate("UPDATE person_name SET family_name = '" + REPLICA_FAMILY_NAME + "'");
+			}
+		}
+		finally {
+			script.delete();
+		}
+		
+		runtimeProperties = Context.getRuntimeProperties();
+		Properties properties = Context.getRuntimeProperties();
+		properties.setProperty(ReadReplicaRouter.REPLICA_URLS_PROPERTY, REPLICA_URL);
+		properties.setProperty(ReadReplicaRouter.REPLICA_USERNAME_PROPERTY, "sa");
+		properties.setProperty(ReadReplicaRouter.REPLICA_PASSWORD_PROPERTY, "");
+		Context.setRuntimeProperties(properties);
+		
+		router.setEnabled(true);
+		
+		readOnlyTransaction = new TransactionTemplate(transactionManager);
+		readOnlyTransaction.setReadOnly(true);
+		
+		// the test itself runs in a write transaction, which is never routed
+		executor = Executors.newSingleThreadExecutor();
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		try {
+			// snapshots are committed by the primary session of the worker thread, so must be removed the same way
+			onWorker(Context.getUserContext(),
+			    () -> new TransactionTemplate(transactionManager).execute(status -> snapshotDao.deleteOldest(0)));
+		}
+		finally {
+			executor.shutdownNow();
+			router.setEnabled(false);
+			router.close();
+			Context.setRuntimeProperties(runtimeProperties);
+			
+			try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+			        Statement statement = replica.createStatement()) {
+				statement.execute("SHUTDOWN");
+			}
+		}
+	}
+	
+	@Test
+	public void shouldSearchAndPageOnTheReplicaWhileKeepingSnapshotsOnThePrimary() throws Exception {
+		UserContext userContext = Context.getUserContext();
+		SearchSnapshotPagingProvider pagingProvider = new SearchSnapshotPagingProvider(snapshotDao, globalPropertyService,
+		        beanFactory, 60_000, 100, router);
+		Set<String> patientUuids = new HashSet<>();
+		
+		// only the replica has patients with this name
+		assertThat(searchQuery.getQueryResults(replicaNameSearch(), dao, translator, searchQueryInclude).size(),
+		    equalTo(0));
+		
+		Object[] firstRequest = onWorker(userContext, () -> {
+			assertThat(router.route(), is(true));
+			try {
+				IBundleProvider results = readOnlyTransaction
+				        .execute(status -> searchQuery.getQueryResults(replicaNameSearch(), dao, translator,
+				            searchQueryInclude));
+				Integer size = readOnlyTransaction.execute(status -> results.size());
+				List<IBaseResource> firstPage = readOnlyTransaction
+				        .execute(status -> results.getResources(0, PAGE_SIZE));
+				assertThat(router.isRouted(), is(true));
+				
+				return new Object[] { size, firstPage, pagingProvider.storeResultList(null, results) };
+			}
+			finally {
+				router.release();
+			}
+		});
+		
+		int size = (Integer) firstRequest[0];
+		String searchId = (String) firstRequest[2];
+		assertThat(size, greaterThan(PAGE_SIZE));
+		patientUuids.addAll(checkFromReplica(firstRequest[1]));
+		
+		// the snapshot was written to the primary database only
+		assertThat(snapshotDao.get(searchId), notNullValue());
+		assertThat(countReplicaSnapshots(searchId), equalTo(0));
+		
+		List<IBaseResource> remainingPages = onWorker(userContext, () -> {
+			// saving the snapshot did not pin the user to the primary database
+			assertThat(router.route(), is(true));
+			try {
+				IBundleProvider restored = pagingProvider.retrieveResultList(null, searchId);
+				assertThat(restored, notNullValue());
+				
+				return readOnlyTransaction.execute(status -> restored.getResources(PAGE_SIZE, size));
+			}
+			finally {
+				router.release();
+			}
+		});
+		
+		patientUuids.addAll(checkFromReplica(remainingPages));
+		assertThat(patientUuids, hasSize(size));
+	}
+	
+	private SearchParameterMap replicaNameSearch() {
+		return new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.FAMILY_PROPERTY,
+		    new StringAndListParam().addAnd(new StringParam(REPLICA_FAMILY_NAME)));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<String> checkFromReplica(Object resources) {
+		List<Patient> patients = ((List<IBaseResource>) resources).stream().map(Patient.class::cast)
+		        .collect(Collectors.toList());
+		assertThat(patients.stream().map(p -> p.getNameFirstRep().getFamily()).collect(Collectors.toList()),
+		    everyItem(equalTo(REPLICA_FAMILY_NAME)));
+		
+		return patients.stream().map(p -> p.getIdElement().getIdPart()).collect(Collectors.toList());
+	}
+	
+	private int countReplicaSnapshots(String searchId) throws Exception {
+		try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+		        PreparedStatement statement = replica
+		                .prepareStatement("SELECT COUNT(*) FROM fhir_search_snapshot WHERE uuid = ?")) {
+			statement.setString(1, searchId);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				resultSet.next();
+				return resultSet.getInt(1);
+			}
+		}
+	}
+	
+	/**
+	 * Runs the call on another thread with its own OpenMRS session, as a separate request would
+	 */
+	private <T> T onWorker(UserContext userContext, Callable<T> call) throws Exception {
+		return executor.submit(() -> {
+			Context.openSession();
+			try {
+				Context.setUserContext(userContext);
+				return call.call();
+			}
+			finally {
+				Context.closeSession();
+			}
+		}).get();
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.NumberParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.junit.Test;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+public class SearchParameterMapCodecTest {
+	
+	@Test
+	public void shouldRestoreSearchParameters() throws IOException {
+		HashSet<Include> includes = new HashSet<>();
+		includes.add(new Include("Observation:patient"));
+		includes.add(new Include("Observation:encounter", true));
+		
+		SearchParameterMap theParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.CODED_SEARCH_HANDLER,
+		            new TokenAndListParam().addAnd(new TokenParam("http://loinc.org", "5089-1"), new TokenParam("5090")))
+		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.GIVEN_PROPERTY,
+		            new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam("John", true))))
+		        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER,
+		            new ReferenceAndListParam().addAnd(new ReferenceOrListParam()
+		                    .add(new ReferenceParam("Patient", "name", "Doe")).add(new ReferenceParam("123"))))
+		        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, "obsDatetime",
+		            new DateRangeParam("2020-01-01", "2021-01-01"))
+		        .addParameter(FhirConstants.MAX_SEARCH_HANDLER, new NumberParam(3))
+		        .addParameter(FhirConstants.TOTAL_MODE_SEARCH_HANDLER, SearchTotalModeEnum.ACCURATE)
+		        .addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER, includes)
+		        .setSortSpec(new SortSpec("date", SortOrderEnum.DESC, new SortSpec("_id")));
+		
+		SearchParameterMap result = SearchParameterMapCodec.decode(SearchParameterMapCodec.encode(theParams, null), null);
+		
+		assertThat(result.getSortSpec().getParamName(), equalTo("date"));
+		assertThat(result.getSortSpec().getOrder(), equalTo(SortOrderEnum.DESC));
+		assertThat(result.getSortSpec().getChain().getParamName(), equalTo("_id"));
+		assertThat(result.getSortSpec().getChain().getOrder(), nullValue());
+		assertThat(result.getSortSpec().getChain().getChain(), nullValue());
+		
+		TokenAndListParam code = (TokenAndListParam) getParam(result, FhirConstants.CODED_SEARCH_HANDLER);
+		List<TokenParam> codes = code.getValuesAsQueryTokens().get(0).getValuesAsQueryTokens();
+		assertThat(codes, hasSize(2));
+		assertThat(codes.get(0).getSystem(), equalTo("http://loinc.org"));
+		assertThat(codes.get(0).getValue(), equalTo("5089-1"));
+		assertThat(codes.get(1).getSystem(), nullValue());
+		assertThat(codes.get(1).getValue(), equalTo("5090"));
+		
+		PropParam<?> name = result.getParameters(FhirConstants.NAME_SEARCH_HANDLER).get(0);
+		assertThat(name.getPropertyName(), equalTo(FhirConstants.GIVEN_PROPERTY));
+		StringParam given = ((StringAndListParam) name.getParam()).getValuesAsQueryTokens().get(0)
+		        .getValuesAsQueryTokens().get(0);
+		assertThat(given.getValue(), equalTo("John"));
+		assertThat(given.isExact(), equalTo(true));
+		
+		ReferenceAndListParam patient = (ReferenceAndListParam) getParam(result,
+		    FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER);
+		List<ReferenceParam> references = patient.getValuesAsQueryTokens().get(0).getValuesAsQueryTokens();
+		assertThat(references.get(0).getResourceType(), equalTo("Patient"));
+		assertThat(references.get(0).getChain(), equalTo("name"));
+		assertThat(references.get(0).getValue(), equalTo("Doe"));
+		assertThat(references.get(1).getChain(), nullValue());
+		assertThat(references.get(1).getIdPart(), equalTo("123"));
+		
+		PropParam<?> date = result.getParameters(FhirConstants.DATE_RANGE_SEARCH_HANDLER).get(0);
+		assertThat(date.getPropertyName(), equalTo("obsDatetime"));
+		DateRangeParam dateRange = (DateRangeParam) date.getParam();
+		DateRangeParam expectedDateRange = new DateRangeParam("2020-01-01", "2021-01-01");
+		assertThat(dateRange.getLowerBoundAsInstant(), equalTo(expectedDateRange.getLowerBoundAsInstant()));
+		assertThat(dateRange.getUpperBoundAsInstant(), equalTo(expectedDateRange.getUpperBoundAsInstant()));
+		
+		assertThat(((NumberParam) getParam(result, FhirConstants.MAX_SEARCH_HANDLER)).getValue().intValue(), equalTo(3));
+		assertThat(getParam(result, FhirConstants.TOTAL_MODE_SEARCH_HANDLER), equalTo(SearchTotalModeEnum.ACCURATE));
+		
+		Object restoredIncludes = getParam(result, FhirConstants.INCLUDE_SEARCH_HANDLER);
+		assertThat(restoredIncludes, instanceOf(HashSet.class));
+		assertThat(((HashSet<?>) restoredIncludes).stream().map(
+		    include -> ((Include) include).getValue() + ":" + ((Include) include).isRecurse()).collect(Collectors.toList()),
+		    containsInAnyOrder("Observation:patient:false", "Observation:encounter:true"));
+	}
+	
+	@Test
+	public void shouldKeepTheOrderOfParameters() throws IOException {
+		SearchParameterMap theParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.GIVEN_PROPERTY, new StringParam("John"))
+		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.FAMILY_PROPERTY, new StringParam("Doe"));
+		
+		SearchParameterMap result = SearchParameterMapCodec.decode(SearchParameterMapCodec.encode(theParams, null), null);
+		
+		assertThat(result.getParameters(FhirConstants.NAME_SEARCH_HANDLER).stream().map(PropParam::getPropertyName)
+		        .collect(Collectors.toList()),
+		    contains(FhirConstants.GIVEN_PROPERTY, FhirConstants.FAMILY_PROPERTY));
+	}
+	
+	@Test(expected = IOException.class)
+	public void shouldRejectValuesWhichCannotBeStored() throws IOException {
+		SearchParameterMapCodec.encode(new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    new StringBuilder("John")), null);
+	}
+	
+	@Test(expected = IOException.class)
+	public void shouldRejectSerializedJavaObjects() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(new SearchParameterMap());
+		}
+		
+		SearchParameterMapCodec.decode(bytes.toByteArray(), null);
+	}
+	
+	@Test(expected = IOException.class)
+	public void shouldNotCreateClassesWhichAreNotSearchParameters() throws IOException {
+		byte[] bytes = SearchParameterMapCodec.encode(
+		    new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER, new StringParam("John")), null);
+		
+		SearchParameterMapCodec.decode(replaceClassName(bytes, StringParam.class, ArrayList.class), null);
+	}
+	
+	/**
+	 * Replaces a class name written by the codec, which is preceded by its length
+	 */
+	private static byte[] replaceClassName(byte[] bytes, Class<?> type, Class<?> replacement) throws IOException {
+		String encoded = new String(bytes, StandardCharsets.ISO_8859_1);
+		int start = encoded.indexOf(type.getName());
+		
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(result)) {
+			out.write(bytes, 0, start - 4);
+			out.writeInt(replacement.getName().length());
+			out.write(replacement.getName().getBytes(StandardCharsets.UTF_8));
+			int end = start + type.getName().length();
+			out.write(bytes, end, bytes.length - end);
+		}
+		
+		return result.toByteArray();
+	}
+	
+	private static Object getParam(SearchParameterMap theParams, String key) {
+		return theParams.getParameters(key).get(0).getParam();
+	}
+}
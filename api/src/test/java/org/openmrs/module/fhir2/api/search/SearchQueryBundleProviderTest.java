@@ -12,18 +12,23 @@ package org.openmrs.module.fhir2.api.search;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import org.exparity.hamcrest.date.DateMatchers;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
@@ -34,11 +39,11 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
-import org.openmrs.module.fhir2.api.util.FhirUtils;
 
 @RunWith(MockitoJUnitRunner.class)
 public class SearchQueryBundleProviderTest {
@@ -80,22 +85,117 @@ public class SearchQueryBundleProviderTest {
 	
 	@Test
 	public void shouldReturnEmptyListWhenNoResults() {
-		when(observationDao.getSearchResultUuids(any())).thenReturn(Collections.emptyList());
+		when(observationDao.getSearchResultIds(any())).thenReturn(new int[0]);
 		List<IBaseResource> resources = searchQueryBundleProvider.getResources(0, 10);
 		assertThat(resources, empty());
 	}
 	
 	@Test
 	public void shouldReturnEmptyListWhenRequestingTooManyResults() {
-		when(observationDao.getSearchResultUuids(any())).thenReturn(Arrays.asList(FhirUtils.newUuid(), FhirUtils.newUuid()));
+		when(observationDao.getSearchResultIds(any())).thenReturn(new int[] { 1, 2 });
 		List<IBaseResource> resources = searchQueryBundleProvider.getResources(3, 13);
 		assertThat(resources, empty());
 	}
 	
+	@Test
+	public void shouldOnlyLoadRequestedWindowWhenWindowedPagingEnabled() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_WINDOWED_PAGING, "false"))
+		        .thenReturn("true");
+		Obs obs = new Obs();
+		when(observationDao.getSearchResults(any(), eq(10), eq(10))).thenReturn(Collections.singletonList(obs));
+		when(translator.toFhirResource(obs)).thenReturn(new Observation());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
+		
+		List<IBaseResource> resources = searchQueryBundleProvider.getResources(10, 20);
+		
+		assertThat(resources, hasSize(1));
+		verify(observationDao, never()).getSearchResultIds(any());
+	}
+	
+	@Test
+	public void getFirstResources_shouldLoadOnlyTheRequestedNumberOfResults() {
+		Obs obs = new Obs();
+		when(observationDao.getSearchResults(any(), eq(0), eq(5))).thenReturn(Collections.singletonList(obs));
+		when(translator.toFhirResource(obs)).thenReturn(new Observation());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
+		
+		List<IBaseResource> resources = searchQueryBundleProvider.getFirstResources(5);
+		
+		assertThat(resources, hasSize(1));
+		verify(observationDao, never()).getSearchResultIds(any());
+	}
+	
+	@Test
+	public void shouldUseCountQueryForSizeWhenWindowedPagingEnabled() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_WINDOWED_PAGING, "false"))
+		        .thenReturn("true");
+		when(observationDao.getSearchResultsCount(any())).thenReturn(42);
+		
+		assertThat(searchQueryBundleProvider.size(), equalTo(42));
+		verify(observationDao, never()).getSearchResultIds(any());
+	}
+	
+	@Test
+	public void shouldNotCountResultsWhenTotalModeIsNone() {
+		SearchQueryBundleProvider<Obs, Observation> provider = withTotalMode(SearchTotalModeEnum.NONE);
+		
+		assertThat(provider.size(), nullValue());
+		verify(observationDao, never()).getSearchResultsCount(any());
+		verify(observationDao, never()).getSearchResultsCount(any(), anyInt());
+		verify(observationDao, never()).getSearchResultIds(any());
+	}
+	
+	@Test
+	public void shouldUseBoundedCountWhenTotalModeIsEstimate() {
+		SearchQueryBundleProvider<Obs, Observation> provider = withTotalMode(SearchTotalModeEnum.ESTIMATED);
+		when(observationDao.getSearchResultsCount(any(), eq(SearchQueryBundleProvider.MAXIMUM_ESTIMATED_TOTAL + 1)))
+		        .thenReturn(42);
+		
+		assertThat(provider.size(), equalTo(42));
+		verify(observationDao, never()).getSearchResultsCount(any());
+	}
+	
+	@Test
+	public void shouldOmitTotalWhenEstimateExceedsMaximum() {
+		SearchQueryBundleProvider<Obs, Observation> provider = withTotalMode(SearchTotalModeEnum.ESTIMATED);
+		when(observationDao.getSearchResultsCount(any(), eq(SearchQueryBundleProvider.MAXIMUM_ESTIMATED_TOTAL + 1)))
+		        .thenReturn(SearchQueryBundleProvider.MAXIMUM_ESTIMATED_TOTAL + 1);
+		
+		assertThat(provider.size(), nullValue());
+	}
+	
+	@Test
+	public void shouldUseCountQueryWhenTotalModeIsAccurate() {
+		SearchQueryBundleProvider<Obs, Observation> provider = withTotalMode(SearchTotalModeEnum.ACCURATE);
+		when(observationDao.getSearchResultsCount(any())).thenReturn(42);
+		
+		assertThat(provider.size(), equalTo(42));
+		verify(observationDao, never()).getSearchResultIds(any());
+	}
+	
+	@Test
+	public void shouldLoadPageWithoutTotalWhenTotalModeIsNone() {
+		SearchQueryBundleProvider<Obs, Observation> provider = withTotalMode(SearchTotalModeEnum.NONE);
+		Obs obs = new Obs();
+		when(observationDao.getSearchResults(any(), eq(0), eq(10))).thenReturn(Collections.singletonList(obs));
+		when(translator.toFhirResource(obs)).thenReturn(new Observation());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any())).thenReturn(Collections.emptySet());
+		
+		assertThat(provider.size(), nullValue());
+		assertThat(provider.getResources(0, 10), hasSize(1));
+	}
+	
 	@Test
 	public void shouldReturnDifferentUuid() {
 		assertThat(searchQueryBundleProvider.getUuid(), notNullValue());
 		assertThat(searchQueryBundleProvider.getUuid(), not(equalTo(new SearchQueryBundleProvider<>(new SearchParameterMap(),
 		        observationDao, translator, globalPropertyService, searchQueryInclude).getUuid())));
 	}
+	
+	private SearchQueryBundleProvider<Obs, Observation> withTotalMode(SearchTotalModeEnum totalMode) {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.TOTAL_MODE_SEARCH_HANDLER,
+		    totalMode);
+		return new SearchQueryBundleProvider<>(theParams, observationDao, translator, globalPropertyService,
+		        searchQueryInclude);
+	}
 }
@@ -0,0 +1,427 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Location;
+import org.hl7.fhir.r4.model.MedicationRequest;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Person;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirEncounterService;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.FhirLocationService;
+import org.openmrs.module.fhir2.api.FhirObservationService;
+import org.openmrs.module.fhir2.api.FhirPatientService;
+import org.openmrs.module.fhir2.api.FhirPractitionerService;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SearchQueryIncludeTest {
+	
+	private static final String PATIENT_UUID = "5946f880-b197-400b-9caa-a3c661d23041";
+	
+	private static final String OTHER_PATIENT_UUID = "8d703ff2-c3e2-4070-9737-73e713d5a50d";
+	
+	private static final String ENCOUNTER_UUID = "430bbb70-6a9c-4e1e-badb-9d1054b1b5e9";
+	
+	private static final String LOCATION_UUID = "c0938432-1691-11df-97a5-7038c432aabf";
+	
+	private static final String PARENT_LOCATION_UUID = "76cd2d30-2411-44ef-84ea-8b7473256a6a";
+	
+	private static final String PRACTITIONER_UUID = "f9badd80-ab76-11e2-9e96-0800200c9a66";
+	
+	@Mock
+	private FhirPatientService patientService;
+	
+	@Mock
+	private FhirEncounterService encounterService;
+	
+	@Mock
+	private FhirLocationService locationService;
+	
+	@Mock
+	private FhirPractitionerService practitionerService;
+	
+	@Mock
+	private FhirObservationService observationService;
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private IBundleProvider bundleProvider;
+	
+	private SearchQueryInclude<IBaseResource> searchQueryInclude;
+	
+	@Before
+	public void setup() {
+		searchQueryInclude = new SearchQueryInclude<>();
+		searchQueryInclude.setPatientService(patientService);
+		searchQueryInclude.setEncounterService(encounterService);
+		searchQueryInclude.setLocationService(locationService);
+		searchQueryInclude.setPractitionerService(practitionerService);
+		searchQueryInclude.setObservationService(observationService);
+		searchQueryInclude.setGlobalPropertyService(globalPropertyService);
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void handleInclude_shouldLoadEachReferencedResourceTypeOnce() {
+		List<IBaseResource> observations = Arrays.asList(observation("obs-1", PATIENT_UUID, ENCOUNTER_UUID),
+		    observation("obs-2", PATIENT_UUID, ENCOUNTER_UUID), observation("obs-3", OTHER_PATIENT_UUID, ENCOUNTER_UUID));
+		when(patientService.get(anyCollection()))
+		        .thenReturn(Arrays.asList(patient(PATIENT_UUID), patient(OTHER_PATIENT_UUID)));
+		when(encounterService.get(anyCollection())).thenReturn(Collections.singletonList(encounter(ENCOUNTER_UUID)));
+		
+		Set<IBaseResource> result = searchQueryInclude.handleInclude(observations,
+		    includes("Observation:patient", "Observation:encounter"));
+		
+		assertThat(result, hasSize(3));
+		ArgumentCaptor<Collection<String>> patientUuids = ArgumentCaptor.forClass(Collection.class);
+		verify(patientService, times(1)).get(patientUuids.capture());
+		assertThat(patientUuids.getValue(), containsInAnyOrder(PATIENT_UUID, OTHER_PATIENT_UUID));
+		verify(encounterService, times(1)).get(anyCollection());
+	}
+	
+	@Test
+	public void handleInclude_shouldMergeIncludesTargetingTheSameResourceType() {
+		Encounter encounter = encounter(ENCOUNTER_UUID);
+		encounter.addParticipant().setIndividual(new Reference("Practitioner/" + PRACTITIONER_UUID));
+		encounter.addLocation().setLocation(new Reference("Location/" + LOCATION_UUID));
+		when(practitionerService.get(anyCollection()))
+		        .thenReturn(Collections.singletonList(practitioner(PRACTITIONER_UUID)));
+		when(locationService.get(anyCollection())).thenReturn(Collections.singletonList(location(LOCATION_UUID)));
+		
+		Set<IBaseResource> result = searchQueryInclude.handleInclude(Collections.singletonList(encounter),
+		    includes("Encounter:participant", "Encounter:location"));
+		
+		assertThat(result, hasSize(2));
+		verify(practitionerService, times(1)).get(anyCollection());
+		verify(locationService, times(1)).get(anyCollection());
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void handleInclude_shouldLoadLinkedPatientsOfAllPersonsTogether() {
+		Person first = new Person();
+		first.setId("person-1");
+		first.addLink().setTarget(new Reference("Patient/" + PATIENT_UUID));
+		Person second = new Person();
+		second.setId("person-2");
+		second.addLink().setTarget(new Reference("Patient/" + OTHER_PATIENT_UUID));
+		when(patientService.get(anyCollection()))
+		        .thenReturn(Arrays.asList(patient(PATIENT_UUID), patient(OTHER_PATIENT_UUID)));
+		
+		Set<IBaseResource> result = searchQueryInclude.handleInclude(Arrays.asList(first, second),
+		    includes("Person:link:Patient"));
+		
+		assertThat(result, hasSize(2));
+		ArgumentCaptor<Collection<String>> patientUuids = ArgumentCaptor.forClass(Collection.class);
+		verify(patientService, times(1)).get(patientUuids.capture());
+		assertThat(patientUuids.getValue(), containsInAnyOrder(PATIENT_UUID, OTHER_PATIENT_UUID));
+	}
+	
+	@Test
+	public void handleInclude_shouldNotLoadResourcesAlreadyOnThePage() {
+		Location parent = location(LOCATION_UUID);
+		Location child = location("child-location");
+		child.setPartOf(new Reference("Location/" + LOCATION_UUID));
+		
+		Set<IBaseResource> result = searchQueryInclude.handleInclude(Arrays.asList(parent, child),
+		    includes("Location:partof"));
+		
+		assertThat(result, empty());
+		verify(locationService, never()).get(anyCollection());
+	}
+	
+	@Test
+	public void handleInclude_shouldNotQueryWhenNothingIsReferenced() {
+		Set<IBaseResource> result = searchQueryInclude.handleInclude(
+		    Collections.singletonList(encounter(ENCOUNTER_UUID)), includes("Encounter:patient", "Encounter:location"));
+		
+		assertThat(result, empty());
+		verify(patientService, never()).get(anyCollection());
+		verify(locationService, never()).get(anyCollection());
+	}
+	
+	@Test
+	public void handleInclude_shouldResolveEveryReferenceForWildcardInclude() {
+		Encounter encounter = encounter(ENCOUNTER_UUID);
+		encounter.setSubject(new Reference("Patient/" + PATIENT_UUID));
+		encounter.addParticipant().setIndividual(new Reference("Practitioner/" + PRACTITIONER_UUID));
+		encounter.addLocation().setLocation(new Reference("Location/" + LOCATION_UUID));
+		when(patientService.get(anyCollection())).thenReturn(Collections.singletonList(patient(PATIENT_UUID)));
+		when(practitionerService.get(anyCollection()))
+		        .thenReturn(Collections.singletonList(practitioner(PRACTITIONER_UUID)));
+		when(locationService.get(anyCollection())).thenReturn(Collections.singletonList(location(LOCATION_UUID)));
+		
+		Set<IBaseResource> result = searchQueryInclude.handleInclude(Collections.singletonList(encounter),
+		    includes("*"));
+		
+		assertThat(result, hasSize(3));
+		verify(patientService, times(1)).get(anyCollection());
+		verify(practitionerService, times(1)).get(anyCollection());
+		verify(locationService, times(1)).get(anyCollection());
+	}
+	
+	@Test
+	public void getIncludedResources_shouldLimitReverseIncludedResourcesAndWarnWhenTruncated() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_REVERSE_INCLUDE_MAXIMUM, 1000))
+		        .thenReturn(2);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_REVERSE_INCLUDE_MAXIMUM + ".Observation", 2))
+		        .thenReturn(2);
+		when(observationService.searchForObservations(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(),
+		    any(), any(), any(), any(), any())).thenReturn(bundleProvider);
+		when(bundleProvider.getResources(0, 3)).thenReturn(Arrays.asList(observation("obs-1", PATIENT_UUID, ENCOUNTER_UUID),
+		    observation("obs-2", PATIENT_UUID, ENCOUNTER_UUID), observation("obs-3", PATIENT_UUID, ENCOUNTER_UUID)));
+		
+		Set<IBaseResource> result = searchQueryInclude.getIncludedResources(
+		    Collections.singletonList(patient(PATIENT_UUID)), revIncludes("Observation:patient"));
+		
+		assertThat(result, hasSize(3));
+		List<OperationOutcome> outcomes = getResourcesOfType(result, OperationOutcome.class);
+		assertThat(outcomes, hasSize(1));
+		assertThat(outcomes.get(0).getIssue(), hasSize(1));
+		assertThat(outcomes.get(0).getIssueFirstRep().getSeverity(), equalTo(OperationOutcome.IssueSeverity.WARNING));
+		assertThat(getResourcesOfType(result, Observation.class), hasSize(2));
+	}
+	
+	@Test
+	public void getIncludedResources_shouldNotWarnWhenReverseIncludedResourcesAreWithinMaximum() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_REVERSE_INCLUDE_MAXIMUM, 1000))
+		        .thenReturn(1000);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_REVERSE_INCLUDE_MAXIMUM + ".Observation",
+		    1000)).thenReturn(1000);
+		when(observationService.searchForObservations(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(),
+		    any(), any(), any(), any(), any())).thenReturn(bundleProvider);
+		when(bundleProvider.getResources(0, 1001))
+		        .thenReturn(Collections.singletonList(observation("obs-1", PATIENT_UUID, ENCOUNTER_UUID)));
+		
+		Set<IBaseResource> result = searchQueryInclude.getIncludedResources(
+		    Collections.singletonList(patient(PATIENT_UUID)), revIncludes("Observation:patient"));
+		
+		assertThat(result, hasSize(1));
+		assertThat(result, everyItem(instanceOf(Observation.class)));
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void getIncludedResources_shouldUseIdsFoundByTheLookupInsteadOfReferences() {
+		Observation observation = new Observation();
+		observation.setId("obs-1");
+		when(patientService.get(anyCollection())).thenReturn(Collections.singletonList(patient(PATIENT_UUID)));
+		
+		Set<IBaseResource> result = searchQueryInclude.getIncludedResources(Collections.singletonList(observation),
+		    includeParams("Observation:patient"), (resourceType, paramName) -> {
+			    assertThat(resourceType, equalTo(FhirConstants.OBSERVATION));
+			    assertThat(paramName, equalTo(FhirConstants.INCLUDE_PATIENT_PARAM));
+			    return Collections.singletonList(PATIENT_UUID);
+		    });
+		
+		assertThat(result, hasSize(1));
+		ArgumentCaptor<Collection<String>> patientUuids = ArgumentCaptor.forClass(Collection.class);
+		verify(patientService).get(patientUuids.capture());
+		assertThat(patientUuids.getValue(), containsInAnyOrder(PATIENT_UUID));
+	}
+	
+	@Test
+	public void getIncludedResources_shouldReadReferencesWhenTheLookupCannotFindIds() {
+		when(patientService.get(anyCollection())).thenReturn(Collections.singletonList(patient(PATIENT_UUID)));
+		
+		Set<IBaseResource> result = searchQueryInclude.getIncludedResources(
+		    Collections.singletonList(observation("obs-1", PATIENT_UUID, ENCOUNTER_UUID)),
+		    includeParams("Observation:patient"), (resourceType, paramName) -> null);
+		
+		assertThat(result, hasSize(1));
+		assertThat(result, everyItem(instanceOf(Patient.class)));
+	}
+	
+	@Test
+	public void handleInclude_shouldFollowIterateIncludesAndStopAtCycles() {
+		whenIterateLimitsAre(5, 1000);
+		Encounter encounter = encounter(ENCOUNTER_UUID);
+		encounter.addLocation().setLocation(new Reference("Location/" + LOCATION_UUID));
+		when(encounterService.get(anyCollection())).thenReturn(Collections.singletonList(encounter));
+		// the two locations are each other's parent
+		Location location = location(LOCATION_UUID);
+		location.setPartOf(new Reference("Location/" + PARENT_LOCATION_UUID));
+		Location parentLocation = location(PARENT_LOCATION_UUID);
+		parentLocation.setPartOf(new Reference("Location/" + LOCATION_UUID));
+		when(locationService.get(eq(Collections.singleton(LOCATION_UUID))))
+		        .thenReturn(Collections.singletonList(location));
+		when(locationService.get(eq(Collections.singleton(PARENT_LOCATION_UUID))))
+		        .thenReturn(Collections.singletonList(parentLocation));
+		
+		Set<IBaseResource> result = searchQueryInclude.handleInclude(
+		    Collections.singletonList(medicationRequest(ENCOUNTER_UUID)),
+		    includes(new Include("MedicationRequest:encounter"), new Include("Encounter:location", true),
+		        new Include("Location:partof", true)));
+		
+		assertThat(result, containsInAnyOrder(encounter, location, parentLocation));
+		verify(locationService, times(2)).get(anyCollection());
+	}
+	
+	@Test
+	public void handleInclude_shouldWarnWhenIterateIncludesExceedTheMaximumDepth() {
+		whenIterateLimitsAre(2, 1000);
+		Encounter encounter = encounter(ENCOUNTER_UUID);
+		encounter.addLocation().setLocation(new Reference("Location/" + LOCATION_UUID));
+		when(encounterService.get(anyCollection())).thenReturn(Collections.singletonList(encounter));
+		Location location = location(LOCATION_UUID);
+		location.setPartOf(new Reference("Location/" + PARENT_LOCATION_UUID));
+		when(locationService.get(anyCollection())).thenReturn(Collections.singletonList(location));
+		
+		Set<IBaseResource> result = searchQueryInclude.handleInclude(
+		    Collections.singletonList(medicationRequest(ENCOUNTER_UUID)),
+		    includes(new Include("MedicationRequest:encounter"), new Include("Encounter:location", true),
+		        new Include("Location:partof", true)));
+		
+		assertThat(result, hasSize(3));
+		assertThat(getResourcesOfType(result, OperationOutcome.class), hasSize(1));
+		verify(locationService, times(1)).get(anyCollection());
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void handleInclude_shouldLimitTheNumberOfIteratedResources() {
+		whenIterateLimitsAre(5, 1);
+		Encounter encounter = encounter(ENCOUNTER_UUID);
+		encounter.addLocation().setLocation(new Reference("Location/" + LOCATION_UUID));
+		encounter.addLocation().setLocation(new Reference("Location/" + PARENT_LOCATION_UUID));
+		when(encounterService.get(anyCollection())).thenReturn(Collections.singletonList(encounter));
+		when(locationService.get(anyCollection())).thenReturn(Collections.singletonList(location(LOCATION_UUID)));
+		
+		Set<IBaseResource> result = searchQueryInclude.handleInclude(
+		    Collections.singletonList(medicationRequest(ENCOUNTER_UUID)),
+		    includes(new Include("MedicationRequest:encounter"), new Include("Encounter:location", true)));
+		
+		assertThat(getResourcesOfType(result, OperationOutcome.class), hasSize(1));
+		ArgumentCaptor<Collection<String>> locationUuids = ArgumentCaptor.forClass(Collection.class);
+		verify(locationService).get(locationUuids.capture());
+		assertThat(locationUuids.getValue(), hasSize(1));
+	}
+	
+	private void whenIterateLimitsAre(int maximumDepth, int maximum) {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_INCLUDE_ITERATE_MAXIMUM_DEPTH, 5))
+		        .thenReturn(maximumDepth);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_INCLUDE_ITERATE_MAXIMUM, 1000))
+		        .thenReturn(maximum);
+	}
+	
+	private static MedicationRequest medicationRequest(String encounterUuid) {
+		MedicationRequest medicationRequest = new MedicationRequest();
+		medicationRequest.setId("medication-request");
+		medicationRequest.setEncounter(new Reference("Encounter/" + encounterUuid));
+		return medicationRequest;
+	}
+	
+	private static <T extends IBaseResource> List<T> getResourcesOfType(Set<IBaseResource> resources, Class<T> type) {
+		return resources.stream().filter(type::isInstance).map(type::cast).collect(Collectors.toList());
+	}
+	
+	private static SearchParameterMap revIncludes(String... values) {
+		HashSet<Include> revIncludes = new HashSet<>();
+		for (String value : values) {
+			revIncludes.add(new Include(value));
+		}
+		
+		return new SearchParameterMap().addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER, revIncludes);
+	}
+	
+	private static SearchParameterMap includeParams(String... values) {
+		HashSet<Include> includes = new HashSet<>();
+		for (String value : values) {
+			includes.add(new Include(value));
+		}
+		
+		return new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER, includes);
+	}
+	
+	private static List<PropParam<?>> includes(String... values) {
+		return includes(Arrays.stream(values).map(Include::new).toArray(Include[]::new));
+	}
+	
+	private static List<PropParam<?>> includes(Include... values) {
+		HashSet<Include> includes = new HashSet<>(Arrays.asList(values));
+		
+		return new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER, includes)
+		        .getParameters(FhirConstants.INCLUDE_SEARCH_HANDLER);
+	}
+	
+	private static Observation observation(String id, String patientUuid, String encounterUuid) {
+		Observation observation = new Observation();
+		observation.setId(id);
+		observation.setSubject(new Reference("Patient/" + patientUuid));
+		observation.setEncounter(new Reference("Encounter/" + encounterUuid));
+		return observation;
+	}
+	
+	private static Patient patient(String uuid) {
+		Patient patient = new Patient();
+		patient.setId(uuid);
+		return patient;
+	}
+	
+	private static Practitioner practitioner(String uuid) {
+		Practitioner practitioner = new Practitioner();
+		practitioner.setId(uuid);
+		return practitioner;
+	}
+	
+	private static Location location(String uuid) {
+		Location location = new Location();
+		location.setId(uuid);
+		return location;
+	}
+	
+	private static Encounter encounter(String uuid) {
+		Encounter encounter = new Encounter();
+		encounter.setId(uuid);
+		return encounter;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SearchQueryMonitorTest {
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	private SearchQueryMonitor monitor;
+	
+	@Before
+	public void setup() {
+		monitor = new SearchQueryMonitor();
+		monitor.setGlobalPropertyService(globalPropertyService);
+		
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SLOW_SEARCH_THRESHOLD, 1000))
+		        .thenReturn(1000);
+	}
+	
+	@Test
+	public void record_shouldRecordTimingForOperationAndForQueriesUsingEachHandler() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.CODED_SEARCH_HANDLER,
+		    new TokenAndListParam().addAnd(new TokenParam("5089")));
+		
+		monitor.record("FhirObservationDaoImpl", "searchResultIds", theParams, null, TimeUnit.MILLISECONDS.toNanos(3), 4);
+		monitor.record("FhirObservationDaoImpl", "searchResultIds", theParams, null, TimeUnit.MILLISECONDS.toNanos(30), 4);
+		
+		Map<String, SearchQueryMonitor.Histogram> histograms = monitor.getHistograms();
+		assertThat(histograms, hasKey("FhirObservationDaoImpl.searchResultIds"));
+		assertThat(histograms, hasKey("FhirObservationDaoImpl.searchResultIds using " + FhirConstants.CODED_SEARCH_HANDLER));
+		
+		SearchQueryMonitor.Histogram histogram = histograms.get("FhirObservationDaoImpl.searchResultIds");
+		assertThat(histogram.getCount(), equalTo(2L));
+		assertThat(histogram.getTotalMillis(), equalTo(33L));
+		assertThat(histogram.getMaximumMillis(), equalTo(30L));
+		// 3ms falls in the [2, 5) bucket and 30ms in the [20, 50) bucket
+		assertThat(histogram.getBucketCounts()[2], equalTo(1L));
+		assertThat(histogram.getBucketCounts()[5], equalTo(1L));
+	}
+	
+	@Test
+	public void record_shouldRecordSlowSearchesInUpperBuckets() {
+		monitor.record("FhirObservationDaoImpl", "searchResultIds", new SearchParameterMap(), null,
+		    TimeUnit.SECONDS.toNanos(2), 100);
+		
+		assertThat(monitor.getHistograms().get("FhirObservationDaoImpl.searchResultIds").getBucketCounts()[11],
+		    equalTo(1L));
+	}
+	
+	@Test
+	public void record_shouldRecordStatementCount() {
+		monitor.record("FhirEncounterDaoImpl", "searchResults", null, null, 1, 10, 3);
+		monitor.record("FhirEncounterDaoImpl", "searchResults", null, null, 1, 10, 2);
+		monitor.record("FhirEncounterDaoImpl", "searchResultIds", null, null, 1, 10);
+		
+		Map<String, SearchQueryMonitor.Histogram> histograms = monitor.getHistograms();
+		assertThat(histograms.get("FhirEncounterDaoImpl.searchResults").getStatementCount(), equalTo(5L));
+		assertThat(histograms.get("FhirEncounterDaoImpl.searchResultIds").getStatementCount(), equalTo(1L));
+	}
+	
+	@Test
+	public void getHistograms_shouldReturnCopy() {
+		monitor.record("FhirObservationDaoImpl", "searchResultIds", null, null, 1, 0);
+		
+		Map<String, SearchQueryMonitor.Histogram> histograms = monitor.getHistograms();
+		monitor.record("FhirObservationDaoImpl", "searchResultIds", null, null, 1, 0);
+		
+		assertThat(histograms.get("FhirObservationDaoImpl.searchResultIds").getCount(), equalTo(1L));
+	}
+	
+	@Test
+	public void reset_shouldClearHistograms() {
+		monitor.record("FhirObservationDaoImpl", "searchResultIds", null, null, 1, 0);
+		assertThat(monitor.getHistograms(), not(anEmptyMap()));
+		
+		monitor.reset();
+		
+		assertThat(monitor.getHistograms(), anEmptyMap());
+	}
+	
+	@Test
+	public void toSql_shouldReturnNullWithoutCriteria() {
+		assertThat(SearchQueryMonitor.toSql(null), nullValue());
+	}
+}
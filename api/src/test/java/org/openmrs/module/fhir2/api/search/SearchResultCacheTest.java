@@ -0,0 +1,276 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.PersonName;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.impl.FhirObservationDaoImpl;
+import org.openmrs.module.fhir2.api.dao.impl.FhirPatientDaoImpl;
+import org.openmrs.module.fhir2.model.FhirSearchSnapshot;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SearchResultCacheTest {
+	
+	private static final FhirContext fhirContext = FhirContext.forR4();
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private EntityPersister persister;
+	
+	private SearchResultCache cache;
+	
+	private AtomicInteger queries;
+	
+	@Before
+	public void setup() {
+		cache = new SearchResultCache();
+		cache.setGlobalPropertyService(globalPropertyService);
+		cache.setFhirContext(fhirContext);
+		
+		queries = new AtomicInteger();
+	}
+	
+	@Test
+	public void toCanonicalString_shouldNotDependOnParameterOrder() {
+		SearchParameterMap first = new SearchParameterMap()
+		        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patient("123"))
+		        .addParameter(FhirConstants.CODED_SEARCH_HANDLER, codes("5089", "5090"));
+		SearchParameterMap second = new SearchParameterMap()
+		        .addParameter(FhirConstants.CODED_SEARCH_HANDLER, codes("5090", "5089"))
+		        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patient("123"));
+		
+		assertThat(cache.toCanonicalString(first), equalTo(cache.toCanonicalString(second)));
+	}
+	
+	@Test
+	public void toCanonicalString_shouldDifferForDifferentValues() {
+		SearchParameterMap first = new SearchParameterMap()
+		        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patient("123"));
+		SearchParameterMap second = new SearchParameterMap()
+		        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patient("456"));
+		
+		assertThat(cache.toCanonicalString(first), not(equalTo(cache.toCanonicalString(second))));
+	}
+	
+	@Test
+	public void toCanonicalString_shouldReturnNullForValuesWithoutStableForm() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.COMMON_SEARCH_HANDLER,
+		    new AtomicBoolean());
+		
+		assertThat(cache.toCanonicalString(theParams), nullValue());
+	}
+	
+	@Test
+	public void getIds_shouldOnlyRunQueryOnceWhenEnabled() {
+		enableCache();
+		
+		assertThat(getIds(patientSearch()), equalTo(new int[] { 1, 2 }));
+		assertThat(getIds(patientSearch()), equalTo(new int[] { 1, 2 }));
+		
+		assertThat(queries.get(), equalTo(1));
+		assertThat(cache.getStatistics().hitCount(), equalTo(1L));
+		assertThat(cache.getStatistics().missCount(), equalTo(1L));
+	}
+	
+	@Test
+	public void getIds_shouldAlwaysRunQueryWhenDisabled() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE, 0))
+		        .thenReturn(0);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_TIME_TO_LIVE, 30))
+		        .thenReturn(30);
+		
+		getIds(patientSearch());
+		getIds(patientSearch());
+		
+		assertThat(queries.get(), equalTo(2));
+		assertThat(cache.getStatistics(), nullValue());
+	}
+	
+	@Test
+	public void getIds_shouldStartCachingWhenTheMaximumSizeIsIncreased() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE, 0))
+		        .thenReturn(0);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_TIME_TO_LIVE, 30))
+		        .thenReturn(30);
+		getIds(patientSearch());
+		
+		cache.propertyChanged(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE, "100");
+		getIds(patientSearch());
+		getIds(patientSearch());
+		
+		assertThat(queries.get(), equalTo(2));
+		assertThat(cache.getStatistics().hitCount(), equalTo(1L));
+	}
+	
+	@Test
+	public void getIds_shouldStopCachingWhenTheMaximumSizeIsSetToZero() {
+		enableCache();
+		getIds(patientSearch());
+		
+		cache.propertyChanged(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE, "0");
+		getIds(patientSearch());
+		getIds(patientSearch());
+		
+		assertThat(queries.get(), equalTo(3));
+		assertThat(cache.getStatistics(), nullValue());
+	}
+	
+	@Test
+	public void getIds_shouldDiscardCachedResultsWhenTheTimeToLiveIsChanged() {
+		enableCache();
+		getIds(patientSearch());
+		
+		cache.propertyChanged(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_TIME_TO_LIVE, "60");
+		getIds(patientSearch());
+		getIds(patientSearch());
+		
+		assertThat(queries.get(), equalTo(2));
+	}
+	
+	@Test
+	public void getIds_shouldUseTheDefaultWhenThePropertyIsDeleted() {
+		enableCache();
+		getIds(patientSearch());
+		
+		cache.propertyChanged(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE, null);
+		getIds(patientSearch());
+		
+		assertThat(queries.get(), equalTo(2));
+		assertThat(cache.getStatistics(), nullValue());
+	}
+	
+	@Test
+	public void getCount_shouldUseCachedIds() {
+		enableCache();
+		getIds(patientSearch());
+		
+		int count = cache.getCount(FhirObservationDaoImpl.class, Obs.class, patientSearch(), () -> {
+			queries.incrementAndGet();
+			return 42;
+		});
+		
+		assertThat(count, equalTo(2));
+		assertThat(queries.get(), equalTo(1));
+	}
+	
+	@Test
+	public void evict_shouldRemoveResultsForChangedType() {
+		enableCache();
+		getIds(patientSearch());
+		
+		cache.evict(Obs.class);
+		getIds(patientSearch());
+		
+		assertThat(queries.get(), equalTo(2));
+	}
+	
+	@Test
+	public void evict_shouldRemoveResultsForTypesDependingOnTheChangedType() {
+		enableCache();
+		getIds(patientSearch());
+		
+		cache.evict(Encounter.class);
+		getIds(patientSearch());
+		
+		assertThat(queries.get(), equalTo(2));
+	}
+	
+	@Test
+	public void evict_shouldKeepResultsWhenASearchSnapshotIsSaved() {
+		enableCache();
+		getIds(patientSearch());
+		
+		cache.evict(FhirSearchSnapshot.class);
+		getIds(patientSearch());
+		
+		assertThat(queries.get(), equalTo(1));
+	}
+	
+	@Test
+	public void onPostInsert_shouldRemovePatientNameSearchesWhenANameIsSaved() {
+		enableCache();
+		SearchParameterMap nameSearch = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.NAME_PROPERTY, new StringAndListParam().addAnd(new StringParam("Claudent")));
+		getIds(FhirPatientDaoImpl.class, Patient.class, nameSearch);
+		
+		when(persister.getMappedClass()).thenReturn(PersonName.class);
+		cache.onPostInsert(new PostInsertEvent(new PersonName(), 1, new Object[0], persister, null));
+		getIds(FhirPatientDaoImpl.class, Patient.class, nameSearch);
+		
+		assertThat(queries.get(), equalTo(2));
+	}
+	
+	private void enableCache() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE, 0))
+		        .thenReturn(100);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_TIME_TO_LIVE, 30))
+		        .thenReturn(30);
+	}
+	
+	private int[] getIds(SearchParameterMap theParams) {
+		return getIds(FhirObservationDaoImpl.class, Obs.class, theParams);
+	}
+	
+	private int[] getIds(Class<?> daoType, Class<?> type, SearchParameterMap theParams) {
+		return cache.getIds(daoType, type, theParams, () -> {
+			queries.incrementAndGet();
+			return new int[] { 1, 2 };
+		});
+	}
+	
+	private SearchParameterMap patientSearch() {
+		return new SearchParameterMap().addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patient("123"));
+	}
+	
+	private static ReferenceAndListParam patient(String id) {
+		return new ReferenceAndListParam().addAnd(new ReferenceOrListParam().add(new ReferenceParam("Patient", null, id)));
+	}
+	
+	private static TokenAndListParam codes(String... codes) {
+		TokenOrListParam orListParam = new TokenOrListParam();
+		for (String code : codes) {
+			orListParam.add(new TokenParam(code));
+		}
+		
+		return new TokenAndListParam().addAnd(orListParam);
+	}
+}
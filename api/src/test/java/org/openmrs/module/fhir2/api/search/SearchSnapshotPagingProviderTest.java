@@ -0,0 +1,238 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.r4.model.Observation;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.dao.FhirSearchSnapshotDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
+import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+import org.openmrs.module.fhir2.model.FhirSearchSnapshot;
+import org.springframework.beans.factory.ListableBeanFactory;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SearchSnapshotPagingProviderTest {
+	
+	private static final String OBS_UUID_1 = "39fb7f47-e80a-4056-9285-bd798be13c63";
+	
+	private static final String OBS_UUID_2 = "be48cdcb-6a76-47e3-9305-7a7ac0e2b2b7";
+	
+	private static final String OBS_UUID_3 = "6c2b3d0e-1e5f-4c4e-97e7-2c3a5f3a9d01";
+	
+	@Mock
+	private FhirSearchSnapshotDao snapshotDao;
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private ListableBeanFactory beanFactory;
+	
+	@Mock
+	private FhirObservationDao observationDao;
+	
+	@Mock
+	private ObservationTranslator translator;
+	
+	@Mock
+	private SearchQueryInclude<Observation> searchQueryInclude;
+	
+	@Mock
+	private SearchResultComparatorFactory comparatorFactory;
+	
+	private SearchSnapshotPagingProvider pagingProvider;
+	
+	@Before
+	public void setup() {
+		pagingProvider = new SearchSnapshotPagingProvider(snapshotDao, globalPropertyService, beanFactory, 60_000, 100);
+	}
+	
+	@Test
+	public void shouldStoreAndRestoreSearchSnapshot() {
+		mockSearchBeans();
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.addParameter(FhirConstants.CODED_SEARCH_HANDLER, new TokenAndListParam().addAnd(new TokenParam("5089")));
+		
+		int[] ids = new int[] { 7, 3, 12 };
+		when(observationDao.getSearchResultIds(any())).thenReturn(ids);
+		
+		SearchQueryBundleProvider<Obs, Observation> bundleProvider = new SearchQueryBundleProvider<>(theParams,
+		        observationDao, translator, globalPropertyService, searchQueryInclude);
+		
+		String searchId = pagingProvider.storeResultList(null, bundleProvider);
+		assertThat(searchId, equalTo(bundleProvider.getUuid()));
+		
+		ArgumentCaptor<FhirSearchSnapshot> snapshotCaptor = ArgumentCaptor.forClass(FhirSearchSnapshot.class);
+		verify(snapshotDao).save(snapshotCaptor.capture());
+		FhirSearchSnapshot snapshot = snapshotCaptor.getValue();
+		assertThat(snapshot.getDaoBean(), equalTo("obsDao"));
+		assertThat(snapshot.getResults(), notNullValue());
+		
+		when(snapshotDao.get(searchId)).thenReturn(snapshot);
+		IBundleProvider result = pagingProvider.retrieveResultList(null, searchId);
+		
+		assertThat(result, instanceOf(SearchQueryBundleProvider.class));
+		assertThat(result.getUuid(), equalTo(searchId));
+		assertThat(result.size(), equalTo(3));
+		assertThat(((SearchQueryBundleProvider<?, ?>) result).getSearchParameterMap()
+		        .getParameters(FhirConstants.CODED_SEARCH_HANDLER).size(),
+		    equalTo(1));
+		assertThat(((SearchQueryBundleProvider<?, ?>) result).getMatchingResourceIds(), equalTo(ids));
+	}
+	
+	@Test
+	public void shouldStoreAndRestoreCombinedSearchSnapshot() {
+		mockSearchBeans();
+		when(beanFactory.getBeansOfType(SearchResultComparatorFactory.class))
+		        .thenReturn(Collections.singletonMap("sortComparatorFactory", comparatorFactory));
+		when(beanFactory.getBean("sortComparatorFactory", SearchResultComparatorFactory.class))
+		        .thenReturn(comparatorFactory);
+		
+		SortSpec sort = new SortSpec("date", SortOrderEnum.DESC);
+		SearchParameterMap theParams = new SearchParameterMap().setSortSpec(sort);
+		when(observationDao.getSearchResultIds(any())).thenReturn(new int[] { 7, 3 });
+		
+		TwoSearchQueryBundleProvider bundleProvider = new TwoSearchQueryBundleProvider(
+		        new SearchQueryBundleProvider<>(theParams, observationDao, translator, globalPropertyService,
+		                searchQueryInclude),
+		        new SearchQueryBundleProvider<>(theParams, observationDao, translator, globalPropertyService,
+		                searchQueryInclude),
+		        globalPropertyService, comparatorFactory, sort);
+		
+		String searchId = pagingProvider.storeResultList(null, bundleProvider);
+		assertThat(searchId, equalTo(bundleProvider.getUuid()));
+		
+		ArgumentCaptor<FhirSearchSnapshot> snapshotCaptor = ArgumentCaptor.forClass(FhirSearchSnapshot.class);
+		verify(snapshotDao, times(3)).save(snapshotCaptor.capture());
+		List<FhirSearchSnapshot> snapshots = snapshotCaptor.getAllValues();
+		snapshots.forEach(snapshot -> when(snapshotDao.get(snapshot.getUuid())).thenReturn(snapshot));
+		
+		FhirSearchSnapshot snapshot = snapshots.get(2);
+		assertThat(snapshot.getUuid(), equalTo(searchId));
+		assertThat(snapshot.getFirstSearchUuid(), equalTo(snapshots.get(0).getUuid()));
+		assertThat(snapshot.getSecondSearchUuid(), equalTo(snapshots.get(1).getUuid()));
+		assertThat(snapshot.getComparatorBean(), equalTo("sortComparatorFactory"));
+		
+		IBundleProvider result = pagingProvider.retrieveResultList(null, searchId);
+		
+		assertThat(result, instanceOf(TwoSearchQueryBundleProvider.class));
+		assertThat(result.getUuid(), equalTo(searchId));
+		assertThat(result.size(), equalTo(4));
+		assertThat(((TwoSearchQueryBundleProvider) result).getComparatorFactory(), equalTo(comparatorFactory));
+		assertThat(((TwoSearchQueryBundleProvider) result).getSort().getParamName(), equalTo("date"));
+		assertThat(((TwoSearchQueryBundleProvider) result).getSort().getOrder(), equalTo(SortOrderEnum.DESC));
+		assertThat(((TwoSearchQueryBundleProvider) result).getFirstProvider().getUuid(),
+		    equalTo(snapshots.get(0).getUuid()));
+	}
+	
+	@Test
+	public void shouldNotRestoreCombinedSearchWhenEitherSearchHasExpired() {
+		FhirSearchSnapshot snapshot = new FhirSearchSnapshot();
+		snapshot.setUuid(OBS_UUID_1);
+		snapshot.setFirstSearchUuid(OBS_UUID_2);
+		snapshot.setSecondSearchUuid(OBS_UUID_3);
+		snapshot.setExpiryDate(new Date(System.currentTimeMillis() + 60_000));
+		when(snapshotDao.get(OBS_UUID_1)).thenReturn(snapshot);
+		
+		assertThat(pagingProvider.retrieveResultList(null, OBS_UUID_1), nullValue());
+	}
+	
+	@Test
+	public void shouldKeepCombinedSearchesWithoutComparatorFactoryInMemory() {
+		when(observationDao.getSearchResultIds(any())).thenReturn(new int[] { 7 });
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		TwoSearchQueryBundleProvider bundleProvider = new TwoSearchQueryBundleProvider(
+		        new SearchQueryBundleProvider<>(theParams, observationDao, translator, globalPropertyService,
+		                searchQueryInclude),
+		        new SearchQueryBundleProvider<>(theParams, observationDao, translator, globalPropertyService,
+		                searchQueryInclude),
+		        globalPropertyService, (first, second) -> 0);
+		
+		String searchId = pagingProvider.storeResultList(null, bundleProvider);
+		
+		assertThat(pagingProvider.retrieveResultList(null, searchId), equalTo(bundleProvider));
+		verify(snapshotDao, never()).save(any());
+	}
+	
+	@Test
+	public void shouldEncodeAndDecodeIds() throws IOException {
+		int[] ids = new int[] { 1, 2, 3, 1_000_000, 5, Integer.MAX_VALUE, 0, Integer.MIN_VALUE };
+		
+		assertThat(SearchSnapshotPagingProvider.decodeIds(SearchSnapshotPagingProvider.encodeIds(ids)), equalTo(ids));
+	}
+	
+	@Test
+	public void shouldNotRestoreExpiredSnapshot() {
+		FhirSearchSnapshot snapshot = new FhirSearchSnapshot();
+		snapshot.setUuid(OBS_UUID_1);
+		snapshot.setExpiryDate(new Date(System.currentTimeMillis() - 1000));
+		when(snapshotDao.get(OBS_UUID_1)).thenReturn(snapshot);
+		
+		assertThat(pagingProvider.retrieveResultList(null, OBS_UUID_1), nullValue());
+	}
+	
+	@Test
+	public void shouldKeepOtherBundleProvidersInMemory() {
+		IBundleProvider bundleProvider = new SimpleBundleProvider(Collections.emptyList());
+		
+		String searchId = pagingProvider.storeResultList(null, bundleProvider);
+		
+		assertThat(pagingProvider.retrieveResultList(null, searchId), equalTo(bundleProvider));
+		verify(snapshotDao, never()).save(any());
+		verify(snapshotDao, never()).get(anyString());
+	}
+	
+	private void mockSearchBeans() {
+		when(beanFactory.getBeansOfType(FhirDao.class)).thenReturn(Collections.singletonMap("obsDao", observationDao));
+		when(beanFactory.getBeansOfType(ToFhirTranslator.class))
+		        .thenReturn(Collections.singletonMap("obsTranslator", translator));
+		when(beanFactory.getBeansOfType(SearchQueryInclude.class))
+		        .thenReturn(Collections.singletonMap("searchQueryInclude", searchQueryInclude));
+		when(beanFactory.getBean("obsDao", FhirDao.class)).thenReturn(observationDao);
+		when(beanFactory.getBean("obsTranslator", ToFhirTranslator.class)).thenReturn(translator);
+		when(beanFactory.getBean("searchQueryInclude", SearchQueryInclude.class)).thenReturn(searchQueryInclude);
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Period;
+import org.junit.Test;
+
+public class TwoSearchQueryBundleProviderTest {
+	
+	private static final Comparator<IBaseResource> BY_START = Comparator
+	        .comparing(resource -> ((Encounter) resource).getPeriod().getStart());
+	
+	@Test
+	public void getResources_shouldConcatenateResultsWithoutComparator() {
+		TwoSearchQueryBundleProvider provider = new TwoSearchQueryBundleProvider(encounters(1, 3, 5), encounters(2, 4),
+		        null);
+		
+		assertThat(ids(provider.getResources(0, 5)), contains("1", "3", "5", "2", "4"));
+	}
+	
+	@Test
+	public void getResources_shouldMergeResultsInComparatorOrder() {
+		TwoSearchQueryBundleProvider provider = new TwoSearchQueryBundleProvider(encounters(1, 3, 5), encounters(2, 4),
+		        null, BY_START);
+		
+		assertThat(ids(provider.getResources(0, 5)), contains("1", "2", "3", "4", "5"));
+	}
+	
+	@Test
+	public void getResources_shouldMergeResultsAcrossPages() {
+		TwoSearchQueryBundleProvider provider = new TwoSearchQueryBundleProvider(encounters(1, 3, 5, 7),
+		        encounters(2, 4, 6), null, BY_START);
+		
+		List<String> results = new ArrayList<>();
+		for (int i = 0; i < provider.size(); i += 2) {
+			results.addAll(ids(provider.getResources(i, i + 2)));
+		}
+		
+		assertThat(results, contains("1", "2", "3", "4", "5", "6", "7"));
+	}
+	
+	@Test
+	public void getResources_shouldMergeResultsWhenPagesAreNotReadInOrder() {
+		TwoSearchQueryBundleProvider provider = new TwoSearchQueryBundleProvider(encounters(1, 3, 5, 7),
+		        encounters(2, 4, 6), null, BY_START);
+		
+		assertThat(ids(provider.getResources(4, 6)), contains("5", "6"));
+		assertThat(ids(provider.getResources(2, 4)), contains("3", "4"));
+		assertThat(provider.size(), equalTo(7));
+	}
+	
+	@Test
+	public void getResources_shouldPageIntoTheSecondSearchWhenTheFirstReportsNoTotal() {
+		TwoSearchQueryBundleProvider provider = new TwoSearchQueryBundleProvider(withoutTotal(encounters(1, 3, 5)),
+		        encounters(2, 4), null);
+		
+		assertThat(provider.size(), nullValue());
+		assertThat(ids(provider.getResources(0, 2)), contains("1", "3"));
+		assertThat(ids(provider.getResources(2, 4)), contains("5", "2"));
+		assertThat(ids(provider.getResources(4, 6)), contains("4"));
+	}
+	
+	@Test
+	public void getResources_shouldMergeResultsWhenASearchReportsNoTotal() {
+		TwoSearchQueryBundleProvider provider = new TwoSearchQueryBundleProvider(withoutTotal(encounters(1, 3, 5)),
+		        encounters(2, 4), null, BY_START);
+		
+		assertThat(provider.size(), nullValue());
+		assertThat(ids(provider.getResources(0, 5)), contains("1", "2", "3", "4", "5"));
+	}
+	
+	@Test
+	public void getResources_shouldOnlyIncludeResourcesForMergedResultsOnThePage() {
+		TwoSearchQueryBundleProvider provider = new TwoSearchQueryBundleProvider(withIncludes(encounters(1, 3, 5)),
+		        withIncludes(encounters(2, 4)), null, BY_START);
+		
+		assertThat(ids(provider.getResources(0, 2)), contains("1", "2", "patient-1", "patient-2"));
+		assertThat(ids(provider.getResources(2, 4)), contains("3", "4", "patient-3", "patient-4"));
+	}
+	
+	@Test
+	public void getFirstResources_shouldReadTheSecondSearchOnlyIfTheFirstHasTooFewResults() {
+		SearchQueryBundleProvider<?, ?> firstProvider = withFirstResources(encounters(1, 3, 5));
+		SearchQueryBundleProvider<?, ?> secondProvider = withFirstResources(encounters(2, 4));
+		TwoSearchQueryBundleProvider provider = new TwoSearchQueryBundleProvider(firstProvider, secondProvider, null);
+		
+		assertThat(ids(provider.getFirstResources(2)), contains("1", "3"));
+		verify(secondProvider, never()).getFirstResources(anyInt());
+		
+		assertThat(ids(provider.getFirstResources(4)), contains("1", "3", "5", "2"));
+		verifyNotCounted(firstProvider);
+		verifyNotCounted(secondProvider);
+	}
+	
+	@Test
+	public void getFirstResources_shouldMergeTheFirstResultsInComparatorOrder() {
+		SearchQueryBundleProvider<?, ?> firstProvider = withFirstResources(encounters(1, 3, 5));
+		SearchQueryBundleProvider<?, ?> secondProvider = withFirstResources(encounters(2, 4));
+		TwoSearchQueryBundleProvider provider = new TwoSearchQueryBundleProvider(firstProvider, secondProvider, null,
+		        BY_START);
+		
+		assertThat(ids(provider.getFirstResources(4)), contains("1", "2", "3", "4"));
+		verifyNotCounted(firstProvider);
+		verifyNotCounted(secondProvider);
+	}
+	
+	private static void verifyNotCounted(SearchQueryBundleProvider<?, ?> provider) {
+		verify(provider, never()).size();
+		verify(provider, never()).countAll();
+	}
+	
+	/**
+	 * @return a search which only returns the given results through
+	 *         {@link SearchQueryBundleProvider#getFirstResources(int)}
+	 */
+	@SuppressWarnings("unchecked")
+	private static SearchQueryBundleProvider<?, ?> withFirstResources(SimpleBundleProvider results) {
+		SearchQueryBundleProvider<?, ?> provider = mock(SearchQueryBundleProvider.class);
+		when(provider.getFirstResources(anyInt()))
+		        .thenAnswer(invocation -> results.getResources(0, invocation.getArgument(0)));
+		return provider;
+	}
+	
+	/**
+	 * @return a search returning the given results, each of which includes a patient
+	 */
+	private static IBundleProvider withIncludes(SimpleBundleProvider results) {
+		IBundleProvider provider = mock(IBundleProvider.class);
+		when(provider.size()).thenReturn(results.size());
+		when(provider.getResources(anyInt(), anyInt())).thenAnswer(invocation -> {
+			List<IBaseResource> resources = new ArrayList<>(
+			        results.getResources(invocation.getArgument(0), invocation.getArgument(1)));
+			for (IBaseResource resource : new ArrayList<>(resources)) {
+				resources.add(new Patient().setId("patient-" + resource.getIdElement().getIdPart()));
+			}
+			
+			return resources;
+		});
+		return provider;
+	}
+	
+	/**
+	 * @return a search returning the given results which, as for {@code _total=none}, does not report
+	 *         its size
+	 */
+	@SuppressWarnings("unchecked")
+	private static SearchQueryBundleProvider<?, ?> withoutTotal(SimpleBundleProvider results) {
+		SearchQueryBundleProvider<?, ?> provider = mock(SearchQueryBundleProvider.class);
+		when(provider.size()).thenReturn(null);
+		when(provider.countAll()).thenReturn(results.size());
+		when(provider.getResources(anyInt(), anyInt()))
+		        .thenAnswer(invocation -> results.getResources(invocation.getArgument(0), invocation.getArgument(1)));
+		return provider;
+	}
+	
+	private static SimpleBundleProvider encounters(int... starts) {
+		List<IBaseResource> resources = new ArrayList<>();
+		for (int start : starts) {
+			Encounter encounter = new Encounter();
+			encounter.setId(String.valueOf(start));
+			encounter.setPeriod(new Period().setStart(new Date(start * 1000L)));
+			resources.add(encounter);
+		}
+		
+		return new SimpleBundleProvider(resources);
+	}
+	
+	private static List<String> ids(List<IBaseResource> resources) {
+		return resources.stream().map(resource -> resource.getIdElement().getIdPart()).collect(Collectors.toList());
+	}
+}
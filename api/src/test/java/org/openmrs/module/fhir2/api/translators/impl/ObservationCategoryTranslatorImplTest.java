@@ -21,6 +21,7 @@ import org.mockito.Mock;
 import org.openmrs.Concept;
 import org.openmrs.ConceptClass;
 import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.mappings.ObservationCategoryMap;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,6 +44,9 @@ public class ObservationCategoryTranslatorImplTest extends BaseModuleContextSens
 	@Autowired
 	private SessionFactory sessionFactory;
 	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
 	private Concept concept;
 	
 	private CodeableConcept codeableConcept;
@@ -55,6 +59,7 @@ public class ObservationCategoryTranslatorImplTest extends BaseModuleContextSens
 		categoryMap = new ObservationCategoryMap();
 		concept = new Concept();
 		categoryMap.setSessionFactory(sessionFactory);
+		categoryMap.setGlobalPropertyService(globalPropertyService);
 		observationCategoryTranslator.setCategoryMap(categoryMap);
 		
 		executeDataSet(OBSERVATION_CATEGORY_CONCEPT_CLASS_DATA);
@@ -0,0 +1,132 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Obs;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+
+/**
+ * Tests shared by the in-memory copies of mappings which are switched on by a {@link GlobalPropertyFlag}
+ * and discarded whenever one of the mappings is saved. Subclasses count the loads of the mappings in
+ * {@link #loads}.
+ */
+public abstract class BaseInMemoryMappingsTest {
+	
+	@Mock
+	protected FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	protected AdministrationService administrationService;
+	
+	@Mock
+	protected EntityPersister persister;
+	
+	protected final AtomicInteger loads = new AtomicInteger();
+	
+	/**
+	 * @return the name of the property which enables the mappings
+	 */
+	protected abstract String getPropertyName();
+	
+	/**
+	 * Starts the object under test, which reads the property
+	 */
+	protected abstract void registerListeners();
+	
+	/**
+	 * @return the result of looking up a mapping, which is null while the mappings are disabled
+	 */
+	protected abstract Object lookup();
+	
+	/**
+	 * @return an object of a type held in the mappings
+	 */
+	protected abstract Object getMappedObject();
+	
+	/**
+	 * Tells the object under test that the given object has been saved, in an event for
+	 * {@link #persister}
+	 */
+	protected abstract void saved(Object object);
+	
+	@Test
+	public void shouldReturnNullWhenDisabled() {
+		when(globalPropertyService.getGlobalProperty(getPropertyName(), "false")).thenReturn("false");
+		registerListeners();
+		
+		assertThat(lookup(), nullValue());
+		assertThat(loads.get(), equalTo(0));
+	}
+	
+	@Test
+	public void shouldFollowGlobalPropertyChanges() {
+		when(globalPropertyService.getGlobalProperty(getPropertyName(), "false")).thenReturn("false");
+		registerListeners();
+		
+		ArgumentCaptor<GlobalPropertyListener> listener = ArgumentCaptor.forClass(GlobalPropertyListener.class);
+		verify(administrationService).addGlobalPropertyListener(listener.capture());
+		assertThat(listener.getValue().supportsPropertyName(getPropertyName()), equalTo(true));
+		
+		listener.getValue().globalPropertyChanged(new GlobalProperty(getPropertyName(), "true"));
+		assertThat(lookup(), notNullValue());
+		
+		listener.getValue().globalPropertyDeleted(getPropertyName());
+		assertThat(lookup(), nullValue());
+		verify(globalPropertyService).getGlobalProperty(getPropertyName(), "false");
+	}
+	
+	@Test
+	public void shouldDiscardTheMappingsWhenAMappingIsSaved() {
+		whenEnabled();
+		
+		lookup();
+		save(getMappedObject());
+		lookup();
+		
+		assertThat(loads.get(), equalTo(2));
+	}
+	
+	@Test
+	public void shouldKeepTheMappingsWhenOtherObjectsAreSaved() {
+		whenEnabled();
+		
+		lookup();
+		save(new Obs());
+		lookup();
+		
+		assertThat(loads.get(), equalTo(1));
+	}
+	
+	protected void whenEnabled() {
+		when(globalPropertyService.getGlobalProperty(getPropertyName(), "false")).thenReturn("true");
+		registerListeners();
+	}
+	
+	private void save(Object object) {
+		when(persister.getMappedClass()).thenReturn(object.getClass());
+		saved(object);
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Test;
+
+public class DatabaseFeaturesTest {
+	
+	@Test
+	public void supportsWindowFunctions_shouldReturnTrueForPostgreSql() {
+		assertThat(DatabaseFeatures.supportsWindowFunctions("PostgreSQL", "12.4", 12, 4), is(true));
+	}
+	
+	@Test
+	public void supportsWindowFunctions_shouldReturnTrueForMySql8() {
+		assertThat(DatabaseFeatures.supportsWindowFunctions("MySQL", "8.0.21", 8, 0), is(true));
+	}
+	
+	@Test
+	public void supportsWindowFunctions_shouldReturnFalseForMySql5() {
+		assertThat(DatabaseFeatures.supportsWindowFunctions("MySQL", "5.7.31", 5, 7), is(false));
+	}
+	
+	@Test
+	public void supportsWindowFunctions_shouldUseTheMariaDbVersionWhenReportedAsMySql() {
+		assertThat(DatabaseFeatures.supportsWindowFunctions("MySQL", "5.5.5-10.3.27-MariaDB", 5, 5), is(true));
+		assertThat(DatabaseFeatures.supportsWindowFunctions("MySQL", "5.5.5-10.1.48-MariaDB", 5, 5), is(false));
+	}
+	
+	@Test
+	public void supportsWindowFunctions_shouldReturnTrueForMariaDb() {
+		assertThat(DatabaseFeatures.supportsWindowFunctions("MariaDB", "10.2.36", 10, 2), is(true));
+	}
+	
+	@Test
+	public void supportsWindowFunctions_shouldReturnFalseForH2() {
+		assertThat(DatabaseFeatures.supportsWindowFunctions("H2", "1.4.200 (2019-10-14)", 1, 4), is(false));
+	}
+	
+	@Test
+	public void sortsNullsFirst_shouldSortNullsFirstInAscendingOrderWhenNullsAreLow() {
+		assertThat(DatabaseFeatures.sortsNullsFirst(false, false, false, false), is(true));
+		assertThat(DatabaseFeatures.sortsNullsFirst(false, false, false, true), is(false));
+	}
+	
+	@Test
+	public void sortsNullsFirst_shouldSortNullsFirstInDescendingOrderWhenNullsAreHigh() {
+		assertThat(DatabaseFeatures.sortsNullsFirst(false, false, true, false), is(false));
+		assertThat(DatabaseFeatures.sortsNullsFirst(false, false, true, true), is(true));
+	}
+	
+	@Test
+	public void sortsNullsFirst_shouldIgnoreTheOrderWhenNullsAreSortedAtTheStartOrEnd() {
+		assertThat(DatabaseFeatures.sortsNullsFirst(true, false, false, true), is(true));
+		assertThat(DatabaseFeatures.sortsNullsFirst(false, true, false, false), is(false));
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FhirRequestContextTest {
+	
+	private static final String PATIENT_UUID = "5946f880-b197-400b-9caa-a3c661d23041";
+	
+	private org.openmrs.Patient openmrsPatient;
+	
+	private AtomicInteger translations;
+	
+	private Function<org.openmrs.Patient, Patient> translator;
+	
+	@Before
+	public void setup() {
+		openmrsPatient = new org.openmrs.Patient();
+		openmrsPatient.setUuid(PATIENT_UUID);
+		openmrsPatient.setDateCreated(new Date(1000L));
+		
+		translations = new AtomicInteger();
+		translator = patient -> {
+			translations.incrementAndGet();
+			Patient fhirPatient = new Patient();
+			fhirPatient.setId(patient.getUuid());
+			return fhirPatient;
+		};
+	}
+	
+	@After
+	public void tearDown() {
+		FhirRequestContext.clear();
+	}
+	
+	@Test
+	public void getTranslatedResource_shouldAlwaysTranslateWhenCacheIsNotEnabled() {
+		FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		
+		assertThat(translations.get(), equalTo(2));
+	}
+	
+	@Test
+	public void getTranslatedResource_shouldTranslateEachObjectOncePerRequest() {
+		FhirRequestContext.enableTranslatedResourceCache();
+		
+		Patient first = FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		Patient second = FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		
+		assertThat(translations.get(), equalTo(1));
+		assertThat(second.equalsDeep(first), is(true));
+	}
+	
+	@Test
+	public void getTranslatedResource_shouldReturnACopyOfAReusedResource() {
+		FhirRequestContext.enableTranslatedResourceCache();
+		
+		Patient first = FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		Patient second = FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		second.setActive(true);
+		Patient third = FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		
+		assertThat(second, not(sameInstance(first)));
+		assertThat(third, not(sameInstance(second)));
+		assertThat(first.hasActive(), is(false));
+		assertThat(third.hasActive(), is(false));
+	}
+	
+	@Test
+	public void getTranslatedResource_shouldTranslateAgainWhenObjectHasChanged() {
+		FhirRequestContext.enableTranslatedResourceCache();
+		
+		Patient first = FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		openmrsPatient.setDateChanged(new Date(2000L));
+		Patient second = FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		
+		assertThat(translations.get(), equalTo(2));
+		assertThat(second, not(sameInstance(first)));
+	}
+	
+	@Test
+	public void getTranslatedResource_shouldKeepResourceTypesSeparate() {
+		FhirRequestContext.enableTranslatedResourceCache();
+		
+		FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		FhirRequestContext.getTranslatedResource(org.hl7.fhir.r4.model.Person.class, openmrsPatient, translator);
+		
+		assertThat(translations.get(), equalTo(2));
+	}
+	
+	@Test
+	public void evictTranslatedResource_shouldRemoveTheTranslatedResource() {
+		FhirRequestContext.enableTranslatedResourceCache();
+		FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		
+		FhirRequestContext.evictTranslatedResource(Patient.class, PATIENT_UUID);
+		
+		FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		assertThat(translations.get(), equalTo(2));
+	}
+	
+	@Test
+	public void clear_shouldDisableTheCache() {
+		FhirRequestContext.enableTranslatedResourceCache();
+		FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		
+		FhirRequestContext.clear();
+		
+		FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		FhirRequestContext.getTranslatedResource(Patient.class, openmrsPatient, translator);
+		assertThat(translations.get(), equalTo(3));
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.APIException;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GlobalPropertyFlagTest {
+	
+	private static final String PROPERTY = "fhir2.test.flag";
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private AdministrationService administrationService;
+	
+	private List<Boolean> changes;
+	
+	private GlobalPropertyFlag flag;
+	
+	@Before
+	public void setup() {
+		changes = new ArrayList<>();
+		flag = new GlobalPropertyFlag(PROPERTY, changes::add);
+	}
+	
+	@Test
+	public void register_shouldReadThePropertyWithoutCallingTheCallback() {
+		when(globalPropertyService.getGlobalProperty(PROPERTY, "false")).thenReturn("true");
+		
+		assertThat(flag.register(administrationService, globalPropertyService), is(true));
+		
+		assertThat(flag.isEnabled(), is(true));
+		assertThat(changes, empty());
+		verify(administrationService).addGlobalPropertyListener(flag);
+	}
+	
+	@Test
+	public void register_shouldBeDisabledWhenThePropertyCannotBeRead() {
+		when(globalPropertyService.getGlobalProperty(PROPERTY, "false")).thenThrow(new APIException("No session"));
+		
+		assertThat(flag.register(administrationService, globalPropertyService), is(false));
+		
+		assertThat(flag.isEnabled(), is(false));
+	}
+	
+	@Test
+	public void register_shouldReadThePropertyWithoutAnAdministrationService() {
+		when(globalPropertyService.getGlobalProperty(PROPERTY, "false")).thenReturn("true");
+		
+		assertThat(flag.register(null, globalPropertyService), is(true));
+		flag.unregister();
+		
+		verifyNoInteractions(administrationService);
+	}
+	
+	@Test
+	public void supportsPropertyName_shouldOnlySupportTheProperty() {
+		assertThat(flag.supportsPropertyName(PROPERTY), is(true));
+		assertThat(flag.supportsPropertyName("fhir2.test.other"), is(false));
+	}
+	
+	@Test
+	public void globalPropertyChanged_shouldCallTheCallbackOnlyWhenTheValueChanges() {
+		flag.globalPropertyChanged(new GlobalProperty(PROPERTY, "true"));
+		flag.globalPropertyChanged(new GlobalProperty(PROPERTY, "true"));
+		flag.globalPropertyChanged(new GlobalProperty(PROPERTY, "not a boolean"));
+		
+		assertThat(flag.isEnabled(), is(false));
+		assertThat(changes, contains(true, false));
+	}
+	
+	@Test
+	public void globalPropertyDeleted_shouldDisableTheFlag() {
+		flag.globalPropertyChanged(new GlobalProperty(PROPERTY, "true"));
+		flag.globalPropertyDeleted(PROPERTY);
+		
+		assertThat(flag.isEnabled(), is(false));
+		assertThat(changes, contains(true, false));
+	}
+	
+	@Test
+	public void setEnabled_shouldNotCallTheCallback() {
+		flag.setEnabled(true);
+		
+		assertThat(flag.isEnabled(), is(true));
+		assertThat(changes, empty());
+	}
+	
+	@Test
+	public void unregister_shouldStopFollowingTheProperty() {
+		when(globalPropertyService.getGlobalProperty(PROPERTY, "false")).thenReturn("false");
+		flag.register(administrationService, globalPropertyService);
+		
+		flag.unregister();
+		
+		verify(administrationService).removeGlobalPropertyListener(flag);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hibernate.criterion.Restrictions.in;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.internal.CriteriaImpl;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Obs;
+
+/**
+ * Measures building the Hibernate criteria for common searches, i.e. the work done for every search
+ * before any SQL is sent to the database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchCriteriaBenchmark {
+	
+	private final CriteriaBuildingDao dao = new CriteriaBuildingDao();
+	
+	private StringAndListParam name;
+	
+	private TokenAndListParam code;
+	
+	private ReferenceAndListParam patientReference;
+	
+	private DateRangeParam effectiveDate;
+	
+	@Setup
+	public void setup() {
+		name = new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam("Jane Mary Doe")));
+		
+		code = new TokenAndListParam().addAnd(new TokenOrListParam()
+		        .add(new TokenParam("https://openconceptlab.org/orgs/CIEL/sources/CIEL", "5089"))
+		        .add(new TokenParam("http://loinc.org", "29463-7"))
+		        .add(new TokenParam(null, "5089AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA")));
+		
+		patientReference = new ReferenceAndListParam()
+		        .addAnd(new ReferenceOrListParam().add(new ReferenceParam(Patient.SP_NAME, "Jane Doe")));
+		
+		effectiveDate = new DateRangeParam().setLowerBound("ge2020-01-01").setUpperBound("lt2021-01-01");
+	}
+	
+	@Benchmark
+	public Criteria patientNameSearch() {
+		Criteria criteria = new CriteriaImpl(org.openmrs.Patient.class.getName(), null);
+		dao.handleNames(criteria, name, null, null);
+		return criteria;
+	}
+	
+	@Benchmark
+	public Criteria observationCodeAndDateSearch() {
+		Criteria criteria = new CriteriaImpl(Obs.class.getName(), null);
+		dao.handlePatientReference(criteria, patientReference, "person");
+		criteria.createAlias("concept", "c");
+		dao.handleCodeableConcept(criteria, code, "c", "cm", "crt").ifPresent(criteria::add);
+		dao.handleDateRange("obsDatetime", effectiveDate).ifPresent(criteria::add);
+		return criteria;
+	}
+	
+	@Benchmark
+	public Optional<Criterion> tokensGroupedBySystem() {
+		return dao.handleAndListParamBySystem(code,
+		    (system, tokens) -> Optional.of(in(system.isEmpty() ? "uuid" : "code", dao.tokensToList(tokens))));
+	}
+	
+	/**
+	 * Exposes the criteria building helpers of {@link BaseDao} without a database
+	 */
+	private static class CriteriaBuildingDao extends BaseDao {
+		
+		@Override
+		protected Optional<Criterion> handleLastUpdated(DateRangeParam param) {
+			return Optional.empty();
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.model.api.Include;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Person;
+import org.hl7.fhir.r4.model.Reference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirEncounterService;
+import org.openmrs.module.fhir2.api.FhirPatientService;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+/**
+ * Measures resolving {@code _include} parameters for a page of search results. Each call to a
+ * service burns a fixed amount of CPU to stand in for a database round-trip, so that the number of
+ * queries an include strategy issues shows up in the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchQueryIncludeBenchmark {
+	
+	private static final long ROUND_TRIP_TOKENS = 10_000;
+	
+	@Param({ "10", "100" })
+	private int pageSize;
+	
+	private SearchQueryInclude<Observation> observationInclude;
+	
+	private SearchQueryInclude<Person> personInclude;
+	
+	private List<Observation> observations;
+	
+	private List<Person> persons;
+	
+	private SearchParameterMap observationIncludeParams;
+	
+	private SearchParameterMap personIncludeParams;
+	
+	@Setup
+	public void setup() {
+		// pages typically contain several results for the same patient and encounter
+		int distinctReferences = Math.max(1, pageSize / 4);
+		
+		Map<String, Patient> patients = new HashMap<>();
+		Map<String, Encounter> encounters = new HashMap<>();
+		for (int i = 0; i < distinctReferences; i++) {
+			Patient patient = new Patient();
+			patient.setId(UUID.randomUUID().toString());
+			patients.put(patient.getIdElement().getIdPart(), patient);
+			
+			Encounter encounter = new Encounter();
+			encounter.setId(UUID.randomUUID().toString());
+			encounters.put(encounter.getIdElement().getIdPart(), encounter);
+		}
+		
+		List<String> patientUuids = new ArrayList<>(patients.keySet());
+		List<String> encounterUuids = new ArrayList<>(encounters.keySet());
+		
+		observations = new ArrayList<>(pageSize);
+		persons = new ArrayList<>(pageSize);
+		for (int i = 0; i < pageSize; i++) {
+			Observation observation = new Observation();
+			observation.setId(UUID.randomUUID().toString());
+			observation.setSubject(reference(FhirConstants.PATIENT, patientUuids.get(i % distinctReferences)));
+			observation.setEncounter(reference(FhirConstants.ENCOUNTER, encounterUuids.get(i % distinctReferences)));
+			observations.add(observation);
+			
+			Person person = new Person();
+			person.setId(UUID.randomUUID().toString());
+			person.addLink().setTarget(reference(FhirConstants.PATIENT, patientUuids.get(i % distinctReferences)));
+			persons.add(person);
+		}
+		
+		FhirPatientService patientService = mock(FhirPatientService.class, withSettings().stubOnly());
+		when(patientService.get(anyCollection())).thenAnswer(invocation -> lookup(patients, invocation.getArgument(0)));
+		
+		FhirEncounterService encounterService = mock(FhirEncounterService.class, withSettings().stubOnly());
+		when(encounterService.get(anyCollection()))
+		        .thenAnswer(invocation -> lookup(encounters, invocation.getArgument(0)));
+		
+		observationInclude = new SearchQueryInclude<>();
+		observationInclude.setPatientService(patientService);
+		observationInclude.setEncounterService(encounterService);
+		
+		personInclude = new SearchQueryInclude<>();
+		personInclude.setPatientService(patientService);
+		
+		HashSet<Include> observationIncludes = new HashSet<>();
+		observationIncludes.add(new Include("Observation:patient"));
+		observationIncludes.add(new Include("Observation:encounter"));
+		observationIncludeParams = new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER,
+		    observationIncludes);
+		
+		HashSet<Include> personIncludes = new HashSet<>();
+		personIncludes.add(new Include("Person:link:Patient"));
+		personIncludeParams = new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER, personIncludes);
+	}
+	
+	@Benchmark
+	public Set<IBaseResource> includeObservationPatientAndEncounter() {
+		return observationInclude.getIncludedResources(observations, observationIncludeParams);
+	}
+	
+	@Benchmark
+	public Set<IBaseResource> includePersonLinks() {
+		return personInclude.getIncludedResources(persons, personIncludeParams);
+	}
+	
+	private static Reference reference(String type, String uuid) {
+		return new Reference().setReference(type + "/" + uuid).setType(type);
+	}
+	
+	private static <T> List<T> lookup(Map<String, T> resources, Collection<String> uuids) {
+		Blackhole.consumeCPU(ROUND_TRIP_TOKENS);
+		return uuids.stream().map(resources::get).filter(Objects::nonNull).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,353 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Observation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Concept;
+import org.openmrs.ConceptClass;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptMapType;
+import org.openmrs.ConceptNumeric;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.openmrs.EncounterRole;
+import org.openmrs.EncounterType;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.Person;
+import org.openmrs.PersonAddress;
+import org.openmrs.PersonName;
+import org.openmrs.Provider;
+import org.openmrs.Visit;
+import org.openmrs.api.MessageSourceService;
+import org.openmrs.api.context.ServiceContext;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirConceptSourceService;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.FhirPatientIdentifierSystemService;
+import org.openmrs.module.fhir2.api.dao.FhirPersonDao;
+import org.openmrs.module.fhir2.api.mappings.EncounterClassMap;
+import org.openmrs.module.fhir2.api.mappings.ObservationCategoryMap;
+import org.openmrs.module.fhir2.model.FhirConceptSource;
+
+/**
+ * Measures the translation of fully populated OpenMRS objects to FHIR resources. The translators
+ * are the real implementations; only the services they would use to read from the database are
+ * replaced with stubs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranslatorBenchmark {
+	
+	private static final String CIEL_SOURCE_NAME = "CIEL";
+	
+	private static final String CIEL_SYSTEM_URL = "https://openconceptlab.org/orgs/CIEL/sources/CIEL";
+	
+	private PatientTranslatorImpl patientTranslator;
+	
+	private ObservationTranslatorImpl observationTranslator;
+	
+	private ConceptTranslatorImpl conceptTranslator;
+	
+	private EncounterTranslatorImpl encounterTranslator;
+	
+	private Patient patient;
+	
+	private Obs obs;
+	
+	private org.openmrs.Encounter encounter;
+	
+	@Setup
+	public void setup() {
+		// metadata translations fall back to the metadata name when no message is found
+		ServiceContext.getInstance().setMessageSourceService(stub(MessageSourceService.class));
+		
+		FhirConceptSourceService conceptSourceService = stub(FhirConceptSourceService.class);
+		FhirConceptSource cielSource = new FhirConceptSource();
+		cielSource.setUrl(CIEL_SYSTEM_URL);
+		when(conceptSourceService.getFhirConceptSourceByConceptSourceName(CIEL_SOURCE_NAME))
+		        .thenReturn(Optional.of(cielSource));
+		
+		conceptTranslator = new ConceptTranslatorImpl();
+		conceptTranslator.setConceptSourceService(conceptSourceService);
+		
+		setupPatientTranslator();
+		setupObservationTranslator();
+		setupEncounterTranslator();
+		
+		patient = createPatient();
+		encounter = createEncounter(patient);
+		obs = createObs(patient, encounter);
+	}
+	
+	@Benchmark
+	public org.hl7.fhir.r4.model.Patient patientToFhirResource() {
+		return patientTranslator.toFhirResource(patient);
+	}
+	
+	@Benchmark
+	public Observation observationToFhirResource() {
+		return observationTranslator.toFhirResource(obs);
+	}
+	
+	@Benchmark
+	public CodeableConcept conceptToFhirResource() {
+		return conceptTranslator.toFhirResource(obs.getConcept());
+	}
+	
+	@Benchmark
+	public Encounter encounterToFhirResource() {
+		return encounterTranslator.toFhirResource(encounter);
+	}
+	
+	private void setupPatientTranslator() {
+		FhirPatientIdentifierSystemService patientIdentifierSystemService = stub(FhirPatientIdentifierSystemService.class);
+		when(patientIdentifierSystemService.getUrlByPatientIdentifierType(any()))
+		        .thenReturn("http://openmrs.org/identifier-system");
+		
+		PatientIdentifierTranslatorImpl identifierTranslator = new PatientIdentifierTranslatorImpl();
+		identifierTranslator.setPatientIdentifierSystemService(patientIdentifierSystemService);
+		
+		FhirGlobalPropertyService globalPropertyService = stub(FhirGlobalPropertyService.class);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.PERSON_CONTACT_POINT_ATTRIBUTE_TYPE))
+		        .thenReturn(UUID.randomUUID().toString());
+		
+		FhirPersonDao fhirPersonDao = stub(FhirPersonDao.class);
+		when(fhirPersonDao.getActiveAttributesByPersonAndAttributeTypeUuid(any(), anyString()))
+		        .thenReturn(Collections.emptyList());
+		
+		patientTranslator = new PatientTranslatorImpl();
+		patientTranslator.setIdentifierTranslator(identifierTranslator);
+		patientTranslator.setNameTranslator(new PersonNameTranslatorImpl());
+		patientTranslator.setGenderTranslator(new GenderTranslatorImpl());
+		patientTranslator.setBirthDateTranslator(new BirthDateTranslatorImpl());
+		patientTranslator.setAddressTranslator(new PersonAddressTranslatorImpl());
+		patientTranslator.setGlobalPropertyService(globalPropertyService);
+		patientTranslator.setFhirPersonDao(fhirPersonDao);
+		patientTranslator.setTelecomTranslator(new TelecomTranslatorImpl());
+	}
+	
+	private void setupObservationTranslator() {
+		ObservationCategoryMap categoryMap = stub(ObservationCategoryMap.class);
+		when(categoryMap.getCategory(anyString())).thenReturn("laboratory");
+		
+		ObservationCategoryTranslatorImpl categoryTranslator = new ObservationCategoryTranslatorImpl();
+		categoryTranslator.setCategoryMap(categoryMap);
+		
+		ObservationValueTranslatorImpl valueTranslator = new ObservationValueTranslatorImpl();
+		valueTranslator.setConceptTranslator(conceptTranslator);
+		
+		observationTranslator = new ObservationTranslatorImpl();
+		observationTranslator.setObservationStatusTranslator(new ObservationStatusTranslatorImpl());
+		observationTranslator.setObservationReferenceTranslator(new ObservationReferenceTranslatorImpl());
+		observationTranslator.setObservationValueTranslator(valueTranslator);
+		observationTranslator.setConceptTranslator(conceptTranslator);
+		observationTranslator.setCategoryTranslator(categoryTranslator);
+		observationTranslator.setEncounterReferenceTranslator(new EncounterReferenceTranslatorImpl());
+		observationTranslator.setPatientReferenceTranslator(new PatientReferenceTranslatorImpl());
+		observationTranslator.setInterpretationTranslator(new ObservationInterpretationTranslatorImpl());
+		observationTranslator.setReferenceRangeTranslator(new ObservationReferenceRangeTranslatorImpl());
+		observationTranslator.setBasedOnReferenceTranslator(new ObservationBasedOnReferenceTranslatorImpl());
+		observationTranslator.setDatetimeTranslator(new ObservationEffectiveDatetimeTranslatorImpl());
+	}
+	
+	private void setupEncounterTranslator() {
+		EncounterClassMap encounterClassMap = stub(EncounterClassMap.class);
+		when(encounterClassMap.getFhirClass(anyString())).thenReturn("IMP");
+		
+		encounterTranslator = new EncounterTranslatorImpl();
+		encounterTranslator.setEncounterClassMap(encounterClassMap);
+		encounterTranslator.setParticipantTranslator(new EncounterParticipantTranslatorImpl());
+		encounterTranslator.setEncounterLocationTranslator(new EncounterLocationTranslatorImpl());
+		encounterTranslator.setPatientReferenceTranslator(new PatientReferenceTranslatorImpl());
+		encounterTranslator.setVisitReferenceTranlator(new VisitReferenceTranslatorImpl());
+		encounterTranslator.setEncounterTypeTranslator(new EncounterTypeTranslatorImpl());
+		encounterTranslator.setEncounterPeriodTranslator(new EncounterPeriodTranslatorImpl());
+	}
+	
+	private static Patient createPatient() {
+		Location location = new Location();
+		location.setUuid(UUID.randomUUID().toString());
+		location.setName("Inpatient Ward");
+		
+		PatientIdentifierType openmrsId = new PatientIdentifierType();
+		openmrsId.setUuid(UUID.randomUUID().toString());
+		openmrsId.setName("OpenMRS ID");
+		
+		PatientIdentifierType nationalId = new PatientIdentifierType();
+		nationalId.setUuid(UUID.randomUUID().toString());
+		nationalId.setName("National ID");
+		
+		Patient patient = new Patient();
+		patient.setUuid(UUID.randomUUID().toString());
+		patient.setGender("F");
+		patient.setBirthdate(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(365 * 40)));
+		patient.setDateCreated(new Date());
+		
+		PatientIdentifier preferredIdentifier = new PatientIdentifier("100-8", openmrsId, location);
+		preferredIdentifier.setUuid(UUID.randomUUID().toString());
+		preferredIdentifier.setPreferred(true);
+		patient.addIdentifier(preferredIdentifier);
+		
+		PatientIdentifier otherIdentifier = new PatientIdentifier("NAT-1234567", nationalId, location);
+		otherIdentifier.setUuid(UUID.randomUUID().toString());
+		otherIdentifier.setPreferred(false);
+		patient.addIdentifier(otherIdentifier);
+		
+		PersonName preferredName = new PersonName("Jane", "Mary", "Doe");
+		preferredName.setUuid(UUID.randomUUID().toString());
+		preferredName.setPreferred(true);
+		patient.addName(preferredName);
+		
+		PersonName otherName = new PersonName("Janet", null, "Smith");
+		otherName.setUuid(UUID.randomUUID().toString());
+		patient.addName(otherName);
+		
+		PersonAddress address = new PersonAddress();
+		address.setUuid(UUID.randomUUID().toString());
+		address.setAddress1("1 Main Street");
+		address.setCityVillage("Kapina");
+		address.setStateProvince("Kisumu");
+		address.setCountry("Kenya");
+		address.setPostalCode("40100");
+		address.setPreferred(true);
+		patient.addAddress(address);
+		
+		return patient;
+	}
+	
+	private static org.openmrs.Encounter createEncounter(Patient patient) {
+		EncounterType encounterType = new EncounterType("Adult Visit", "An adult outpatient visit");
+		encounterType.setUuid(UUID.randomUUID().toString());
+		
+		Location location = new Location();
+		location.setUuid(UUID.randomUUID().toString());
+		location.setName("Outpatient Clinic");
+		
+		Visit visit = new Visit();
+		visit.setUuid(UUID.randomUUID().toString());
+		
+		Person person = new Person();
+		person.setUuid(UUID.randomUUID().toString());
+		person.addName(new PersonName("John", null, "Smith"));
+		
+		Provider provider = new Provider();
+		provider.setUuid(UUID.randomUUID().toString());
+		provider.setIdentifier("PROV-1");
+		provider.setPerson(person);
+		
+		EncounterRole clinician = new EncounterRole();
+		clinician.setUuid(UUID.randomUUID().toString());
+		clinician.setName("Clinician");
+		
+		org.openmrs.Encounter encounter = new org.openmrs.Encounter();
+		encounter.setUuid(UUID.randomUUID().toString());
+		encounter.setPatient(patient);
+		encounter.setEncounterType(encounterType);
+		encounter.setLocation(location);
+		encounter.setVisit(visit);
+		encounter.setEncounterDatetime(new Date());
+		encounter.setDateCreated(new Date());
+		encounter.addProvider(clinician, provider);
+		
+		return encounter;
+	}
+	
+	private static Obs createObs(Patient patient, org.openmrs.Encounter encounter) {
+		ConceptMapType sameAs = new ConceptMapType();
+		sameAs.setUuid(ConceptMapType.SAME_AS_MAP_TYPE_UUID);
+		
+		ConceptSource ciel = new ConceptSource();
+		ciel.setName(CIEL_SOURCE_NAME);
+		
+		ConceptClass test = new ConceptClass();
+		test.setUuid(ConceptClass.TEST_UUID);
+		
+		ConceptNumeric weight = new DisplayedConceptNumeric("Weight (kg)");
+		weight.setUuid(UUID.randomUUID().toString());
+		weight.setConceptClass(test);
+		weight.setUnits("kg");
+		weight.setLowNormal(2.0);
+		weight.setHiNormal(150.0);
+		weight.setLowAbsolute(0.0);
+		weight.setHiAbsolute(250.0);
+		weight.addConceptMapping(new ConceptMap(new ConceptReferenceTerm(ciel, "5089", "weight"), sameAs));
+		
+		Calendar obsDatetime = Calendar.getInstance();
+		obsDatetime.add(Calendar.DAY_OF_MONTH, -1);
+		
+		Obs obs = new Obs();
+		obs.setUuid(UUID.randomUUID().toString());
+		obs.setPerson(patient);
+		obs.setEncounter(encounter);
+		obs.setConcept(weight);
+		obs.setValueNumeric(72.5);
+		obs.setObsDatetime(obsDatetime.getTime());
+		obs.setDateCreated(new Date());
+		
+		return obs;
+	}
+	
+	private static <T> T stub(Class<T> clazz) {
+		return mock(clazz, withSettings().stubOnly());
+	}
+	
+	/**
+	 * Concept names are resolved for the current user's locale, which needs a running OpenMRS
+	 * context, so the display name is fixed instead
+	 */
+	private static class DisplayedConceptNumeric extends ConceptNumeric {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final String displayString;
+		
+		DisplayedConceptNumeric(String displayString) {
+			this.displayString = displayString;
+		}
+		
+		@Override
+		public String getDisplayString() {
+			return displayString;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.module.fhir2.api.util.LastnOperationUtils;
+import org.openmrs.module.fhir2.api.util.LastnResult;
+
+/**
+ * Measures the in-memory ranking used by the {@code $lastn} and {@code $lastn-encounters}
+ * operations for a single patient and code
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LastnOperationBenchmark {
+	
+	@Param({ "100", "10000" })
+	private int results;
+	
+	@Param({ "1", "10" })
+	private int max;
+	
+	private List<LastnResult> lastnResults;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		long now = System.currentTimeMillis();
+		
+		lastnResults = new ArrayList<>(results);
+		for (int i = 0; i < results; i++) {
+			// roughly one result in ten shares its datetime with another so that ties have to be ranked
+			Date datetime = new Date(now - TimeUnit.MINUTES.toMillis(random.nextInt(results - results / 10 + 1)));
+			lastnResults.add(new LastnResult(UUID.randomUUID().toString(), datetime, null));
+		}
+	}
+	
+	@Benchmark
+	public List<String> getTopNRankedUuids() {
+		// the ranking sorts its argument, so each invocation gets an unsorted copy
+		return LastnOperationUtils.getTopNRankedUuids(new ArrayList<>(lastnResults), max);
+	}
+}
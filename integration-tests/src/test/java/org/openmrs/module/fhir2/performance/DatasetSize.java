@@ -0,0 +1,64 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.performance;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Describes the size of a dataset created by {@link SyntheticDatasetGenerator}. The defaults are
+ * small enough to generate in an in-memory database in a few seconds; production-sized datasets
+ * (e.g. 100,000 patients with 100 obs and 10 orders each) can be requested through system
+ * properties, see {@link #fromSystemProperties()}.
+ */
+@Data
+@Builder
+public class DatasetSize {
+	
+	private static final String PROPERTY_PREFIX = "fhir2.performance.";
+	
+	@Builder.Default
+	private int patients = 1000;
+	
+	@Builder.Default
+	private int encountersPerPatient = 5;
+	
+	@Builder.Default
+	private int obsPerPatient = 50;
+	
+	@Builder.Default
+	private int ordersPerPatient = 5;
+	
+	@Builder.Default
+	private int locationDepth = 4;
+	
+	@Builder.Default
+	private int locationFanout = 4;
+	
+	@Builder.Default
+	private long seed = 20210101L;
+	
+	/**
+	 * Reads the dataset size from the {@code fhir2.performance.*} system properties, e.g.
+	 * {@code -Dfhir2.performance.patients=100000 -Dfhir2.performance.obsPerPatient=100}, using the
+	 * defaults for any property that is not set
+	 */
+	public static DatasetSize fromSystemProperties() {
+		DatasetSize defaults = DatasetSize.builder().build();
+		return DatasetSize.builder().patients(Integer.getInteger(PROPERTY_PREFIX + "patients", defaults.getPatients()))
+		        .encountersPerPatient(
+		            Integer.getInteger(PROPERTY_PREFIX + "encountersPerPatient", defaults.getEncountersPerPatient()))
+		        .obsPerPatient(Integer.getInteger(PROPERTY_PREFIX + "obsPerPatient", defaults.getObsPerPatient()))
+		        .ordersPerPatient(Integer.getInteger(PROPERTY_PREFIX + "ordersPerPatient", defaults.getOrdersPerPatient()))
+		        .locationDepth(Integer.getInteger(PROPERTY_PREFIX + "locationDepth", defaults.getLocationDepth()))
+		        .locationFanout(Integer.getInteger(PROPERTY_PREFIX + "locationFanout", defaults.getLocationFanout()))
+		        .seed(Long.getLong(PROPERTY_PREFIX + "seed", defaults.getSeed())).build();
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.performance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * Describes the data created by {@link SyntheticDatasetGenerator}, including sample values that can
+ * be used to build queries against the generated data
+ */
+@Data
+public class GeneratedDataset {
+	
+	private long patients;
+	
+	private long encounters;
+	
+	private long observations;
+	
+	private long orders;
+	
+	private long locations;
+	
+	private long elapsedMillis;
+	
+	private final List<String> samplePatientUuids = new ArrayList<>();
+	
+	private final List<String> familyNames = new ArrayList<>();
+	
+	private String observationConceptUuid;
+	
+	private String rootLocationUuid;
+	
+	// the first id written to each table; the generated rows are the ones from this id onwards
+	private final Map<String, Integer> firstIds = new HashMap<>();
+}
@@ -0,0 +1,134 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.performance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Issues a fixed number of requests from a fixed number of concurrent workers and records the
+ * latency of each one. Each worker thread runs {@code workerSetup} before its first request and
+ * {@code workerTeardown} after its last one, e.g. to open and close an OpenMRS session.
+ */
+@Slf4j
+public class LoadRunner {
+	
+	private final int concurrency;
+	
+	private final Runnable workerSetup;
+	
+	private final Runnable workerTeardown;
+	
+	public LoadRunner(int concurrency, Runnable workerSetup, Runnable workerTeardown) {
+		this.concurrency = concurrency;
+		this.workerSetup = workerSetup;
+		this.workerTeardown = workerTeardown;
+	}
+	
+	/**
+	 * Runs the given request {@code warmupRequests} times without measuring it, then
+	 * {@code requests} times while measuring
+	 *
+	 * @param scenario the name reported for the scenario
+	 * @param warmupRequests the number of requests to issue before measuring
+	 * @param requests the number of requests to measure
+	 * @param request issues the request with the given sequence number, returning whether it succeeded
+	 * @return the measured latencies and throughput
+	 */
+	public ThroughputResult run(String scenario, int warmupRequests, int requests, IntPredicate request)
+	        throws InterruptedException {
+		execute(warmupRequests, request, new long[warmupRequests]);
+		
+		long[] latencies = new long[requests];
+		long start = System.nanoTime();
+		int errors = execute(requests, request, latencies);
+		long elapsed = System.nanoTime() - start;
+		
+		Arrays.sort(latencies);
+		ThroughputResult result = new ThroughputResult(scenario, requests, errors, percentile(latencies, 50),
+		        percentile(latencies, 95), percentile(latencies, 99),
+		        requests / Math.max(elapsed / (double) TimeUnit.SECONDS.toNanos(1), Double.MIN_VALUE));
+		
+		log.info(result.toRow());
+		return result;
+	}
+	
+	private int execute(int requests, IntPredicate request, long[] latencies) throws InterruptedException {
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger errors = new AtomicInteger();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		try {
+			List<Future<?>> workers = new ArrayList<>(concurrency);
+			for (int i = 0; i < concurrency; i++) {
+				workers.add(executor.submit(() -> {
+					workerSetup.run();
+					try {
+						for (int n = next.getAndIncrement(); n < requests; n = next.getAndIncrement()) {
+							long start = System.nanoTime();
+							boolean succeeded;
+							try {
+								succeeded = request.test(n);
+							}
+							catch (RuntimeException e) {
+								log.warn("Request {} failed", n, e);
+								succeeded = false;
+							}
+							
+							latencies[n] = System.nanoTime() - start;
+							if (!succeeded) {
+								errors.incrementAndGet();
+							}
+						}
+					}
+					finally {
+						workerTeardown.run();
+					}
+				}));
+			}
+			
+			for (Future<?> worker : workers) {
+				try {
+					worker.get();
+				}
+				catch (ExecutionException e) {
+					throw new IllegalStateException("Load worker failed", e.getCause());
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		
+		return errors.get();
+	}
+	
+	/**
+	 * Nearest-rank percentile of the sorted latencies, in milliseconds
+	 */
+	static double percentile(long[] sortedLatencies, int percentile) {
+		if (sortedLatencies.length == 0) {
+			return 0.0;
+		}
+		
+		int rank = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length);
+		return sortedLatencies[Math.max(rank, 1) - 1] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.performance;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.fhir2.providers.r4.BaseFhirR4IntegrationTest;
+import org.openmrs.module.fhir2.providers.r4.PatientFhirResourceProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Drives representative R4 searches through the FHIR servlet at a fixed concurrency against a
+ * synthetic dataset and reports the p50, p95 and p99 latency and the throughput of each. This is
+ * not run as part of the normal build; enable it with {@code -Dfhir2.performance=true}, e.g.
+ *
+ * <pre>
+ * mvn test -pl integration-tests -Dtest=SearchThroughputPerformanceTest -Dfhir2.performance=true \
+ *     -Dfhir2.performance.patients=10000 -Dfhir2.performance.concurrency=16
+ * </pre>
+ *
+ * The dataset size is controlled by the properties described in {@link DatasetSize}, and the load by
+ * {@code fhir2.performance.concurrency}, {@code fhir2.performance.requests} and
+ * {@code fhir2.performance.warmupRequests}. Results are also written to
+ * {@code target/search-throughput.csv} so that runs can be compared. The workers search from their
+ * own sessions, so the dataset is generated and committed through a connection of its own, rather than
+ * in the test's transaction, and is deleted again once the test has finished.
+ */
+@Slf4j
+public class SearchThroughputPerformanceTest extends BaseFhirR4IntegrationTest<PatientFhirResourceProvider, Patient> {
+	
+	private static final String ENABLED_PROPERTY = "fhir2.performance";
+	
+	private static final String RESULTS_FILE = "target/search-throughput.csv";
+	
+	@Getter(AccessLevel.PUBLIC)
+	@Autowired
+	private PatientFhirResourceProvider resourceProvider;
+	
+	private GeneratedDataset dataset;
+	
+	@Before
+	@Override
+	public void setup() throws Exception {
+		assumeTrue("Performance tests are only run with -D" + ENABLED_PROPERTY + "=true",
+		    Boolean.getBoolean(ENABLED_PROPERTY));
+		
+		super.setup();
+		
+		try (Connection connection = openConnection()) {
+			dataset = new SyntheticDatasetGenerator(connection).generate(DatasetSize.fromSystemProperties());
+		}
+	}
+	
+	@After
+	public void deleteDataset() throws SQLException {
+		if (dataset != null) {
+			try (Connection connection = openConnection()) {
+				new SyntheticDatasetGenerator(connection).delete(dataset);
+			}
+		}
+	}
+	
+	@Test
+	public void shouldReportLatencyAndThroughputOfRepresentativeSearches() throws Exception {
+		int concurrency = Integer.getInteger(ENABLED_PROPERTY + ".concurrency", 8);
+		int requests = Integer.getInteger(ENABLED_PROPERTY + ".requests", 200);
+		int warmupRequests = Integer.getInteger(ENABLED_PROPERTY + ".warmupRequests", 20);
+		
+		// each worker needs its own session, authenticated as the same user as this test
+		UserContext userContext = Context.getUserContext();
+		LoadRunner runner = new LoadRunner(concurrency, () -> {
+			Context.openSession();
+			Context.setUserContext(userContext);
+		}, Context::closeSession);
+		
+		String conceptUuid = dataset.getObservationConceptUuid();
+		String lastYear = LocalDate.now().minusYears(1).toString();
+		
+		List<ThroughputResult> results = new ArrayList<>();
+		results.add(runner.run("Patient?name", warmupRequests, requests,
+		    search(n -> "Patient?name=" + familyName(n))));
+		results.add(runner.run("Observation?code&date", warmupRequests, requests,
+		    search(n -> "Observation?code=" + conceptUuid + "&date=ge" + lastYear)));
+		results.add(runner.run("Observation/$lastn", warmupRequests, requests,
+		    search(n -> "Observation/$lastn?max=3&patient=" + patientUuid(n) + "&code=" + conceptUuid)));
+		results.add(runner.run("Patient/$everything", warmupRequests, requests,
+		    search(n -> "Patient/" + patientUuid(n) + "/$everything")));
+		results.add(runner.run("Observation?_include", warmupRequests, requests,
+		    search(n -> "Observation?patient=" + patientUuid(n) + "&_include=Observation:encounter")));
+		results.add(runner.run("Encounter?_revinclude", warmupRequests, requests,
+		    search(n -> "Encounter?patient=" + patientUuid(n) + "&_revinclude=Observation:encounter")));
+		
+		report(results);
+		
+		for (ThroughputResult result : results) {
+			assertThat("Requests failed for " + result.getScenario(), result.getErrors(), equalTo(0));
+		}
+	}
+	
+	/**
+	 * Opens a connection to the test database that is separate from the one used by the test's
+	 * transaction
+	 */
+	private Connection openConnection() throws SQLException {
+		Properties properties = getRuntimeProperties();
+		Connection connection = DriverManager.getConnection(properties.getProperty("connection.url"),
+		    properties.getProperty("connection.username"), properties.getProperty("connection.password"));
+		connection.setAutoCommit(false);
+		return connection;
+	}
+	
+	private IntPredicate search(IntFunction<String> uri) {
+		return n -> {
+			try {
+				return get(uri.apply(n)).accept(FhirMediaTypes.JSON).go().getStatus() == HttpStatus.OK.value();
+			}
+			catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		};
+	}
+	
+	private String patientUuid(int n) {
+		return dataset.getSamplePatientUuids().get(n % dataset.getSamplePatientUuids().size());
+	}
+	
+	private String familyName(int n) {
+		return dataset.getFamilyNames().get(n % dataset.getFamilyNames().size());
+	}
+	
+	private void report(List<ThroughputResult> results) throws IOException {
+		StringBuilder report = new StringBuilder("Search throughput for ").append(dataset).append(System.lineSeparator())
+		        .append(ThroughputResult.header());
+		results.forEach(result -> report.append(System.lineSeparator()).append(result.toRow()));
+		log.info(report.toString());
+		
+		File resultsFile = new File(RESULTS_FILE);
+		if (resultsFile.getParentFile() != null && !resultsFile.getParentFile().isDirectory()) {
+			return;
+		}
+		
+		try (PrintWriter writer = new PrintWriter(resultsFile, StandardCharsets.UTF_8.name())) {
+			writer.println("scenario,requests,errors,p50_ms,p95_ms,p99_ms,requests_per_second");
+			results.forEach(result -> writer.println(result.toCsv()));
+		}
+	}
+}
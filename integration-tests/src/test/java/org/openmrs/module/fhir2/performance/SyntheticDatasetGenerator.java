@@ -0,0 +1,513 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.performance;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fills an OpenMRS database with a synthetic population of patients together with their
+ * encounters, numeric observations and test orders, and a tree of locations. Rows are written with
+ * batched JDBC inserts rather than through the OpenMRS services, so that datasets with millions of
+ * observations can be created in minutes. The generated data is deterministic for a given
+ * {@link DatasetSize#getSeed() seed}.
+ * <p/>
+ * The generator only adds rows. It relies on the metadata (users, identifier types, encounter types,
+ * numeric concepts, etc.) already present in the database, e.g. the OpenMRS standard test dataset,
+ * and commits once all rows have been written, so it should be given a connection of its own. The
+ * rows can be removed again with {@link #delete(GeneratedDataset)}. To fill a MySQL or PostgreSQL database, run
+ * {@link #main(String[])} with the JDBC URL, username and password of that database; the JDBC
+ * driver must be on the classpath.
+ */
+@Slf4j
+public class SyntheticDatasetGenerator {
+	
+	/**
+	 * The (approximate) number of rows written to each table in a single batch
+	 */
+	static final int BATCH_SIZE = 5000;
+	
+	private static final int SAMPLE_PATIENTS = 100;
+	
+	private static final int MAXIMUM_OBSERVATION_CONCEPTS = 10;
+	
+	private static final long HISTORY_MILLIS = TimeUnit.DAYS.toMillis(5 * 365);
+	
+	private static final String[] GIVEN_NAMES = { "Abena", "Adam", "Aisha", "Amina", "Ana", "Carlos", "Chen", "Daniel",
+	        "David", "Elena", "Emmanuel", "Fatima", "Grace", "Hassan", "Ivan", "James", "Jane", "John", "Joseph", "Juan",
+	        "Kofi", "Lakshmi", "Li", "Maria", "Mary", "Mohamed", "Nadia", "Omar", "Peter", "Priya", "Rosa", "Samuel",
+	        "Sarah", "Tendai", "Wei", "Yusuf" };
+	
+	private static final String[] FAMILY_NAMES = { "Achieng", "Banda", "Chen", "Costa", "Diallo", "Garcia", "Gonzalez",
+	        "Hernandez", "Ivanov", "Kamau", "Khan", "Kim", "Lee", "Lopez", "Mensah", "Moyo", "Mwangi", "Nguyen", "Okafor",
+	        "Otieno", "Patel", "Perez", "Rodriguez", "Santos", "Silva", "Singh", "Smith", "Tembo", "Wang", "Yilmaz" };
+	
+	// the tables written by the generator, in the order their rows can be deleted, with the id column of
+	// each and the table that id column is allocated from
+	private static final String[][] GENERATED_TABLES = { { "test_order", "order_id", "orders" },
+	        { "orders", "order_id", "orders" }, { "obs", "obs_id", "obs" }, { "encounter", "encounter_id", "encounter" },
+	        { "patient_identifier", "patient_identifier_id", "patient_identifier" },
+	        { "person_name", "person_name_id", "person_name" }, { "patient", "patient_id", "person" },
+	        { "person", "person_id", "person" }, { "location", "location_id", "location" } };
+	
+	private final Connection connection;
+	
+	private Random random;
+	
+	public SyntheticDatasetGenerator(Connection connection) {
+		this.connection = connection;
+	}
+	
+	public static void main(String[] args) throws SQLException {
+		if (args.length < 1) {
+			System.err.println("Usage: SyntheticDatasetGenerator <jdbc-url> [<username> [<password>]]");
+			System.exit(1);
+		}
+		
+		try (Connection connection = DriverManager.getConnection(args[0], args.length > 1 ? args[1] : null,
+		    args.length > 2 ? args[2] : null)) {
+			connection.setAutoCommit(false);
+			
+			GeneratedDataset dataset = new SyntheticDatasetGenerator(connection)
+			        .generate(DatasetSize.fromSystemProperties());
+			
+			System.out.printf("Generated %d patients, %d encounters, %d observations, %d orders and %d locations in %d s%n",
+			    dataset.getPatients(), dataset.getEncounters(), dataset.getObservations(), dataset.getOrders(),
+			    dataset.getLocations(), TimeUnit.MILLISECONDS.toSeconds(dataset.getElapsedMillis()));
+		}
+	}
+	
+	public GeneratedDataset generate(DatasetSize size) throws SQLException {
+		long start = System.nanoTime();
+		random = new Random(size.getSeed());
+		
+		ReferenceData reference = new ReferenceData(size);
+		GeneratedDataset dataset = new GeneratedDataset();
+		dataset.setObservationConceptUuid(reference.observationConceptUuids.get(0));
+		dataset.getFamilyNames().addAll(Arrays.asList(FAMILY_NAMES));
+		
+		List<Integer> leafLocations = generateLocations(size, reference, dataset);
+		generatePatients(size, reference, leafLocations, dataset);
+		
+		if (isPostgreSql()) {
+			resetSequences();
+		}
+		
+		if (!connection.getAutoCommit()) {
+			connection.commit();
+		}
+		
+		dataset.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		log.info("Generated {}", dataset);
+		return dataset;
+	}
+	
+	/**
+	 * Deletes the rows written by {@link #generate(DatasetSize)} and commits
+	 */
+	public void delete(GeneratedDataset dataset) throws SQLException {
+		try (PreparedStatement statement = connection
+		        .prepareStatement("UPDATE location SET parent_location = NULL WHERE location_id >= ?")) {
+			// locations refer to their parents, so the tree is taken apart before it is deleted
+			statement.setInt(1, dataset.getFirstIds().get("location"));
+			statement.executeUpdate();
+		}
+		
+		for (String[] table : GENERATED_TABLES) {
+			try (PreparedStatement statement = connection
+			        .prepareStatement("DELETE FROM " + table[0] + " WHERE " + table[1] + " >= ?")) {
+				statement.setInt(1, dataset.getFirstIds().get(table[2]));
+				statement.executeUpdate();
+			}
+		}
+		
+		if (!connection.getAutoCommit()) {
+			connection.commit();
+		}
+	}
+	
+	/**
+	 * Creates a complete tree of locations, level by level, and returns the ids of the leaves
+	 */
+	private List<Integer> generateLocations(DatasetSize size, ReferenceData reference, GeneratedDataset dataset)
+	        throws SQLException {
+		int nextId = nextId("location", "location_id", dataset);
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		
+		List<Integer> currentLevel = new ArrayList<>();
+		List<String> currentNames = new ArrayList<>();
+		
+		try (TableInserter locations = new TableInserter("location", "location_id", "name", "parent_location", "creator",
+		        "date_created", "retired", "uuid")) {
+			String rootUuid = nextUuid();
+			locations.add(nextId, "Synthetic Location", null, reference.creatorId, now, false, rootUuid);
+			locations.flush();
+			
+			dataset.setRootLocationUuid(rootUuid);
+			currentLevel.add(nextId++);
+			currentNames.add("Synthetic Location");
+			
+			for (int depth = 1; depth <= size.getLocationDepth(); depth++) {
+				List<Integer> nextLevel = new ArrayList<>(currentLevel.size() * size.getLocationFanout());
+				List<String> nextNames = new ArrayList<>(nextLevel.size());
+				
+				for (int parent = 0; parent < currentLevel.size(); parent++) {
+					for (int child = 1; child <= size.getLocationFanout(); child++) {
+						String name = currentNames.get(parent) + " " + child;
+						locations.add(nextId, name, currentLevel.get(parent), reference.creatorId, now, false,
+						    nextUuid());
+						
+						nextLevel.add(nextId++);
+						nextNames.add(name);
+						
+						if (locations.getPending() >= BATCH_SIZE) {
+							locations.flush();
+						}
+					}
+				}
+				
+				// parents must exist before their children are written
+				locations.flush();
+				currentLevel = nextLevel;
+				currentNames = nextNames;
+			}
+			
+			dataset.setLocations(locations.getInserted());
+		}
+		
+		return currentLevel;
+	}
+	
+	private void generatePatients(DatasetSize size, ReferenceData reference, List<Integer> leafLocations,
+	        GeneratedDataset dataset) throws SQLException {
+		int personId = nextId("person", "person_id", dataset);
+		int personNameId = nextId("person_name", "person_name_id", dataset);
+		int identifierId = nextId("patient_identifier", "patient_identifier_id", dataset);
+		int encounterId = nextId("encounter", "encounter_id", dataset);
+		int obsId = nextId("obs", "obs_id", dataset);
+		int orderId = nextId("orders", "order_id", dataset);
+		
+		int encountersPerPatient = Math.max(1, size.getEncountersPerPatient());
+		int rowsPerPatient = 1 + encountersPerPatient + size.getObsPerPatient() + size.getOrdersPerPatient();
+		// patients are written in chunks so that every table is flushed before the tables that reference it
+		int patientsPerChunk = Math.max(1, BATCH_SIZE / rowsPerPatient);
+		
+		long now = System.currentTimeMillis();
+		Timestamp dateCreated = new Timestamp(now);
+		Timestamp[] encounterDatetimes = new Timestamp[encountersPerPatient];
+		int[] encounterIds = new int[encountersPerPatient];
+		int[] encounterLocations = new int[encountersPerPatient];
+		
+		try (TableInserter persons = new TableInserter("person", "person_id", "gender", "birthdate",
+		        "birthdate_estimated", "dead", "deathdate_estimated", "creator", "date_created", "voided", "uuid");
+		        TableInserter patients = new TableInserter("patient", "patient_id", "creator", "date_created", "voided",
+		                "allergy_status");
+		        TableInserter names = new TableInserter("person_name", "person_name_id", "person_id", "preferred",
+		                "given_name", "family_name", "creator", "date_created", "voided", "uuid");
+		        TableInserter identifiers = new TableInserter("patient_identifier", "patient_identifier_id", "patient_id",
+		                "identifier", "identifier_type", "preferred", "location_id", "creator", "date_created", "voided",
+		                "uuid");
+		        TableInserter encounters = new TableInserter("encounter", "encounter_id", "encounter_type", "patient_id",
+		                "location_id", "encounter_datetime", "creator", "date_created", "voided", "uuid");
+		        TableInserter observations = new TableInserter("obs", "obs_id", "person_id", "concept_id", "encounter_id",
+		                "obs_datetime", "location_id", "value_numeric", "creator", "date_created", "voided", "uuid",
+		                "status");
+		        TableInserter orders = new TableInserter("orders", "order_id", "order_type_id", "concept_id", "orderer",
+		                "date_activated", "creator", "date_created", "voided", "patient_id", "encounter_id", "uuid",
+		                "urgency", "order_number", "order_action", "care_setting");
+		        TableInserter testOrders = new TableInserter("test_order", "order_id")) {
+			
+			for (int patient = 0; patient < size.getPatients(); patient++, personId++) {
+				String patientUuid = nextUuid();
+				if (dataset.getSamplePatientUuids().size() < SAMPLE_PATIENTS) {
+					dataset.getSamplePatientUuids().add(patientUuid);
+				}
+				
+				java.sql.Date birthdate = new java.sql.Date(now - TimeUnit.DAYS.toMillis(random.nextInt(90 * 365)));
+				persons.add(personId, random.nextBoolean() ? "F" : "M", birthdate, false, false, false,
+				    reference.creatorId, dateCreated, false, patientUuid);
+				patients.add(personId, reference.creatorId, dateCreated, false, "Unknown");
+				names.add(personNameId++, personId, true, GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)],
+				    FAMILY_NAMES[random.nextInt(FAMILY_NAMES.length)], reference.creatorId, dateCreated, false,
+				    nextUuid());
+				
+				int homeLocation = leafLocations.get(random.nextInt(leafLocations.size()));
+				identifiers.add(identifierId++, personId, "SYN-" + personId, reference.identifierTypeId, true,
+				    homeLocation, reference.creatorId, dateCreated, false, nextUuid());
+				
+				for (int encounter = 0; encounter < encountersPerPatient; encounter++) {
+					encounterIds[encounter] = encounterId++;
+					encounterDatetimes[encounter] = new Timestamp(now - (long) (random.nextDouble() * HISTORY_MILLIS));
+					encounterLocations[encounter] = random.nextInt(4) == 0
+					        ? leafLocations.get(random.nextInt(leafLocations.size()))
+					        : homeLocation;
+					
+					encounters.add(encounterIds[encounter], reference.encounterTypeId, personId,
+					    encounterLocations[encounter], encounterDatetimes[encounter], reference.creatorId, dateCreated,
+					    false, nextUuid());
+				}
+				
+				for (int obs = 0; obs < size.getObsPerPatient(); obs++) {
+					int encounter = obs % encountersPerPatient;
+					observations.add(obsId++, personId,
+					    reference.observationConceptIds.get(obs % reference.observationConceptIds.size()),
+					    encounterIds[encounter], encounterDatetimes[encounter], encounterLocations[encounter],
+					    Math.round(random.nextDouble() * 2000.0) / 10.0, reference.creatorId, dateCreated, false,
+					    nextUuid(), "FINAL");
+				}
+				
+				for (int order = 0; order < size.getOrdersPerPatient(); order++) {
+					int encounter = order % encountersPerPatient;
+					orders.add(orderId, reference.testOrderTypeId,
+					    reference.observationConceptIds.get(order % reference.observationConceptIds.size()),
+					    reference.providerId, encounterDatetimes[encounter], reference.creatorId, dateCreated, false,
+					    personId, encounterIds[encounter], nextUuid(), "ROUTINE", "SYN-" + orderId, "NEW",
+					    reference.careSettingId);
+					testOrders.add(orderId++);
+				}
+				
+				if ((patient + 1) % patientsPerChunk == 0) {
+					flush(persons, patients, names, identifiers, encounters, observations, orders, testOrders);
+				}
+				
+				if ((patient + 1) % 10000 == 0) {
+					log.info("Generated {} of {} patients", patient + 1, size.getPatients());
+				}
+			}
+			
+			flush(persons, patients, names, identifiers, encounters, observations, orders, testOrders);
+			
+			dataset.setPatients(patients.getInserted());
+			dataset.setEncounters(encounters.getInserted());
+			dataset.setObservations(observations.getInserted());
+			dataset.setOrders(orders.getInserted());
+		}
+	}
+	
+	private void flush(TableInserter... inserters) throws SQLException {
+		for (TableInserter inserter : inserters) {
+			inserter.flush();
+		}
+	}
+	
+	private String nextUuid() {
+		// derived from the seeded random so that the same dataset always has the same uuids
+		return new UUID(random.nextLong(), random.nextLong()).toString();
+	}
+	
+	private int nextId(String table, String idColumn, GeneratedDataset dataset) throws SQLException {
+		try (Statement statement = connection.createStatement();
+		        ResultSet resultSet = statement.executeQuery("SELECT MAX(" + idColumn + ") FROM " + table)) {
+			int nextId = resultSet.next() ? resultSet.getInt(1) + 1 : 1;
+			dataset.getFirstIds().put(table, nextId);
+			return nextId;
+		}
+	}
+	
+	private boolean isPostgreSql() throws SQLException {
+		return connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgres");
+	}
+	
+	/**
+	 * Rows are inserted with explicit ids, so PostgreSQL's sequences need to be moved past them
+	 */
+	private void resetSequences() throws SQLException {
+		String[][] tables = { { "location", "location_id" }, { "person", "person_id" },
+		        { "person_name", "person_name_id" }, { "patient_identifier", "patient_identifier_id" },
+		        { "encounter", "encounter_id" }, { "obs", "obs_id" }, { "orders", "order_id" } };
+		
+		try (Statement statement = connection.createStatement()) {
+			for (String[] table : tables) {
+				statement.execute(String.format("SELECT setval(pg_get_serial_sequence('%1$s', '%2$s'), MAX(%2$s)) FROM %1$s",
+				    table[0], table[1]));
+			}
+		}
+	}
+	
+	/**
+	 * The existing metadata the generated rows refer to
+	 */
+	private class ReferenceData {
+		
+		private final int creatorId;
+		
+		private final int identifierTypeId;
+		
+		private final int encounterTypeId;
+		
+		private final List<Integer> observationConceptIds = new ArrayList<>();
+		
+		private final List<String> observationConceptUuids = new ArrayList<>();
+		
+		private Integer testOrderTypeId;
+		
+		private Integer careSettingId;
+		
+		private Integer providerId;
+		
+		private ReferenceData(DatasetSize size) throws SQLException {
+			creatorId = queryForId("SELECT MIN(user_id) FROM users", "user");
+			identifierTypeId = queryForId(
+			    "SELECT MIN(patient_identifier_type_id) FROM patient_identifier_type WHERE retired = ?",
+			    "patient identifier type", false);
+			encounterTypeId = queryForId("SELECT MIN(encounter_type_id) FROM encounter_type WHERE retired = ?",
+			    "encounter type", false);
+			
+			try (PreparedStatement statement = connection.prepareStatement(
+			    "SELECT c.concept_id, c.uuid FROM concept c INNER JOIN concept_numeric cn ON cn.concept_id = c.concept_id "
+			            + "WHERE c.retired = ? ORDER BY c.concept_id")) {
+				statement.setBoolean(1, false);
+				try (ResultSet resultSet = statement.executeQuery()) {
+					while (resultSet.next() && observationConceptIds.size() < MAXIMUM_OBSERVATION_CONCEPTS) {
+						observationConceptIds.add(resultSet.getInt(1));
+						observationConceptUuids.add(resultSet.getString(2));
+					}
+				}
+			}
+			
+			if (observationConceptIds.isEmpty()) {
+				throw new IllegalStateException("The database must contain at least one numeric concept");
+			}
+			
+			if (size.getOrdersPerPatient() > 0) {
+				testOrderTypeId = queryForId("SELECT MIN(order_type_id) FROM order_type WHERE java_class_name = ?",
+				    "test order type", "org.openmrs.TestOrder");
+				careSettingId = queryForId("SELECT MIN(care_setting_id) FROM care_setting WHERE retired = ?",
+				    "care setting", false);
+				providerId = queryForId("SELECT MIN(provider_id) FROM provider WHERE retired = ?", "provider", false);
+			}
+		}
+		
+		private int queryForId(String sql, String description, Object... parameters) throws SQLException {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				for (int i = 0; i < parameters.length; i++) {
+					statement.setObject(i + 1, parameters[i]);
+				}
+				
+				try (ResultSet resultSet = statement.executeQuery()) {
+					if (resultSet.next()) {
+						int id = resultSet.getInt(1);
+						if (!resultSet.wasNull()) {
+							return id;
+						}
+					}
+				}
+			}
+			
+			throw new IllegalStateException("The database must contain at least one " + description);
+		}
+	}
+	
+	/**
+	 * Writes rows to a single table in batches. Columns that do not exist in the table, e.g. because
+	 * they were only introduced in a later version of OpenMRS, are silently skipped.
+	 */
+	private class TableInserter implements AutoCloseable {
+		
+		private final PreparedStatement statement;
+		
+		// the parameter index for each requested column, or 0 if the table does not have that column
+		private final int[] parameterIndexes;
+		
+		private int pending = 0;
+		
+		private long inserted = 0;
+		
+		private TableInserter(String table, String... columns) throws SQLException {
+			Set<String> existingColumns = getColumnNames(table);
+			
+			parameterIndexes = new int[columns.length];
+			List<String> insertedColumns = new ArrayList<>(columns.length);
+			for (int i = 0; i < columns.length; i++) {
+				if (existingColumns.contains(columns[i])) {
+					insertedColumns.add(columns[i]);
+					parameterIndexes[i] = insertedColumns.size();
+				}
+			}
+			
+			StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (")
+			        .append(String.join(", ", insertedColumns)).append(") VALUES (");
+			for (int i = 0; i < insertedColumns.size(); i++) {
+				sql.append(i == 0 ? "?" : ", ?");
+			}
+			
+			statement = connection.prepareStatement(sql.append(")").toString());
+		}
+		
+		private Set<String> getColumnNames(String table) throws SQLException {
+			Set<String> columnNames = new HashSet<>();
+			try (Statement query = connection.createStatement();
+			        ResultSet resultSet = query.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+				ResultSetMetaData metaData = resultSet.getMetaData();
+				for (int i = 1; i <= metaData.getColumnCount(); i++) {
+					columnNames.add(metaData.getColumnName(i).toLowerCase(Locale.ROOT));
+				}
+			}
+			
+			return columnNames;
+		}
+		
+		private void add(Object... values) throws SQLException {
+			for (int i = 0; i < values.length; i++) {
+				if (parameterIndexes[i] == 0) {
+					continue;
+				}
+				
+				if (values[i] == null) {
+					statement.setNull(parameterIndexes[i], Types.INTEGER);
+				} else {
+					statement.setObject(parameterIndexes[i], values[i]);
+				}
+			}
+			
+			statement.addBatch();
+			pending++;
+		}
+		
+		private void flush() throws SQLException {
+			if (pending > 0) {
+				statement.executeBatch();
+				inserted += pending;
+				pending = 0;
+			}
+		}
+		
+		private int getPending() {
+			return pending;
+		}
+		
+		private long getInserted() {
+			return inserted;
+		}
+		
+		@Override
+		public void close() throws SQLException {
+			statement.close();
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.performance;
+
+import lombok.Data;
+
+/**
+ * The latency distribution and throughput measured for a single scenario by {@link LoadRunner}
+ */
+@Data
+public class ThroughputResult {
+	
+	private final String scenario;
+	
+	private final int requests;
+	
+	private final int errors;
+	
+	private final double p50Millis;
+	
+	private final double p95Millis;
+	
+	private final double p99Millis;
+	
+	private final double requestsPerSecond;
+	
+	static String header() {
+		return String.format("%-40s %8s %6s %9s %9s %9s %9s", "scenario", "requests", "errors", "p50 (ms)", "p95 (ms)",
+		    "p99 (ms)", "req/s");
+	}
+	
+	String toRow() {
+		return String.format("%-40s %8d %6d %9.1f %9.1f %9.1f %9.1f", scenario, requests, errors, p50Millis, p95Millis,
+		    p99Millis, requestsPerSecond);
+	}
+	
+	String toCsv() {
+		return String.format("%s,%d,%d,%.3f,%.3f,%.3f,%.3f", scenario, requests, errors, p50Millis, p95Millis, p99Millis,
+		    requestsPerSecond);
+	}
+}
@@ -18,6 +18,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.context.FhirContext;
@@ -40,10 +41,15 @@ import org.openmrs.module.fhir2.FhirActivator;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.annotations.R4Provider;
+import org.openmrs.module.fhir2.api.dao.FhirSearchSnapshotDao;
+import org.openmrs.module.fhir2.api.search.ReadReplicaRouter;
+import org.openmrs.module.fhir2.api.search.SearchSnapshotPagingProvider;
 import org.openmrs.module.fhir2.api.spi.ModuleLifecycleListener;
 import org.openmrs.module.fhir2.narrative.OpenmrsThymeleafNarrativeGenerator;
 import org.openmrs.module.fhir2.web.authentication.RequireAuthenticationInterceptor;
+import org.openmrs.module.fhir2.web.util.FhirRequestContextInterceptor;
 import org.openmrs.module.fhir2.web.util.NarrativeUtils;
+import org.openmrs.module.fhir2.web.util.ReadReplicaInterceptor;
 import org.openmrs.module.fhir2.web.util.SummaryInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.AutowiredAnnotationBeanPostProcessor;
@@ -68,6 +74,12 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 	@Autowired
 	private FhirGlobalPropertyService globalPropertyService;
 	
+	@Autowired
+	private FhirSearchSnapshotDao searchSnapshotDao;
+	
+	@Autowired
+	private ReadReplicaRouter readReplicaRouter;
+	
 	@Autowired
 	@Qualifier("hapiLoggingInterceptor")
 	private LoggingInterceptor loggingInterceptor;
@@ -149,7 +161,9 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 
 		registerInterceptor(loggingInterceptor);
 		registerInterceptor(new SummaryInterceptor());
+		registerInterceptor(new FhirRequestContextInterceptor());
 		registerInterceptor(new RequireAuthenticationInterceptor());
+		registerReadReplicaInterceptor();
 
 		String narrativesOverridePropertyFile = NarrativeUtils.getValidatedPropertiesFilePath(
 				globalPropertyService.getGlobalProperty(FhirConstants.NARRATIVES_OVERRIDE_PROPERTY_FILE, (String) null));
@@ -208,7 +222,27 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 	private BasePagingProvider createPagingProvider() {
 		int defaultPageSize=NumberUtils.toInt(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE),10);int maximumPageSize=NumberUtils.toInt(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_MAXIMUM_PAGE_SIZE),100);
 		
-		BasePagingProvider pagingProvider=new FifoMemoryPagingProvider(10_000);pagingProvider.setDefaultPageSize(defaultPageSize);pagingProvider.setMaximumPageSize(maximumPageSize);return pagingProvider;
+		BasePagingProvider pagingProvider;
+		if (searchSnapshotDao != null && ctx != null) {
+			long timeToLive = TimeUnit.SECONDS.toMillis(NumberUtils.toLong(
+			    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SEARCH_SNAPSHOT_TIME_TO_LIVE), 3600));
+			int maximumSnapshots = NumberUtils.toInt(
+			    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SEARCH_SNAPSHOT_MAXIMUM), 10_000);
+			
+			pagingProvider = new SearchSnapshotPagingProvider(searchSnapshotDao, globalPropertyService, ctx, timeToLive,
+			        maximumSnapshots, readReplicaRouter);
+		} else {
+			pagingProvider = new FifoMemoryPagingProvider(10_000);
+		}
+		
+		pagingProvider.setDefaultPageSize(defaultPageSize);pagingProvider.setMaximumPageSize(maximumPageSize);return pagingProvider;
+	}
+	
+	private void registerReadReplicaInterceptor() {
+		// the router is not set when the servlet is configured by hand, e.g. in tests
+		if (readReplicaRouter != null) {
+			registerInterceptor(new ReadReplicaInterceptor(readReplicaRouter));
+		}
 	}
 	
 	protected void autoInject() {
@@ -235,9 +269,13 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 			
 			registerInterceptor(ctx.getBean("hapiLoggingInterceptor", LoggingInterceptor.class));
 			registerInterceptor(new SummaryInterceptor());
+			registerInterceptor(new FhirRequestContextInterceptor());
 			registerInterceptor(new RequireAuthenticationInterceptor());
+			setReadReplicaRouter(ctx.getBean(ReadReplicaRouter.class));
+			registerReadReplicaInterceptor();
 			setAdministrationService(ctx.getBean("adminService", AdministrationService.class));
 			setGlobalPropertyService(ctx.getBean(FhirGlobalPropertyService.class));
+			setSearchSnapshotDao(ctx.getBean(FhirSearchSnapshotDao.class));
 			setServerAddressStrategy(ctx.getBean(IServerAddressStrategy.class));
 			setPagingProvider(createPagingProvider());
 			
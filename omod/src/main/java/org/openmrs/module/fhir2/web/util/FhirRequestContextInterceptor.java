@@ -0,0 +1,42 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.openmrs.module.fhir2.api.util.FhirRequestContext;
+
+/**
+ * Makes the parts of each request that the search layer needs available through
+ * {@link FhirRequestContext} for the duration of the request
+ */
+@Interceptor
+public class FhirRequestContextInterceptor {
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+	public void populateRequestContext(RequestDetails requestDetails) {
+		FhirRequestContext.clear();
+		FhirRequestContext.enableTranslatedResourceCache();
+		
+		String[] totalMode = requestDetails.getParameters().get(Constants.PARAM_SEARCH_TOTAL_MODE);
+		if (totalMode != null && totalMode.length > 0) {
+			FhirRequestContext.setSearchTotalMode(SearchTotalModeEnum.fromCode(totalMode[0]));
+		}
+	}
+	
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+	public void clearRequestContext() {
+		FhirRequestContext.clear();
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.openmrs.module.fhir2.api.search.ReadReplicaRouter;
+
+/**
+ * Runs requests which only read, i.e. reads, searches, paging requests and operations invoked with
+ * GET, against a read replica through the {@link ReadReplicaRouter}. The replica is used for the
+ * whole request, including loading the pages of a search, which happens after the service has
+ * returned. The paging provider stores and reads search snapshots on the primary database while the
+ * request is routed.
+ */
+@Interceptor
+public class ReadReplicaInterceptor {
+	
+	private final ReadReplicaRouter readReplicaRouter;
+	
+	public ReadReplicaInterceptor(ReadReplicaRouter readReplicaRouter) {
+		this.readReplicaRouter = readReplicaRouter;
+	}
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED)
+	public void routeReadOnlyRequest(RequestDetails requestDetails, RestOperationTypeEnum operation) {
+		if (isReadOnly(requestDetails, operation)) {
+			readReplicaRouter.route();
+		}
+	}
+	
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+	public void releaseReplica() {
+		readReplicaRouter.release();
+	}
+	
+	static boolean isReadOnly(RequestDetails requestDetails, RestOperationTypeEnum operation) {
+		if (operation == null) {
+			return false;
+		}
+		
+		switch (operation) {
+			case READ:
+			case VREAD:
+			case SEARCH_TYPE:
+			case SEARCH_SYSTEM:
+			case GET_PAGE:
+				return true;
+			case EXTENDED_OPERATION_TYPE:
+			case EXTENDED_OPERATION_INSTANCE:
+			case EXTENDED_OPERATION_SERVER:
+				return requestDetails.getRequestType() == RequestTypeEnum.GET;
+			default:
+				return false;
+		}
+	}
+}